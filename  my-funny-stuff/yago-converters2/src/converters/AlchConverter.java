@@ -5,14 +5,14 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Collection;
-import java.util.TreeSet;
 
 import javatools.administrative.Announce;
 import javatools.administrative.D;
-import javatools.filehandlers.FileLines;
 import javatools.filehandlers.UTF8Writer;
 import javatools.parsers.Char;
+import converters.facts.EntitySet;
+import converters.facts.Fact;
+import converters.facts.FactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -26,6 +26,9 @@ import javatools.parsers.Char;
  */
 public class AlchConverter extends Converter {
 
+	/** The names by the raw names of the entities (see mlnNameFor) */
+	protected CodecCache<String> names;
+
 	/**
 	 * minimises the entity name
 	 */
@@ -48,11 +51,11 @@ public class AlchConverter extends Converter {
 	 *            file
 	 * @throws Exception
 	 */
-	public Collection<String> writeFacts() throws IOException {
+	public EntitySet writeFacts() throws IOException {
 		Announce.doing("Writing facts");
 		Writer out = new BufferedWriter(new FileWriter(new File(outputFolder,
 				"yago.db")));
-		Collection<String> entities = new TreeSet<String>();
+		EntitySet entities = newEntitySet();
 		for (File inputFile : yagoFolder.listFiles()) {
 			String relation = relationForFactFile(inputFile);
 			if (relation == null || relation.equals("type_star"))
@@ -61,18 +64,22 @@ public class AlchConverter extends Converter {
 
 			relation = mlnNameFor(relation);
 			int counter = 0;
-			FileLines lines = new FileLines(inputFile, "Parsing "
+			FactReader facts = readFacts(inputFile, "Parsing "
 					+ inputFile.getName());
-			for (String line : lines) {
-				String[] split = line.split("\t");
-				entities.add(split[1]);
-				entities.add(split[2]);
-				D.writeln(out, "fact(" + mlnNameFor(split[1]) + ", " + relation
-						+ ", " + mlnNameFor(split[2]) + ")");
+			for (Fact fact : facts) {
+				entities.add(fact.arg1);
+				entities.add(fact.arg2);
+				out.write("fact(");
+				out.write(names.get(fact.arg1));
+				out.write(", ");
+				out.write(relation);
+				out.write(", ");
+				out.write(names.get(fact.arg2));
+				out.write(")\n");
 				if (test && counter++ > 100)
 					break;
 			}
-			lines.close();
+			facts.close();
 		}
 		out.close();
 		Announce.done();
@@ -83,18 +90,25 @@ public class AlchConverter extends Converter {
 	public void run() throws IOException {
 		getParameters();
 		includeFactFacts=false;
+		names = codecCache("names", new CodecCache.Function<String>() {
+			@Override
+			public String apply(String raw) {
+				return (mlnNameFor(raw));
+			}
+		});
 		Announce.doing("Producing Alchemy version of YAGO");
 
 		// Write facts, get entities
-		Collection<String> entities = writeFacts();
+		EntitySet entities = writeFacts();
 
 		// Write entities
 		Writer entityWriter = new UTF8Writer(new File(outputFolder, "yago.mln"));
 		D.writeln(entityWriter, "entity = {");
 		for (String r : entities) {
 			if (!r.startsWith("_"))
-				entityWriter.write("  " + mlnNameFor(r) + ",\n");
+				entityWriter.write("  " + names.get(r) + ",\n");
 		}
+		entities.close();
         D.writeln(entityWriter,"  dummy\n}\n");
         
 		// Write rules
@@ -0,0 +1,145 @@
+package converters;
+
+import java.io.FileOutputStream;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Writes bytes into a reusable buffer, which is flushed through the
+ * FileChannel of the output if the output is a file (and through the stream
+ * otherwise). Subclasses (such as the TripleWriter and the XmlWriter) escape
+ * their text straight into the buffer. The writer counts the bytes it has
+ * written, so that its output can be cut into parts of a given size.
+ */
+public class ByteWriter implements Flushable {
+
+  /** Default size of the buffer */
+  public static final int BUFFER_SIZE = 1 << 16;
+
+  /** The stream (if there is no channel) */
+  protected final OutputStream out;
+
+  /** The channel of the output file (or NULL) */
+  protected final FileChannel channel;
+
+  /** The buffer */
+  protected final byte[] buffer;
+
+  /** Wraps the buffer for the channel */
+  protected final ByteBuffer byteBuffer;
+
+  /** Number of bytes in the buffer */
+  protected int pos = 0;
+
+  /** Number of bytes written to the output */
+  protected long drained = 0;
+
+  /** Writes to out */
+  public ByteWriter(OutputStream out) {
+    this(out, BUFFER_SIZE);
+  }
+
+  /** Writes to out with a buffer of the given size (at least 16 bytes) */
+  public ByteWriter(OutputStream out, int bufferSize) {
+    this.out = out;
+    channel = out instanceof FileOutputStream ? ((FileOutputStream) out).getChannel() : null;
+    buffer = new byte[Math.max(16, bufferSize)];
+    byteBuffer = ByteBuffer.wrap(buffer);
+  }
+
+  /** Writes the buffer to the output */
+  protected void drain() throws IOException {
+    if (pos == 0) return;
+    if (channel != null) {
+      byteBuffer.clear().limit(pos);
+      while (byteBuffer.hasRemaining())
+        channel.write(byteBuffer);
+    } else {
+      out.write(buffer, 0, pos);
+    }
+    drained += pos;
+    pos = 0;
+  }
+
+  /** Makes room for n bytes (n must not exceed the buffer size) */
+  protected void ensure(int n) throws IOException {
+    if (pos + n > buffer.length) drain();
+  }
+
+  /** Writes the buffer to the output (but does not close or flush the output) */
+  @Override
+  public void flush() throws IOException {
+    drain();
+  }
+
+  /** Returns the number of bytes written so far (including the ones in the buffer) */
+  public long written() {
+    return (drained + pos);
+  }
+
+  /** Writes a byte */
+  public void write(int b) throws IOException {
+    if (pos == buffer.length) drain();
+    buffer[pos++] = (byte) b;
+  }
+
+  /** Writes bytes */
+  public void write(byte[] bytes) throws IOException {
+    if (bytes.length > buffer.length) {
+      drain();
+      if (channel != null) {
+        ByteBuffer b = ByteBuffer.wrap(bytes);
+        while (b.hasRemaining())
+          channel.write(b);
+      } else {
+        out.write(bytes);
+      }
+      drained += bytes.length;
+      return;
+    }
+    ensure(bytes.length);
+    System.arraycopy(bytes, 0, buffer, pos, bytes.length);
+    pos += bytes.length;
+  }
+
+  /** Writes the characters as UTF-8 (an unpaired surrogate becomes '?', as in OutputStreamWriter) */
+  public void raw(CharSequence s, int start, int end) throws IOException {
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        write(c);
+        continue;
+      }
+      ensure(4);
+      if (c < 0x800) {
+        buffer[pos++] = (byte) (0xC0 | (c >> 6));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (!Character.isSurrogate(c)) {
+        buffer[pos++] = (byte) (0xE0 | (c >> 12));
+        buffer[pos++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, s.charAt(++i));
+        buffer[pos++] = (byte) (0xF0 | (cp >> 18));
+        buffer[pos++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        buffer[pos++] = (byte) (0x80 | (cp & 0x3F));
+      } else {
+        buffer[pos++] = '?';
+      }
+    }
+  }
+
+  /** Writes the characters as UTF-8 */
+  public void raw(CharSequence s) throws IOException {
+    raw(s, 0, s.length());
+  }
+}
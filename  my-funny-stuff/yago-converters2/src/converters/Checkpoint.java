@@ -0,0 +1,165 @@
+package converters;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import converters.facts.FactReader;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * The checkpoints of a converter that loads facts into a database. For every
+ * fact file, the checkpoint records the offset of the last fact whose batch
+ * has been committed, and whether the file is complete. A converter that
+ * resumes after a crash skips the complete files and continues the other ones
+ * after the recorded offset, so that it loses at most one batch of work. The
+ * checkpoint also records the kind of FactReader that read the file, because
+ * the offsets of the readers differ (see Converter.readFactsAfterCheckpoint()).
+ * The checkpoint file is rewritten (through a temporary file that replaces it
+ * atomically) with every commit. A DatabaseCheckpoint keeps the checkpoints in
+ * the database instead, in the same transaction as the facts.
+ */
+public class Checkpoint {
+
+  /** The checkpoint file */
+  protected final File file;
+
+  /** Offset of the last committed fact by file name (Long.MAX_VALUE for complete files) */
+  protected final Map<String, Long> offsets = new LinkedHashMap<String, Long>();
+
+  /** Number of committed facts by file name */
+  protected final Map<String, Long> counts = new LinkedHashMap<String, Long>();
+
+  /** Kind of the reader by file name */
+  protected final Map<String, String> readers = new LinkedHashMap<String, String>();
+
+  /** Constructs checkpoints that are not kept in a file (for subclasses) */
+  protected Checkpoint() {
+    file = null;
+  }
+
+  /** Loads the checkpoints from the file (if it exists) */
+  public Checkpoint(File file) throws IOException {
+    this.file = file;
+    if (!file.exists()) return;
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line;
+      while ((line = in.readLine()) != null) {
+        String[] split = line.split("\t");
+        if (split.length != 4) throw new IOException(file + " has a malformed line: " + line);
+        put(split[0], split[1], split[2].equals("done") ? Long.MAX_VALUE : Long.parseLong(split[2]), Long.parseLong(split[3]));
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Returns TRUE if there are no checkpoints */
+  public boolean isEmpty() {
+    return (offsets.isEmpty());
+  }
+
+  /** Returns TRUE if the file has a checkpoint */
+  public boolean contains(String name) {
+    return (offsets.containsKey(name));
+  }
+
+  /** Returns TRUE if the file is complete */
+  public boolean isDone(String name) {
+    Long offset = offsets.get(name);
+    return (offset != null && offset == Long.MAX_VALUE);
+  }
+
+  /** Returns the offset of the last committed fact of the file, or -1 */
+  public long offset(String name) {
+    Long offset = offsets.get(name);
+    return (offset == null ? -1 : offset);
+  }
+
+  /** Returns the number of committed facts of the file */
+  public long count(String name) {
+    Long count = counts.get(name);
+    return (count == null ? 0 : count);
+  }
+
+  /** Returns the kind of the reader that read the file (or NULL) */
+  public String reader(String name) {
+    return (readers.get(name));
+  }
+
+  /** Returns the kind of a reader (the name of its class) */
+  public static String kind(FactReader reader) {
+    return (reader.getClass().getSimpleName());
+  }
+
+  /**
+   * Throws an IOException if the checkpoint of the file was made by another
+   * kind of reader, whose offsets do not fit the reader
+   */
+  public void check(String name, FactReader reader) throws IOException {
+    String kind = readers.get(name);
+    if (kind != null && !kind.equals(kind(reader))) throw new IOException("The checkpoint of " + name + " was made by a " + kind + ", which cannot be resumed by a "
+        + kind(reader) + " (see the parameter factReader)");
+  }
+
+  /** Records the checkpoint of a file in memory */
+  protected void put(String name, String reader, long offset, long count) {
+    readers.put(name, reader);
+    offsets.put(name, offset);
+    counts.put(name, count);
+  }
+
+  /** Records that the facts of the file up to the one at offset have been committed by the reader */
+  public void commit(String name, FactReader reader, long offset, long count) throws IOException {
+    put(name, kind(reader), offset, count);
+    save(name);
+  }
+
+  /** Records that all facts of the file have been committed by the reader */
+  public void done(String name, FactReader reader, long count) throws IOException {
+    commit(name, reader, Long.MAX_VALUE, count);
+  }
+
+  /** Writes the checkpoint of the file (this class writes the whole checkpoint file) */
+  protected void save(String name) throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    FileOutputStream stream = new FileOutputStream(temp);
+    Writer out = new OutputStreamWriter(stream, "UTF-8");
+    for (Map.Entry<String, Long> e : offsets.entrySet()) {
+      out.write(e.getKey() + "\t" + readers.get(e.getKey()) + "\t" + (e.getValue() == Long.MAX_VALUE ? "done" : e.getValue().toString()) + "\t"
+          + counts.get(e.getKey()) + "\n");
+    }
+    out.flush();
+    stream.getFD().sync();
+    out.close();
+    // Replaces the old checkpoint in one step, so that a crash leaves either one
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Forgets all checkpoints and deletes the file */
+  public void clear() throws IOException {
+    offsets.clear();
+    counts.clear();
+    readers.clear();
+    file.delete();
+  }
+
+  @Override
+  public String toString() {
+    return ("Checkpoint " + file + " with " + offsets.size() + " files");
+  }
+}
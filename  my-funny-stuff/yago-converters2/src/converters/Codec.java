@@ -0,0 +1,232 @@
+package converters;
+
+import java.io.IOException;
+import java.io.Writer;
+
+import javatools.parsers.Char;
+import converters.facts.FactField;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Escaping and unescaping functions with the same results as the ones of
+ * javatools.parsers.Char, but for CharSequences (such as the fields of a
+ * Fact) and without allocation in the common case. Every function comes in
+ * two forms:
+ *    encodeXXX(s, buffer) returns s itself if nothing has to be escaped,
+ *                         and the buffer with the escaped s otherwise
+ *    appendXXX(out, s, start, end) appends the escaped s[start..end) to out
+ * Strings that are escaped over and over again (such as the classes of type
+ * facts) can in addition be memoised in a CodecCache.
+ */
+public class Codec {
+
+  /** Tells for every ASCII character whether it is a path character in the sense of URIs (see Char.isPchar) */
+  protected static final boolean[] PCHAR = new boolean[128];
+
+  /** Tells for every ASCII character whether it is a letter or a digit (see Char.isAlphanumeric) */
+  protected static final boolean[] ALPHANUMERIC = new boolean[128];
+
+  /** Tells for every ASCII character whether Char.encodeAmpersand() keeps it */
+  protected static final boolean[] AMPERSAND_SAFE = new boolean[128];
+
+  static {
+    for (char c = 0; c < 128; c++) {
+      PCHAR[c] = Char.isPchar(c);
+      ALPHANUMERIC[c] = Char.isAlphanumeric(c);
+      AMPERSAND_SAFE[c] = c >= 32 && !Char.charToAmpersand.containsKey(c);
+    }
+  }
+
+  /** Upper case hex digits */
+  protected static final char[] UPPER_HEX = "0123456789ABCDEF".toCharArray();
+
+  /** TRUE if c is a path character in the sense of URIs */
+  public static boolean isPathChar(char c) {
+    return (c < 128 && PCHAR[c]);
+  }
+
+  /** TRUE if c is a letter or a digit in the sense of URIs */
+  public static boolean isAlphanumeric(char c) {
+    return (c < 128 && ALPHANUMERIC[c]);
+  }
+
+  /** Returns the start of s after the leading quote (as TermExtractor.stripQuotes) */
+  public static int quoteStart(CharSequence s) {
+    return (s.length() > 0 && s.charAt(0) == '"' ? 1 : 0);
+  }
+
+  /** Returns the end of s before the trailing quote, given the result of quoteStart() (as TermExtractor.stripQuotes) */
+  public static int quoteEnd(CharSequence s, int start) {
+    return (s.length() > start && s.charAt(s.length() - 1) == '"' ? s.length() - 1 : s.length());
+  }
+
+  /** TRUE if s[start..end) contains c */
+  protected static boolean contains(CharSequence s, int start, int end, char c) {
+    for (int i = start; i < end; i++) {
+      if (s.charAt(i) == c) return (true);
+    }
+    return (false);
+  }
+
+  /**
+   * Returns s with backslash codes decoded (as Char.decodeBackslash()).
+   * Returns s itself if it has no backslash, which is the common case.
+   */
+  public static CharSequence decodeBackslash(CharSequence s) {
+    if (!contains(s, 0, s.length(), '\\')) return (s);
+    return (Char.decodeBackslash(s.toString()));
+  }
+
+  /** Appends s[start..end) with backslash codes decoded to out (as Char.decodeBackslash()) */
+  public static void appendDecodedBackslash(StringBuilder out, CharSequence s, int start, int end) {
+    if (!contains(s, start, end, '\\')) out.append(s, start, end);
+    else out.append(Char.decodeBackslash(s.subSequence(start, end).toString()));
+  }
+
+  /** Appends a percent code */
+  protected static void appendPercent(StringBuilder out, int b) {
+    out.append('%').append(UPPER_HEX[(b >> 4) & 0xF]).append(UPPER_HEX[b & 0xF]);
+  }
+
+  /**
+   * Appends s[start..end) to out as Char.encodeURIPathComponent() does: path
+   * characters stay, others become percent codes of their UTF-8 bytes
+   * (surrogates are encoded one by one)
+   */
+  public static void appendURIPathComponent(StringBuilder out, CharSequence s, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        if (PCHAR[c]) out.append(c);
+        else appendPercent(out, c);
+      } else if (c < 0x800) {
+        appendPercent(out, 0xC0 | (c >> 6));
+        appendPercent(out, 0x80 | (c & 0x3F));
+      } else {
+        appendPercent(out, 0xE0 | (c >> 12));
+        appendPercent(out, 0x80 | ((c >> 6) & 0x3F));
+        appendPercent(out, 0x80 | (c & 0x3F));
+      }
+    }
+  }
+
+  /** Returns s encoded as Char.encodeURIPathComponent() does (s itself if it has only path characters) */
+  public static CharSequence encodeURIPathComponent(CharSequence s, StringBuilder buffer) {
+    for (int i = 0; i < s.length(); i++) {
+      if (!isPathChar(s.charAt(i))) {
+        buffer.setLength(0);
+        buffer.append(s, 0, i);
+        appendURIPathComponent(buffer, s, i, s.length());
+        return (buffer);
+      }
+    }
+    return (s);
+  }
+
+  /** Appends s[start..end) to out as Char.encodeHex() does: letters and digits stay, others become upper case hex codes */
+  public static void appendHex(StringBuilder out, CharSequence s, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (isAlphanumeric(c)) {
+        out.append(c);
+        continue;
+      }
+      // Like Integer.toHexString(), without leading zeros
+      boolean digits = false;
+      for (int shift = 12; shift >= 0; shift -= 4) {
+        int d = (c >> shift) & 0xF;
+        if (d != 0 || digits || shift == 0) {
+          out.append(UPPER_HEX[d]);
+          digits = true;
+        }
+      }
+    }
+  }
+
+  /** Returns s encoded as Char.encodeHex() does (s itself if it has only letters and digits) */
+  public static CharSequence encodeHex(CharSequence s, StringBuilder buffer) {
+    for (int i = 0; i < s.length(); i++) {
+      if (!isAlphanumeric(s.charAt(i))) {
+        buffer.setLength(0);
+        buffer.append(s, 0, i);
+        appendHex(buffer, s, i, s.length());
+        return (buffer);
+      }
+    }
+    return (s);
+  }
+
+  /**
+   * Appends s[start..end) to out as Char.encodeAmpersand() does: XML special
+   * characters become entities, control and non-ASCII characters become
+   * numeric character references
+   */
+  public static void appendAmpersand(StringBuilder out, CharSequence s, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c < 128 && AMPERSAND_SAFE[c]) {
+        out.append(c);
+        continue;
+      }
+      String entity = Char.charToAmpersand.get(c);
+      if (entity != null) out.append(entity);
+      else out.append("&#").append((int) c).append(';');
+    }
+  }
+
+  /** TRUE if Char.encodeAmpersand() keeps s[start..end) as it is */
+  public static boolean isAmpersandSafe(CharSequence s, int start, int end) {
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (c >= 128 || !AMPERSAND_SAFE[c]) return (false);
+    }
+    return (true);
+  }
+
+  /** Returns s encoded as Char.encodeAmpersand() does (s itself if nothing has to be escaped) */
+  public static CharSequence encodeAmpersand(CharSequence s, StringBuilder buffer) {
+    if (isAmpersandSafe(s, 0, s.length())) return (s);
+    buffer.setLength(0);
+    appendAmpersand(buffer, s, 0, s.length());
+    return (buffer);
+  }
+
+  /**
+   * Appends the escaped s[start..end) to out as
+   * Char.encodeAmpersand(Char.decodeBackslash(s)) does
+   */
+  public static void appendDecodedAmpersand(StringBuilder out, CharSequence s, int start, int end) {
+    if (!contains(s, start, end, '\\')) {
+      appendAmpersand(out, s, start, end);
+    } else {
+      String decoded = Char.decodeBackslash(s.subSequence(start, end).toString());
+      appendAmpersand(out, decoded, 0, decoded.length());
+    }
+  }
+
+  /** Writes s to out without converting it to a String first (if it is a String, a StringBuilder or a FactField) */
+  public static void write(Writer out, CharSequence s) throws IOException {
+    if (s instanceof String) {
+      out.write((String) s);
+    } else if (s instanceof FactField) {
+      out.write(((FactField) s).buffer(), 0, s.length());
+    } else if (s instanceof StringBuilder) {
+      write(out, (StringBuilder) s, new char[Math.min(s.length(), 1024)]);
+    } else {
+      out.write(s.toString());
+    }
+  }
+
+  /** Writes the StringBuilder to out, using the given array as a buffer */
+  public static void write(Writer out, StringBuilder s, char[] buffer) throws IOException {
+    for (int start = 0; start < s.length(); start += buffer.length) {
+      int end = Math.min(s.length(), start + buffer.length);
+      s.getChars(start, end, buffer, 0);
+      out.write(buffer, 0, end - start);
+    }
+  }
+}
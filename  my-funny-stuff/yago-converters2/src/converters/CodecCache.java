@@ -0,0 +1,237 @@
+package converters;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Memoises an encoding function for the entities that come up over and over
+ * again (such as the classes of type facts). The cache is keyed by the raw
+ * entity as it is in the fact file and can be asked with any CharSequence
+ * (such as a FactField), so that a hit does not allocate. It holds at most a
+ * given number of entries and evicts by the CLOCK algorithm: an entry that
+ * has been used since the clock hand last passed gets a second chance. The
+ * cache is split into segments with their own locks, so that it can be used
+ * by several threads. It counts its hits and misses.
+ *
+ * The basic usage is
+ *    CodecCache<String> uris = new CodecCache<String>("URIs", 65536, new CodecCache.Function<String>() {
+ *      public String apply(String raw) { return (asURI(raw)); }
+ *    });
+ *    String uri = uris.get(fact.arg1);
+ */
+public class CodecCache<V> {
+
+  /** The encoding function */
+  public static interface Function<V> {
+
+    /** Encodes a raw entity */
+    public V apply(String raw);
+  }
+
+  /** Number of segments */
+  protected static final int SEGMENTS = 16;
+
+  /** Name of the cache (for the statistics) */
+  public final String name;
+
+  /** The function */
+  protected final Function<V> function;
+
+  /** The segments (empty if the cache is disabled) */
+  protected final Segment<V>[] segments;
+
+  /** Number of hits */
+  protected final AtomicLong hits = new AtomicLong();
+
+  /** Number of misses */
+  protected final AtomicLong misses = new AtomicLong();
+
+  /** Creates a cache with at most capacity entries for the function (capacity 0 disables the cache) */
+  @SuppressWarnings({ "unchecked", "rawtypes" })
+  public CodecCache(String name, int capacity, Function<V> function) {
+    this.name = name;
+    this.function = function;
+    int n = capacity <= 0 ? 0 : Math.min(SEGMENTS, capacity);
+    segments = new Segment[n];
+    for (int i = 0; i < n; i++)
+      segments[i] = new Segment<V>((capacity + n - 1) / n);
+  }
+
+  /** Returns the same hash code as String.hashCode() */
+  protected static int hash(CharSequence s) {
+    if (s instanceof String) return (s.hashCode());
+    int h = 0;
+    for (int i = 0; i < s.length(); i++)
+      h = 31 * h + s.charAt(i);
+    return (h);
+  }
+
+  /** Spreads the bits of a hash code */
+  protected static int spread(int h) {
+    h ^= (h >>> 16);
+    h *= 0x85EBCA6B;
+    return (h ^ (h >>> 13));
+  }
+
+  /** TRUE if the String has the same characters as the sequence */
+  protected static boolean same(String s, CharSequence c) {
+    if (s.length() != c.length()) return (false);
+    for (int i = 0; i < s.length(); i++) {
+      if (s.charAt(i) != c.charAt(i)) return (false);
+    }
+    return (true);
+  }
+
+  /** Returns the encoding of the raw entity */
+  public V get(CharSequence raw) {
+    if (segments.length == 0) {
+      misses.incrementAndGet();
+      return (function.apply(raw.toString()));
+    }
+    int h = hash(raw);
+    int spread = spread(h);
+    Segment<V> segment = segments[(spread >>> 28) % segments.length];
+    V value;
+    synchronized (segment) {
+      value = segment.get(raw, h, spread);
+    }
+    if (value != null) {
+      hits.incrementAndGet();
+      return (value);
+    }
+    misses.incrementAndGet();
+    String key = raw.toString();
+    value = function.apply(key);
+    synchronized (segment) {
+      if (segment.get(raw, h, spread) == null) segment.put(key, h, spread, value);
+    }
+    return (value);
+  }
+
+  /** Returns the number of hits */
+  public long hits() {
+    return (hits.get());
+  }
+
+  /** Returns the number of misses */
+  public long misses() {
+    return (misses.get());
+  }
+
+  /** Returns the share of hits among all requests */
+  public double hitRate() {
+    long requests = hits.get() + misses.get();
+    return (requests == 0 ? 0 : hits.get() / (double) requests);
+  }
+
+  /** Returns the number of entries */
+  public int size() {
+    int size = 0;
+    for (Segment<V> segment : segments) {
+      synchronized (segment) {
+        size += segment.size;
+      }
+    }
+    return (size);
+  }
+
+  @Override
+  public String toString() {
+    return (String.format("%s cache: %d hits, %d misses (%.1f%% hits), %d entries", name, hits.get(), misses.get(), 100 * hitRate(), size()));
+  }
+
+  /** A part of the cache with its own clock, guarded by its own lock */
+  protected static class Segment<V> {
+
+    /** The keys by slot */
+    protected final String[] keys;
+
+    /** The values by slot */
+    protected final Object[] values;
+
+    /** The hash codes by slot */
+    protected final int[] hashes;
+
+    /** Tells by slot whether the entry has been used since the hand last passed */
+    protected final boolean[] used;
+
+    /** Hash table of slot+1 (0 is empty), with linear probing */
+    protected final int[] table;
+
+    /** Number of entries */
+    protected int size = 0;
+
+    /** The clock hand */
+    protected int hand = 0;
+
+    protected Segment(int capacity) {
+      keys = new String[capacity];
+      values = new Object[capacity];
+      hashes = new int[capacity];
+      used = new boolean[capacity];
+      table = new int[Integer.highestOneBit(Math.max(1, capacity) * 2) * 2];
+    }
+
+    /** Returns the index in the table where the key is or would be */
+    protected int find(CharSequence key, int h, int spread) {
+      int mask = table.length - 1;
+      int i = spread & mask;
+      while (table[i] != 0) {
+        int slot = table[i] - 1;
+        if (hashes[slot] == h && same(keys[slot], key)) return (i);
+        i = (i + 1) & mask;
+      }
+      return (i);
+    }
+
+    /** Returns the value of the key (or NULL) */
+    @SuppressWarnings("unchecked")
+    protected V get(CharSequence key, int h, int spread) {
+      int i = find(key, h, spread);
+      if (table[i] == 0) return (null);
+      int slot = table[i] - 1;
+      used[slot] = true;
+      return ((V) values[slot]);
+    }
+
+    /** Adds an entry that is not in the segment, evicts an entry if the segment is full */
+    protected void put(String key, int h, int spread, V value) {
+      int slot;
+      if (size < keys.length) {
+        slot = size++;
+      } else {
+        while (used[hand]) {
+          used[hand] = false;
+          hand = (hand + 1) % keys.length;
+        }
+        slot = hand;
+        hand = (hand + 1) % keys.length;
+        remove(slot);
+      }
+      keys[slot] = key;
+      values[slot] = value;
+      hashes[slot] = h;
+      used[slot] = false;
+      table[find(key, h, spread)] = slot + 1;
+    }
+
+    /** Removes the entry of the slot from the table (shifting back the entries after it) */
+    protected void remove(int slot) {
+      int mask = table.length - 1;
+      int i = find(keys[slot], hashes[slot], spread(hashes[slot]));
+      table[i] = 0;
+      for (int j = (i + 1) & mask; table[j] != 0; j = (j + 1) & mask) {
+        int home = spread(hashes[table[j] - 1]) & mask;
+        // Leave the entry if its home is cyclically in (i, j]
+        if (i <= j ? (i < home && home <= j) : (i < home || home <= j)) continue;
+        table[i] = table[j];
+        table[j] = 0;
+        i = j;
+      }
+    }
+  }
+}
@@ -0,0 +1,296 @@
+package converters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import javatools.administrative.Announce;
+import converters.facts.BatchFactReader;
+import converters.facts.Fact;
+import converters.facts.FactBatch;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Converts fact files with a converter in three stages: a reader thread reads
+ * the files into batches of facts, a number of transform workers convert the
+ * batches with the convertFacts() method of the converter into bytes, and the
+ * calling thread writes the bytes in the order of the batches. The stages are
+ * connected by a queue and a ring buffer of the same bounded capacity; the
+ * reader waits when that many batches are in flight. For every stage, the
+ * pipeline counts the time the threads work and the time they wait, and it
+ * reports at the end which stage was the bottleneck.
+ */
+public class ConversionPipeline {
+
+  /** Number of facts per batch */
+  public static final int BATCH_SIZE = 1024;
+
+  /** The converter */
+  protected final FactFileConverter converter;
+
+  /** Number of transform workers */
+  protected final int workers;
+
+  /** Maximal number of batches in flight */
+  protected final int capacity;
+
+  /** The stages */
+  protected final Stage reader = new Stage("reader", 1), transform, writer = new Stage("writer", 1);
+
+  /** Work and waiting times of a stage */
+  public static class Stage {
+
+    /** Name of the stage */
+    public final String name;
+
+    /** Number of threads */
+    public final int threads;
+
+    /** Number of batches done */
+    public final AtomicLong batches = new AtomicLong();
+
+    /** Nanoseconds of work (of all threads) */
+    public final AtomicLong busy = new AtomicLong();
+
+    /** Nanoseconds of waiting for input or for space in the output (of all threads) */
+    public final AtomicLong waiting = new AtomicLong();
+
+    public Stage(String name, int threads) {
+      this.name = name;
+      this.threads = threads;
+    }
+
+    /** Returns the share of the wall time that the threads of the stage worked */
+    public double utilisation(long wallNanos) {
+      return (busy.get() / (double) Math.max(1, wallNanos * threads));
+    }
+
+    /** Describes the stage for the given wall time */
+    public String toString(long wallNanos) {
+      return (String.format("%s (%d thread%s): %d batches, %.0f%% busy, %.0f%% waiting", name, threads, threads == 1 ? "" : "s", batches.get(),
+          100 * utilisation(wallNanos), 100 * waiting.get() / (double) Math.max(1, wallNanos * threads)));
+    }
+  }
+
+  /** A batch in the pipeline */
+  protected static class Task {
+
+    /** Number of the batch */
+    public final long number;
+
+    /** Index of the file */
+    public final int file;
+
+    /** The facts (NULL once they are converted) */
+    public FactBatch batch;
+
+    /** Offset of the last fact in the file (for the progress bar) */
+    public final long offset;
+
+    /** The converted facts */
+    public ByteArrayOutputStream result;
+
+    public Task(long number, int file, FactBatch batch) {
+      this.number = number;
+      this.file = file;
+      this.batch = batch;
+      this.offset = batch == null || batch.size() == 0 ? 0 : batch.offset(batch.size() - 1);
+    }
+  }
+
+  /** Marks the end of the batches for the workers */
+  protected static final Task END = new Task(-1, -1, null);
+
+  /** Batches that wait for a worker */
+  protected final BlockingQueue<Task> queue;
+
+  /** Converted batches by number modulo capacity */
+  protected final Task[] ring;
+
+  /** Guards the ring, total and failure */
+  protected final ReentrantLock lock = new ReentrantLock();
+
+  /** Signals a new converted batch, the end of the input or a failure */
+  protected final Condition changed = lock.newCondition();
+
+  /** Permits for the batches in flight */
+  protected final Semaphore inFlight;
+
+  /** Total number of batches, -1 while the reader runs */
+  protected long total = -1;
+
+  /** The exception of a reader or worker */
+  protected Exception failure = null;
+
+  /** Creates a pipeline with the given number of workers and batches in flight */
+  public ConversionPipeline(FactFileConverter converter, int workers, int capacity) {
+    this.converter = converter;
+    this.workers = Math.max(1, workers);
+    this.capacity = Math.max(2, capacity);
+    transform = new Stage("transform", this.workers);
+    queue = new ArrayBlockingQueue<Task>(this.capacity);
+    ring = new Task[this.capacity];
+    inFlight = new Semaphore(this.capacity);
+  }
+
+  /** Records the exception of a reader or worker */
+  protected void fail(Exception e) {
+    lock.lock();
+    try {
+      if (failure == null) failure = e;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /** Reads the files into batches */
+  protected void read(List<File> files) throws Exception {
+    long number = 0;
+    for (int i = 0; i < files.size(); i++) {
+      long start = System.nanoTime();
+      FactBatch batch = new FactBatch(files.get(i), BATCH_SIZE);
+      for (Fact fact : converter.readFacts(files.get(i), null)) {
+        if (batch.isFull()) {
+          reader.busy.addAndGet(System.nanoTime() - start);
+          submit(new Task(number++, i, batch));
+          start = System.nanoTime();
+          batch = new FactBatch(files.get(i), BATCH_SIZE);
+        }
+        batch.add(fact);
+      }
+      batch.setLast();
+      reader.busy.addAndGet(System.nanoTime() - start);
+      if (batch.size() > 0) submit(new Task(number++, i, batch));
+    }
+    lock.lock();
+    try {
+      total = number;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+    for (int i = 0; i < workers; i++)
+      queue.put(END);
+  }
+
+  /** Hands a batch to the workers, waits while too many batches are in flight */
+  protected void submit(Task task) throws InterruptedException {
+    long start = System.nanoTime();
+    inFlight.acquire();
+    queue.put(task);
+    reader.waiting.addAndGet(System.nanoTime() - start);
+    reader.batches.incrementAndGet();
+  }
+
+  /** Converts batches until the end */
+  protected void work(List<String> relations) throws Exception {
+    while (true) {
+      long start = System.nanoTime();
+      Task task = queue.take();
+      long taken = System.nanoTime();
+      transform.waiting.addAndGet(taken - start);
+      if (task == END) return;
+      task.result = new ByteArrayOutputStream(task.batch.size() * 128);
+      converter.convertFacts(relations.get(task.file), new BatchFactReader(task.batch), task.result);
+      task.batch = null;
+      transform.busy.addAndGet(System.nanoTime() - taken);
+      transform.batches.incrementAndGet();
+      lock.lock();
+      try {
+        ring[(int) (task.number % capacity)] = task;
+        changed.signalAll();
+      } finally {
+        lock.unlock();
+      }
+    }
+  }
+
+  /** Runs the pipeline, writes the result of file i to outs.get(i) */
+  public void run(final List<File> files, final List<String> relations, List<OutputStream> outs) throws Exception {
+    long wallStart = System.nanoTime();
+    long totalLength = 0;
+    long[] fileStarts = new long[files.size()];
+    for (int i = 0; i < files.size(); i++) {
+      fileStarts[i] = totalLength;
+      totalLength += files.get(i).length();
+    }
+    ExecutorService pool = Executors.newFixedThreadPool(workers + 1);
+    pool.submit(new Runnable() {
+      @Override
+      public void run() {
+        try {
+          read(files);
+        } catch (Exception e) {
+          fail(e);
+        }
+      }
+    });
+    for (int i = 0; i < workers; i++) {
+      pool.submit(new Runnable() {
+        @Override
+        public void run() {
+          try {
+            work(relations);
+          } catch (Exception e) {
+            fail(e);
+          }
+        }
+      });
+    }
+    pool.shutdown();
+    Announce.progressStart("Converting " + files.size() + " files with " + workers + " transform workers", Math.max(totalLength, 1));
+    try {
+      for (long number = 0;; number++) {
+        long start = System.nanoTime();
+        Task task;
+        lock.lock();
+        try {
+          while ((task = ring[(int) (number % capacity)]) == null && failure == null && (total == -1 || number < total))
+            changed.await();
+          if (failure != null) throw failure;
+          if (task == null) break;
+          ring[(int) (number % capacity)] = null;
+        } finally {
+          lock.unlock();
+        }
+        long ready = System.nanoTime();
+        writer.waiting.addAndGet(ready - start);
+        task.result.writeTo(outs.get(task.file));
+        writer.busy.addAndGet(System.nanoTime() - ready);
+        writer.batches.incrementAndGet();
+        inFlight.release();
+        Announce.progressAt(fileStarts[task.file] + task.offset);
+      }
+    } finally {
+      pool.shutdownNow();
+      Announce.progressDone();
+    }
+    long wallNanos = System.nanoTime() - wallStart;
+    for (Stage stage : new Stage[] { reader, transform, writer })
+      Announce.message(stage.toString(wallNanos));
+    Announce.message("The bottleneck is the", bottleneck(wallNanos).name);
+  }
+
+  /** Returns the stage with the highest utilisation */
+  public Stage bottleneck(long wallNanos) {
+    Stage result = reader;
+    for (Stage stage : new Stage[] { transform, writer }) {
+      if (stage.utilisation(wallNanos) > result.utilisation(wallNanos)) result = stage;
+    }
+    return (result);
+  }
+}
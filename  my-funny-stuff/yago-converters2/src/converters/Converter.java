@@ -1,10 +1,17 @@
 package converters;
 
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeSet;
 
 import test.SPOTLXConverterSplit;
 
@@ -13,6 +20,17 @@ import javatools.administrative.D;
 import javatools.administrative.Parameters;
 import basics.Basics;
 import basics.Config;
+import converters.facts.EntityDictionary;
+import converters.facts.EntityIdSet;
+import converters.facts.EntitySet;
+import converters.facts.Fact;
+import converters.facts.FactReader;
+import converters.facts.IdTripleReader;
+import converters.facts.LineFactReader;
+import converters.facts.MappedFactReader;
+import converters.facts.Snapshot;
+import converters.facts.SnapshotFactReader;
+import converters.facts.StreamFactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -67,16 +85,375 @@ public abstract class Converter {
 	 * as value for the param */
 	protected Set<String> importRelations = null;
 
+	/** Tells whether facts are read through a memory mapping (default) or with FileLines.
+	 * To use FileLines, set the parameter 'factReader' in the yago.ini to 'lines' */
+	protected boolean mappedFactReader = true;
+
+	/** Number of threads that convert fact files in parallel (for converters that support it).
+	 * To set it, use the parameter 'converterThreads' in the yago.ini */
+	protected int threads = 1;
+
+	/** Files larger than this many bytes are split into chunks that are converted in parallel.
+	 * To set it, use the parameter 'converterChunkSize' (in MB) in the yago.ini */
+	protected long chunkSize = 64L << 20;
+
+	/** Tells whether the fact files are converted by a ConversionPipeline (reader, converterThreads
+	 * transform workers, writer). To set it, use the parameter 'converterPipeline' in the yago.ini */
+	protected boolean pipeline = false;
+
+	/** Maximal number of batches of facts in the pipeline.
+	 * To set it, use the parameter 'converterPipelineCapacity' in the yago.ini */
+	protected int pipelineCapacity = 64;
+
+	/** Number of bytes of memory for converters that sort the facts (the rest goes to run files
+	 * in the output folder). To set it, use the parameter 'sortMemory' (in MB) in the yago.ini */
+	protected long sortMemory = 256L << 20;
+
+	/** Converters that can split their output write part files of this many bytes (0 for one file).
+	 * To set it, use the parameter 'converterPartSize' (in MB) in the yago.ini */
+	protected long partSize = 0;
+
+	/** Tells whether the sort memory is kept off the Java heap (so that it does not count for -Xmx).
+	 * To set it, use the parameter 'sortOffHeap' in the yago.ini */
+	protected boolean sortOffHeap = false;
+
+	/** Maximal number of entries of each CodecCache of a converter.
+	 * To set it, use the parameter 'codecCacheSize' in the yago.ini (0 disables the caches) */
+	protected int codecCacheSize = 1 << 16;
+
+	/** All CodecCaches (for the statistics) */
+	protected static final List<CodecCache<?>> codecCaches = Collections.synchronizedList(new ArrayList<CodecCache<?>>());
+
+	/** Creates a CodecCache of codecCacheSize entries for the function, which is reported at the end of the conversion */
+	protected <V> CodecCache<V> codecCache(String name, CodecCache.Function<V> function) {
+		CodecCache<V> cache = new CodecCache<V>(getClass().getSimpleName() + " " + name, codecCacheSize, function);
+		codecCaches.add(cache);
+		return (cache);
+	}
+
+	/** Command that decompresses *.tsv.gz files from stdin to stdout, NULL to decompress them in Java.
+	 * To set it, use the parameter 'gzipCommand' in the yago.ini (e.g. 'pigz -dc') */
+	protected String gzipCommand = null;
+
+	/** Command that decompresses *.tsv.bz2 files from stdin to stdout.
+	 * To set it, use the parameter 'bzip2Command' in the yago.ini (e.g. 'lbzip2 -dc') */
+	protected String bzip2Command = "bzip2 -dc";
+
+	/** The folder of the entity dictionary (or NULL). To use a dictionary, build it with the
+	 * DictionaryConverter and set the parameter 'entityDictionaryFolder' in the yago.ini */
+	protected File dictionaryFolder = null;
+
+	/** The entity dictionary (opened by dictionary()) */
+	private EntityDictionary dictionary = null;
+
+	/** Tells whether only the fact files that changed since the last run are converted.
+	 * To set it, use the parameter 'incrementalConversion' in the yago.ini */
+	protected boolean incremental = false;
+
+	/** The manifest of the incremental conversion (opened by manifest()) */
+	private InputManifest manifest = null;
+
+	/**
+	 * Returns the manifest of the incremental conversion, which is the file
+	 * NAME.manifest in the output folder (where NAME is the name of the
+	 * converter). If the settings of the conversion changed, the manifest is
+	 * empty.
+	 */
+	public InputManifest manifest() throws IOException {
+		if (manifest == null) {
+			manifest = new InputManifest(new File(outputFolder, getClass().getSimpleName() + ".manifest"));
+			if (!manifest.setSettings(conversionSettings()) && !manifest.isEmpty())
+				Announce.message("The settings changed since the last conversion, converting all fact files");
+		}
+		return (manifest);
+	}
+
+	/** Tells whether a converter that loads facts into a database resumes after its last checkpoint.
+	 * To set it, use the parameter 'resumeConversion' in the yago.ini */
+	protected boolean resume = false;
+
+	/** The checkpoints (opened by checkpoint()) */
+	private Checkpoint checkpoint = null;
+
+	/**
+	 * Returns the checkpoints of a converter that loads facts into a database
+	 * (see newCheckpoint()). Unless the converter resumes, the previous
+	 * checkpoints are discarded.
+	 */
+	public Checkpoint checkpoint() throws IOException {
+		if (checkpoint == null) {
+			checkpoint = newCheckpoint();
+			if (!resume) checkpoint.clear();
+			else if (checkpoint.isEmpty()) Announce.message("There is no checkpoint to resume from, starting from the beginning");
+			else Announce.message("Resuming from", checkpoint);
+		}
+		return (checkpoint);
+	}
+
+	/**
+	 * Creates the checkpoints, by default in the file NAME.checkpoint in the
+	 * output folder (where NAME is the name of the converter). A converter
+	 * that can commit the checkpoints together with the facts returns a
+	 * DatabaseCheckpoint.
+	 */
+	protected Checkpoint newCheckpoint() throws IOException {
+		return (new Checkpoint(new File(outputFolder, getClass().getSimpleName() + ".checkpoint")));
+	}
+
+	/** Returns the settings that determine the result of a conversion (for the manifest) */
+	protected String conversionSettings() {
+		return ("deductiveClosure=" + deductiveClosure + " transitiveClosure=" + transitiveClosure + " includeMetaFacts=" + includeFactFacts
+				+ " importRelations=" + (importRelations == null ? "all" : new TreeSet<String>(importRelations)) + " test=" + test);
+	}
+
+	/**
+	 * Returns the entity dictionary, or NULL if no dictionary has been built or
+	 * if it is older than the fact files (then the converters work without it)
+	 */
+	public EntityDictionary dictionary() throws IOException {
+		if (dictionary == null && dictionaryFolder != null) {
+			if (!EntityDictionary.exists(dictionaryFolder)) {
+				Announce.warning("There is no entity dictionary in", dictionaryFolder, "(build it with the DictionaryConverter)");
+				dictionaryFolder = null;
+				return (null);
+			}
+			// The dictionary of a snapshot is made for its fact files
+			if (!dictionaryFolder.equals(yagoFolder) && !isDictionaryCurrent(dictionaryFolder)) {
+				Announce.warning("The entity dictionary in", dictionaryFolder, "is older than the fact files, converting without it (rebuild it with the DictionaryConverter)");
+				dictionaryFolder = null;
+				return (null);
+			}
+			dictionary = new EntityDictionary(dictionaryFolder);
+			Announce.message("Using the", dictionary);
+		}
+		return (dictionary);
+	}
+
+	/**
+	 * Returns an empty set that keeps entities in sorted order without
+	 * duplicates. If there is an entity dictionary, the set stores only the
+	 * ids of the entities (one bit per entity of the dictionary), else it is
+	 * a DistinctSet, which takes sortMemory bytes and keeps the rest in run
+	 * files in the output folder. Close the set when it is written.
+	 */
+	public EntitySet newEntitySet() throws IOException {
+		if (dictionary() == null) return (new DistinctSet(outputFolder, sortMemory, threads, sortOffHeap));
+		return (new EntityIdSet(dictionary()));
+	}
+
+	/**
+	 * Builds an entity dictionary in the folder with the relation names and all
+	 * entities of the fact files of the YAGO folder (except for the files that
+	 * start with an underscore)
+	 */
+	protected EntityDictionary buildDictionary(File folder) throws IOException {
+		EntityDictionary.Builder builder = new EntityDictionary.Builder(folder);
+		// The fact files of the dictionary, so that dictionary() can tell whether it is current
+		File manifestFile = new File(folder, EntityDictionary.MANIFEST);
+		manifestFile.delete();
+		InputManifest manifest = new InputManifest(manifestFile);
+		manifest.setSettings(dictionarySettings());
+		for (String relation : Basics.relations)
+			builder.add(relation);
+		for (File inputFile : yagoFolder.listFiles()) {
+			String name = dictionaryInput(inputFile);
+			if (name == null) continue;
+			manifest.put(inputFile, name);
+			builder.add(name);
+			int counter = 0;
+			for (Fact fact : readFacts(inputFile, "Parsing " + inputFile.getName())) {
+				if (test && counter++ > 100) {
+					Announce.progressDone();
+					break;
+				}
+				builder.add(fact.arg1);
+				builder.add(fact.arg2);
+			}
+		}
+		Announce.doing("Sorting", builder.size(), "entities");
+		EntityDictionary dictionary = builder.build();
+		manifest.save();
+		Announce.done();
+		return (dictionary);
+	}
+
+	/** Returns the name of a fact file whose entities go into the dictionary (or NULL) */
+	protected static String dictionaryInput(File inputFile) {
+		String name = stripFactFileExtension(inputFile.getName());
+		if (name == null || name.startsWith("_") || inputFile.isDirectory()) return (null);
+		return (name);
+	}
+
+	/** Returns the settings that determine the entities of a dictionary (for its manifest) */
+	protected String dictionarySettings() {
+		return ("test=" + test);
+	}
+
+	/**
+	 * Returns TRUE if the dictionary in the folder has been built from the
+	 * current fact files, i.e. if no fact file is new or changed since then
+	 * (see the manifest of the dictionary). Without a manifest, the age of the
+	 * dictionary is not known, and it is not current.
+	 */
+	protected boolean isDictionaryCurrent(File folder) throws IOException {
+		File manifestFile = new File(folder, EntityDictionary.MANIFEST);
+		if (!manifestFile.exists()) return (false);
+		InputManifest manifest = new InputManifest(manifestFile);
+		if (!manifest.setSettings(dictionarySettings())) return (false);
+		for (File inputFile : yagoFolder.listFiles()) {
+			if (dictionaryInput(inputFile) != null && manifest.changed(inputFile)) return (false);
+		}
+		return (true);
+	}
+
+	/**
+	 * Returns the facts of a fact file as triples of dictionary ids (see
+	 * IdTripleReader), or NULL if there is no current entity dictionary
+	 */
+	public IdTripleReader readIdTriples(File inputFile, String announceMsg) throws IOException {
+		if (dictionary() == null) return (null);
+		String relation = relationForFactFile(inputFile);
+		if (relation == null) throw new IllegalArgumentException(inputFile + " is not the fact file of a relation");
+		return (new IdTripleReader(readFacts(inputFile, announceMsg), dictionary(), relation));
+	}
+
+	/**
+	 * The extensions of fact files. Compressed files are decompressed while they
+	 * are read, snapshot files are made by the SnapshotConverter
+	 */
+	public static final String[] factFileExtensions = new String[] { ".tsv", ".tsv.gz", ".tsv.bz2", Snapshot.EXTENSION };
+
+	/**
+	 * Tells whether this converter reads the snapshot given by the parameter
+	 * 'yagoSnapshotFolder' instead of the fact files (if the snapshot exists)
+	 */
+	protected boolean useSnapshot() {
+		return (true);
+	}
+
+	/**
+	 * Returns a reader for the facts of a YAGO fact file. The reader returns the
+	 * same reusable Fact for every line, shows a progress bar if announceMsg!=null
+	 * and closes itself at the end of the file. Compressed files (*.tsv.gz,
+	 * *.tsv.bz2) are decompressed on other threads while they are read, snapshot
+	 * files are decoded with the entity dictionary of the snapshot.
+	 */
+	public FactReader readFacts(File inputFile, String announceMsg) throws IOException {
+		if (inputFile.getName().endsWith(Snapshot.EXTENSION))
+			return (new SnapshotFactReader(inputFile, announceMsg, dictionary()));
+		if (StreamFactReader.isCompressed(inputFile))
+			return (new StreamFactReader(inputFile, announceMsg, inputFile.getName().endsWith(".gz") ? gzipCommand : bzip2Command));
+		if (mappedFactReader)
+			return (new MappedFactReader(inputFile, announceMsg));
+		return (new LineFactReader(inputFile, announceMsg));
+	}
+
+	/**
+	 * Returns a reader for the facts of a fact file that come after the last
+	 * fact of its checkpoint (see checkpoint()), or for all facts if the file
+	 * has no checkpoint. Uncompressed fact files are read from the checkpoint
+	 * on, other files are read from the beginning and the facts up to the
+	 * checkpoint are skipped. The offsets of the readers differ (bytes,
+	 * characters, numbers of facts), so a checkpoint that was made by another
+	 * kind of reader is rejected with an IOException.
+	 */
+	public FactReader readFactsAfterCheckpoint(File inputFile, String announceMsg) throws IOException {
+		String name = inputFile.getName();
+		long offset = checkpoint().offset(name);
+		FactReader reader = readFacts(inputFile, announceMsg);
+		if (offset < 0) return (reader);
+		try {
+			checkpoint().check(name, reader);
+		} catch (IOException e) {
+			reader.close();
+			throw e;
+		}
+		if (reader instanceof MappedFactReader && offset < inputFile.length()) {
+			reader.close();
+			return (new MappedFactReader(inputFile, announceMsg, offset, inputFile.length()).skipThrough(offset));
+		}
+		return (reader.skipThrough(offset));
+	}
+
+	/**
+	 * For converters that produce one artefact per relation (the rows of a
+	 * relation in a table, the triples of a property): returns the relations
+	 * that have to be converted again because one of their fact files changed
+	 * or disappeared since the last run. Returns NULL if all relations have to
+	 * be converted (no incremental conversion, or no manifest). Call
+	 * recordFactFiles() when the conversion is complete.
+	 */
+	protected Set<String> changedRelations() throws IOException {
+		if (!incremental || manifest().isEmpty()) return (null);
+		Set<String> changed = new TreeSet<String>();
+		List<File> files = new ArrayList<File>();
+		for (File inputFile : yagoFolder.listFiles()) {
+			String relation = relationForFactFile(inputFile);
+			if (relation == null) continue;
+			files.add(inputFile);
+			if (manifest().changed(inputFile)) changed.add(relation);
+		}
+		for (String name : manifest().removed(files))
+			changed.add(manifest().get(name).artefact);
+		Announce.message(changed.size(), "relations changed since the last conversion", changed);
+		return (changed);
+	}
+
+	/** Records the fact files and their relations in the manifest (in incremental mode) */
+	protected void recordFactFiles() throws IOException {
+		if (!incremental) return;
+		List<File> files = new ArrayList<File>();
+		for (File inputFile : yagoFolder.listFiles()) {
+			String relation = relationForFactFile(inputFile);
+			if (relation == null) continue;
+			files.add(inputFile);
+			if (manifest().changed(inputFile)) manifest().put(inputFile, relation);
+		}
+		for (String name : manifest().removed(files))
+			manifest().remove(name);
+		manifest().save();
+	}
+
+	/** Appends the content of a file to a stream */
+	public static void append(File file, OutputStream out) throws IOException {
+		InputStream in = new FileInputStream(file);
+		try {
+			byte[] buffer = new byte[1 << 16];
+			int len;
+			while ((len = in.read(buffer)) > 0) {
+				out.write(buffer, 0, len);
+			}
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Returns the name of a fact file without its extension (or NULL if it is not a fact file) */
+	public static String stripFactFileExtension(String fileName) {
+		for (String extension : factFileExtensions) {
+			if (fileName.endsWith(extension))
+				return (fileName.substring(0, fileName.length() - extension.length()));
+		}
+		return (null);
+	}
+
+	/** Returns the fact file for a name (like "type") in the YAGO folder, which may be compressed */
+	public File factFile(String name) {
+		for (String extension : factFileExtensions) {
+			File file = new File(yagoFolder, name + extension);
+			if (file.exists()) return (file);
+		}
+		return (new File(yagoFolder, name + factFileExtensions[0]));
+	}
+
 	/** Returns the YAGO relation for a file name (or NULL)*/
 	public String relationForFactFile(File inputFile) {
+		String relation = stripFactFileExtension(inputFile.getName());
 		if (inputFile.isDirectory()
-				|| !inputFile.getName().endsWith(".tsv")
+				|| relation == null
 				|| inputFile.getName().startsWith("_")) 
 			return(null);
 				
-		String relation = inputFile.getName();
-		relation = relation.substring(0, relation.lastIndexOf('.'));
-				
     // check if relation is excluded from import
     if (importRelations != null) {
       if (!importRelations.contains(relation)) {
@@ -118,7 +495,7 @@ public abstract class Converter {
 				Parameters.iniFile.getAbsoluteFile());
 		Config.init(Parameters.iniFile);
 		yagoFolder = Parameters.getOrRequestFileParameter("yagoFactsFolder",
-				"Please enter the folder with the YAGO facts (the YAGO2 dump you downloaded)\n   This must be YAGO in the default format (tab-separated id+triples, TSV files), unzipped");
+				"Please enter the folder with the YAGO facts (the YAGO2 dump you downloaded)\n   This must be YAGO in the default format (tab-separated id+triples, TSV files), either unzipped or as *.tsv.gz / *.tsv.bz2 files");
 		Parameters.add("yagoFactsFolder", yagoFolder.toString());
 		outputFolder = Parameters.getOrRequestFileParameter(
 				"converterOutputFolder",
@@ -133,6 +510,36 @@ public abstract class Converter {
 		  String[] relations = relationList.split(" ");
 		  importRelations = new HashSet<String>(Arrays.asList(relations));
 		}
+
+		mappedFactReader = !Parameters.get("factReader", "mapped").equals("lines");
+
+		threads = Math.max(1, Parameters.getInt("converterThreads", 1));
+		chunkSize = Math.max(1, Parameters.getInt("converterChunkSize", 64)) * (1L << 20);
+		pipeline = Parameters.getBoolean("converterPipeline", false);
+		pipelineCapacity = Math.max(2, Parameters.getInt("converterPipelineCapacity", 64));
+		codecCacheSize = Math.max(0, Parameters.getInt("codecCacheSize", 1 << 16));
+		sortMemory = Math.max(1, Parameters.getInt("sortMemory", 256)) * (1L << 20);
+		sortOffHeap = Parameters.getBoolean("sortOffHeap", false);
+		partSize = Math.max(0, Parameters.getInt("converterPartSize", 0)) * (1L << 20);
+		gzipCommand = Parameters.get("gzipCommand", null);
+		bzip2Command = Parameters.get("bzip2Command", "bzip2 -dc");
+		String dictionaryFolderName = Parameters.get("entityDictionaryFolder", null);
+		if (dictionaryFolderName != null) dictionaryFolder = new File(dictionaryFolderName);
+		incremental = Parameters.getBoolean("incrementalConversion", false);
+		resume = Parameters.getBoolean("resumeConversion", false);
+		String snapshotFolderName = Parameters.get("yagoSnapshotFolder", null);
+		if (snapshotFolderName != null && useSnapshot()) {
+			File snapshotFolder = new File(snapshotFolderName);
+			if (Snapshot.exists(snapshotFolder)) {
+				if (dictionaryFolder != null && !dictionaryFolder.equals(snapshotFolder))
+					Announce.warning("Ignoring the entity dictionary in", dictionaryFolder, "in favor of the dictionary of the snapshot");
+				yagoFolder = snapshotFolder;
+				dictionaryFolder = snapshotFolder;
+				Announce.message("Reading the YAGO snapshot in", snapshotFolder);
+			} else {
+				Announce.warning("There is no YAGO snapshot in", snapshotFolder, "(build it with the SnapshotConverter), reading", yagoFolder);
+			}
+		}
 		  
 		Parameters.add("converterOutputFolder", outputFolder.toString());
 	}
@@ -161,7 +568,9 @@ public abstract class Converter {
 	    new SQLConverter(), new SPOTLXConverter(), new SPOTLXConverterSplit(), 
 			new XMLConverter(), new RDFSConverter(), new N3Converter(),
 			new DBpediaLink(), new DBpediaExport(), new AlchConverter(), 
-			new JenaConverter() };
+			new JenaConverter(), new DictionaryConverter(), new SnapshotConverter(),
+			new FanOutConverter(), new LinkConverter(), new HDTConverter(),
+			new TripleStoreConverter() };
 
 	/**
 	 * Start the program, one can either provide a ini file or the choice. or
@@ -209,5 +618,10 @@ public abstract class Converter {
 			choice=choice-1;
 		}
 		options[choice].run();
+		Announce.message("Facts were read at", FactReader.totalThroughput());
+		synchronized (codecCaches) {
+			for (CodecCache<?> cache : codecCaches)
+				Announce.message(cache);
+		}
 	}
 }
@@ -1,14 +1,17 @@
 package converters;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
+import java.util.Arrays;
 
 import javatools.administrative.Announce;
-import javatools.administrative.D;
-import javatools.filehandlers.FileLines;
+import javatools.administrative.Parameters;
 import javatools.parsers.Char;
+import converters.facts.Fact;
+import converters.facts.FactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -25,7 +28,7 @@ import javatools.parsers.Char;
  * 
  * @author Fabian M. Suchanek
  */
-public class DBpediaExport extends Converter {
+public class DBpediaExport extends FactFileConverter {
 
 	/**
 	 * Creates a DBpedia identifier for a YAGO identifier. yagoPrefix is TRUE
@@ -51,46 +54,152 @@ public class DBpediaExport extends Converter {
 		return (result.toString());
 	}
 
+	/** The syntax of the output. To write N-Triples, set the parameter 'rdfSyntax' in the yago.ini to 'ntriples' */
+	protected TripleWriter.Syntax syntax = TripleWriter.Syntax.TURTLE;
+
+	/** The DBpedia classes by the raw names of the YAGO classes */
+	protected CodecCache<byte[]> classes;
+
+	/** The relations that are exported */
+	public static final String[] exportedRelations = new String[] { "type", "subclassOf", "means" };
+
 	/** Produces the N3 output for DBpedia */
 	public void run() throws IOException {
-		getParameters();
+		getConversionParameters();
 		Announce.doing("Exporting YAGO for DBpedia");
-		Writer out = new FileWriter(new File(outputFolder,
-				"DBpediaYAGOexport.n3"));
-		D.writeln(out,
-				"@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .");
-		D.writeln(out,
-				"@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .");
-		for (String fileName : new String[] { "type.tsv", "subclassOf.tsv",
-				"means.tsv" }) {
-			String relation = fileName.substring(0, fileName.lastIndexOf('.'));
-			boolean useDBpediaPrefix = !relation.equals("type");
-			boolean invert = relation.equals("means");
-			boolean asString = relation.equals("means");
-			if (relation.equals("means"))
-				relation = "rdfs:label";
-	     if (relation.equals("type"))
-	        relation = "rdf:type";
-       if (relation.equals("subclassOf"))
-         relation = "rdfs:subClassOf";  
+		OutputStream stream = openOutput();
+		for (String relation : exportedRelations) {
+			File file = factFile(relation);
 			Announce.doing("Converting", relation);
-			int counter = 0;
-			for (String l : new FileLines(new File(yagoFolder,fileName), "Parsing " + fileName)) {
-				if (test && counter++ > 100)
-					break;
-				String[] split = l.split("\t");
-				String arg1 = dbpediaNameFor(split[invert ? 2 : 1],
-						useDBpediaPrefix, false);
-				String arg2 = dbpediaNameFor(split[invert ? 1 : 2], true,
-						asString);
-				out.write(arg1 + " " + relation + " " + arg2 + " .\n");
-			}
+			convertFacts(relation, readFacts(file, "Parsing " + file.getName()), stream);
 			Announce.done();
 		}
-		out.close();
+		closeOutput(stream);
 		Announce.done();
 	}
 
+	@Override
+	protected void getConversionParameters() throws IOException {
+		getParameters();
+		syntax = TripleWriter.syntax(Parameters.get("rdfSyntax", "turtle"));
+		classes = codecCache("classes", new CodecCache.Function<byte[]>() {
+			@Override
+			public byte[] apply(String raw) {
+				ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+				TripleWriter out = new TripleWriter(bytes, syntax, raw.length() * 9 + 64);
+				try {
+					writeDBpediaClass(out, Codec.decodeBackslash(raw));
+					out.flush();
+				} catch (IOException e) {
+					// Does not happen with a ByteArrayOutputStream
+					throw new RuntimeException(e);
+				}
+				return (bytes.toByteArray());
+			}
+		});
+	}
+
+	/** Only the exported relations are converted */
+	@Override
+	public String relationForFactFile(File inputFile) {
+		String relation = stripFactFileExtension(inputFile.getName());
+		if (inputFile.isDirectory() || !Arrays.asList(exportedRelations).contains(relation)) return (null);
+		return (relation);
+	}
+
+	/** Opens DBpediaYAGOexport.n3 (or .nt) and writes the prefixes */
+	@Override
+	protected OutputStream openOutput() throws IOException {
+		OutputStream stream = new FileOutputStream(new File(outputFolder,
+				"DBpediaYAGOexport" + TripleWriter.extension(syntax)));
+		TripleWriter out = new TripleWriter(stream, syntax);
+		out.prefixes("rdf", "rdfs");
+		out.flush();
+		return (stream);
+	}
+
+	/** IRI prefix of DBpedia resources */
+	protected static final byte[] DBPEDIA_RESOURCE = "http://dbpedia.org/resource/".getBytes();
+
+	/** IRI prefix of YAGO classes in DBpedia */
+	protected static final byte[] DBPEDIA_CLASS = "http://dbpedia.org/class/yago/".getBytes();
+
+	/**
+	 * Writes the DBpedia class for a YAGO class (decoded from backslash codes)
+	 * as dbpediaNameFor(name, true, false) does
+	 */
+	protected static void writeDBpediaClass(TripleWriter out, CharSequence name) throws IOException {
+		int start = 0;
+		if (startsWith(name, start, "wordnet_"))
+			start += 8;
+		if (startsWith(name, start, "wikicategory_"))
+			start += 13;
+		out.write('<');
+		out.write(DBPEDIA_CLASS);
+		boolean upCase = true;
+		for (int i = start; i < name.length(); i++) {
+			char c = name.charAt(i);
+			if (c == '_') {
+				upCase = true;
+				continue;
+			}
+			out.pathChar(upCase && c >= 'a' && c <= 'z' ? Character.toUpperCase(c) : c);
+			upCase = false;
+		}
+		out.write('>');
+	}
+
+	/** TRUE if s has the prefix at the position start */
+	protected static boolean startsWith(CharSequence s, int start, String prefix) {
+		if (s.length() - start < prefix.length())
+			return (false);
+		for (int i = 0; i < prefix.length(); i++) {
+			if (s.charAt(start + i) != prefix.charAt(i))
+				return (false);
+		}
+		return (true);
+	}
+
+	/** Converts the facts of one of the exported relations */
+	@Override
+	protected void convertFacts(String relation, FactReader facts, OutputStream stream) throws IOException {
+		boolean useDBpediaPrefix = !relation.equals("type");
+		boolean invert = relation.equals("means");
+		boolean asString = relation.equals("means");
+		if (relation.equals("means"))
+			relation = "rdfs:label";
+		if (relation.equals("type"))
+			relation = "rdf:type";
+		if (relation.equals("subclassOf"))
+			relation = "rdfs:subClassOf";
+		TripleWriter out = new TripleWriter(stream, syntax);
+		byte[] relationToken = out.token(relation);
+		int counter = 0;
+		for (Fact fact : facts) {
+			if (test && counter++ > 100)
+				break;
+			CharSequence arg1 = Codec.decodeBackslash(fact.get(invert ? 2 : 1));
+			// As in dbpediaNameFor(), useDBpediaPrefix means the prefix "yago:"
+			if (useDBpediaPrefix)
+				out.write(classes.get(fact.get(invert ? 2 : 1)));
+			else
+				out.iri(DBPEDIA_RESOURCE, arg1);
+			out.token(relationToken);
+			if (asString)
+				out.raw(fact.get(invert ? 1 : 2));
+			else
+				out.write(classes.get(fact.get(invert ? 1 : 2)));
+			out.endTriple();
+		}
+		out.flush();
+	}
+
+	/** The syntax also determines the result */
+	@Override
+	protected String conversionSettings() {
+		return (super.conversionSettings() + " rdfSyntax=" + syntax);
+	}
+
 	@Override
 	public String description() {
 		return ("Export YAGO data for DBpedia (unmaintained boilerplate code).");
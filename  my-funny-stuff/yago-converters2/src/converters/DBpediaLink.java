@@ -5,13 +5,11 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.Collection;
-import java.util.TreeSet;
 
 import javatools.administrative.Announce;
 import javatools.administrative.D;
-import javatools.filehandlers.FileLines;
-import javatools.parsers.Char;
+import converters.facts.EntitySet;
+import converters.facts.Fact;
 
 /**
  * Class DBpediaLink
@@ -45,24 +43,24 @@ public class DBpediaLink extends Converter {
 		getParameters();
 		Announce.doing("Linking DBpedia and YAGO");
 
-		Collection<String> entities = new TreeSet<String>();
+		EntitySet entities = newEntitySet();
 		int counter = 0;
-		for (String line : new FileLines(new File(yagoFolder, "hasWikipediaUrl.tsv"),
+		for (Fact fact : readFacts(factFile("hasWikipediaUrl"),
 				"Caching individuals")) {
-			String[] split = line.split("\t");
-			if (split[2].startsWith("yago"))
+			if (fact.arg2.startsWith("yago"))
 				continue;
-			entities.add(split[1]);
+			entities.add(fact.arg1);
 			if (test && counter++ > 100)
 				break;
 		}
 
 		Announce.doing("Writing individuals");
+		StringBuilder buffer = new StringBuilder();
 		Writer out = new BufferedWriter(new FileWriter(new File(outputFolder,
 				"DBpediaYAGOlink_individuals.n3")));
 		D.writeln(out, "@prefix owl:  <http://www.w3.org/2002/07/owl#> .");
 		for (String name : entities) {
-			name = Char.encodeURIPathComponent(Char.decodeBackslash(name));
+			name = Codec.encodeURIPathComponent(Codec.decodeBackslash(name), buffer).toString();
 			D.writeln(out, "<http://yago-knowledge.org/resource/" + name
 					+ "> owl:sameAs <http://dbpedia.org/resource/" + name
 					+ "> .");
@@ -71,16 +69,16 @@ public class DBpediaLink extends Converter {
 		out.close();
 		Announce.done();
 
-		entities.clear();
+		entities.close();
+		entities = newEntitySet();
 		counter = 0;
-		for (String line : new FileLines(
-				new File(yagoFolder, "subclassOf.tsv"), "Caching classes")) {
+		for (Fact fact : readFacts(
+				factFile("subclassOf"), "Caching classes")) {
 			if (test && counter++ > 100)
 				break;
-			String[] split = line.split("\t");
-			if (split[2].startsWith("yago"))
+			if (fact.arg2.startsWith("yago"))
 				continue;
-			entities.add(split[1]);
+			entities.add(fact.arg1);
 		}
 
 		Announce.doing("Writing classes");
@@ -88,12 +86,13 @@ public class DBpediaLink extends Converter {
 				"DBpediaYAGOlink_classes.n3")));
 		D.writeln(out, "@prefix owl:  <http://www.w3.org/2002/07/owl#> .");
 		for (String name : entities) {
-			name = Char.encodeURIPathComponent(Char.decodeBackslash(name));
+			name = Codec.encodeURIPathComponent(Codec.decodeBackslash(name), buffer).toString();
 			D.writeln(out, "<http://yago-knowledge.org/resource/" + name
 					+ "> owl:sameAs <http://dbpedia.org/class/yago/" + name
 					+ "> .");
 		}
 		out.close();
+		entities.close();
 		Announce.done();
 
 		Announce.done();
@@ -0,0 +1,120 @@
+package converters;
+
+import java.io.IOException;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Checkpoints that are kept in a table of the database into which a converter
+ * loads the facts. With autocommit off, a commit of a checkpoint writes its
+ * row and commits the transaction, so that the batch of facts that was sent
+ * before and its checkpoint are committed together: after a crash, the table
+ * of the facts has exactly the facts that the checkpoints count. The table
+ * (name, reader, position, facts) is created with the first commit and
+ * dropped by clear().
+ */
+public class DatabaseCheckpoint extends Checkpoint {
+
+  /** The connection to the database */
+  protected final Connection connection;
+
+  /** The table of the checkpoints */
+  protected final String table;
+
+  /** TRUE if the table exists */
+  protected boolean exists;
+
+  /** Loads the checkpoints from the table (if it exists) */
+  public DatabaseCheckpoint(Connection connection, String table) throws IOException {
+    this.connection = connection;
+    this.table = table;
+    try {
+      ResultSet tables = connection.getMetaData().getTables(null, null, table, null);
+      exists = tables.next();
+      tables.close();
+      if (!exists) return;
+      Statement statement = connection.createStatement();
+      try {
+        ResultSet rows = statement.executeQuery("SELECT name, reader, position, facts FROM " + table);
+        while (rows.next())
+          put(rows.getString(1), rows.getString(2), rows.getLong(3), rows.getLong(4));
+        rows.close();
+      } finally {
+        statement.close();
+      }
+    } catch (SQLException e) {
+      throw new IOException("Cannot read the checkpoints from " + table, e);
+    }
+  }
+
+  /** Writes the row of the file and commits the transaction (if autocommit is off) */
+  @Override
+  protected void save(String name) throws IOException {
+    try {
+      if (!exists) {
+        update("CREATE TABLE " + table + " (name VARCHAR(255), reader VARCHAR(255), position BIGINT, facts BIGINT)");
+        exists = true;
+      }
+      PreparedStatement statement = connection.prepareStatement("UPDATE " + table + " SET reader=?, position=?, facts=? WHERE name=?");
+      try {
+        statement.setString(1, readers.get(name));
+        statement.setLong(2, offsets.get(name));
+        statement.setLong(3, counts.get(name));
+        statement.setString(4, name);
+        if (statement.executeUpdate() == 0) {
+          statement.close();
+          statement = connection.prepareStatement("INSERT INTO " + table + " (reader, position, facts, name) VALUES (?, ?, ?, ?)");
+          statement.setString(1, readers.get(name));
+          statement.setLong(2, offsets.get(name));
+          statement.setLong(3, counts.get(name));
+          statement.setString(4, name);
+          statement.executeUpdate();
+        }
+      } finally {
+        statement.close();
+      }
+      if (!connection.getAutoCommit()) connection.commit();
+    } catch (SQLException e) {
+      throw new IOException("Cannot write the checkpoint of " + name + " to " + table, e);
+    }
+  }
+
+  /** Forgets all checkpoints and drops the table */
+  @Override
+  public void clear() throws IOException {
+    offsets.clear();
+    counts.clear();
+    readers.clear();
+    if (!exists) return;
+    try {
+      update("DROP TABLE " + table);
+      if (!connection.getAutoCommit()) connection.commit();
+      exists = false;
+    } catch (SQLException e) {
+      throw new IOException("Cannot drop " + table, e);
+    }
+  }
+
+  /** Executes an SQL command */
+  protected void update(String sql) throws SQLException {
+    Statement statement = connection.createStatement();
+    try {
+      statement.executeUpdate(sql);
+    } finally {
+      statement.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return ("Checkpoint table " + table + " with " + offsets.size() + " files");
+  }
+}
@@ -0,0 +1,39 @@
+package converters;
+
+import java.io.File;
+import java.io.IOException;
+
+import javatools.administrative.Announce;
+import javatools.administrative.Parameters;
+import converters.facts.EntityDictionary;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * This class builds the entity dictionary, which gives every entity and
+ * literal of YAGO (arg1 and arg2 of all facts, plus the relation names) a
+ * dense integer id. The dictionary goes to the folder given by the parameter
+ * 'entityDictionaryFolder' (default: the folder 'dictionary' in the output
+ * folder). Other converters use it if this parameter is set.
+ */
+public class DictionaryConverter extends Converter {
+
+  @Override
+  public void run() throws IOException {
+    getParameters();
+    File folder = new File(Parameters.get("entityDictionaryFolder", new File(outputFolder, "dictionary").toString()));
+    Announce.doing("Building the entity dictionary in", folder);
+    EntityDictionary dictionary = buildDictionary(folder);
+    Announce.message(dictionary);
+    dictionary.close();
+    Announce.done();
+  }
+
+  @Override
+  public String description() {
+    return ("Build the entity dictionary (integer ids for all entities) that speeds up other converters");
+  }
+}
@@ -0,0 +1,158 @@
+package converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.util.Iterator;
+
+import converters.facts.EntitySet;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A set of Strings in a bounded amount of memory. The Strings are collected
+ * as UTF-8 bytes in a distinct ExternalSorter, which writes sorted runs
+ * without duplicates to a folder when its memory is full. The set iterates
+ * over the Strings in sorted order (by code points) without duplicates,
+ * like a TreeSet<String>. Strings can be added only until the first
+ * iteration or size() (or after clear()). close() deletes the run files.
+ * It is not a Collection, because add() cannot tell whether a String is
+ * new.
+ */
+public class DistinctSet implements EntitySet {
+
+  /** No bytes */
+  protected static final byte[] EMPTY = new byte[0];
+
+  /** Folder for the run files */
+  protected final File folder;
+
+  /** Memory of the sorter */
+  protected final long memory;
+
+  /** Writer threads of the sorter */
+  protected final int threads;
+
+  /** TRUE if the sorter keeps its memory off the heap */
+  protected final boolean offHeap;
+
+  /** The sorter */
+  protected ExternalSorter sorter;
+
+  /** The UTF-8 bytes of the String that is being added */
+  protected final Utf8Buffer bytes = new Utf8Buffer();
+
+  /** The last String that was added (repetitions are dropped right away) */
+  protected byte[] last = new byte[64];
+
+  /** Length of the last String (-1 if there is none) */
+  protected int lastLength = -1;
+
+  /** Number of distinct Strings (-1 if unknown) */
+  protected long size = 0;
+
+  /** Creates a set that uses about memory bytes (off the heap if offHeap is TRUE) and keeps its runs in folder */
+  public DistinctSet(File folder, long memory, int threads, boolean offHeap) {
+    this.folder = folder;
+    this.memory = memory;
+    this.threads = threads;
+    this.offHeap = offHeap;
+    sorter = new ExternalSorter(folder, memory, threads, offHeap).distinct();
+  }
+
+  /** Adds a String. Returns FALSE if it is the same as the last one, TRUE otherwise (even if it is a duplicate of an earlier one) */
+  @Override
+  public boolean add(CharSequence s) {
+    bytes.set(s);
+    return (add(bytes.bytes, 0, bytes.length));
+  }
+
+  /** Adds the String with the UTF-8 bytes utf8[start..end), returns FALSE if it is the same as the last one */
+  public boolean add(byte[] utf8, int start, int end) {
+    if (sorter.sorted) throw new IllegalStateException("Strings can be added to a DistinctSet only before the first iteration");
+    int length = end - start;
+    if (lastLength >= 0 && ExternalSorter.compare(utf8, start, end, last, 0, lastLength) == 0) return (false);
+    if (last.length < length) last = new byte[length * 2];
+    System.arraycopy(utf8, start, last, 0, length);
+    lastLength = length;
+    try {
+      sorter.add(utf8, start, end, EMPTY, 0, 0);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    size = -1;
+    return (true);
+  }
+
+  /** Returns the number of run files so far */
+  public int runs() {
+    return (sorter.runs());
+  }
+
+  /** Returns the sorted records */
+  protected Iterator<ExternalSorter.Record> records() {
+    if (!sorter.sorted) {
+      try {
+        sorter.sort();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+    return (sorter.iterator());
+  }
+
+  /** Returns the Strings in sorted order, without duplicates */
+  @Override
+  public Iterator<String> iterator() {
+    final Iterator<ExternalSorter.Record> records = records();
+    return (new Iterator<String>() {
+
+      @Override
+      public boolean hasNext() {
+        return (records.hasNext());
+      }
+
+      @Override
+      public String next() {
+        ExternalSorter.Record record = records.next();
+        try {
+          return (new String(record.bytes(), 0, record.keyLength(), "UTF-8"));
+        } catch (UnsupportedEncodingException e) {
+          throw new RuntimeException(e);
+        }
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  /** Returns the number of distinct Strings (which takes one iteration if Strings have been added since the last call) */
+  public long size() {
+    if (size < 0) {
+      size = 0;
+      for (Iterator<ExternalSorter.Record> i = records(); i.hasNext(); i.next())
+        size++;
+    }
+    return (size);
+  }
+
+  /** Removes all Strings and deletes the run files */
+  public void clear() {
+    sorter.close();
+    sorter = new ExternalSorter(folder, memory, threads, offHeap).distinct();
+    lastLength = -1;
+    size = 0;
+  }
+
+  /** Deletes the run files */
+  @Override
+  public void close() {
+    sorter.close();
+  }
+}
@@ -0,0 +1,686 @@
+package converters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Sorts records of bytes by their keys with a bounded amount of memory. A
+ * record is a key and a value; keys are compared byte by byte (unsigned), and
+ * records with the same key stay in the order in which they were added. The
+ * sorter collects records in an arena of memory/(threads+1) bytes. When the
+ * arena is full, it is sorted and written to a run file in the given folder
+ * by a pool of threads, while the next arena is filled. sort() merges the
+ * runs with a heap of one cursor per run (at most MAX_FAN_IN runs at a time;
+ * if there are more, the oldest ones are merged into one run first). If all
+ * records fit into one arena, nothing is written to disk. The arenas can be
+ * kept off the Java heap (in direct buffers), so that a large sort memory
+ * does not have to be part of -Xmx and is not scanned by the garbage
+ * collector. A distinct sorter keeps only the first record of every key.
+ *
+ * The basic usage is
+ *    ExternalSorter sorter = new ExternalSorter(folder, 256 << 20, 2);
+ *    sorter.add(key, value);
+ *    for (ExternalSorter.Record r : sorter.sort()) {
+ *      // handle r.key() and r.value() (the record is overwritten by the next one)
+ *    }
+ *    sorter.close();
+ */
+public class ExternalSorter implements Iterable<ExternalSorter.Record>, Closeable {
+
+  /** Smallest arena */
+  protected static final int MIN_ARENA = 1 << 16;
+
+  /** Maximal number of runs that are merged at a time */
+  protected static final int MAX_FAN_IN = 64;
+
+  /** Folder for the run files */
+  protected final File folder;
+
+  /** Size of an arena */
+  protected final int arenaSize;
+
+  /** TRUE if the arenas are direct buffers */
+  protected final boolean offHeap;
+
+  /** TRUE if only the first record of every key is kept */
+  protected boolean distinct = false;
+
+  /** Sorts and writes the runs */
+  protected final ExecutorService pool;
+
+  /** Permits for arenas that are being written (so that at most threads+1 arenas exist) */
+  protected final Semaphore writers;
+
+  /** The arena that is being filled */
+  protected Arena arena;
+
+  /** The run files */
+  protected final List<File> runs = new ArrayList<File>();
+
+  /** The runs that are being written */
+  protected final List<Future<File>> pending = new ArrayList<Future<File>>();
+
+  /** The mergers handed out by iterator() */
+  protected final List<Merger> mergers = new ArrayList<Merger>();
+
+  /** Number of records */
+  protected long size = 0;
+
+  /** TRUE once sort() has been called */
+  protected boolean sorted = false;
+
+  /** Creates a sorter that uses about memory bytes and writes runs to folder with the given number of threads */
+  public ExternalSorter(File folder, long memory, int threads) {
+    this(folder, memory, threads, false);
+  }
+
+  /** Creates a sorter that uses about memory bytes and the given number of writer threads, off the heap if offHeap is TRUE */
+  public ExternalSorter(File folder, long memory, int threads, boolean offHeap) {
+    this.folder = folder;
+    this.offHeap = offHeap;
+    threads = Math.max(1, threads);
+    arenaSize = (int) Math.max(MIN_ARENA, Math.min(Integer.MAX_VALUE - 8, memory / (threads + 1)));
+    pool = Executors.newFixedThreadPool(threads);
+    writers = new Semaphore(threads);
+    arena = new Arena(arenaSize, offHeap);
+  }
+
+  /** Makes the sorter keep only the first record of every key, returns this */
+  public ExternalSorter distinct() {
+    distinct = true;
+    return (this);
+  }
+
+  /** Adds a record */
+  public void add(byte[] key, byte[] value) throws IOException {
+    add(key, 0, key.length, value, 0, value.length);
+  }
+
+  /** Adds the record key[keyStart..keyEnd), value[valueStart..valueEnd) */
+  public void add(byte[] key, int keyStart, int keyEnd, byte[] value, int valueStart, int valueEnd) throws IOException {
+    if (sorted) throw new IllegalStateException("The sorter has already been sorted");
+    int length = Arena.HEADER + keyEnd - keyStart + valueEnd - valueStart;
+    if (!arena.fits(length)) {
+      spill();
+      if (!arena.fits(length)) arena = new Arena(length + 64, offHeap);
+    }
+    arena.add(key, keyStart, keyEnd, value, valueStart, valueEnd);
+    size++;
+  }
+
+  /** Returns the number of records */
+  public long size() {
+    return (size);
+  }
+
+  /** Returns the number of run files so far */
+  public int runs() {
+    return (runs.size() + pending.size());
+  }
+
+  /** Hands the arena to a writer thread */
+  protected void spill() throws IOException {
+    if (arena.count == 0) return;
+    try {
+      writers.acquire();
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while waiting for a run to be written");
+    }
+    final Arena full = arena;
+    pending.add(pool.submit(new Callable<File>() {
+
+      @Override
+      public File call() throws Exception {
+        try {
+          File run = File.createTempFile("sort", ".run", folder);
+          run.deleteOnExit();
+          full.sort();
+          full.write(run, distinct);
+          return (run);
+        } finally {
+          writers.release();
+        }
+      }
+    }));
+    arena = new Arena(arenaSize, offHeap);
+  }
+
+  /** Waits for the runs that are being written */
+  protected void finishRuns() throws IOException {
+    try {
+      for (Future<File> future : pending)
+        runs.add(future.get());
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while waiting for a run to be written");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException(e.getCause());
+    } finally {
+      pending.clear();
+    }
+  }
+
+  /** Sorts the records and returns them (can be called only once) */
+  public Iterable<Record> sort() throws IOException {
+    if (sorted) throw new IllegalStateException("The sorter has already been sorted");
+    if (runs() > 0) spill();
+    finishRuns();
+    pool.shutdown();
+    while (runs.size() > MAX_FAN_IN)
+      mergeOldestRuns();
+    sorted = true;
+    return (this);
+  }
+
+  /** Merges the MAX_FAN_IN oldest runs into one, which takes their place (so that equal keys keep their order) */
+  protected void mergeOldestRuns() throws IOException {
+    List<File> oldest = runs.subList(0, MAX_FAN_IN);
+    File run = File.createTempFile("sort", ".run", folder);
+    run.deleteOnExit();
+    Merger merger = new Merger(oldest);
+    Iterator<Record> records = distinct ? new Distinct(merger) : merger;
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(run), 1 << 16));
+    try {
+      while (records.hasNext())
+        records.next().write(out);
+    } finally {
+      out.close();
+      merger.close();
+    }
+    for (File old : oldest)
+      old.delete();
+    oldest.clear();
+    runs.add(0, run);
+  }
+
+  /** Returns the sorted records (sort() has to be called first) */
+  @Override
+  public Iterator<Record> iterator() {
+    if (!sorted) throw new IllegalStateException("Call sort() first");
+    if (runs.isEmpty()) {
+      arena.sort();
+      return (distinct ? new Distinct(arena.iterator()) : arena.iterator());
+    }
+    try {
+      Merger merger = new Merger(runs);
+      mergers.add(merger);
+      return (distinct ? new Distinct(merger) : merger);
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Deletes the run files */
+  @Override
+  public void close() {
+    for (Future<File> future : pending) {
+      try {
+        // Runs that are complete have to be deleted
+        if (!future.cancel(true)) runs.add(future.get());
+      } catch (Exception e) {
+      }
+    }
+    pending.clear();
+    pool.shutdownNow();
+    for (Merger merger : mergers)
+      merger.close();
+    mergers.clear();
+    for (File run : runs)
+      run.delete();
+    runs.clear();
+    arena = null;
+  }
+
+  /** Compares two keys (unsigned bytes) */
+  protected static int compare(byte[] a, int aStart, int aEnd, byte[] b, int bStart, int bEnd) {
+    int n = Math.min(aEnd - aStart, bEnd - bStart);
+    for (int i = 0; i < n; i++) {
+      int diff = (a[aStart + i] & 0xFF) - (b[bStart + i] & 0xFF);
+      if (diff != 0) return (diff);
+    }
+    return ((aEnd - aStart) - (bEnd - bStart));
+  }
+
+  /** Compares two keys in buffers (unsigned bytes), 8 bytes at a time */
+  protected static int compare(ByteBuffer a, int aStart, int aLength, ByteBuffer b, int bStart, int bLength) {
+    int n = Math.min(aLength, bLength);
+    int i = 0;
+    for (; i + 8 <= n; i += 8) {
+      long x = a.getLong(aStart + i);
+      long y = b.getLong(bStart + i);
+      // Buffers are big endian, so the first differing byte decides
+      if (x != y) return (Long.compare(x + Long.MIN_VALUE, y + Long.MIN_VALUE));
+    }
+    for (; i < n; i++) {
+      int diff = (a.get(aStart + i) & 0xFF) - (b.get(bStart + i) & 0xFF);
+      if (diff != 0) return (diff);
+    }
+    return (aLength - bLength);
+  }
+
+  /** A record, overwritten by the next one */
+  public static class Record {
+
+    /** Holds key and value */
+    protected byte[] bytes = new byte[256];
+
+    /** Length of the key */
+    protected int keyLength;
+
+    /** Length of the value */
+    protected int valueLength;
+
+    /** Returns the buffer that holds the key (from 0) and the value (from keyLength()) */
+    public byte[] bytes() {
+      return (bytes);
+    }
+
+    /** Returns the length of the key */
+    public int keyLength() {
+      return (keyLength);
+    }
+
+    /** Returns the length of the value */
+    public int valueLength() {
+      return (valueLength);
+    }
+
+    /** Returns a copy of the key */
+    public byte[] key() {
+      byte[] key = new byte[keyLength];
+      System.arraycopy(bytes, 0, key, 0, keyLength);
+      return (key);
+    }
+
+    /** Returns a copy of the value */
+    public byte[] value() {
+      byte[] value = new byte[valueLength];
+      System.arraycopy(bytes, keyLength, value, 0, valueLength);
+      return (value);
+    }
+
+    /** TRUE if the key equals key[start..end) */
+    public boolean keyEquals(byte[] key, int start, int end) {
+      return (compare(bytes, 0, keyLength, key, start, end) == 0);
+    }
+
+    /** Sets the record, grows the buffer if necessary */
+    protected void set(byte[] source, int keyStart, int keyLength, int valueStart, int valueLength) {
+      ensure(keyLength + valueLength);
+      System.arraycopy(source, keyStart, bytes, 0, keyLength);
+      System.arraycopy(source, valueStart, bytes, keyLength, valueLength);
+      this.keyLength = keyLength;
+      this.valueLength = valueLength;
+    }
+
+    /** Sets the record from a buffer, grows the array if necessary */
+    protected void set(ByteBuffer source, int start, int keyLength, int valueLength) {
+      ensure(keyLength + valueLength);
+      ByteBuffer in = source.duplicate();
+      in.position(start);
+      in.get(bytes, 0, keyLength + valueLength);
+      this.keyLength = keyLength;
+      this.valueLength = valueLength;
+    }
+
+    /** Writes the record in the format of the run files */
+    protected void write(DataOutputStream out) throws IOException {
+      out.writeInt(keyLength);
+      out.writeInt(valueLength);
+      out.write(bytes, 0, keyLength + valueLength);
+    }
+
+    /** Makes sure the buffer takes n bytes */
+    protected void ensure(int n) {
+      if (bytes.length < n) bytes = new byte[Math.max(n, bytes.length * 2)];
+    }
+
+    /** Reads the next record of a run, returns FALSE at the end */
+    protected boolean read(DataInputStream in) throws IOException {
+      try {
+        keyLength = in.readInt();
+      } catch (EOFException e) {
+        return (false);
+      }
+      valueLength = in.readInt();
+      ensure(keyLength + valueLength);
+      in.readFully(bytes, 0, keyLength + valueLength);
+      return (true);
+    }
+
+    /** Compares the keys */
+    protected int compareTo(Record other) {
+      return (compare(bytes, 0, keyLength, other.bytes, 0, other.keyLength));
+    }
+  }
+
+  /**
+   * Records in memory: key length, value length, key and value, one after
+   * the other. The records are sorted by an array of their offsets.
+   */
+  protected static class Arena {
+
+    /** Bytes before the key */
+    protected static final int HEADER = 8;
+
+    /** The records (grows up to the limit) */
+    protected ByteBuffer bytes;
+
+    /** TRUE if the records are kept in direct buffers */
+    protected final boolean direct;
+
+    /** Maximal size of the records */
+    protected final int limit;
+
+    /** Bytes used */
+    protected int length = 0;
+
+    /** Offsets of the records */
+    protected int[] offsets = new int[1024];
+
+    /** Number of records */
+    protected int count = 0;
+
+    protected Arena(int limit, boolean direct) {
+      this.limit = limit;
+      this.direct = direct;
+      bytes = allocate(Math.min(limit, MIN_ARENA));
+    }
+
+    /** Returns a new buffer of n bytes */
+    protected ByteBuffer allocate(int n) {
+      return (direct ? ByteBuffer.allocateDirect(n) : ByteBuffer.allocate(n));
+    }
+
+    /** TRUE if a record of length bytes fits */
+    protected boolean fits(int length) {
+      return (this.length + length <= limit);
+    }
+
+    protected void add(byte[] key, int keyStart, int keyEnd, byte[] value, int valueStart, int valueEnd) {
+      if (count == offsets.length) {
+        int[] newOffsets = new int[offsets.length * 2];
+        System.arraycopy(offsets, 0, newOffsets, 0, count);
+        offsets = newOffsets;
+      }
+      int needed = length + HEADER + keyEnd - keyStart + valueEnd - valueStart;
+      if (needed > bytes.capacity()) {
+        ByteBuffer newBytes = allocate((int) Math.min(limit, Math.max(needed, 2L * bytes.capacity())));
+        bytes.position(0);
+        bytes.limit(length);
+        newBytes.put(bytes);
+        bytes = newBytes;
+      }
+      offsets[count++] = length;
+      bytes.clear();
+      bytes.position(length);
+      bytes.putInt(keyEnd - keyStart);
+      bytes.putInt(valueEnd - valueStart);
+      bytes.put(key, keyStart, keyEnd - keyStart);
+      bytes.put(value, valueStart, valueEnd - valueStart);
+      length = bytes.position();
+    }
+
+    /** Compares the keys of the records at the offsets a and b */
+    protected int compareAt(int a, int b) {
+      return (compare(bytes, a + HEADER, bytes.getInt(a), bytes, b + HEADER, bytes.getInt(b)));
+    }
+
+    /** Sorts the offsets by the keys (stable) */
+    protected void sort() {
+      int[] buffer = new int[count];
+      mergeSort(offsets, buffer, 0, count);
+    }
+
+    /** Merge sort of offsets[from..to) */
+    protected void mergeSort(int[] a, int[] buffer, int from, int to) {
+      if (to - from < 16) {
+        // Insertion sort
+        for (int i = from + 1; i < to; i++) {
+          int x = a[i];
+          int j = i - 1;
+          while (j >= from && compareAt(a[j], x) > 0) {
+            a[j + 1] = a[j];
+            j--;
+          }
+          a[j + 1] = x;
+        }
+        return;
+      }
+      int middle = (from + to) >>> 1;
+      mergeSort(a, buffer, from, middle);
+      mergeSort(a, buffer, middle, to);
+      if (compareAt(a[middle - 1], a[middle]) <= 0) return;
+      System.arraycopy(a, from, buffer, from, to - from);
+      int i = from, j = middle, k = from;
+      while (i < middle && j < to)
+        a[k++] = compareAt(buffer[j], buffer[i]) < 0 ? buffer[j++] : buffer[i++];
+      while (i < middle)
+        a[k++] = buffer[i++];
+      while (j < to)
+        a[k++] = buffer[j++];
+    }
+
+    /** Writes the sorted records to a run file (only the first of every key if distinct is TRUE) */
+    protected void write(File run, boolean distinct) throws IOException {
+      FileOutputStream stream = new FileOutputStream(run);
+      try {
+        FileChannel channel = stream.getChannel();
+        ByteBuffer out = allocate(1 << 16);
+        ByteBuffer in = bytes.duplicate();
+        in.clear();
+        for (int i = 0; i < count; i++) {
+          int pos = offsets[i];
+          if (distinct && i > 0 && compareAt(offsets[i - 1], pos) == 0) continue;
+          int n = HEADER + bytes.getInt(pos) + bytes.getInt(pos + 4);
+          in.limit(pos + n);
+          in.position(pos);
+          if (out.remaining() < n) drain(out, channel);
+          if (n > out.capacity()) {
+            while (in.hasRemaining())
+              channel.write(in);
+          } else {
+            out.put(in);
+          }
+          in.clear();
+        }
+        drain(out, channel);
+      } finally {
+        stream.close();
+      }
+    }
+
+    /** Writes the buffer to the channel and clears it */
+    protected static void drain(ByteBuffer out, FileChannel channel) throws IOException {
+      out.flip();
+      while (out.hasRemaining())
+        channel.write(out);
+      out.clear();
+    }
+
+    /** Iterates over the sorted records */
+    protected Iterator<Record> iterator() {
+      return (new Iterator<Record>() {
+
+        int i = 0;
+
+        Record record = new Record();
+
+        @Override
+        public boolean hasNext() {
+          return (i < count);
+        }
+
+        @Override
+        public Record next() {
+          if (!hasNext()) throw new NoSuchElementException();
+          int pos = offsets[i++];
+          record.set(bytes, pos + HEADER, bytes.getInt(pos), bytes.getInt(pos + 4));
+          return (record);
+        }
+
+        @Override
+        public void remove() {
+          throw new UnsupportedOperationException();
+        }
+      });
+    }
+  }
+
+  /** A run file that is being merged */
+  protected static class Cursor implements Comparable<Cursor> {
+
+    /** Number of the run (older runs first among equal keys) */
+    protected final int number;
+
+    protected final DataInputStream in;
+
+    /** The current record */
+    protected final Record record = new Record();
+
+    protected Cursor(int number, File run) throws IOException {
+      this.number = number;
+      in = new DataInputStream(new BufferedInputStream(new FileInputStream(run), 1 << 16));
+    }
+
+    @Override
+    public int compareTo(Cursor o) {
+      int c = record.compareTo(o.record);
+      return (c != 0 ? c : number - o.number);
+    }
+  }
+
+  /** Merges the runs with a heap of cursors */
+  protected static class Merger implements Iterator<Record> {
+
+    protected final PriorityQueue<Cursor> heap;
+
+    /** The cursor of the last record, which moves on with the next call */
+    protected Cursor last = null;
+
+    protected Merger(List<File> runs) throws IOException {
+      heap = new PriorityQueue<Cursor>(Math.max(1, runs.size()));
+      for (int i = 0; i < runs.size(); i++) {
+        Cursor cursor = new Cursor(i, runs.get(i));
+        if (cursor.record.read(cursor.in)) heap.add(cursor);
+        else cursor.in.close();
+      }
+    }
+
+    /** Moves the cursor of the last record on */
+    protected void advance() {
+      if (last == null) return;
+      try {
+        if (last.record.read(last.in)) heap.add(last);
+        else last.in.close();
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      last = null;
+    }
+
+    @Override
+    public boolean hasNext() {
+      advance();
+      return (!heap.isEmpty());
+    }
+
+    @Override
+    public Record next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      last = heap.poll();
+      return (last.record);
+    }
+
+    /** Closes the run files */
+    protected void close() {
+      if (last != null) heap.add(last);
+      last = null;
+      for (Cursor cursor : heap) {
+        try {
+          cursor.in.close();
+        } catch (IOException e) {
+        }
+      }
+      heap.clear();
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Drops the records whose key equals the key of the record before */
+  protected static class Distinct implements Iterator<Record> {
+
+    protected final Iterator<Record> records;
+
+    /** The key of the last record */
+    protected byte[] last = new byte[64];
+
+    /** The length of the key of the last record (-1 before the first) */
+    protected int lastLength = -1;
+
+    /** The next record, if hasNext() has found it */
+    protected Record next = null;
+
+    protected Distinct(Iterator<Record> records) {
+      this.records = records;
+    }
+
+    @Override
+    public boolean hasNext() {
+      if (next != null) return (true);
+      while (records.hasNext()) {
+        Record record = records.next();
+        if (lastLength >= 0 && record.keyEquals(last, 0, lastLength)) continue;
+        if (last.length < record.keyLength()) last = new byte[record.keyLength() * 2];
+        System.arraycopy(record.bytes(), 0, last, 0, record.keyLength());
+        lastLength = record.keyLength();
+        next = record;
+        return (true);
+      }
+      return (false);
+    }
+
+    @Override
+    public Record next() {
+      if (!hasNext()) throw new NoSuchElementException();
+      Record record = next;
+      next = null;
+      return (record);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+}
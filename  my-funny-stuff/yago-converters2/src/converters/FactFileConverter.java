@@ -0,0 +1,359 @@
+package converters;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javatools.administrative.Announce;
+import converters.facts.FactReader;
+import converters.facts.MappedFactReader;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A converter that converts the fact files one by one into one output (N3,
+ * RDFS, XML, the DBpedia export, HDT). A subclass opens the output and
+ * converts the facts of one file; this class converts all fact files,
+ * sequentially, in parallel chunks, in a ConversionPipeline, incrementally
+ * or into part files. The FanOutConverter runs several such converters on
+ * one pass over the facts.
+ */
+public abstract class FactFileConverter extends Converter {
+
+  /**
+   * Converts the facts of one fact file and writes the result to out (without
+   * closing it)
+   */
+  protected abstract void convertFacts(String relation, FactReader facts, OutputStream out) throws IOException;
+
+  /**
+   * Converts the facts as convertFacts() does and returns the number of
+   * facts that made it into the output (for the manifest of the part
+   * files). By default, these are all facts that were read.
+   */
+  protected long convertAndCountFacts(String relation, FactReader facts, OutputStream out) throws IOException {
+    convertFacts(relation, facts, out);
+    return (facts.factCount());
+  }
+
+  /**
+   * Gets the parameters for convertFacts(). Converters that convert the fact
+   * files one by one get their parameters here, so that the FanOutConverter
+   * can use them without calling run().
+   */
+  protected void getConversionParameters() throws IOException {
+    getParameters();
+  }
+
+  /**
+   * Opens the output file of a converter that converts the fact files one by
+   * one and writes the header. convertFacts() writes the facts to the stream.
+   */
+  protected abstract OutputStream openOutput() throws IOException;
+
+  /** Writes the footer and closes the stream opened by openOutput() */
+  protected void closeOutput(OutputStream out) throws IOException {
+    out.close();
+  }
+
+  /** Writes the header of an output file (and of every part file, see convertFactFilesToParts()) */
+  protected void writeHeader(OutputStream out) throws IOException {
+  }
+
+  /** Writes the footer of an output file (and of every part file) */
+  protected void writeFooter(OutputStream out) throws IOException {
+  }
+
+  /**
+   * Calls convertFacts() for all fact files of the YAGO folder and writes the
+   * results to out, in the order of the files. With converterThreads>1, the
+   * files are converted by a pool of threads (largest files first) into
+   * temporary segments in the output folder. Files that are larger than
+   * converterChunkSize are split at line boundaries into chunks, which are
+   * converted in parallel as well. The segments are appended to out in the
+   * order of the files and chunks as soon as they are ready, so that the
+   * output is the same as the output of the sequential conversion. With
+   * incrementalConversion, the result of every file is kept in a part file,
+   * and only the files that changed since the last run are converted again.
+   * With converterPipeline, the files are read by one thread, converted in
+   * batches by converterThreads workers and written in their order by the
+   * calling thread, see ConversionPipeline.
+   */
+  protected void convertFactFiles(OutputStream out) throws Exception {
+    List<File> files = new ArrayList<File>();
+    List<String> relations = new ArrayList<String>();
+    for (File inputFile : yagoFolder.listFiles()) {
+      String relation = relationForFactFile(inputFile);
+      if (relation == null) continue;
+      files.add(inputFile);
+      relations.add(relation);
+    }
+    if (incremental) convertChangedFactFiles(files, relations, out);
+    else convertFactFiles(files, relations, Collections.nCopies(files.size(), out));
+  }
+
+  /**
+   * Converts the fact files into the part files of the folder NAME.parts in
+   * the output folder (where NAME is the name of the converter), but only if
+   * the manifest says that the fact file changed. Then appends all part files
+   * to out.
+   */
+  protected void convertChangedFactFiles(List<File> files, List<String> relations, OutputStream out) throws Exception {
+    File partFolder = new File(outputFolder, getClass().getSimpleName() + ".parts");
+    partFolder.mkdirs();
+    InputManifest manifest = manifest();
+    for (String name : manifest.removed(files)) {
+      new File(partFolder, manifest.get(name).artefact).delete();
+      manifest.remove(name);
+    }
+    List<File> changedFiles = new ArrayList<File>();
+    List<String> changedRelations = new ArrayList<String>();
+    List<OutputStream> parts = new ArrayList<OutputStream>();
+    for (int i = 0; i < files.size(); i++) {
+      File file = files.get(i);
+      File part = new File(partFolder, file.getName() + ".part");
+      if (part.exists() && !manifest.changed(file)) continue;
+      manifest.remove(file.getName());
+      changedFiles.add(file);
+      changedRelations.add(relations.get(i));
+      parts.add(new BufferedOutputStream(new FileOutputStream(part)));
+    }
+    Announce.message(changedFiles.size(), "of", files.size(), "fact files changed since the last conversion");
+    try {
+      convertFactFiles(changedFiles, changedRelations, parts);
+    } finally {
+      for (OutputStream part : parts)
+        part.close();
+    }
+    for (File file : changedFiles)
+      manifest.put(file, file.getName() + ".part");
+    for (File file : files)
+      append(new File(partFolder, file.getName() + ".part"), out);
+    manifest.save();
+  }
+
+  /**
+   * Converts the fact files with their relations and writes the result of
+   * the file i to outs.get(i), see convertFactFiles(OutputStream)
+   */
+  protected void convertFactFiles(final List<File> files, final List<String> relations, List<OutputStream> outs) throws Exception {
+    // In test mode, convertFacts() counts the facts per call, so it has to see whole files
+    if (pipeline && !test) {
+      new ConversionPipeline(this, threads, pipelineCapacity).run(files, relations, outs);
+      return;
+    }
+    if (threads <= 1) {
+      for (int i = 0; i < files.size(); i++) {
+        convertFacts(relations.get(i), readFacts(files.get(i), "Parsing " + files.get(i).getName()), outs.get(i));
+      }
+      return;
+    }
+    final List<FactChunk> chunks = chunks(files, chunkSize);
+    long totalLength = 0;
+    for (File file : files)
+      totalLength += file.length();
+    // Start with the largest chunks, so that no thread is left with a big one at the end
+    Integer[] order = new Integer[chunks.size()];
+    for (int i = 0; i < order.length; i++)
+      order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>() {
+      @Override
+      public int compare(Integer i1, Integer i2) {
+        return (Long.valueOf(chunks.get(i2).length()).compareTo(chunks.get(i1).length()));
+      }
+    });
+    ExecutorService pool = Executors.newFixedThreadPool(threads);
+    // All segments that were created, to delete them if the conversion fails
+    final Queue<File> created = new ConcurrentLinkedQueue<File>();
+    List<Future<File>> segments = new ArrayList<Future<File>>(Collections.nCopies(chunks.size(), (Future<File>) null));
+    for (int i : order) {
+      final FactChunk chunk = chunks.get(i);
+      segments.set(i, pool.submit(new Callable<File>() {
+        @Override
+        public File call() throws Exception {
+          File segment = File.createTempFile("segment", ".tmp", outputFolder);
+          created.add(segment);
+          OutputStream segmentOut = new BufferedOutputStream(new FileOutputStream(segment));
+          try {
+            // No progress bars here, Announce is not made for threads
+            FactReader facts = readChunk(files.get(chunk.file), chunk);
+            convertFacts(relations.get(chunk.file), facts, segmentOut);
+          } finally {
+            segmentOut.close();
+          }
+          return (segment);
+        }
+      }));
+    }
+    pool.shutdown();
+    Announce.progressStart("Converting " + files.size() + " files in " + chunks.size() + " chunks with " + threads + " threads", Math.max(totalLength, 1));
+    long done = 0;
+    boolean complete = false;
+    try {
+      for (int i = 0; i < chunks.size(); i++) {
+        File segment = segments.get(i).get();
+        append(segment, outs.get(chunks.get(i).file));
+        segment.delete();
+        Announce.progressAt(done += chunks.get(i).length());
+      }
+      complete = true;
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    } finally {
+      Announce.progressDone();
+      if (!complete) {
+        // Waits for the interrupted tasks, so that they do not create segments after the sweep
+        pool.shutdownNow();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+        for (File segment : created)
+          segment.delete();
+      }
+    }
+  }
+
+  /**
+   * Splits the files at line boundaries into chunks of about the given
+   * size (only uncompressed files with mappedFactReader, other files make
+   * one chunk each). In test mode, convertFacts() stops after the first facts
+   * of every call, so every file makes one chunk there.
+   */
+  protected List<FactChunk> chunks(List<File> files, long size) throws IOException {
+    List<FactChunk> chunks = new ArrayList<FactChunk>();
+    for (int i = 0; i < files.size(); i++) {
+      File file = files.get(i);
+      if (test || !mappedFactReader || !file.getName().endsWith(".tsv") || file.length() <= size) {
+        chunks.add(new FactChunk(i, 0, file.length()));
+        continue;
+      }
+      long[] offsets = MappedFactReader.splitLines(file, size);
+      for (int j = 1; j < offsets.length; j++) {
+        chunks.add(new FactChunk(i, offsets[j - 1], offsets[j]));
+      }
+    }
+    return (chunks);
+  }
+
+  /** Returns a reader for a chunk of a file */
+  protected FactReader readChunk(File file, FactChunk chunk) throws IOException {
+    return (chunk.length() == file.length() ? readFacts(file, null) : new MappedFactReader(file, null, chunk.start, chunk.end));
+  }
+
+  /**
+   * Converts all fact files of the YAGO folder into the part files, with
+   * converterThreads threads. The files are split into chunks of a quarter
+   * of a part (at most converterChunkSize), which the threads take in the
+   * order of the files. Every thread converts its chunks into a part of its
+   * own and starts a new part when the next chunk would not fit, judging by
+   * the ratio of output to input so far. So a part is a little larger than
+   * the part size at most if a chunk comes out larger than expected. Writes
+   * the manifest of the parts at the end.
+   */
+  protected void convertFactFilesToParts(final PartFiles parts) throws Exception {
+    if (incremental)
+      Announce.warning("converterPartSize converts all fact files, ignoring incrementalConversion");
+    final List<File> files = new ArrayList<File>();
+    final List<String> relations = new ArrayList<String>();
+    for (File inputFile : yagoFolder.listFiles()) {
+      String relation = relationForFactFile(inputFile);
+      if (relation == null) continue;
+      files.add(inputFile);
+      relations.add(relation);
+    }
+    int deleted = parts.deleteOld();
+    if (deleted > 0) Announce.message("Deleted", deleted, "parts of an earlier conversion");
+    final ConcurrentLinkedQueue<FactChunk> chunks = new ConcurrentLinkedQueue<FactChunk>(chunks(files,
+        Math.min(chunkSize, Math.max(1 << 16, parts.partSize / 4))));
+    // Bytes read and written, for the ratio of output to input
+    final AtomicLong input = new AtomicLong(), output = new AtomicLong();
+    Announce.doing("Converting", files.size(), "files in", chunks.size(), "chunks into parts of", parts.partSize >> 20, "MB with", threads, "threads");
+    ExecutorService pool = Executors.newFixedThreadPool(Math.max(1, threads));
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    for (int t = 0; t < Math.max(1, threads); t++) {
+      futures.add(pool.submit(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          PartFiles.Part part = null;
+          try {
+            FactChunk chunk;
+            while ((chunk = chunks.poll()) != null) {
+              double ratio = input.get() == 0 ? 1 : output.get() / (double) input.get();
+              if (part != null && part.isFull((long) (chunk.length() * ratio))) {
+                part.close();
+                part = null;
+              }
+              if (part == null) part = parts.newPart();
+              long size = part.size();
+              // No progress bars here, Announce is not made for threads
+              File file = files.get(chunk.file);
+              FactReader facts = readChunk(file, chunk);
+              long count = convertAndCountFacts(relations.get(chunk.file), facts, part.stream());
+              facts.close();
+              part.add(relations.get(chunk.file), count);
+              input.addAndGet(chunk.length());
+              output.addAndGet(part.size() - size);
+            }
+          } finally {
+            if (part != null) part.close();
+          }
+          return (null);
+        }
+      }));
+    }
+    pool.shutdown();
+    try {
+      for (Future<Object> future : futures)
+        future.get();
+    } catch (ExecutionException e) {
+      pool.shutdownNow();
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    }
+    parts.writeManifest();
+    Announce.message("Wrote", parts);
+    Announce.done();
+  }
+
+  /** A range of lines of a fact file, converted by one thread in convertFactFiles() */
+  protected static class FactChunk {
+
+    /** Index of the file */
+    public final int file;
+
+    /** Offset of the first line */
+    public final long start;
+
+    /** Offset after the last line */
+    public final long end;
+
+    public FactChunk(int file, long start, long end) {
+      this.file = file;
+      this.start = start;
+      this.end = end;
+    }
+
+    /** Returns the number of bytes of the chunk */
+    public long length() {
+      return (end - start);
+    }
+  }
+}
@@ -0,0 +1,242 @@
+package converters;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+
+import javatools.administrative.Announce;
+import javatools.administrative.D;
+import converters.facts.Fact;
+import converters.facts.FactReader;
+import converters.facts.MappedFactReader;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Sorts facts of any number of relations by one of their columns (or by
+ * their relation) with a bounded amount of memory, see ExternalSorter. Keys
+ * are compared by their UTF-8 bytes, which is the order of their code
+ * points. Facts with the same key come out in the order in which they were
+ * added. The sorted facts are read with a FactReader, which tells the
+ * relation of the current fact.
+ *
+ * The basic usage is
+ *    FactSorter sorter = new FactSorter(FactSorter.Key.ARG1, folder, 256 << 20, 2, false);
+ *    for (Fact fact : readFacts(file, "Sorting")) sorter.add("type", fact);
+ *    FactSorter.SortedFactReader sorted = sorter.sort();
+ *    for (Fact fact : sorted) {
+ *      // handle sorted.relation() and fact
+ *    }
+ *    sorter.close();
+ */
+public class FactSorter implements Closeable {
+
+  /** What the facts are sorted by */
+  public static enum Key {
+    ID, ARG1, ARG2, RELATION
+  }
+
+  /** The key */
+  public final Key key;
+
+  /** The sorter of the records (key, relation TAB id TAB arg1 TAB arg2) */
+  protected final ExternalSorter sorter;
+
+  /** The key of the current fact */
+  protected final Utf8Buffer keyBytes = new Utf8Buffer();
+
+  /** The current fact */
+  protected final Utf8Buffer valueBytes = new Utf8Buffer();
+
+  /** Creates a sorter that uses about memory bytes (off the heap if offHeap is TRUE) and keeps its runs in folder */
+  public FactSorter(Key key, File folder, long memory, int threads, boolean offHeap) {
+    this.key = key;
+    sorter = new ExternalSorter(folder, memory, threads, offHeap);
+  }
+
+  /** Adds a fact of a relation */
+  public void add(String relation, Fact fact) throws IOException {
+    keyBytes.set(key == Key.RELATION ? relation : fact.get(key.ordinal()));
+    valueBytes.set(relation);
+    for (int i = 0; i < 3; i++) {
+      valueBytes.append('\t');
+      valueBytes.append(fact.get(i));
+    }
+    sorter.add(keyBytes.bytes, 0, keyBytes.length, valueBytes.bytes, 0, valueBytes.length);
+  }
+
+  /** Adds all facts of a reader, returns the number of facts */
+  public long addAll(String relation, FactReader facts) throws IOException {
+    long counter = 0;
+    for (Fact fact : facts) {
+      add(relation, fact);
+      counter++;
+    }
+    return (counter);
+  }
+
+  /** Returns the number of facts */
+  public long size() {
+    return (sorter.size());
+  }
+
+  /** Returns the number of run files so far */
+  public int runs() {
+    return (sorter.runs());
+  }
+
+  /** Sorts the facts and returns a reader for them (can be called only once) */
+  public SortedFactReader sort(String announceMsg) throws IOException {
+    sorter.sort();
+    return (new SortedFactReader(sorter.iterator(), sorter.size(), announceMsg));
+  }
+
+  /** Same as sort(null), without progress bar */
+  public SortedFactReader sort() throws IOException {
+    return (sort(null));
+  }
+
+  /** Deletes the run files */
+  @Override
+  public void close() {
+    sorter.close();
+  }
+
+  /** Reads the sorted facts. The progress is counted in facts. */
+  public static class SortedFactReader extends FactReader {
+
+    /** The sorted records */
+    protected final Iterator<ExternalSorter.Record> records;
+
+    /** The relation of the current fact */
+    protected String relation;
+
+    /** The UTF-8 bytes of the relation */
+    protected byte[] relationBytes = new byte[0];
+
+    /** Bytes consumed */
+    protected long position = 0;
+
+    protected SortedFactReader(Iterator<ExternalSorter.Record> records, long size, String announceMsg) {
+      super(null, size, announceMsg);
+      this.records = records;
+    }
+
+    /** Returns the relation of the current fact */
+    public String relation() {
+      return (relation);
+    }
+
+    @Override
+    protected boolean readFact(Fact fact) throws IOException {
+      if (!records.hasNext()) return (false);
+      ExternalSorter.Record record = records.next();
+      byte[] bytes = record.bytes();
+      int start = record.keyLength();
+      int end = start + record.valueLength();
+      int tab = start;
+      while (bytes[tab] != '\t')
+        tab++;
+      // Facts of the same relation tend to come together
+      if (ExternalSorter.compare(bytes, start, tab, relationBytes, 0, relationBytes.length) != 0) {
+        relationBytes = new byte[tab - start];
+        System.arraycopy(bytes, start, relationBytes, 0, relationBytes.length);
+        relation = new String(relationBytes, "UTF-8");
+      }
+      fact.parse(bytes, tab + 1, end);
+      position += record.keyLength() + record.valueLength();
+      return (true);
+    }
+
+    @Override
+    public long position() {
+      return (position);
+    }
+
+    @Override
+    protected long progress() {
+      return (factCounter);
+    }
+
+    @Override
+    protected void closeInput() throws IOException {
+    }
+
+    @Override
+    public String toString() {
+      return ("SortedFactReader");
+    }
+  }
+
+  /**
+   * Compares the throughput of sorting the lines of all TSV files of a folder
+   * in memory and with a FactSorter. Arguments: folder [key] [memory in MB]
+   * [threads] [offheap]
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      D.p("Usage: FactSorter <folder with TSV files> [id|arg1|arg2|relation] [memory in MB] [threads] [offheap]");
+      return;
+    }
+    final Key key = args.length > 1 ? Key.valueOf(args[1].toUpperCase()) : Key.ARG1;
+    long memory = (args.length > 2 ? Long.parseLong(args[2]) : 256) << 20;
+    int threads = args.length > 3 ? Integer.parseInt(args[3]) : 2;
+    boolean offHeap = args.length > 4 && args[4].equalsIgnoreCase("offheap");
+    List<File> files = new ArrayList<File>();
+    long bytes = 0;
+    for (File f : new File(args[0]).listFiles()) {
+      if (!f.getName().endsWith(".tsv")) continue;
+      files.add(f);
+      bytes += f.length();
+    }
+
+    // In memory: one String[] per fact
+    long start = System.nanoTime();
+    List<String[]> lines = new ArrayList<String[]>();
+    for (File f : files) {
+      String relation = Converter.stripFactFileExtension(f.getName());
+      for (Fact fact : new MappedFactReader(f, null)) {
+        lines.add(new String[] { fact.id.toString(), fact.arg1.toString(), fact.arg2.toString(), relation });
+      }
+    }
+    Collections.sort(lines, new Comparator<String[]>() {
+
+      @Override
+      public int compare(String[] a, String[] b) {
+        return (a[key == Key.RELATION ? 3 : key.ordinal()].compareTo(b[key == Key.RELATION ? 3 : key.ordinal()]));
+      }
+    });
+    long hash = 0;
+    for (String[] line : lines)
+      hash += line[key == Key.RELATION ? 3 : key.ordinal()].length();
+    Announce.message("In memory:", FactReader.throughput(bytes, System.nanoTime() - start), lines.size(), "facts");
+    lines = null;
+
+    // FactSorter
+    start = System.nanoTime();
+    FactSorter sorter = new FactSorter(key, new File(System.getProperty("java.io.tmpdir")), memory, threads, offHeap);
+    try {
+      for (File f : files) {
+        sorter.addAll(Converter.stripFactFileExtension(f.getName()), new MappedFactReader(f, null));
+      }
+      long added = System.nanoTime();
+      SortedFactReader sorted = sorter.sort();
+      for (Fact fact : sorted) {
+        hash -= key == Key.RELATION ? sorted.relation().length() : fact.get(key.ordinal()).length();
+      }
+      Announce.message("FactSorter:", FactReader.throughput(bytes, System.nanoTime() - start), sorter.size(), "facts,", sorter.runs(),
+          "runs, adding took", (added - start) / 1000000, "ms", offHeap ? "(off heap)" : "");
+    } finally {
+      sorter.close();
+    }
+    Announce.message("Checksum (should be 0):", hash);
+  }
+}
@@ -0,0 +1,174 @@
+package converters;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import javatools.administrative.Announce;
+import javatools.administrative.Parameters;
+import converters.facts.BatchFactReader;
+import converters.facts.Fact;
+import converters.facts.FactBatch;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * This class runs several converters in one pass over the fact files. The
+ * converters are given by the parameter 'fanOutConverters' (default: N3,
+ * RDFS, XML and the DBpedia export). The fact files are read once, on the
+ * main thread, and the facts go in batches to every converter that wants the
+ * file. Every converter runs on a thread of its own with a queue of at most
+ * 'fanOutQueueSize' batches, so that the time of the conversion is the time
+ * of the slowest converter rather than the sum of all. Each converter writes
+ * the same output file as if it ran alone, except that the DBpedia export
+ * comes in the order of the fact files. A converter in the fan-out converts
+ * all fact files into one output file, so it ignores converterPartSize,
+ * rdfsGroupBySubject, incrementalConversion and converterPipeline (with a
+ * warning).
+ */
+public class FanOutConverter extends Converter {
+
+  /** The default converters */
+  public static final String DEFAULT_CONVERTERS = "N3Converter RDFSConverter XMLConverter DBpediaExport";
+
+  /** Number of facts per batch */
+  public static final int BATCH_SIZE = 1024;
+
+  /** Marks the end of the input in the queues */
+  protected static final FactBatch END = new FactBatch(null, 0);
+
+  /** Creates a converter by its (simple) class name */
+  protected FactFileConverter converterFor(String name) throws Exception {
+    Class<?> c = Class.forName(name.indexOf('.') == -1 ? "converters." + name : name);
+    if (!FactFileConverter.class.isAssignableFrom(c)) throw new IllegalArgumentException(name + " does not convert fact files one by one");
+    FactFileConverter converter = (FactFileConverter) c.getDeclaredConstructor().newInstance();
+    converter.test = test;
+    return (converter);
+  }
+
+  /**
+   * Turns off the parameters that a converter can only follow when it runs
+   * alone, with a warning for each
+   */
+  protected static void ignoreStandaloneParameters(FactFileConverter converter) {
+    String name = converter.getClass().getSimpleName();
+    if (converter.partSize > 0) {
+      Announce.warning(name, "writes one file in the fan-out, ignoring converterPartSize");
+      converter.partSize = 0;
+    }
+    if (converter instanceof RDFSConverter && ((RDFSConverter) converter).groupBySubject) {
+      Announce.warning(name, "reads the fact files once in the fan-out, ignoring rdfsGroupBySubject");
+      ((RDFSConverter) converter).groupBySubject = false;
+    }
+    if (converter.incremental) {
+      Announce.warning(name, "converts all fact files in the fan-out, ignoring incrementalConversion");
+      converter.incremental = false;
+    }
+    if (converter.pipeline) {
+      Announce.warning(name, "gets parsed facts in the fan-out, ignoring converterPipeline");
+      converter.pipeline = false;
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    getParameters();
+    int queueSize = Math.max(1, Parameters.getInt("fanOutQueueSize", 64));
+    final List<FactFileConverter> converters = new ArrayList<FactFileConverter>();
+    for (String name : Parameters.get("fanOutConverters", DEFAULT_CONVERTERS).trim().split("[\\s,]+")) {
+      FactFileConverter converter = converterFor(name);
+      converter.getConversionParameters();
+      ignoreStandaloneParameters(converter);
+      converters.add(converter);
+    }
+    Announce.doing("Converting YAGO with", converters.size(), "converters in one pass");
+    List<BlockingQueue<FactBatch>> queues = new ArrayList<BlockingQueue<FactBatch>>();
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    ExecutorService pool = Executors.newFixedThreadPool(converters.size());
+    for (final FactFileConverter converter : converters) {
+      final BlockingQueue<FactBatch> queue = new ArrayBlockingQueue<FactBatch>(queueSize);
+      queues.add(queue);
+      futures.add(pool.submit(new Callable<Object>() {
+        @Override
+        public Object call() throws Exception {
+          OutputStream out = converter.openOutput();
+          try {
+            FactBatch batch;
+            while ((batch = queue.take()) != END) {
+              // No progress bars here, Announce is not made for threads
+              BatchFactReader facts = new BatchFactReader(queue, batch);
+              converter.convertFacts(converter.relationForFactFile(batch.file), facts, out);
+              facts.close();
+            }
+          } finally {
+            converter.closeOutput(out);
+          }
+          return (null);
+        }
+      }));
+    }
+    pool.shutdown();
+    try {
+      for (File inputFile : yagoFolder.listFiles()) {
+        List<Integer> targets = new ArrayList<Integer>();
+        for (int i = 0; i < converters.size(); i++) {
+          if (converters.get(i).relationForFactFile(inputFile) != null) targets.add(i);
+        }
+        if (targets.isEmpty()) continue;
+        FactBatch batch = new FactBatch(inputFile, BATCH_SIZE);
+        for (Fact fact : readFacts(inputFile, "Parsing " + inputFile.getName())) {
+          if (batch.isFull()) {
+            put(batch, targets, queues, futures);
+            batch = new FactBatch(inputFile, BATCH_SIZE);
+          }
+          batch.add(fact);
+        }
+        batch.setLast();
+        put(batch, targets, queues, futures);
+      }
+      for (int i = 0; i < converters.size(); i++) {
+        put(END, Collections.singletonList(i), queues, futures);
+      }
+      for (Future<Object> future : futures)
+        future.get();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    } finally {
+      // Stops the converters if reading failed
+      pool.shutdownNow();
+    }
+    Announce.done();
+  }
+
+  /**
+   * Puts a batch into the queues of the target converters. Waits while a
+   * queue is full, throws the exception of a converter that failed.
+   */
+  protected static void put(FactBatch batch, List<Integer> targets, List<BlockingQueue<FactBatch>> queues, List<Future<Object>> futures)
+      throws InterruptedException, ExecutionException {
+    for (int i : targets) {
+      while (!queues.get(i).offer(batch, 100, TimeUnit.MILLISECONDS)) {
+        if (futures.get(i).isDone()) futures.get(i).get();
+      }
+    }
+  }
+
+  @Override
+  public String description() {
+    return ("Convert YAGO to several formats in one pass (N3, RDFS, XML and the DBpedia export by default)");
+  }
+}
@@ -10,8 +10,7 @@ import java.util.Map;
 
 import javatools.administrative.Announce;
 import javatools.administrative.D;
-import javatools.filehandlers.FileLines;
-import javatools.parsers.Char;
+import converters.facts.Fact;
 
 /**
  * Class GeoNamesLink
@@ -47,22 +46,21 @@ public class GeoNamesLink extends Converter {
 
 		Map<String, Integer> geoNamesIds = new HashMap<String, Integer>();
 		int counter = 0;
-		for (String line : new FileLines(new File(yagoFolder, "hasGeonamesId.tsv"),
+		for (Fact fact : readFacts(factFile("hasGeonamesId"),
 				"Caching individuals")) {
-			String[] split = line.split("\t");
-			
-			geoNamesIds.put(split[1], Integer.parseInt(split[2]));
+			geoNamesIds.put(fact.arg1.toString(), Integer.parseInt(fact.arg2.toString()));
 
 			if (test && counter++ > 100)
 				break;
 		}
 
 		Announce.doing("Writing individuals");
+		StringBuilder buffer = new StringBuilder();
 		Writer out = new BufferedWriter(new FileWriter(new File(outputFolder,
 				"GeoNamesYAGOlink_individuals.n3")));
 		D.writeln(out, "@prefix owl:  <http://www.w3.org/2002/07/owl#> .");
 		for (String name : geoNamesIds.keySet()) {
-			name = Char.encodeURIPathComponent(Char.decodeBackslash(name));
+			name = Codec.encodeURIPathComponent(Codec.decodeBackslash(name), buffer).toString();
 			D.writeln(out, "<http://yago-knowledge.org/resource/" + name
 					+ "> owl:sameAs <http://sws.geonames.org/" + geoNamesIds.get(name)
 					+ "> .");
@@ -0,0 +1,449 @@
+package converters;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A basic graph pattern (a conjunction of triple patterns) over a
+ * TripleStore. A pattern is written like the WHERE clause of a SPARQL query,
+ * with the names of YAGO (as in the fact files) and variables that start
+ * with '?'. Terms and dots are separated by blanks, literals may contain
+ * blanks:
+ *    SELECT ?x ?d WHERE { ?x type wordnet_singer_110599806 . ?x bornIn Tupelo . ?x bornOnDate ?d }
+ * SELECT and WHERE are optional; without SELECT, all variables are returned.
+ *
+ * solutions() evaluates the pattern in two steps. First, all triple patterns
+ * with one variable (and two constants) on the same variable are joined by a
+ * merge join: their ranges in the store are sorted by that variable, so the
+ * cursors leapfrog over each other with seek(). This is the star in the
+ * middle of most queries (all singers born in Tupelo). Then the other
+ * triple patterns are joined one by one in the order of their sizes, by
+ * looking up the values that are bound so far in the indexes (which is a
+ * binary search per lookup). Without such a star, the smallest triple
+ * pattern comes first.
+ *
+ * The basic usage is
+ *    GraphPattern query = new GraphPattern(store, "?x bornIn Tupelo . ?x type wordnet_singer_110599806");
+ *    for (Map<String, String> solution : query.solutions(10)) System.out.println(solution);
+ */
+public class GraphPattern {
+
+  /** The store */
+  public final TripleStore store;
+
+  /** The variables (without '?') */
+  protected final List<String> variables = new ArrayList<String>();
+
+  /** The variables of the result */
+  protected final List<String> selected = new ArrayList<String>();
+
+  /** The triple patterns: the id of a constant, or -1-index of a variable */
+  protected final List<int[]> patterns = new ArrayList<int[]>();
+
+  /** TRUE if a constant is not in the store (so there are no solutions) */
+  protected boolean unknownConstant = false;
+
+  /** Parses the pattern */
+  public GraphPattern(TripleStore store, String query) {
+    this.store = store;
+    List<String> tokens = tokens(query);
+    int i = 0;
+    if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("SELECT")) {
+      for (i++; i < tokens.size() && tokens.get(i).startsWith("?"); i++)
+        selected.add(tokens.get(i).substring(1));
+    }
+    if (i < tokens.size() && tokens.get(i).equalsIgnoreCase("WHERE")) i++;
+    List<String> terms = new ArrayList<String>();
+    for (; i < tokens.size(); i++) {
+      String token = tokens.get(i);
+      if (token.equals("{") || token.equals("}") || token.equals(".")) continue;
+      terms.add(token);
+    }
+    if (terms.size() % 3 != 0 || terms.isEmpty()) throw new IllegalArgumentException("The pattern needs triples of subject, relation and object: " + query);
+    for (int t = 0; t < terms.size(); t += 3) {
+      int[] pattern = new int[3];
+      for (int j = 0; j < 3; j++)
+        pattern[j] = term(terms.get(t + j));
+      patterns.add(pattern);
+    }
+    if (selected.isEmpty()) selected.addAll(variables);
+    for (String v : selected) {
+      if (!variables.contains(v)) throw new IllegalArgumentException("?" + v + " does not occur in the pattern");
+    }
+  }
+
+  /** Returns the code of a term: the id of a constant, or -1-index of a variable */
+  protected int term(String token) {
+    if (token.startsWith("?")) {
+      String name = token.substring(1);
+      if (!variables.contains(name)) variables.add(name);
+      return (-1 - variables.indexOf(name));
+    }
+    int id = store.id(token);
+    if (id < 0) unknownConstant = true;
+    return (id);
+  }
+
+  /** Splits the query at blanks (but not within quotes), with braces as tokens of their own */
+  protected static List<String> tokens(String query) {
+    List<String> tokens = new ArrayList<String>();
+    StringBuilder token = new StringBuilder();
+    boolean quoted = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quoted) {
+        token.append(c);
+        if (c == '\\' && i + 1 < query.length()) token.append(query.charAt(++i));
+        else if (c == '"') quoted = false;
+        continue;
+      }
+      if (Character.isWhitespace(c) || c == '{' || c == '}') {
+        if (token.length() > 0) tokens.add(token.toString());
+        token.setLength(0);
+        if (c == '{' || c == '}') tokens.add(String.valueOf(c));
+        continue;
+      }
+      if (c == '"') quoted = true;
+      token.append(c);
+    }
+    if (token.length() > 0) tokens.add(token.toString());
+    return (tokens);
+  }
+
+  /** Returns the variables of the result */
+  public List<String> selected() {
+    return (selected);
+  }
+
+  /** Returns the index of a variable (without '?'), -1 if there is no such variable */
+  public int variable(String name) {
+    return (variables.indexOf(name));
+  }
+
+  /** Returns the number of variables of the pattern */
+  protected static int variableCount(int[] pattern) {
+    int n = 0;
+    for (int term : pattern)
+      if (term < 0) n++;
+    return (n);
+  }
+
+  /** Returns the number of triples of the pattern with only its constants */
+  protected long size(int[] pattern) {
+    return (store.count(Math.max(-1, pattern[0]), Math.max(-1, pattern[1]), Math.max(-1, pattern[2])));
+  }
+
+  /**
+   * Returns the patterns with one variable for the merge join: the largest
+   * group of such patterns on the same variable (with at least two patterns),
+   * or an empty list
+   */
+  protected List<int[]> star() {
+    List<int[]> best = new ArrayList<int[]>();
+    for (int v = 0; v < variables.size(); v++) {
+      List<int[]> group = new ArrayList<int[]>();
+      for (int[] pattern : patterns) {
+        if (variableCount(pattern) == 1 && (pattern[0] == -1 - v || pattern[1] == -1 - v || pattern[2] == -1 - v)) group.add(pattern);
+      }
+      if (group.size() >= 2 && group.size() > best.size()) best = group;
+    }
+    return (best);
+  }
+
+  /** Orders the other patterns: the one with the most bound terms (and then the smallest one) first */
+  protected List<int[]> order(List<int[]> rest, boolean[] bound) {
+    List<int[]> result = new ArrayList<int[]>();
+    rest = new ArrayList<int[]>(rest);
+    while (!rest.isEmpty()) {
+      int[] best = null;
+      int bestBound = -1;
+      long bestSize = Long.MAX_VALUE;
+      for (int[] pattern : rest) {
+        int b = 0;
+        for (int term : pattern)
+          if (term >= 0 || bound[-1 - term]) b++;
+        long size = size(pattern);
+        if (b > bestBound || (b == bestBound && size < bestSize)) {
+          best = pattern;
+          bestBound = b;
+          bestSize = size;
+        }
+      }
+      rest.remove(best);
+      result.add(best);
+      for (int term : best)
+        if (term < 0) bound[-1 - term] = true;
+    }
+    return (result);
+  }
+
+  /**
+   * The solutions as a cursor: next() moves to the next solution, get()
+   * returns the id of a variable. Solutions are computed as they are asked
+   * for.
+   */
+  public class Solutions {
+
+    /** The values of the variables (-1 for unbound) */
+    protected final int[] binding = new int[variables.size()];
+
+    /** The variable of the merge join (or -1) */
+    protected final int starVariable;
+
+    /** The cursors of the merge join, sorted by the star variable */
+    protected final TripleStore.Cursor[] star;
+
+    /** The position of the star variable in the patterns of the merge join */
+    protected final int[] starPositions;
+
+    /** The patterns that are joined by lookups, in their order */
+    protected final int[][] steps;
+
+    /** The cursor of every step */
+    protected final TripleStore.Cursor[] cursors;
+
+    /** The variables that every step binds */
+    protected final int[][] binds;
+
+    /** The step that is being advanced (-1 if the first step has to be advanced) */
+    protected int depth = -1;
+
+    /** TRUE at the end */
+    protected boolean done;
+
+    protected Solutions() {
+      Arrays.fill(binding, -1);
+      done = unknownConstant;
+      List<int[]> starPatterns = star();
+      boolean[] bound = new boolean[variables.size()];
+      List<int[]> rest = new ArrayList<int[]>(patterns);
+      if (starPatterns.isEmpty()) {
+        starVariable = -1;
+        star = null;
+        starPositions = null;
+      } else {
+        rest.removeAll(starPatterns);
+        int v = -1;
+        for (int term : starPatterns.get(0))
+          if (term < 0) v = -1 - term;
+        starVariable = v;
+        bound[v] = true;
+        star = new TripleStore.Cursor[starPatterns.size()];
+        starPositions = new int[starPatterns.size()];
+        for (int i = 0; i < star.length; i++) {
+          int[] pattern = starPatterns.get(i);
+          for (int j = 0; j < 3; j++)
+            if (pattern[j] < 0) starPositions[i] = j;
+          if (!done) star[i] = store.scan(pattern[0], pattern[1], pattern[2], starPositions[i]);
+        }
+      }
+      List<int[]> ordered = order(rest, bound);
+      steps = ordered.toArray(new int[ordered.size()][]);
+      cursors = new TripleStore.Cursor[steps.length];
+      binds = new int[steps.length][];
+      // The variables that a step binds first
+      Arrays.fill(bound, false);
+      if (starVariable >= 0) bound[starVariable] = true;
+      for (int i = 0; i < steps.length; i++) {
+        List<Integer> vars = new ArrayList<Integer>();
+        for (int term : steps[i]) {
+          if (term < 0 && !bound[-1 - term]) {
+            bound[-1 - term] = true;
+            vars.add(-1 - term);
+          }
+        }
+        binds[i] = new int[vars.size()];
+        for (int j = 0; j < vars.size(); j++)
+          binds[i][j] = vars.get(j);
+      }
+    }
+
+    /** Moves the merge join to the next common value, returns FALSE at the end */
+    protected boolean nextStar(boolean first) {
+      if (first) {
+        for (TripleStore.Cursor cursor : star)
+          if (!cursor.next()) return (false);
+      } else if (!star[0].next()) {
+        return (false);
+      }
+      // Leapfrog: seek all cursors to the largest value until they agree
+      while (true) {
+        int max = -1;
+        for (int i = 0; i < star.length; i++)
+          max = Math.max(max, star[i].get(starPositions[i]));
+        boolean agree = true;
+        for (int i = 0; i < star.length; i++) {
+          if (star[i].get(starPositions[i]) < max) {
+            if (!star[i].seek(max)) return (false);
+            agree &= star[i].get(starPositions[i]) == max;
+          }
+        }
+        if (agree) {
+          binding[starVariable] = max;
+          return (true);
+        }
+      }
+    }
+
+    /** Opens the cursor of a step with the current binding */
+    protected void open(int step) {
+      int[] pattern = steps[step];
+      cursors[step] = store.scan(bindingOf(pattern[0]), bindingOf(pattern[1]), bindingOf(pattern[2]));
+    }
+
+    /** Returns the value of a term if it is bound, else -1 */
+    protected int bindingOf(int term) {
+      return (term >= 0 ? term : binding[-1 - term]);
+    }
+
+    /** Advances the cursor of a step to a triple that fits, binds its variables, returns FALSE at the end */
+    protected boolean advance(int step) {
+      TripleStore.Cursor cursor = cursors[step];
+      int[] pattern = steps[step];
+      for (int v : binds[step])
+        binding[v] = -1;
+      outer: while (cursor.next()) {
+        for (int v : binds[step])
+          binding[v] = -1;
+        for (int j = 0; j < 3; j++) {
+          int term = pattern[j];
+          if (term >= 0) continue;
+          int value = cursor.get(j);
+          int bound = binding[-1 - term];
+          // A variable that occurs twice in the pattern
+          if (bound >= 0 && bound != value) continue outer;
+          binding[-1 - term] = value;
+        }
+        return (true);
+      }
+      for (int v : binds[step])
+        binding[v] = -1;
+      return (false);
+    }
+
+    /** Moves to the next solution, returns FALSE at the end */
+    public boolean next() {
+      if (done) return (false);
+      // depth is the deepest step that has a solution; backtrack from there
+      int step = depth;
+      if (depth == -1) {
+        // The first solution
+        if (starVariable >= 0) {
+          if (!nextStar(true)) return (end());
+        }
+        step = 0;
+        if (steps.length == 0) {
+          depth = 0;
+          return (true);
+        }
+        open(0);
+      } else if (steps.length == 0) {
+        if (!nextStar(false)) return (end());
+        return (true);
+      }
+      while (true) {
+        if (advance(step)) {
+          if (step == steps.length - 1) {
+            depth = step;
+            return (true);
+          }
+          open(++step);
+          continue;
+        }
+        if (step > 0) {
+          step--;
+          continue;
+        }
+        // The first step is exhausted: next value of the star, or the end
+        if (starVariable < 0 || !nextStar(false)) return (end());
+        open(0);
+      }
+    }
+
+    /** Marks the end */
+    protected boolean end() {
+      done = true;
+      return (false);
+    }
+
+    /** Returns the id of the variable with the index in the current solution */
+    public int get(int variable) {
+      return (binding[variable]);
+    }
+
+    /** Returns the value of the variable (without '?') in the current solution */
+    public String get(String variable) {
+      return (store.name(binding[variables.indexOf(variable)]));
+    }
+  }
+
+  /** Returns the solutions as a cursor */
+  public Solutions cursor() {
+    return (new Solutions());
+  }
+
+  /** Returns at most maxAnswers solutions (-1 for all) as maps from the selected variables to their values */
+  public Iterable<Map<String, String>> solutions(final int maxAnswers) {
+    return (new Iterable<Map<String, String>>() {
+
+      @Override
+      public Iterator<Map<String, String>> iterator() {
+        final Solutions solutions = cursor();
+        return (new Iterator<Map<String, String>>() {
+
+          /** Number of solutions returned so far */
+          int counter = 0;
+
+          /** TRUE if the cursor is at a solution that has not been returned */
+          Boolean ready = null;
+
+          @Override
+          public boolean hasNext() {
+            if (ready == null) ready = (maxAnswers < 0 || counter < maxAnswers) && solutions.next();
+            return (ready);
+          }
+
+          @Override
+          public Map<String, String> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+            ready = null;
+            counter++;
+            Map<String, String> result = new LinkedHashMap<String, String>();
+            for (String v : selected)
+              result.put(v, solutions.get(v));
+            return (result);
+          }
+
+          @Override
+          public void remove() {
+            throw new UnsupportedOperationException();
+          }
+        });
+      }
+    });
+  }
+
+  @Override
+  public String toString() {
+    StringBuilder result = new StringBuilder("SELECT");
+    for (String v : selected)
+      result.append(" ?").append(v);
+    result.append(" WHERE {");
+    for (int[] pattern : patterns) {
+      for (int term : pattern)
+        result.append(' ').append(term >= 0 ? store.name(term) : "?" + variables.get(-1 - term));
+      result.append(" .");
+    }
+    return (result.append(" }").toString());
+  }
+}
@@ -0,0 +1,98 @@
+package converters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.Checksum;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * The checksums of an HDT file: CRC8 (polynomial 0x07) after the header of a
+ * section, CRC16 (CRC-16/ARC) after the control information and CRC32C
+ * (Castagnoli) after the data of a section. They are computed with a table
+ * of 256 entries, and written little-endian in 1, 2 or 4 bytes.
+ */
+public class HDTChecksum implements Checksum {
+
+  /** The tables of the three checksums */
+  protected static final int[] CRC8 = new int[256], CRC16 = new int[256], CRC32C = new int[256];
+
+  static {
+    for (int i = 0; i < 256; i++) {
+      int crc8 = i, crc16 = i, crc32c = i;
+      for (int j = 0; j < 8; j++) {
+        crc8 = (crc8 & 0x80) != 0 ? ((crc8 << 1) ^ 0x07) & 0xFF : (crc8 << 1) & 0xFF;
+        crc16 = (crc16 & 1) != 0 ? (crc16 >>> 1) ^ 0xA001 : crc16 >>> 1;
+        crc32c = (crc32c & 1) != 0 ? (crc32c >>> 1) ^ 0x82F63B78 : crc32c >>> 1;
+      }
+      CRC8[i] = crc8;
+      CRC16[i] = crc16;
+      CRC32C[i] = crc32c;
+    }
+  }
+
+  /** The table */
+  protected final int[] table;
+
+  /** Number of bytes of the checksum */
+  public final int bytes;
+
+  /** Start value, and value that the result is XORed with */
+  protected final int init;
+
+  /** The current value */
+  protected int crc;
+
+  protected HDTChecksum(int[] table, int bytes, int init) {
+    this.table = table;
+    this.bytes = bytes;
+    this.init = init;
+    crc = init;
+  }
+
+  /** Returns a CRC8 */
+  public static HDTChecksum crc8() {
+    return (new HDTChecksum(CRC8, 1, 0));
+  }
+
+  /** Returns a CRC16 */
+  public static HDTChecksum crc16() {
+    return (new HDTChecksum(CRC16, 2, 0));
+  }
+
+  /** Returns a CRC32C */
+  public static HDTChecksum crc32c() {
+    return (new HDTChecksum(CRC32C, 4, 0xFFFFFFFF));
+  }
+
+  @Override
+  public void update(int b) {
+    crc = (crc >>> 8) ^ table[(crc ^ b) & 0xFF];
+  }
+
+  @Override
+  public void update(byte[] b, int off, int len) {
+    for (int i = off; i < off + len; i++)
+      crc = (crc >>> 8) ^ table[(crc ^ b[i]) & 0xFF];
+  }
+
+  @Override
+  public long getValue() {
+    return ((crc ^ init) & (0xFFFFFFFFL >>> (32 - bytes * 8)));
+  }
+
+  @Override
+  public void reset() {
+    crc = init;
+  }
+
+  /** Writes the checksum (little-endian) */
+  public void writeTo(OutputStream out) throws IOException {
+    long value = getValue();
+    for (int i = 0; i < bytes; i++)
+      out.write((int) (value >>> (i * 8)));
+  }
+}
@@ -0,0 +1,111 @@
+package converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javatools.administrative.Announce;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * This class exports YAGO into yago.hdt, an HDT (Header-Dictionary-Triples)
+ * file (a front-coded dictionary and bitmap triples, see HDTFile) that can
+ * be queried by triple patterns without loading it, also by the HDT tools.
+ * The triples are the ones of the N3Converter (with the same relations,
+ * datatypes and inverted relations): the facts are converted to N-Triples
+ * as by the N3Converter (also in parallel, with converterThreads), and the
+ * lines go straight into an HDTWriter. The HDTWriter needs sortMemory bytes
+ * and keeps the rest in temporary files in the output folder.
+ */
+public class HDTConverter extends N3Converter {
+
+  /** Splits the N-Triples lines of the N3Converter into their terms for the HDTWriter */
+  protected static class TripleSplitter extends OutputStream {
+
+    /** Takes the triples */
+    protected final HDTWriter writer;
+
+    /** The current line */
+    protected byte[] line = new byte[1024];
+
+    /** Length of the current line */
+    protected int length = 0;
+
+    protected TripleSplitter(HDTWriter writer) {
+      this.writer = writer;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      if (b == '\n') {
+        split();
+        length = 0;
+        return;
+      }
+      if (length == line.length) {
+        byte[] longer = new byte[line.length * 2];
+        System.arraycopy(line, 0, longer, 0, length);
+        line = longer;
+      }
+      line[length++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int n) throws IOException {
+      for (int i = offset; i < offset + n; i++)
+        write(bytes[i]);
+    }
+
+    /** Returns the position of the first "> " from the position on */
+    protected int endOfIri(int from) throws IOException {
+      for (int i = from; i + 1 < length; i++) {
+        if (line[i] == '>' && line[i + 1] == ' ') return (i + 1);
+      }
+      throw new IOException("Not an N-Triples line: " + new String(line, 0, length, "UTF-8"));
+    }
+
+    /** Adds the triple of the line "<s> <p> o ." (names are percent-encoded, so they have no blanks) */
+    protected void split() throws IOException {
+      if (length == 0) return;
+      int subjectEnd = endOfIri(0);
+      int predicateEnd = endOfIri(subjectEnd + 1);
+      writer.add(line, 0, subjectEnd, line, subjectEnd + 1, predicateEnd, line, predicateEnd + 1, length - 2);
+    }
+  }
+
+  /** Converts all facts to yago.hdt */
+  @Override
+  public void run() throws Exception {
+    getConversionParameters();
+    Announce.doing("Converting facts to HDT");
+    File output = new File(outputFolder, "yago.hdt");
+    HDTWriter writer = new HDTWriter(outputFolder, sortMemory, threads, sortOffHeap);
+    try {
+      TripleSplitter splitter = new TripleSplitter(writer);
+      convertFactFiles(splitter);
+      splitter.close();
+      Announce.message("Writing", writer.added(), "triples to", output);
+      long triples = writer.write(output);
+      Announce.message("Wrote", triples, "distinct triples");
+    } finally {
+      writer.close();
+    }
+    Announce.done();
+  }
+
+  /** Gets the parameters of the N3Converter, the triples are always N-Triples */
+  @Override
+  protected void getConversionParameters() throws IOException {
+    super.getConversionParameters();
+    syntax = TripleWriter.Syntax.NTRIPLES;
+  }
+
+  @Override
+  public String description() {
+    return ("Convert YAGO to HDT (a compressed, queryable RDF file)");
+  }
+}
@@ -0,0 +1,724 @@
+package converters;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads an HDT (Header-Dictionary-Triples, http://www.rdfhdt.org) file as
+ * the HDTWriter writes it, and answers triple patterns straight from the
+ * memory-mapped file. The file can be read by the HDT tools as well. It is
+ *    control information GLOBAL <http://purl.org/HDT/hdt#HDTv1>
+ *    control information HEADER ntriples, length=n; and n bytes of N-Triples
+ *    control information DICTIONARY <http://purl.org/HDT/hdt#dictionaryFour>
+ *    the sections SHARED, SUBJECTS, PREDICATES, OBJECTS
+ *    control information TRIPLES <http://purl.org/HDT/hdt#triplesBitmap>, order=1;
+ *    bitmap Y, bitmap Z, sequence Y, sequence Z
+ * Control information is "$HDT", the type byte, the format and the
+ * properties ("key=value;"), both ended by a NUL, and a CRC16. Numbers are
+ * little-endian or VBytes (7 bits per byte, from the lowest, the high bit
+ * marks the last byte).
+ *
+ * The terms are UTF-8 bytes: IRIs without angle brackets, literals in quotes
+ * as in N-Triples. A section (plain front coding) holds sorted terms (by
+ * their bytes) in blocks of BLOCK_SIZE terms: the first term of a block in
+ * full, every other term as a VByte of the length of the prefix it shares
+ * with the term before and the rest, every term ended by a NUL. A section is
+ *    type 2, VByte count, VByte data length, VByte block size, CRC8
+ *    a sequence with the offset of every block in the data and the length
+ *    the data, CRC32C
+ * The terms that occur as subject and as object are in SHARED. They have the
+ * ids 1..|SHARED| as subjects and as objects; the other subjects and objects
+ * follow. The predicates have the ids 1..|PREDICATES|.
+ *
+ * The triples are sorted by subject, predicate and object ids. Sequence Y
+ * holds the predicate of every (subject, predicate) pair, bitmap Y marks the
+ * last pair of every subject, sequence Z holds the object of every triple
+ * and bitmap Z marks the last object of every pair. A sequence is
+ *    type 1, number of bits per entry, VByte count, CRC8
+ *    the entries in words of 64 bits, CRC32C
+ * and a bitmap is
+ *    type 1, VByte number of bits, CRC8
+ *    the words of 64 bits, CRC32C
+ * where bit i is bit i%64 of word i/64, and only the bytes in use of the last
+ * word are written. The checksums of the headers are checked, the data are
+ * mapped without checking them. The bitmaps get the number of ones before
+ * every group of RANK_WORDS words when the file is opened. Every section is
+ * mapped on its own, so none may exceed 2 GB.
+ *
+ * The file can be used by several threads at the same time. The basic usage
+ * is
+ *    HDTFile hdt = new HDTFile(new File("yago.hdt"));
+ *    Iterator<String[]> triples = hdt.search("http://yago-knowledge.org/resource/Elvis_Presley", null, null);
+ *    hdt.close();
+ */
+public class HDTFile implements Closeable {
+
+  /** Starts control information */
+  public static final String COOKIE = "$HDT";
+
+  /** Types of control information */
+  public static final int GLOBAL = 1, HEADER = 2, DICTIONARY = 3, TRIPLES = 4;
+
+  /** Formats of the parts of the file */
+  public static final String HDT_V1 = "<http://purl.org/HDT/hdt#HDTv1>", HEADER_NTRIPLES = "ntriples",
+      DICTIONARY_FOUR = "<http://purl.org/HDT/hdt#dictionaryFour>", TRIPLES_BITMAP = "<http://purl.org/HDT/hdt#triplesBitmap>";
+
+  /** Types of a dictionary section, a sequence and a bitmap */
+  public static final int TYPE_PFC = 2, TYPE_SEQUENCE = 1, TYPE_BITMAP = 1;
+
+  /** Number of terms per block of a section */
+  public static final int BLOCK_SIZE = 16;
+
+  /** Number of words of a bitmap per rank */
+  public static final int RANK_WORDS = 8;
+
+  /** The file */
+  protected final RandomAccessFile file;
+
+  /** The dictionary sections */
+  public final Section shared, subjects, predicates, objects;
+
+  /** The predicates of the pairs and the objects of the triples */
+  protected final Sequence seqY, seqZ;
+
+  /** The ends of the subjects and of the pairs */
+  protected final Bitmap bitmapY, bitmapZ;
+
+  /** Number of (subject, predicate) pairs */
+  public final long pairs;
+
+  /** Number of triples */
+  public final long triples;
+
+  /** Opens and maps the file */
+  public HDTFile(File hdt) throws IOException {
+    this(hdt, false);
+  }
+
+  /** Opens and maps the file, or a file of the dictionary alone (as the HDTWriter writes it first) if dictionaryOnly is TRUE */
+  protected HDTFile(File hdt, boolean dictionaryOnly) throws IOException {
+    file = new RandomAccessFile(hdt, "r");
+    boolean ok = false;
+    try {
+      Input in = new Input(file.getChannel());
+      if (!dictionaryOnly) {
+        readControlInformation(in, GLOBAL, HDT_V1);
+        String length = readControlInformation(in, HEADER, HEADER_NTRIPLES).get("length");
+        if (length == null) throw new IOException(hdt + " has a header without length");
+        in.position += Long.parseLong(length);
+      }
+      readControlInformation(in, DICTIONARY, DICTIONARY_FOUR);
+      shared = new Section(in);
+      subjects = new Section(in);
+      predicates = new Section(in);
+      objects = new Section(in);
+      if (!dictionaryOnly) {
+        if (!"1".equals(readControlInformation(in, TRIPLES, TRIPLES_BITMAP).get("order"))) throw new IOException(hdt + " has the triples in another order than SPO");
+        bitmapY = new Bitmap(in);
+        bitmapZ = new Bitmap(in);
+        seqY = new Sequence(in);
+        seqZ = new Sequence(in);
+        pairs = seqY.count;
+        triples = seqZ.count;
+      } else {
+        pairs = triples = 0;
+        seqY = seqZ = null;
+        bitmapY = bitmapZ = null;
+      }
+      ok = true;
+    } finally {
+      if (!ok) file.close();
+    }
+  }
+
+  /** Reads the control information and the headers of the sections byte by byte, and checks their checksums */
+  protected static class Input {
+
+    /** The file */
+    protected final FileChannel channel;
+
+    /** Position of the next byte */
+    protected long position = 0;
+
+    /** One byte */
+    protected final ByteBuffer buffer = ByteBuffer.allocate(1);
+
+    /** Checksum of the bytes since startChecksum() */
+    protected HDTChecksum checksum;
+
+    protected Input(FileChannel channel) {
+      this.channel = channel;
+    }
+
+    /** Reads a byte */
+    protected int read() throws IOException {
+      buffer.clear();
+      if (channel.read(buffer, position) < 1) throw new IOException("Unexpected end of the HDT file");
+      position++;
+      int b = buffer.get(0) & 0xFF;
+      if (checksum != null) checksum.update(b);
+      return (b);
+    }
+
+    /** Reads a VByte */
+    protected long readVByte() throws IOException {
+      long result = 0;
+      for (int shift = 0;; shift += 7) {
+        int b = read();
+        result |= (long) (b & 0x7F) << shift;
+        if ((b & 0x80) != 0) return (result);
+      }
+    }
+
+    /** Reads an ASCII string that ends with a NUL */
+    protected String readString() throws IOException {
+      StringBuilder result = new StringBuilder();
+      for (int b = read(); b != 0; b = read())
+        result.append((char) b);
+      return (result.toString());
+    }
+
+    /** Starts a checksum of the following bytes */
+    protected void startChecksum(HDTChecksum c) {
+      checksum = c;
+    }
+
+    /** Reads the checksum and compares it with the one of the bytes since startChecksum() */
+    protected void checkChecksum(String what) throws IOException {
+      HDTChecksum c = checksum;
+      checksum = null;
+      long value = 0;
+      for (int i = 0; i < c.bytes; i++)
+        value |= (long) read() << (i * 8);
+      if (value != c.getValue()) throw new IOException("Wrong checksum of the " + what + " before position " + position + " of the HDT file");
+    }
+  }
+
+  /** Reads control information of the type and format, returns its properties */
+  protected static Map<String, String> readControlInformation(Input in, int type, String format) throws IOException {
+    in.startChecksum(HDTChecksum.crc16());
+    for (int i = 0; i < COOKIE.length(); i++) {
+      if (in.read() != COOKIE.charAt(i)) throw new IOException("No HDT control information at position " + (in.position - i - 1));
+    }
+    int t = in.read();
+    if (t != type) throw new IOException("HDT control information of type " + t + " instead of " + type);
+    String f = in.readString();
+    if (!f.equals(format)) throw new IOException("HDT format " + f + " instead of " + format);
+    Map<String, String> properties = new HashMap<String, String>();
+    for (String property : in.readString().split(";")) {
+      int equals = property.indexOf('=');
+      if (equals > 0) properties.put(property.substring(0, equals), property.substring(equals + 1));
+    }
+    in.checkChecksum("control information");
+    return (properties);
+  }
+
+  /** Maps n bytes at the position */
+  protected static ByteBuffer map(FileChannel channel, long position, long n) throws IOException {
+    if (n > Integer.MAX_VALUE) throw new IOException("A section of " + n + " bytes is too large to be mapped");
+    return (channel.map(FileChannel.MapMode.READ_ONLY, position, n).order(ByteOrder.LITTLE_ENDIAN));
+  }
+
+  /** Reads a VByte at buffer[pos[0]], advances pos[0] */
+  protected static int readVByte(ByteBuffer buffer, int[] pos) {
+    int result = 0;
+    for (int shift = 0;; shift += 7) {
+      byte b = buffer.get(pos[0]++);
+      result |= (b & 0x7F) << shift;
+      if (b < 0) return (result);
+    }
+  }
+
+  /** Words of 64 bits in the file, followed by a CRC32C */
+  protected static class Words {
+
+    /** The bytes */
+    protected final ByteBuffer buffer;
+
+    /** Number of bytes */
+    protected final int length;
+
+    /** Maps the words of the given number of bits at the position of the input, moves the input after them */
+    protected Words(Input in, long bits) throws IOException {
+      long bytes = (bits + 7) / 8;
+      buffer = map(in.channel, in.position, bytes);
+      length = (int) bytes;
+      in.position += bytes + 4;
+    }
+
+    /** Returns word i (the last one may have fewer bytes) */
+    protected long get(long i) {
+      int pos = (int) (i * 8);
+      if (pos + 8 <= length) return (buffer.getLong(pos));
+      long word = 0;
+      for (int j = 0; pos + j < length; j++)
+        word |= (buffer.get(pos + j) & 0xFFL) << (j * 8);
+      return (word);
+    }
+  }
+
+  /** A sequence of numbers of the same number of bits */
+  protected static class Sequence {
+
+    /** Number of entries */
+    protected final long count;
+
+    /** Bits per entry */
+    protected final int width;
+
+    /** The entries */
+    protected final Words words;
+
+    /** Reads the sequence at the position of the input */
+    protected Sequence(Input in) throws IOException {
+      in.startChecksum(HDTChecksum.crc8());
+      if (in.read() != TYPE_SEQUENCE) throw new IOException("Unknown type of sequence before position " + in.position + " of the HDT file");
+      width = in.read();
+      count = in.readVByte();
+      in.checkChecksum("sequence");
+      if (width > 63) throw new IOException("Sequence of " + width + " bits per entry in the HDT file");
+      words = new Words(in, width * count);
+    }
+
+    /** Returns the entry at the index */
+    protected long get(long index) {
+      if (width == 0) return (0);
+      long bit = index * width;
+      int offset = (int) (bit & 63);
+      long value = words.get(bit >>> 6) >>> offset;
+      if (offset + width > 64) value |= words.get((bit >>> 6) + 1) << (64 - offset);
+      return (value & ((1L << width) - 1));
+    }
+
+    /** Returns the index of the value in the sorted range [from..to), -1 if it is not there */
+    protected long search(long from, long to, long value) {
+      long low = from, high = to - 1;
+      while (low <= high) {
+        long mid = (low + high) >>> 1;
+        long v = get(mid);
+        if (v == value) return (mid);
+        if (v < value) low = mid + 1;
+        else high = mid - 1;
+      }
+      return (-1);
+    }
+  }
+
+  /** A front-coded section of the dictionary */
+  public static class Section {
+
+    /** Number of terms */
+    public final long count;
+
+    /** Terms per block */
+    protected final int blockSize;
+
+    /** Offsets of the blocks */
+    protected final Sequence blocks;
+
+    /** The front-coded terms */
+    protected final ByteBuffer data;
+
+    /** Number of blocks */
+    protected final int blockCount;
+
+    /** Reads the section at the position of the input */
+    protected Section(Input in) throws IOException {
+      in.startChecksum(HDTChecksum.crc8());
+      if (in.read() != TYPE_PFC) throw new IOException("Unknown type of dictionary section before position " + in.position + " of the HDT file");
+      count = in.readVByte();
+      long length = in.readVByte();
+      blockSize = (int) in.readVByte();
+      in.checkChecksum("dictionary section");
+      blocks = new Sequence(in);
+      data = map(in.channel, in.position, length);
+      in.position += length + 4;
+      blockCount = (int) ((count + blockSize - 1) / blockSize);
+    }
+
+    /** Compares the term that ends with a NUL at data[pos] with key[0..keyLength) */
+    protected int compare(int pos, byte[] key, int keyLength) {
+      for (int i = 0;; i++) {
+        int b = data.get(pos + i) & 0xFF;
+        if (b == 0) return (i - keyLength);
+        if (i == keyLength) return (1);
+        int diff = b - (key[i] & 0xFF);
+        if (diff != 0) return (diff);
+      }
+    }
+
+    /** Reads the rest of a term (up to its NUL) at data[pos[0]] into term[0] after the prefix, advances pos[0], returns the length of the term */
+    protected int read(int[] pos, byte[][] term, int prefix) {
+      int length = prefix;
+      for (byte b = data.get(pos[0]++); b != 0; b = data.get(pos[0]++)) {
+        if (length == term[0].length) term[0] = Arrays.copyOf(term[0], length * 2);
+        term[0][length++] = b;
+      }
+      return (length);
+    }
+
+    /** Returns the id (from 1) of the term with the UTF-8 bytes key[0..keyLength), 0 if it is not in the section */
+    public long locate(byte[] key, int keyLength) {
+      // The last block whose first term is not larger than the key
+      int low = 0, high = blockCount - 1, block = -1;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        int c = compare((int) blocks.get(mid), key, keyLength);
+        if (c == 0) return ((long) mid * blockSize + 1);
+        if (c < 0) {
+          block = mid;
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      if (block < 0) return (0);
+      // The first term is smaller than the key, look at the others
+      byte[][] term = { new byte[64] };
+      int[] pos = { (int) blocks.get(block) };
+      read(pos, term, 0);
+      long first = (long) block * blockSize;
+      for (int i = 1; i < blockSize && first + i < count; i++) {
+        int length = read(pos, term, readVByte(data, pos));
+        int c = ExternalSorter.compare(term[0], 0, length, key, 0, keyLength);
+        if (c == 0) return (first + i + 1);
+        if (c > 0) return (0);
+      }
+      return (0);
+    }
+
+    /** Returns the UTF-8 bytes of the term with the id (from 1) */
+    public byte[] extract(long id) {
+      if (id < 1 || id > count) throw new IllegalArgumentException("No term " + id + " in a section of " + count);
+      int block = (int) ((id - 1) / blockSize);
+      int index = (int) ((id - 1) % blockSize);
+      byte[][] term = { new byte[64] };
+      int[] pos = { (int) blocks.get(block) };
+      int length = read(pos, term, 0);
+      for (int i = 1; i <= index; i++)
+        length = read(pos, term, readVByte(data, pos));
+      return (Arrays.copyOf(term[0], length));
+    }
+  }
+
+  /** A bitmap in the file with ranks for select */
+  protected static class Bitmap {
+
+    /** Number of bits */
+    protected final long bits;
+
+    /** The words */
+    protected final Words words;
+
+    /** Number of words */
+    protected final long wordCount;
+
+    /** Number of ones before every group of RANK_WORDS words */
+    protected final long[] ranks;
+
+    /** Reads the bitmap at the position of the input and counts its ones */
+    protected Bitmap(Input in) throws IOException {
+      in.startChecksum(HDTChecksum.crc8());
+      if (in.read() != TYPE_BITMAP) throw new IOException("Unknown type of bitmap before position " + in.position + " of the HDT file");
+      bits = in.readVByte();
+      in.checkChecksum("bitmap");
+      words = new Words(in, bits);
+      wordCount = (bits + 63) >>> 6;
+      ranks = new long[(int) ((wordCount + RANK_WORDS - 1) / RANK_WORDS)];
+      long ones = 0;
+      for (long i = 0; i < wordCount; i++) {
+        if (i % RANK_WORDS == 0) ranks[(int) (i / RANK_WORDS)] = ones;
+        ones += Long.bitCount(words.get(i));
+      }
+    }
+
+    /** Returns the bit */
+    public boolean get(long bit) {
+      return ((words.get(bit >>> 6) & (1L << (bit & 63))) != 0);
+    }
+
+    /** Returns the position of the first one at or after the bit (or the number of bits) */
+    public long nextSetBit(long bit) {
+      if (bit >= bits) return (bits);
+      long i = bit >>> 6;
+      long word = words.get(i) & (-1L << (bit & 63));
+      while (word == 0) {
+        if (++i == wordCount) return (bits);
+        word = words.get(i);
+      }
+      return (Math.min(bits, i * 64 + Long.numberOfTrailingZeros(word)));
+    }
+
+    /** Returns the position of the k-th one (from 1), or the number of bits if there are fewer ones */
+    public long select(long k) {
+      // The last group with fewer than k ones before it
+      int low = 0, high = ranks.length - 1, group = 0;
+      while (low <= high) {
+        int mid = (low + high) >>> 1;
+        if (ranks[mid] < k) {
+          group = mid;
+          low = mid + 1;
+        } else {
+          high = mid - 1;
+        }
+      }
+      long ones = ranks.length == 0 ? 0 : ranks[group];
+      for (long i = (long) group * RANK_WORDS; i < wordCount; i++) {
+        long word = words.get(i);
+        int n = Long.bitCount(word);
+        if (ones + n >= k) {
+          // Drops the lowest ones until the k-th is the lowest
+          for (long j = ones + 1; j < k; j++)
+            word &= word - 1;
+          return (i * 64 + Long.numberOfTrailingZeros(word));
+        }
+        ones += n;
+      }
+      return (bits);
+    }
+  }
+
+  /** The number of subjects */
+  public long subjectCount() {
+    return (shared.count + subjects.count);
+  }
+
+  /** The number of objects */
+  public long objectCount() {
+    return (shared.count + objects.count);
+  }
+
+  /** Returns the UTF-8 bytes of a term */
+  protected static byte[] utf8(CharSequence term) {
+    try {
+      return (term.toString().getBytes("UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Returns the term of UTF-8 bytes */
+  protected static String string(byte[] utf8) {
+    try {
+      return (new String(utf8, "UTF-8"));
+    } catch (UnsupportedEncodingException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Returns the id of the term as a subject, 0 if it is none */
+  public long subjectId(CharSequence term) {
+    byte[] key = utf8(term);
+    long id = shared.locate(key, key.length);
+    if (id != 0) return (id);
+    id = subjects.locate(key, key.length);
+    return (id == 0 ? 0 : shared.count + id);
+  }
+
+  /** Returns the id of the term as an object, 0 if it is none */
+  public long objectId(CharSequence term) {
+    byte[] key = utf8(term);
+    long id = shared.locate(key, key.length);
+    if (id != 0) return (id);
+    id = objects.locate(key, key.length);
+    return (id == 0 ? 0 : shared.count + id);
+  }
+
+  /** Returns the id of the term as a predicate, 0 if it is none */
+  public long predicateId(CharSequence term) {
+    byte[] key = utf8(term);
+    return (predicates.locate(key, key.length));
+  }
+
+  /** Returns the subject with the id */
+  public String subject(long id) {
+    return (string(id <= shared.count ? shared.extract(id) : subjects.extract(id - shared.count)));
+  }
+
+  /** Returns the object with the id */
+  public String object(long id) {
+    return (string(id <= shared.count ? shared.extract(id) : objects.extract(id - shared.count)));
+  }
+
+  /** Returns the predicate with the id */
+  public String predicate(long id) {
+    return (string(predicates.extract(id)));
+  }
+
+  /**
+   * The triples that match a pattern of ids, as a cursor: next() moves to the
+   * next triple and sets subject, predicate and object. With a subject, the
+   * triples are found through the bitmaps; without one, all triples are
+   * scanned (on their ids, terms are not decoded).
+   */
+  public class TripleIds {
+
+    /** The current triple */
+    public long subject, predicate, object;
+
+    /** The pattern (0 for a variable) */
+    protected final long s, p, o;
+
+    /** Current and end pair */
+    protected long pair, pairEnd;
+
+    /** Current and end position of the objects of the current pair */
+    protected long objectPos, objectEnd;
+
+    /** First object of the next pair */
+    protected long nextObject;
+
+    /** Subject of the next pair */
+    protected long nextSubject;
+
+    protected TripleIds(long s, long p, long o) {
+      this.s = s;
+      this.p = p;
+      this.o = o;
+      if (s < 0 || p < 0 || o < 0 || s > subjectCount() || p > predicates.count || o > objectCount()) return;
+      if (s == 0) {
+        pairEnd = pairs;
+        nextSubject = 1;
+        return;
+      }
+      pair = s == 1 ? 0 : bitmapY.select(s - 1) + 1;
+      pairEnd = bitmapY.select(s) + 1;
+      if (p != 0) {
+        long found = seqY.search(pair, pairEnd, p);
+        if (found < 0) {
+          pairEnd = pair;
+          return;
+        }
+        pair = found;
+        pairEnd = found + 1;
+      }
+      nextSubject = s;
+      nextObject = pair == 0 ? 0 : bitmapZ.select(pair) + 1;
+    }
+
+    /** Moves to the next triple, returns FALSE if there is none */
+    public boolean next() {
+      while (objectPos >= objectEnd) {
+        if (pair >= pairEnd) return (false);
+        predicate = seqY.get(pair);
+        subject = nextSubject;
+        if (bitmapY.get(pair)) nextSubject++;
+        long start = nextObject;
+        nextObject = bitmapZ.nextSetBit(start) + 1;
+        pair++;
+        if (p != 0 && predicate != p) continue;
+        if (o == 0) {
+          objectPos = start;
+          objectEnd = nextObject;
+        } else {
+          long found = seqZ.search(start, nextObject, o);
+          if (found < 0) continue;
+          objectPos = found;
+          objectEnd = found + 1;
+        }
+      }
+      object = seqZ.get(objectPos++);
+      return (true);
+    }
+  }
+
+  /** Returns the triples that match the pattern of ids (0 for a variable) */
+  public TripleIds search(long s, long p, long o) {
+    return (new TripleIds(s, p, o));
+  }
+
+  /**
+   * Returns the triples that match the pattern of terms (NULL for a
+   * variable), as {subject, predicate, object}. The terms are the ones of
+   * HDT: IRIs without angle brackets, literals as in N-Triples.
+   */
+  public Iterator<String[]> search(CharSequence s, CharSequence p, CharSequence o) {
+    long sid = s == null ? 0 : subjectId(s);
+    long pid = p == null ? 0 : predicateId(p);
+    long oid = o == null ? 0 : objectId(o);
+    final TripleIds ids = (s != null && sid == 0) || (p != null && pid == 0) || (o != null && oid == 0) ? search(-1, -1, -1) : search(sid, pid, oid);
+    return (new Iterator<String[]>() {
+
+      /** TRUE if the cursor is at a triple that has not been returned */
+      boolean ready = false;
+
+      @Override
+      public boolean hasNext() {
+        if (!ready) ready = ids.next();
+        return (ready);
+      }
+
+      @Override
+      public String[] next() {
+        if (!hasNext()) throw new NoSuchElementException();
+        ready = false;
+        return (new String[] { subject(ids.subject), predicate(ids.predicate), object(ids.object) });
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException();
+      }
+    });
+  }
+
+  /** Closes the file (the mappings stay valid until they are garbage collected) */
+  @Override
+  public void close() throws IOException {
+    file.close();
+  }
+
+  @Override
+  public String toString() {
+    return ("HDT file of " + triples + " triples, " + subjectCount() + " subjects, " + predicates.count + " predicates, " + objectCount() + " objects");
+  }
+
+  /** Prints the triples that match a pattern: HDTFile file subject predicate object (in N-Triples syntax, ? for a variable) */
+  public static void main(String[] args) throws Exception {
+    if (args.length != 4) {
+      System.err.println("HDTFile file subject predicate object\n  (terms in N-Triples syntax, ? for a variable)");
+      return;
+    }
+    HDTFile hdt = new HDTFile(new File(args[0]));
+    try {
+      System.err.println(hdt);
+      long time = System.nanoTime();
+      long n = 0;
+      for (Iterator<String[]> i = hdt.search(term(args[1]), term(args[2]), term(args[3])); i.hasNext(); n++) {
+        String[] triple = i.next();
+        System.out.println(ntriples(triple[0]) + " " + ntriples(triple[1]) + " " + ntriples(triple[2]) + " .");
+      }
+      System.err.println(n + " triples in " + (System.nanoTime() - time) / 1000000 + " ms");
+    } finally {
+      hdt.close();
+    }
+  }
+
+  /** Returns the HDT term of a term in N-Triples syntax, NULL for a variable */
+  protected static String term(String term) {
+    if (term.startsWith("?")) return (null);
+    if (term.startsWith("<") && term.endsWith(">")) return (term.substring(1, term.length() - 1));
+    return (term);
+  }
+
+  /** Returns the HDT term in N-Triples syntax */
+  protected static String ntriples(String term) {
+    return (term.startsWith("\"") || term.startsWith("_:") ? term : "<" + term + ">");
+  }
+}
@@ -0,0 +1,574 @@
+package converters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.zip.CheckedOutputStream;
+
+import javatools.administrative.Announce;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Writes triples into an HDT file (see HDTFile). The terms (in N-Triples
+ * syntax, IRIs lose their angle brackets in HDT) are collected in
+ * DistinctSets by their role, and the triples go to a temporary file.
+ * write() then builds the dictionary from the sorted terms, looks up the ids
+ * of the terms of every triple in the dictionary, sorts the triples by their
+ * ids in an ExternalSorter (which drops duplicates) and writes them as bitmap
+ * triples. So the writer needs about the given memory and the rest goes to
+ * temporary files in the folder.
+ *
+ * The basic usage is
+ *    HDTWriter w = new HDTWriter(folder, 256L << 20, 1, false);
+ *    w.add("<http://example.org/Elvis>", "<http://example.org/livesIn>", "<http://example.org/Graceland>");
+ *    w.write(new File("yago.hdt"));
+ *    w.close();
+ */
+public class HDTWriter implements Closeable {
+
+  /** Folder for temporary files */
+  protected final File folder;
+
+  /** The subjects, predicates and objects */
+  protected final DistinctSet subjects, predicates, objects;
+
+  /** The memory for sorting the triples */
+  protected final long memory;
+
+  /** Writer threads of the sorters */
+  protected final int threads;
+
+  /** TRUE if the sorters keep their memory off the heap */
+  protected final boolean offHeap;
+
+  /** The triples as they were added */
+  protected final File triples;
+
+  /** Writes the triples */
+  protected OutputStream triplesOut;
+
+  /** Number of triples that were added */
+  protected long added = 0;
+
+  /** UTF-8 bytes of the terms of a triple */
+  protected final Utf8Buffer subject = new Utf8Buffer(), predicate = new Utf8Buffer(), object = new Utf8Buffer();
+
+  /** Number of subjects, objects (both with the shared terms) and predicates in the dictionary */
+  protected long subjectCount, objectCount, predicateCount;
+
+  /** Creates a writer that uses about memory bytes (off the heap if offHeap is TRUE) and keeps temporary files in folder */
+  public HDTWriter(File folder, long memory, int threads, boolean offHeap) throws IOException {
+    this.folder = folder;
+    this.memory = memory;
+    this.threads = threads;
+    this.offHeap = offHeap;
+    // The sets share the memory, the sorter of the triples comes later
+    subjects = new DistinctSet(folder, Math.max(1, memory / 3), threads, offHeap);
+    predicates = new DistinctSet(folder, Math.max(1, memory / 6), threads, offHeap);
+    objects = new DistinctSet(folder, Math.max(1, memory / 3), threads, offHeap);
+    triples = File.createTempFile("hdt", ".triples", folder);
+    triplesOut = new BufferedOutputStream(new FileOutputStream(triples), 1 << 16);
+  }
+
+  /** Writes a variable-length number as HDT does (7 bits per byte, the high bit marks the last byte), returns the number of bytes */
+  protected static int writeVByte(OutputStream out, long n) throws IOException {
+    int bytes = 1;
+    while (n > 0x7F) {
+      out.write((int) (n & 0x7F));
+      n >>>= 7;
+      bytes++;
+    }
+    out.write((int) n | 0x80);
+    return (bytes);
+  }
+
+  /** Reads a number written by writeVByte() */
+  protected static int readVByte(InputStream in) throws IOException {
+    int result = 0;
+    for (int shift = 0;; shift += 7) {
+      int b = in.read();
+      if (b < 0) throw new EOFException();
+      result |= (b & 0x7F) << shift;
+      if ((b & 0x80) != 0) return (result);
+    }
+  }
+
+  /** Returns the number of bits of n */
+  protected static int bits(long n) {
+    return (64 - Long.numberOfLeadingZeros(n));
+  }
+
+  /** Adds a triple of terms in N-Triples syntax */
+  public void add(CharSequence s, CharSequence p, CharSequence o) throws IOException {
+    subject.set(s);
+    predicate.set(p);
+    object.set(o);
+    add(subject.bytes, 0, subject.length, predicate.bytes, 0, predicate.length, object.bytes, 0, object.length);
+  }
+
+  /** Adds a triple of terms in N-Triples syntax as UTF-8 bytes s[sStart..sEnd), p[pStart..pEnd), o[oStart..oEnd) */
+  public void add(byte[] s, int sStart, int sEnd, byte[] p, int pStart, int pEnd, byte[] o, int oStart, int oEnd) throws IOException {
+    if (triplesOut == null) throw new IllegalStateException("Triples can be added to an HDTWriter only before write()");
+    // The terms of HDT are IRIs without angle brackets
+    if (s[sStart] == '<') {
+      sStart++;
+      sEnd--;
+    }
+    if (p[pStart] == '<') {
+      pStart++;
+      pEnd--;
+    }
+    if (o[oStart] == '<') {
+      oStart++;
+      oEnd--;
+    }
+    subjects.add(s, sStart, sEnd);
+    predicates.add(p, pStart, pEnd);
+    objects.add(o, oStart, oEnd);
+    writeVByte(triplesOut, sEnd - sStart);
+    triplesOut.write(s, sStart, sEnd - sStart);
+    writeVByte(triplesOut, pEnd - pStart);
+    triplesOut.write(p, pStart, pEnd - pStart);
+    writeVByte(triplesOut, oEnd - oStart);
+    triplesOut.write(o, oStart, oEnd - oStart);
+    added++;
+  }
+
+  /** Returns the number of triples that were added (with duplicates) */
+  public long added() {
+    return (added);
+  }
+
+  /** Writes control information (see HDTFile) */
+  protected static void writeControlInformation(OutputStream file, int type, String format, String properties) throws IOException {
+    HDTChecksum crc = HDTChecksum.crc16();
+    OutputStream out = new CheckedOutputStream(file, crc);
+    out.write(HDTFile.COOKIE.getBytes("US-ASCII"));
+    out.write(type);
+    out.write(format.getBytes("US-ASCII"));
+    out.write(0);
+    out.write(properties.getBytes("US-ASCII"));
+    out.write(0);
+    crc.writeTo(file);
+  }
+
+  /** Writes numbers of the same number of bits (a bitmap if it is 1) into a temporary file, in words of 64 bits */
+  protected class BitsWriter implements Closeable {
+
+    /** Bits per number */
+    protected final int width;
+
+    /** The words */
+    protected final File data;
+
+    /** Writes the words */
+    protected final OutputStream out;
+
+    /** Number of numbers */
+    protected long count = 0;
+
+    /** The current word */
+    protected long word = 0;
+
+    /** Number of bits of the current word in use */
+    protected int used = 0;
+
+    protected BitsWriter(int width) throws IOException {
+      this.width = width;
+      data = File.createTempFile("hdt", ".bits", folder);
+      out = new BufferedOutputStream(new FileOutputStream(data), 1 << 16);
+    }
+
+    /** Appends a number */
+    public void add(long n) throws IOException {
+      word |= n << used;
+      used += width;
+      if (used >= 64) {
+        writeWord(word, 8);
+        used -= 64;
+        // The bits of n that did not fit into the word
+        word = used == 0 ? 0 : n >>> (width - used);
+      }
+      count++;
+    }
+
+    /** Writes the lowest bytes of the word (little-endian) */
+    protected void writeWord(long w, int bytes) throws IOException {
+      for (int i = 0; i < bytes; i++)
+        out.write((int) (w >>> (i * 8)));
+    }
+
+    /** Writes the words and the bytes in use of the last word, with their CRC32C */
+    protected void writeData(OutputStream file) throws IOException {
+      if (used > 0) writeWord(word, (used + 7) / 8);
+      out.close();
+      HDTChecksum crc = HDTChecksum.crc32c();
+      copy(data, new CheckedOutputStream(file, crc));
+      crc.writeTo(file);
+    }
+
+    /** Writes the numbers as a bitmap (see HDTFile) */
+    public void writeBitmap(OutputStream file) throws IOException {
+      HDTChecksum crc = HDTChecksum.crc8();
+      OutputStream header = new CheckedOutputStream(file, crc);
+      header.write(HDTFile.TYPE_BITMAP);
+      writeVByte(header, count);
+      crc.writeTo(file);
+      writeData(file);
+    }
+
+    /** Writes the numbers as a sequence (see HDTFile) */
+    public void writeSequence(OutputStream file) throws IOException {
+      HDTChecksum crc = HDTChecksum.crc8();
+      OutputStream header = new CheckedOutputStream(file, crc);
+      header.write(HDTFile.TYPE_SEQUENCE);
+      header.write(width);
+      writeVByte(header, count);
+      crc.writeTo(file);
+      writeData(file);
+    }
+
+    /** Deletes the temporary file */
+    @Override
+    public void close() throws IOException {
+      out.close();
+      data.delete();
+    }
+  }
+
+  /** Front-codes the terms of a section into a temporary file */
+  protected class SectionWriter implements Closeable {
+
+    /** The front-coded terms */
+    protected final File data;
+
+    /** Writes the data */
+    protected final OutputStream out;
+
+    /** Number of terms */
+    protected long count = 0;
+
+    /** Number of bytes written */
+    protected long length = 0;
+
+    /** Offsets of the blocks */
+    protected long[] offsets = new long[64];
+
+    /** The last term */
+    protected byte[] last = new byte[64];
+
+    /** Length of the last term */
+    protected int lastLength = 0;
+
+    protected SectionWriter() throws IOException {
+      data = File.createTempFile("hdt", ".section", folder);
+      out = new BufferedOutputStream(new FileOutputStream(data), 1 << 16);
+    }
+
+    /** Adds the next term (in sorted order) */
+    public void add(byte[] term, int termLength) throws IOException {
+      int prefix = 0;
+      if (count % HDTFile.BLOCK_SIZE == 0) {
+        int block = (int) (count / HDTFile.BLOCK_SIZE);
+        if (block == offsets.length) offsets = Arrays.copyOf(offsets, block * 2);
+        offsets[block] = length;
+      } else {
+        int n = Math.min(termLength, lastLength);
+        while (prefix < n && term[prefix] == last[prefix])
+          prefix++;
+        length += writeVByte(out, prefix);
+      }
+      out.write(term, prefix, termLength - prefix);
+      out.write(0);
+      length += termLength - prefix + 1;
+      if (last.length < termLength) last = new byte[termLength * 2];
+      System.arraycopy(term, 0, last, 0, termLength);
+      lastLength = termLength;
+      count++;
+    }
+
+    /** Writes the section (see HDTFile) */
+    public void writeTo(OutputStream file) throws IOException {
+      out.close();
+      HDTChecksum crc = HDTChecksum.crc8();
+      OutputStream header = new CheckedOutputStream(file, crc);
+      header.write(HDTFile.TYPE_PFC);
+      writeVByte(header, count);
+      writeVByte(header, length);
+      writeVByte(header, HDTFile.BLOCK_SIZE);
+      crc.writeTo(file);
+      BitsWriter blocks = new BitsWriter(bits(length));
+      try {
+        for (int i = 0; i < (count + HDTFile.BLOCK_SIZE - 1) / HDTFile.BLOCK_SIZE; i++)
+          blocks.add(offsets[i]);
+        blocks.add(length);
+        blocks.writeSequence(file);
+      } finally {
+        blocks.close();
+      }
+      crc = HDTChecksum.crc32c();
+      copy(data, new CheckedOutputStream(file, crc));
+      crc.writeTo(file);
+    }
+
+    /** Deletes the temporary file */
+    @Override
+    public void close() throws IOException {
+      out.close();
+      data.delete();
+    }
+  }
+
+  /** Appends the file to out */
+  protected static void copy(File file, OutputStream out) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] buffer = new byte[1 << 16];
+      for (int n = in.read(buffer); n >= 0; n = in.read(buffer))
+        out.write(buffer, 0, n);
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Writes the rest of the sorted terms to the section */
+  protected static void drain(ExternalSorter.Record record, Iterator<ExternalSorter.Record> records, SectionWriter section) throws IOException {
+    for (; record != null; record = records.hasNext() ? records.next() : null)
+      section.add(record.bytes(), record.keyLength());
+  }
+
+  /** Writes the dictionary: the subjects and objects are merged into SHARED, SUBJECTS and OBJECTS */
+  protected void writeDictionary(OutputStream file) throws IOException {
+    SectionWriter shared = new SectionWriter(), subjectsOnly = new SectionWriter(), objectsOnly = new SectionWriter(), predicateSection = new SectionWriter();
+    try {
+      Iterator<ExternalSorter.Record> s = subjects.records(), o = objects.records();
+      ExternalSorter.Record sRecord = s.hasNext() ? s.next() : null, oRecord = o.hasNext() ? o.next() : null;
+      while (sRecord != null && oRecord != null) {
+        int c = ExternalSorter.compare(sRecord.bytes(), 0, sRecord.keyLength(), oRecord.bytes(), 0, oRecord.keyLength());
+        if (c == 0) shared.add(sRecord.bytes(), sRecord.keyLength());
+        else if (c < 0) subjectsOnly.add(sRecord.bytes(), sRecord.keyLength());
+        else objectsOnly.add(oRecord.bytes(), oRecord.keyLength());
+        if (c <= 0) sRecord = s.hasNext() ? s.next() : null;
+        if (c >= 0) oRecord = o.hasNext() ? o.next() : null;
+      }
+      drain(sRecord, s, subjectsOnly);
+      drain(oRecord, o, objectsOnly);
+      Iterator<ExternalSorter.Record> p = predicates.records();
+      drain(p.hasNext() ? p.next() : null, p, predicateSection);
+      Announce.message("Dictionary:", shared.count, "shared terms,", subjectsOnly.count, "subjects,", objectsOnly.count, "objects,", predicateSection.count,
+          "predicates");
+      subjectCount = shared.count + subjectsOnly.count;
+      objectCount = shared.count + objectsOnly.count;
+      predicateCount = predicateSection.count;
+      long elements = shared.count + subjectsOnly.count + objectsOnly.count + predicateSection.count;
+      long size = shared.length + subjectsOnly.length + objectsOnly.length + predicateSection.length;
+      writeControlInformation(file, HDTFile.DICTIONARY, HDTFile.DICTIONARY_FOUR, "mapping=2;sizeStrings=" + size + ";elements=" + elements + ";");
+      shared.writeTo(file);
+      subjectsOnly.writeTo(file);
+      predicateSection.writeTo(file);
+      objectsOnly.writeTo(file);
+    } finally {
+      shared.close();
+      subjectsOnly.close();
+      objectsOnly.close();
+      predicateSection.close();
+      subjects.close();
+      predicates.close();
+      objects.close();
+    }
+  }
+
+  /** Reads a term of the triples file into buffer, returns its length */
+  protected static int readTerm(DataInputStream in, byte[][] buffer) throws IOException {
+    int length = readVByte(in);
+    if (buffer[0].length < length) buffer[0] = new byte[length * 2];
+    in.readFully(buffer[0], 0, length);
+    return (length);
+  }
+
+  /** Puts the int into the bytes at the position (big-endian) */
+  protected static void putInt(byte[] bytes, int pos, long n) {
+    if (n > Integer.MAX_VALUE) throw new IllegalStateException("Too many terms for an HDT file: " + n);
+    bytes[pos] = (byte) (n >>> 24);
+    bytes[pos + 1] = (byte) (n >>> 16);
+    bytes[pos + 2] = (byte) (n >>> 8);
+    bytes[pos + 3] = (byte) n;
+  }
+
+  /** Returns the big-endian int at the position */
+  protected static int getInt(byte[] bytes, int pos) {
+    return (((bytes[pos] & 0xFF) << 24) | ((bytes[pos + 1] & 0xFF) << 16) | ((bytes[pos + 2] & 0xFF) << 8) | (bytes[pos + 3] & 0xFF));
+  }
+
+  /** Looks up the ids of the triples in the dictionary file and sorts them */
+  protected ExternalSorter sortIds(File file) throws IOException {
+    ExternalSorter sorter = new ExternalSorter(folder, memory, threads, offHeap).distinct();
+    HDTFile dictionary = new HDTFile(file, true);
+    DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(triples), 1 << 16));
+    try {
+      byte[][] term = { new byte[256] };
+      byte[] key = new byte[12];
+      Announce.progressStart("Looking up the ids of " + added + " triples", Math.max(1, added));
+      for (long i = 0; i < added; i++) {
+        int length = readTerm(in, term);
+        long s = dictionary.shared.locate(term[0], length);
+        if (s == 0) s = dictionary.shared.count + dictionary.subjects.locate(term[0], length);
+        putInt(key, 0, s);
+        length = readTerm(in, term);
+        putInt(key, 4, dictionary.predicates.locate(term[0], length));
+        length = readTerm(in, term);
+        long o = dictionary.shared.locate(term[0], length);
+        if (o == 0) o = dictionary.shared.count + dictionary.objects.locate(term[0], length);
+        putInt(key, 8, o);
+        sorter.add(key, 0, 12, DistinctSet.EMPTY, 0, 0);
+        if (i % 4096 == 0) Announce.progressAt(i);
+      }
+      Announce.progressDone();
+    } catch (IOException e) {
+      sorter.close();
+      throw e;
+    } finally {
+      in.close();
+      dictionary.close();
+    }
+    return (sorter);
+  }
+
+  /** Collects the sorted triples as bitmap triples (see HDTFile) */
+  protected class TriplesWriter implements Closeable {
+
+    /** The ends of the subjects and of the pairs */
+    protected final BitsWriter bitmapY, bitmapZ;
+
+    /** The predicates of the pairs and the objects of the triples */
+    protected final BitsWriter seqY, seqZ;
+
+    /** Number of triples */
+    protected long count = 0;
+
+    /** The last triple */
+    protected int lastS, lastP;
+
+    protected TriplesWriter() throws IOException {
+      bitmapY = new BitsWriter(1);
+      bitmapZ = new BitsWriter(1);
+      seqY = new BitsWriter(bits(predicateCount));
+      seqZ = new BitsWriter(bits(objectCount));
+    }
+
+    /** Adds the next triple in the order of the ids */
+    public void add(int s, int p, int o) throws IOException {
+      if (count > 0) {
+        // The bits of the last triple: does its pair or its subject end here?
+        boolean newSubject = s != lastS;
+        boolean newPair = newSubject || p != lastP;
+        bitmapZ.add(newPair ? 1 : 0);
+        if (newPair) bitmapY.add(newSubject ? 1 : 0);
+      }
+      if (count == 0 || s != lastS || p != lastP) seqY.add(p);
+      seqZ.add(o);
+      lastS = s;
+      lastP = p;
+      count++;
+    }
+
+    /** Writes the triples */
+    public void writeTo(OutputStream file) throws IOException {
+      if (count > 0) {
+        bitmapZ.add(1);
+        bitmapY.add(1);
+      }
+      writeControlInformation(file, HDTFile.TRIPLES, HDTFile.TRIPLES_BITMAP, "order=1;");
+      bitmapY.writeBitmap(file);
+      bitmapZ.writeBitmap(file);
+      seqY.writeSequence(file);
+      seqZ.writeSequence(file);
+    }
+
+    /** Deletes the temporary files */
+    @Override
+    public void close() throws IOException {
+      bitmapY.close();
+      bitmapZ.close();
+      seqY.close();
+      seqZ.close();
+    }
+  }
+
+  /** Writes the header: the statistics of the dataset in N-Triples */
+  protected void writeHeader(OutputStream file, long count) throws IOException {
+    String base = "<" + RDFSConverter.ns + "> ";
+    String header = base + "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://purl.org/HDT/hdt#Dataset> .\n" + base
+        + "<http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <http://rdfs.org/ns/void#Dataset> .\n" + base + "<http://rdfs.org/ns/void#triples> \"" + count
+        + "\" .\n" + base + "<http://rdfs.org/ns/void#properties> \"" + predicateCount + "\" .\n" + base + "<http://rdfs.org/ns/void#distinctSubjects> \""
+        + subjectCount + "\" .\n" + base + "<http://rdfs.org/ns/void#distinctObjects> \"" + objectCount + "\" .\n";
+    byte[] bytes = header.getBytes("US-ASCII");
+    writeControlInformation(file, HDTFile.HEADER, HDTFile.HEADER_NTRIPLES, "length=" + bytes.length + ";");
+    file.write(bytes);
+  }
+
+  /** Writes the HDT file, returns the number of distinct triples */
+  public long write(File file) throws IOException {
+    triplesOut.close();
+    triplesOut = null;
+    File dictionary = File.createTempFile("hdt", ".dictionary", folder);
+    try {
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(dictionary), 1 << 16);
+      try {
+        writeDictionary(out);
+      } finally {
+        out.close();
+      }
+      TriplesWriter triplesWriter = new TriplesWriter();
+      try {
+        ExternalSorter sorter = sortIds(dictionary);
+        try {
+          for (ExternalSorter.Record record : sorter.sort()) {
+            byte[] bytes = record.bytes();
+            triplesWriter.add(getInt(bytes, 0), getInt(bytes, 4), getInt(bytes, 8));
+          }
+        } finally {
+          sorter.close();
+        }
+        out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        try {
+          writeControlInformation(out, HDTFile.GLOBAL, HDTFile.HDT_V1, "");
+          writeHeader(out, triplesWriter.count);
+          copy(dictionary, out);
+          triplesWriter.writeTo(out);
+        } finally {
+          out.close();
+        }
+        return (triplesWriter.count);
+      } finally {
+        triplesWriter.close();
+      }
+    } finally {
+      dictionary.delete();
+    }
+  }
+
+  /** Deletes the temporary files */
+  @Override
+  public void close() throws IOException {
+    if (triplesOut != null) triplesOut.close();
+    triples.delete();
+    subjects.close();
+    predicates.close();
+    objects.close();
+  }
+}
@@ -0,0 +1,186 @@
+package converters;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * The manifest of an incremental conversion: it records, for every fact file
+ * that has been converted, its size, its modification time, its CRC32 checksum
+ * and the artefact that the conversion produced from it (a part file, a
+ * relation of a database). A fact file has changed if its size or its
+ * checksum differ from the manifest; the checksum is only computed if the
+ * size is the same but the modification time is not. The manifest also
+ * records the settings of the conversion; if they change, all fact files count
+ * as changed. The manifest is a tab-separated text file.
+ */
+public class InputManifest {
+
+  /** The manifest file */
+  protected final File file;
+
+  /** The settings of the conversion */
+  protected String settings = "";
+
+  /** The entries by file name */
+  protected final Map<String, Entry> entries = new TreeMap<String, Entry>();
+
+  /** What the manifest knows about a fact file */
+  public static class Entry {
+
+    /** Size in bytes */
+    public long size;
+
+    /** Modification time */
+    public long lastModified;
+
+    /** CRC32 checksum */
+    public long checksum;
+
+    /** The artefact produced from the file */
+    public String artefact;
+  }
+
+  /** Loads the manifest from the file (if it exists) */
+  public InputManifest(File file) throws IOException {
+    this.file = file;
+    if (!file.exists()) return;
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+    try {
+      String line = in.readLine();
+      if (line == null || !line.startsWith("#settings\t")) throw new IOException(file + " is not a manifest");
+      settings = line.substring(10);
+      while ((line = in.readLine()) != null) {
+        String[] split = line.split("\t", -1);
+        if (split.length != 5) throw new IOException(file + " has a malformed line: " + line);
+        Entry entry = new Entry();
+        entry.size = Long.parseLong(split[1]);
+        entry.lastModified = Long.parseLong(split[2]);
+        entry.checksum = Long.parseLong(split[3], 16);
+        entry.artefact = split[4];
+        entries.put(split[0], entry);
+      }
+    } finally {
+      in.close();
+    }
+  }
+
+  /** Returns TRUE if the manifest knows no files */
+  public boolean isEmpty() {
+    return (entries.isEmpty());
+  }
+
+  /**
+   * Sets the settings of the conversion. If they differ from the settings of
+   * the manifest, the manifest forgets all files. Returns TRUE if the
+   * settings are the same.
+   */
+  public boolean setSettings(String newSettings) {
+    if (settings.equals(newSettings)) return (true);
+    settings = newSettings;
+    entries.clear();
+    return (false);
+  }
+
+  /** Returns TRUE if the file is not in the manifest or if it has changed */
+  public boolean changed(File input) throws IOException {
+    Entry entry = entries.get(input.getName());
+    if (entry == null || entry.size != input.length()) return (true);
+    if (entry.lastModified == input.lastModified()) return (false);
+    if (entry.checksum != checksum(input)) return (true);
+    // Touched, but not changed
+    entry.lastModified = input.lastModified();
+    return (false);
+  }
+
+  /** Records a file and the artefact produced from it */
+  public void put(File input, String artefact) throws IOException {
+    Entry entry = new Entry();
+    entry.size = input.length();
+    entry.lastModified = input.lastModified();
+    entry.checksum = checksum(input);
+    entry.artefact = artefact;
+    entries.put(input.getName(), entry);
+  }
+
+  /** Returns the entry of a file name (or NULL) */
+  public Entry get(String name) {
+    return (entries.get(name));
+  }
+
+  /** Forgets a file */
+  public void remove(String name) {
+    entries.remove(name);
+  }
+
+  /** Forgets all files */
+  public void clear() {
+    entries.clear();
+  }
+
+  /** Returns the names of the files that are in the manifest, but not among the given files */
+  public List<String> removed(List<File> files) {
+    List<String> result = new ArrayList<String>(entries.keySet());
+    for (File f : files)
+      result.remove(f.getName());
+    return (result);
+  }
+
+  /** Writes the manifest */
+  public void save() throws IOException {
+    File temp = new File(file.getPath() + ".tmp");
+    FileOutputStream stream = new FileOutputStream(temp);
+    Writer out = new OutputStreamWriter(stream, "UTF-8");
+    out.write("#settings\t" + settings + "\n");
+    for (Map.Entry<String, Entry> e : entries.entrySet()) {
+      Entry entry = e.getValue();
+      out.write(e.getKey() + "\t" + entry.size + "\t" + entry.lastModified + "\t" + Long.toHexString(entry.checksum) + "\t" + entry.artefact + "\n");
+    }
+    out.flush();
+    stream.getFD().sync();
+    out.close();
+    // Replaces the old manifest in one step, so that a crash leaves either one
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Computes the CRC32 checksum of a file */
+  public static long checksum(File input) throws IOException {
+    CRC32 crc = new CRC32();
+    FileInputStream in = new FileInputStream(input);
+    try {
+      FileChannel channel = in.getChannel();
+      ByteBuffer buffer = ByteBuffer.allocate(1 << 20);
+      while (channel.read(buffer) != -1) {
+        crc.update(buffer.array(), 0, buffer.position());
+        buffer.clear();
+      }
+    } finally {
+      in.close();
+    }
+    return (crc.getValue());
+  }
+
+  @Override
+  public String toString() {
+    return ("Manifest " + file + " with " + entries.size() + " files");
+  }
+}
@@ -1,13 +1,21 @@
 package converters;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.Set;
 
 import javatools.administrative.Announce;
 import javatools.administrative.Parameters;
 import javatools.datatypes.FinalMap;
-import javatools.filehandlers.FileLines;
-import javatools.parsers.Char;
 import basics.Basics;
 import basics.Config;
 
@@ -21,6 +29,7 @@ import com.hp.hpl.jena.vocabulary.RDF;
 import com.hp.hpl.jena.vocabulary.RDFS;
 
 import converters.RDFSConverter.RDFSDatatype;
+import converters.facts.Fact;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -30,6 +39,11 @@ import converters.RDFSConverter.RDFSDatatype;
  * 
  * This class exports YAGO into Jena.
  * 
+ * The TDB directory gets a version file, which is written when the loading
+ * starts and when it ends, so that a SPARQLprocessor on the directory knows
+ * that its cached results are outdated. An incremental conversion keeps the
+ * previous data only if its loading ended.
+ * 
  * @author Fabian M. Suchanek
  */
 public class JenaConverter extends Converter {
@@ -38,6 +52,42 @@ public class JenaConverter extends Converter {
   public static FinalMap<String, Property> specialRelationNames = new FinalMap<String, Property>("means", RDFS.label, "type", RDF.type, "subclassOf",
       RDFS.subClassOf, "subpropertyOf", RDFS.subPropertyOf, "hasDomain", RDFS.domain, "hasRange", RDFS.range);
 
+  /** The name of the version file in the TDB directory */
+  public static final String VERSION = "yago.version";
+
+  /** Writes a new version to the version file of the TDB directory */
+  public static void writeVersion(File directory, String state) throws IOException {
+    File file = new File(directory, VERSION);
+    File temp = new File(directory, VERSION + ".tmp");
+    FileOutputStream stream = new FileOutputStream(temp);
+    Writer out = new OutputStreamWriter(stream, "UTF-8");
+    out.write(state + " " + System.currentTimeMillis() + " " + System.nanoTime() + "\n");
+    out.flush();
+    stream.getFD().sync();
+    out.close();
+    Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /** Returns the version in the version file of the TDB directory ("" if there is none) */
+  public static String readVersion(File file) {
+    try {
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+      try {
+        String version = in.readLine();
+        return (version == null ? "" : version);
+      } finally {
+        in.close();
+      }
+    } catch (IOException e) {
+      return ("");
+    }
+  }
+
+  /** TRUE if the version file of the TDB directory says that the loading ended */
+  public static boolean isLoaded(File directory) {
+    return (readVersion(new File(directory, VERSION)).startsWith("loaded "));
+  }
+
   /** Converts all facts to N3 */
   public void run() throws IOException {
     //test=true;
@@ -54,29 +104,50 @@ public class JenaConverter extends Converter {
     File[] files = output.listFiles();
     Announce.doing("Connecting to Jena TDB database", output);
 
-    if (files != null) {
-      Announce.progressStart("Deleting previous data", files.length);
-      for (File f : files) {
-        f.delete();
-        Announce.progressStep();
-      }
-      Announce.progressDone();
+    // In an incremental conversion, replace only the relations that changed
+    Set<String> changedRelations = null;
+    if (incremental && new File(output, "fixed.opt").exists()) {
+      if (isLoaded(output)) changedRelations = changedRelations();
+      else Announce.message("The previous loading did not end, loading all facts");
+    }
+    if (changedRelations != null) {
+      Announce.message("Keeping the previous data");
     } else {
-      output.mkdir();
+      if (files != null) {
+        Announce.progressStart("Deleting previous data", files.length);
+        for (File f : files) {
+          f.delete();
+          Announce.progressStep();
+        }
+        Announce.progressDone();
+      } else {
+        output.mkdir();
+      }
+      // The manifest does not describe the data any more
+      if (incremental) {
+        manifest().clear();
+        manifest().save();
+      }
     }
     // Create a special file to set the indexing strategy
     new File(output, "fixed.opt").createNewFile();
+    writeVersion(output, "loading");
     Model model = TDBFactory.createModel(output.getPath());
-    model.removeAll();
+    if (changedRelations == null) model.removeAll();
     model.setNsPrefixes(PrefixMapping.Extended);
     model.setNsPrefix("", RDFSConverter.ns);
     Announce.done();
     Parameters.add("jena", output.getPath());
     Announce.doing("Loading facts into Jena TDB database");
     //for (File inputFile : new PeekIterator.ElementaryPeekIterator<File>(new File("c:\\Fabian\\data\\yago\\data\\fact\\type.tsv"))) {//.listFiles()) {
+    Set<String> removedRelations = new HashSet<String>();
     for (File inputFile : yagoFolder.listFiles()) {  
       String relation = relationForFactFile(inputFile);
       if (relation == null || relation.equals("isCalled") || relation.equals("during")) continue;
+      if (changedRelations != null) {
+        if (!changedRelations.contains(relation)) continue;
+        if (removedRelations.add(relation)) model.removeAll(null, propertyFor(model, relation), null);
+      }
       RDFSDatatype objectType = RDFSConverter.rdfsTypeforYagoClass(Basics.range(relation));
       if (RDFSConverter.rdfsTypeforYagoClass(Basics.domain(relation)) != RDFSDatatype.rRESOURCE && objectType != RDFSDatatype.rRESOURCE) {
         continue;
@@ -86,18 +157,16 @@ public class JenaConverter extends Converter {
         inverted = true;
         objectType = RDFSConverter.rdfsTypeforYagoClass(Basics.domain(relation));
       }
-      Property relationName = specialRelationNames.containsKey(relation) ? specialRelationNames.get(relation) : model.createProperty(RDFSConverter.ns
-          + relation);
+      Property relationName = propertyFor(model, relation);
       int counter = 0;
-      for (String l : new FileLines(inputFile, "Parsing " + inputFile.getName())) {
+      for (Fact fact : readFacts(inputFile, "Parsing " + inputFile.getName())) {
         if (test && counter++ > 10) {
           Announce.progressDone();
           break;
         }
-        String[] split = l.split("\t");
-        if (split.length != 3) continue;
-        String arg1 = Char.decodeBackslash(split[inverted ? 2 : 1]).replace('\\', '_');
-        String arg2 = Char.decodeBackslash(split[inverted ? 1 : 2]).replace('\\', '_');
+        if (fact.size() != 3) continue;
+        String arg1 = Codec.decodeBackslash(fact.get(inverted ? 2 : 1)).toString().replace('\\', '_');
+        String arg2 = Codec.decodeBackslash(fact.get(inverted ? 1 : 2)).toString().replace('\\', '_');
         Resource subject = model.createResource(RDFSConverter.ns + arg1);
         RDFNode object = null;
         switch (objectType) {
@@ -120,12 +189,25 @@ public class JenaConverter extends Converter {
         model.add(subject, relationName, object);
       }
     }
+    // Relations whose fact files have all disappeared
+    if (changedRelations != null) {
+      for (String relation : changedRelations) {
+        if (!removedRelations.contains(relation)) model.removeAll(null, propertyFor(model, relation), null);
+      }
+    }
     Announce.doing("Closing model");
     model.close();
     Announce.done();
+    writeVersion(output, "loaded");
+    recordFactFiles();
     Announce.done();
   }
 
+  /** Returns the property of a relation */
+  protected static Property propertyFor(Model model, String relation) {
+    return (specialRelationNames.containsKey(relation) ? specialRelationNames.get(relation) : model.createProperty(RDFSConverter.ns + relation));
+  }
+
   @Override
   public String description() {
     return ("Load YAGO into a Jena TDB database\n      ----> use this option for SPARQL querying");
@@ -0,0 +1,109 @@
+package converters;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Counts latencies in buckets of microseconds that grow with the latency: 16
+ * buckets per power of two, so that a percentile is off by at most 1/16 (6%).
+ * Latencies below 32 microseconds are exact. Recording is lock-free, so the
+ * histogram can be used by several threads.
+ *
+ * The basic usage is
+ *    LatencyHistogram latencies = new LatencyHistogram();
+ *    long start = System.nanoTime();
+ *    ...
+ *    latencies.record(System.nanoTime() - start);
+ *    System.out.println(latencies); // "n=..., p50=... ms, ..."
+ */
+public class LatencyHistogram {
+
+  /** Bits of the buckets per power of two */
+  protected static final int SUB_BITS = 4;
+
+  /** Buckets per power of two */
+  protected static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+  /** The counts by bucket */
+  protected final AtomicLongArray counts = new AtomicLongArray((64 - SUB_BITS + 1) * SUB_BUCKETS);
+
+  /** Number of latencies */
+  protected final AtomicLong count = new AtomicLong();
+
+  /** Sum of the latencies in microseconds */
+  protected final AtomicLong sum = new AtomicLong();
+
+  /** The largest latency in microseconds */
+  protected final AtomicLong max = new AtomicLong();
+
+  /** Returns the bucket of a latency in microseconds */
+  protected static int bucket(long micros) {
+    if (micros < 2 * SUB_BUCKETS) return ((int) micros);
+    int exponent = 63 - Long.numberOfLeadingZeros(micros);
+    long mantissa = micros >>> (exponent - SUB_BITS);
+    return ((exponent - SUB_BITS + 1) * SUB_BUCKETS + (int) (mantissa - SUB_BUCKETS));
+  }
+
+  /** Returns the largest latency in microseconds of a bucket */
+  protected static long upperBound(int bucket) {
+    if (bucket < 2 * SUB_BUCKETS) return (bucket);
+    int exponent = bucket / SUB_BUCKETS + SUB_BITS - 1;
+    long mantissa = bucket % SUB_BUCKETS + SUB_BUCKETS;
+    return (((mantissa + 1) << (exponent - SUB_BITS)) - 1);
+  }
+
+  /** Records a latency in nanoseconds */
+  public void record(long nanos) {
+    long micros = Math.max(0, nanos / 1000);
+    counts.incrementAndGet(bucket(micros));
+    count.incrementAndGet();
+    sum.addAndGet(micros);
+    long m = max.get();
+    while (micros > m && !max.compareAndSet(m, micros))
+      m = max.get();
+  }
+
+  /** Returns the number of latencies */
+  public long count() {
+    return (count.get());
+  }
+
+  /** Returns the mean latency in milliseconds */
+  public double mean() {
+    long n = count.get();
+    return (n == 0 ? 0 : sum.get() / 1000.0 / n);
+  }
+
+  /** Returns the largest latency in milliseconds */
+  public double max() {
+    return (max.get() / 1000.0);
+  }
+
+  /**
+   * Returns the latency in milliseconds below which the given share (between
+   * 0 and 1) of the latencies are (as the upper bound of its bucket, but at
+   * most the largest latency)
+   */
+  public double percentile(double share) {
+    long n = count.get();
+    if (n == 0) return (0);
+    long rank = Math.max(1, (long) Math.ceil(share * n));
+    long seen = 0;
+    for (int i = 0; i < counts.length(); i++) {
+      seen += counts.get(i);
+      if (seen >= rank) return (Math.min(upperBound(i), max.get()) / 1000.0);
+    }
+    return (max());
+  }
+
+  @Override
+  public String toString() {
+    return (String.format("n=%d, mean=%.2f ms, p50=%.2f ms, p95=%.2f ms, p99=%.2f ms, max=%.2f ms", count(), mean(), percentile(0.5), percentile(0.95),
+        percentile(0.99), max()));
+  }
+}
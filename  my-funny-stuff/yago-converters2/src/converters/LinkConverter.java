@@ -0,0 +1,237 @@
+package converters;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javatools.administrative.Announce;
+import javatools.administrative.D;
+import converters.facts.BatchFactReader;
+import converters.facts.EntitySet;
+import converters.facts.Fact;
+import converters.facts.FactBatch;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * This class produces all links between YAGO and the Linked Data sets in one
+ * job: the owl:sameAs links to the individuals and classes of DBpedia (as the
+ * DBpediaLink) and to the individuals of GeoNames (as the GeoNamesLink). Each
+ * source file is read once, on the main thread, and its facts go in batches
+ * to the writer of its link file, which runs on a thread of its own. The
+ * DBpedia links are sorted and without duplicates; their entities are kept
+ * in DistinctSets, which take sortMemory bytes together and keep the rest in
+ * run files. The GeoNames links are written as they come, so nothing is
+ * kept in memory.
+ */
+public class LinkConverter extends Converter {
+
+  /** Number of facts per batch */
+  public static final int BATCH_SIZE = 1024;
+
+  /** Number of batches that can wait for a writer */
+  public static final int QUEUE_SIZE = 64;
+
+  /** The namespace of YAGO in the links */
+  public static final String YAGO = "http://yago-knowledge.org/resource/";
+
+  /** The link file of a source file */
+  protected abstract class LinkWriter implements Callable<Object> {
+
+    /** The source relation */
+    public final String relation;
+
+    /** The link file */
+    public final File output;
+
+    /** The batches of the source file */
+    public final BlockingQueue<FactBatch> queue = new ArrayBlockingQueue<FactBatch>(QUEUE_SIZE);
+
+    /** The current line */
+    protected final StringBuilder line = new StringBuilder(256);
+
+    /** The current entity */
+    protected final StringBuilder buffer = new StringBuilder();
+
+    protected LinkWriter(String relation, String output) {
+      this.relation = relation;
+      this.output = new File(outputFolder, output);
+    }
+
+    /** Handles the facts of the source file */
+    protected abstract void link(BatchFactReader facts, Writer out) throws IOException;
+
+    /** Finishes the link file */
+    protected void finish(Writer out) throws IOException {
+    }
+
+    /** Releases what the writer keeps (called for every writer at the end) */
+    protected void close() {
+    }
+
+    /** Returns the entity (with backslash codes) as a name in a URI */
+    protected CharSequence encode(CharSequence entity) {
+      return (Codec.encodeURIPathComponent(Codec.decodeBackslash(entity), buffer));
+    }
+
+    /** Writes the link between the YAGO name and the other URI (prefix + name) */
+    protected void writeLink(Writer out, CharSequence yagoName, String prefix, CharSequence name) throws IOException {
+      line.setLength(0);
+      line.append('<').append(YAGO).append(yagoName).append("> owl:sameAs <").append(prefix).append(name).append("> .\n");
+      Codec.write(out, line);
+    }
+
+    @Override
+    public Object call() throws Exception {
+      Writer out = new BufferedWriter(new FileWriter(output), 1 << 16);
+      try {
+        D.writeln(out, "@prefix owl:  <http://www.w3.org/2002/07/owl#> .");
+        FactBatch batch = queue.take();
+        // No progress bars here, Announce is not made for threads
+        BatchFactReader facts = new BatchFactReader(queue, batch);
+        link(facts, out);
+        facts.close();
+        finish(out);
+      } finally {
+        out.close();
+      }
+      return (null);
+    }
+  }
+
+  /** Links the YAGO entities of the first column to DBpedia, in sorted order */
+  protected class DBpediaLinkWriter extends LinkWriter {
+
+    /** The DBpedia namespace */
+    protected final String prefix;
+
+    /** The entities */
+    protected final EntitySet entities;
+
+    protected DBpediaLinkWriter(String relation, String output, String prefix, EntitySet entities) {
+      super(relation, output);
+      this.prefix = prefix;
+      this.entities = entities;
+    }
+
+    @Override
+    protected void link(BatchFactReader facts, Writer out) throws IOException {
+      for (Fact fact : facts) {
+        if (!fact.arg2.startsWith("yago")) entities.add(fact.arg1);
+      }
+    }
+
+    @Override
+    protected void finish(Writer out) throws IOException {
+      try {
+        for (String entity : entities) {
+          // The DBpedia name is the same as the YAGO name
+          CharSequence name = encode(entity);
+          writeLink(out, name, prefix, name);
+        }
+      } finally {
+        close();
+      }
+    }
+
+    /** Deletes the run files of the entities */
+    @Override
+    protected void close() {
+      entities.close();
+    }
+  }
+
+  /** Links the YAGO entities to their GeoNames ids, as they come */
+  protected class GeoNamesLinkWriter extends LinkWriter {
+
+    protected GeoNamesLinkWriter() {
+      super("hasGeonamesId", "GeoNamesYAGOlink_individuals.n3");
+    }
+
+    @Override
+    protected void link(BatchFactReader facts, Writer out) throws IOException {
+      for (Fact fact : facts) {
+        writeLink(out, encode(fact.arg1), "http://sws.geonames.org/", fact.arg2);
+      }
+    }
+  }
+
+  @Override
+  public void run() throws Exception {
+    getParameters();
+    Announce.doing("Linking YAGO to DBpedia and GeoNames");
+    // The two entity sets share the sort memory
+    long memory = sortMemory;
+    sortMemory = Math.max(1, memory / 2);
+    List<LinkWriter> writers = new ArrayList<LinkWriter>();
+    writers.add(new DBpediaLinkWriter("hasWikipediaUrl", "DBpediaYAGOlink_individuals.n3", "http://dbpedia.org/resource/", newEntitySet()));
+    writers.add(new DBpediaLinkWriter("subclassOf", "DBpediaYAGOlink_classes.n3", "http://dbpedia.org/class/yago/", newEntitySet()));
+    writers.add(new GeoNamesLinkWriter());
+    sortMemory = memory;
+
+    List<BlockingQueue<FactBatch>> queues = new ArrayList<BlockingQueue<FactBatch>>();
+    for (LinkWriter writer : writers)
+      queues.add(writer.queue);
+    List<Future<Object>> futures = new ArrayList<Future<Object>>();
+    ExecutorService pool = Executors.newFixedThreadPool(writers.size());
+    for (LinkWriter writer : writers)
+      futures.add(pool.submit(writer));
+    pool.shutdown();
+    try {
+      for (int i = 0; i < writers.size(); i++) {
+        LinkWriter writer = writers.get(i);
+        File inputFile = factFile(writer.relation);
+        FactBatch batch = new FactBatch(inputFile, BATCH_SIZE);
+        if (inputFile.exists()) {
+          int counter = 0;
+          for (Fact fact : readFacts(inputFile, "Parsing " + inputFile.getName())) {
+            if (test && counter++ > 100) break;
+            if (batch.isFull()) {
+              FanOutConverter.put(batch, Collections.singletonList(i), queues, futures);
+              batch = new FactBatch(inputFile, BATCH_SIZE);
+            }
+            batch.add(fact);
+          }
+        } else {
+          Announce.warning("There is no", inputFile, "to link");
+        }
+        batch.setLast();
+        FanOutConverter.put(batch, Collections.singletonList(i), queues, futures);
+      }
+      Announce.doing("Writing the links");
+      for (Future<Object> future : futures)
+        future.get();
+      Announce.done();
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof Exception) throw (Exception) e.getCause();
+      throw e;
+    } finally {
+      // Stops the writers if reading failed
+      pool.shutdownNow();
+      for (LinkWriter writer : writers) {
+        writer.close();
+      }
+    }
+    Announce.done();
+  }
+
+  @Override
+  public String description() {
+    return ("Link YAGO to DBpedia and GeoNames in one pass");
+  }
+}
@@ -1,19 +1,18 @@
 package converters;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
 
 import javatools.administrative.Announce;
-import javatools.administrative.D;
 import javatools.administrative.Parameters;
-import javatools.filehandlers.FileLines;
 import javatools.parsers.Char;
 import basics.Basics;
 import basics.TermExtractor;
 import converters.RDFSConverter.RDFSDatatype;
+import converters.facts.Fact;
+import converters.facts.FactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -25,7 +24,13 @@ import converters.RDFSConverter.RDFSDatatype;
  * 
  * @author Fabian M. Suchanek
  */
-public class N3Converter extends Converter {
+public class N3Converter extends FactFileConverter {
+
+	/** The syntax of the output. To write N-Triples, set the parameter 'rdfSyntax' in the yago.ini to 'ntriples' */
+	protected TripleWriter.Syntax syntax = TripleWriter.Syntax.TURTLE;
+
+	/** The encoded objects of the facts by their raw names (the classes of type facts come up over and over again) */
+	protected CodecCache<byte[]> objects;
 
 	/** Creates a N3 string */
 	public static String n3String(String string) {
@@ -38,8 +43,26 @@ public class N3Converter extends Converter {
 		return ('<'+Char.encodeURIPathComponent(Char.decodeBackslash(string))+'>');
 	}
 
-	/** Converts all facts to N3 */
-	public void run() throws IOException {
+	/**
+	 * Converts all facts to N3. With converterPartSize, writes the part files
+	 * yago-NNNNN.n3 (each with the prefixes) and the manifest yago.manifest
+	 * instead of yago.n3.
+	 */
+	public void run() throws Exception {
+		getConversionParameters();
+		Announce.doing("Converting facts to N3");
+		if (partSize > 0) {
+			convertFactFilesToParts(new PartFiles(this, outputFolder, "yago", TripleWriter.extension(syntax), partSize));
+		} else {
+			OutputStream stream = openOutput();
+			convertFactFiles(stream);
+			closeOutput(stream);
+		}
+		Announce.done();
+	}
+
+	@Override
+	protected void getConversionParameters() throws IOException {
 		getParameters();
 		deductiveClosure = Parameters
 				.getOrRequestAndAddBoolean(
@@ -47,75 +70,106 @@ public class N3Converter extends Converter {
 						"Would you like to add the deductive closure of the form\n"
 								+ "(x,type,c1), (c1, subclassof, c2) => (x, type, c2) ?");
 		includeFactFacts = false;
+		syntax = TripleWriter.syntax(Parameters.get("rdfSyntax", "turtle"));
+		objects = codecCache("objects", new CodecCache.Function<byte[]>() {
+			@Override
+			public byte[] apply(String raw) {
+				return (TripleWriter.entityBytes(syntax, Codec.decodeBackslash(Codec.decodeBackslash(raw))));
+			}
+		});
+	}
 
-		Writer out = new BufferedWriter(new FileWriter(new File(outputFolder,
-				"yago.n3")));
-		D.writeln(out,
-				"@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .");
-		D.writeln(out,
-				"@prefix rdfs: <http://www.w3.org/2000/01/rdf-schema#> .");
-		D.writeln(out, "@prefix y: <"+RDFSConverter.ns+"> .");
-		D.writeln(out, "@prefix x: <http://www.w3.org/2001/XMLSchema#> .");
-		D.writeln(out, "@base <"+RDFSConverter.ns+"> .");
+	/** Opens yago.n3 (or yago.nt) and writes the prefixes */
+	@Override
+	protected OutputStream openOutput() throws IOException {
+		OutputStream stream = new FileOutputStream(new File(outputFolder,
+				"yago" + TripleWriter.extension(syntax)));
+		writeHeader(stream);
+		return (stream);
+	}
 
-		Announce.doing("Converting facts to N3");
-		for (File inputFile : yagoFolder.listFiles()) {
-			String relation = relationForFactFile(inputFile);
-			if(relation==null) continue;
-			RDFSDatatype objectType = RDFSConverter.rdfsTypeforYagoClass(Basics
-					.range(relation));
-			if (RDFSConverter.rdfsTypeforYagoClass(Basics.domain(relation)) != RDFSDatatype.rRESOURCE && objectType!=RDFSDatatype.rRESOURCE) {
-				continue;
-			}
-			boolean inverted = false;
-			if (RDFSConverter.rdfsTypeforYagoClass(Basics.domain(relation)) != RDFSDatatype.rRESOURCE) {
-				inverted = true;
-				objectType = RDFSConverter.rdfsTypeforYagoClass(Basics
-						.domain(relation));
+	/** Writes the prefixes */
+	@Override
+	protected void writeHeader(OutputStream stream) throws IOException {
+		TripleWriter out = new TripleWriter(stream, syntax);
+		out.prefixes("rdf", "rdfs", "y", "x");
+		out.base(RDFSConverter.ns);
+		out.flush();
+	}
+
+	/** Converts the facts of one relation to N3 */
+	@Override
+	protected void convertFacts(String relation, FactReader facts, OutputStream stream) throws IOException {
+		convertAndCountFacts(relation, facts, stream);
+	}
+
+	/** Converts the facts of one relation to N3, returns the number of triples */
+	@Override
+	protected long convertAndCountFacts(String relation, FactReader facts, OutputStream stream) throws IOException {
+		File inputFile = facts.getFile();
+		RDFSDatatype objectType = RDFSConverter.rdfsTypeforYagoClass(Basics
+				.range(relation));
+		if (RDFSConverter.rdfsTypeforYagoClass(Basics.domain(relation)) != RDFSDatatype.rRESOURCE && objectType!=RDFSDatatype.rRESOURCE) {
+			return (0);
+		}
+		boolean inverted = false;
+		if (RDFSConverter.rdfsTypeforYagoClass(Basics.domain(relation)) != RDFSDatatype.rRESOURCE) {
+			inverted = true;
+			objectType = RDFSConverter.rdfsTypeforYagoClass(Basics
+					.domain(relation));
+		}
+		String relationName = RDFSConverter.specialRelationNames
+				.containsKey(relation) ? RDFSConverter.specialRelationNames
+				.get(relation) : "y:" + relation;
+		TripleWriter out = new TripleWriter(stream, syntax);
+		byte[] relationToken = out.token(relationName);
+		int counter = 0;
+		long triples = 0;
+		for (Fact fact : facts) {
+			if (test && counter++ > 10) {
+				Announce.progressDone();
+				break;
 			}
-			String relationName = RDFSConverter.specialRelationNames
-					.containsKey(relation) ? RDFSConverter.specialRelationNames
-					.get(relation) : "y:" + relation;
-			int counter = 0;
-			for (String l : new FileLines(inputFile, "Parsing "
-					+ inputFile.getName())) {
-				if (test && counter++ > 10) {
-					Announce.progressDone();
-					break;
-				}
-				String[] split = l.split("\t");
-        if (split.length != 3) {
-          Announce.error(inputFile + " is not well-formed, stopping conversion");
-          Announce.done();
-          System.exit(1);
-        }
-				String arg1 = Char.decodeBackslash(split[inverted ? 2 : 1]);
-				String arg2 = Char.decodeBackslash(split[inverted ? 1 : 2]);
-				out.write(n3NameFor(arg1) + " " + relationName + " ");
-				switch (objectType) {
-				case rboolean:
-				case rdecimal:
-				case rgYear:
-				case rnonNegativeInteger:
-				case rdate:
-				case rtimeInterval:
-				case rdouble:
-				case rgeoCoordinate:
-				case rduration:
-					out.write('"' + TermExtractor.stripQuotes(arg2) + '"');
-					break;
-				case rRESOURCE:
-					out.write(n3NameFor(arg2));
-					break;
-				case rstring:
-					out.write(n3String(arg2));
-					break;
-				}
-				out.write(" .\n");
+      if (fact.size() != 3) {
+        Announce.error(inputFile + " is not well-formed, stopping conversion");
+        Announce.done();
+        System.exit(1);
+      }
+			// Names are decoded twice, as in n3NameFor(Char.decodeBackslash(...))
+			CharSequence arg1 = Codec.decodeBackslash(fact.get(inverted ? 2 : 1));
+			CharSequence arg2 = Codec.decodeBackslash(fact.get(inverted ? 1 : 2));
+			out.entity(Codec.decodeBackslash(arg1));
+			out.token(relationToken);
+			switch (objectType) {
+			case rboolean:
+			case rdecimal:
+			case rgYear:
+			case rnonNegativeInteger:
+			case rdate:
+			case rtimeInterval:
+			case rdouble:
+			case rgeoCoordinate:
+			case rduration:
+				out.literal(arg2);
+				break;
+			case rRESOURCE:
+				out.write(objects.get(fact.get(inverted ? 1 : 2)));
+				break;
+			case rstring:
+				out.string(arg2);
+				break;
 			}
+			out.endTriple();
+			triples++;
 		}
-		Announce.done();
-		out.close();
+		out.flush();
+		return (triples);
+	}
+
+	/** The syntax also determines the result */
+	@Override
+	protected String conversionSettings() {
+		return (super.conversionSettings() + " rdfSyntax=" + syntax);
 	}
 
 	@Override
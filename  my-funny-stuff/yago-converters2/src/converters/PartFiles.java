@@ -0,0 +1,212 @@
+package converters;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.regex.Pattern;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * The output of a converter as numbered part files of about a given size
+ * (NAME-00001.EXT, NAME-00002.EXT, ... in a folder), which can be written by
+ * several threads at the same time. Every part starts with the header and
+ * ends with the footer of the converter (see
+ * FactFileConverter.writeHeader()), so that it is a document of its own,
+ * which can be loaded on its own. The parts remember which relations they
+ * hold, and writeManifest() writes NAME.manifest, with one line per part and
+ * relation, in the order of the parts and of the relations in the part:
+ *    part file TAB bytes of the part TAB relation TAB number of facts
+ * The number of facts is the number of facts that made it into the part
+ * (see FactFileConverter.convertAndCountFacts()), i.e. the number of
+ * statements in the RDF formats. A relation can be spread over several parts.
+ */
+public class PartFiles {
+
+  /** The converter that writes the headers and footers */
+  protected final FactFileConverter converter;
+
+  /** The folder */
+  public final File folder;
+
+  /** The name of the output */
+  public final String name;
+
+  /** The extension of the parts (with the dot) */
+  public final String extension;
+
+  /** The size of a part in bytes */
+  public final long partSize;
+
+  /** Number of parts so far */
+  protected final AtomicInteger counter = new AtomicInteger();
+
+  /** The parts */
+  protected final List<Part> parts = new ArrayList<Part>();
+
+  public PartFiles(FactFileConverter converter, File folder, String name, String extension, long partSize) {
+    this.converter = converter;
+    this.folder = folder;
+    this.name = name;
+    this.extension = extension;
+    this.partSize = partSize;
+  }
+
+  /** Deletes the parts and the manifest of an earlier run, returns the number of deleted parts */
+  public int deleteOld() {
+    Pattern pattern = Pattern.compile(Pattern.quote(name) + "-\\d{5,}" + Pattern.quote(extension));
+    int deleted = 0;
+    File[] files = folder.listFiles();
+    if (files == null) return (0);
+    for (File file : files) {
+      if (pattern.matcher(file.getName()).matches() && file.delete()) deleted++;
+    }
+    new File(folder, name + ".manifest").delete();
+    return (deleted);
+  }
+
+  /** Opens a new part and writes the header */
+  public Part newPart() throws IOException {
+    Part part = new Part(counter.incrementAndGet());
+    synchronized (parts) {
+      parts.add(part);
+    }
+    return (part);
+  }
+
+  /** Returns the parts in the order of their numbers */
+  public List<Part> parts() {
+    List<Part> result;
+    synchronized (parts) {
+      result = new ArrayList<Part>(parts);
+    }
+    Collections.sort(result, new Comparator<Part>() {
+
+      @Override
+      public int compare(Part p1, Part p2) {
+        return (p1.number - p2.number);
+      }
+    });
+    return (result);
+  }
+
+  /** Writes NAME.manifest (after all parts have been closed), returns the file */
+  public File writeManifest() throws IOException {
+    File manifest = new File(folder, name + ".manifest");
+    Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(manifest), "UTF-8"));
+    try {
+      for (Part part : parts()) {
+        for (Map.Entry<String, Long> relation : part.relations.entrySet())
+          out.write(part.file.getName() + "\t" + part.size() + "\t" + relation.getKey() + "\t" + relation.getValue() + "\n");
+      }
+    } finally {
+      out.close();
+    }
+    return (manifest);
+  }
+
+  @Override
+  public String toString() {
+    return (parts.size() + " parts " + name + "-*" + extension + " of " + (partSize >> 20) + " MB in " + folder);
+  }
+
+  /** Counts the bytes that go through it */
+  protected static class CountingOutputStream extends FilterOutputStream {
+
+    /** Number of bytes */
+    protected long count = 0;
+
+    protected CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+
+  /** One part file, written by one thread at a time */
+  public class Part {
+
+    /** The number of the part (from 1) */
+    public final int number;
+
+    /** The file */
+    public final File file;
+
+    /** The output */
+    protected final CountingOutputStream out;
+
+    /** The number of facts by relation, in the order of the relations */
+    protected final Map<String, Long> relations = new LinkedHashMap<String, Long>();
+
+    /** Size of the header */
+    protected final long headerSize;
+
+    protected Part(int number) throws IOException {
+      this.number = number;
+      file = new File(folder, String.format("%s-%05d%s", name, number, extension));
+      out = new CountingOutputStream(new FileOutputStream(file));
+      converter.writeHeader(out);
+      headerSize = out.count;
+    }
+
+    /** Returns the stream of the part */
+    public OutputStream stream() {
+      return (out);
+    }
+
+    /** Returns the number of bytes written so far */
+    public long size() {
+      return (out.count);
+    }
+
+    /** TRUE if nothing but the header has been written */
+    public boolean isEmpty() {
+      return (out.count == headerSize);
+    }
+
+    /** TRUE if the part would grow beyond the part size with the given number of bytes */
+    public boolean isFull(long more) {
+      return (!isEmpty() && out.count + more > partSize);
+    }
+
+    /** Records that the part holds facts of the relation */
+    public void add(String relation, long facts) {
+      Long old = relations.get(relation);
+      relations.put(relation, old == null ? facts : old + facts);
+    }
+
+    /** Writes the footer and closes the file */
+    public void close() throws IOException {
+      try {
+        converter.writeFooter(out);
+      } finally {
+        out.close();
+      }
+    }
+  }
+}
@@ -0,0 +1,137 @@
+package converters;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.query.ARQ;
+import com.hp.hpl.jena.query.Query;
+import com.hp.hpl.jena.query.QueryExecException;
+import com.hp.hpl.jena.sparql.ARQConstants;
+import com.hp.hpl.jena.sparql.algebra.Algebra;
+import com.hp.hpl.jena.sparql.algebra.Op;
+import com.hp.hpl.jena.sparql.algebra.OpVars;
+import com.hp.hpl.jena.sparql.algebra.OpVisitorBase;
+import com.hp.hpl.jena.sparql.algebra.OpWalker;
+import com.hp.hpl.jena.sparql.algebra.op.OpFilter;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.Substitute;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.ExecutionContext;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
+import com.hp.hpl.jena.sparql.engine.binding.BindingMap;
+import com.hp.hpl.jena.sparql.engine.binding.BindingRoot;
+import com.hp.hpl.jena.sparql.engine.main.QC;
+import com.hp.hpl.jena.sparql.util.Context;
+import com.hp.hpl.jena.sparql.util.NodeFactory;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A SELECT query of a SPARQLprocessor that is parsed and optimised once and
+ * then answered for different values of its parameters (variables of the
+ * query). For every call, the values are put into the optimised algebra,
+ * which is executed directly on the Jena TDB, so that a short lookup costs
+ * little more than the access to the indexes. The parameters keep their
+ * values in the rows if they are selected. A prepared query can be used by
+ * several threads at the same time.
+ *
+ * The basic usage is
+ *    PreparedQuery types = processor.prepare("SELECT ?entity ?t WHERE { ?entity rdf:type ?t }", "entity");
+ *    SPARQLprocessor.Rows rows = types.rows(-1, Node.createURI(RDFSConverter.ns + "Albert_Einstein"));
+ *    while (rows.next()) {
+ *      // handle rows.row
+ *    }
+ */
+public class PreparedQuery {
+
+  /** The processor, whose dataset answers the query */
+  protected final SPARQLprocessor processor;
+
+  /** The query */
+  public final Query query;
+
+  /** The optimised algebra of the query */
+  protected final Op op;
+
+  /** The parameters */
+  protected final Var[] parameters;
+
+  /** The projected variables */
+  public final List<String> variables;
+
+  protected PreparedQuery(SPARQLprocessor processor, Query query, String... parameters) {
+    if (!query.isSelectType()) throw new QueryExecException("Not a SELECT query");
+    this.processor = processor;
+    this.query = query;
+    op = Algebra.optimize(Algebra.compile(query));
+    variables = Collections.unmodifiableList(new ArrayList<String>(query.getResultVars()));
+    // The variables of the patterns and of the filters
+    final Set<Var> vars = OpVars.allVars(op);
+    OpWalker.walk(op, new OpVisitorBase() {
+
+      @Override
+      public void visit(OpFilter filter) {
+        vars.addAll(filter.getExprs().getVarsMentioned());
+      }
+    });
+    this.parameters = new Var[parameters.length];
+    for (int i = 0; i < parameters.length; i++) {
+      String name = parameters[i].startsWith("?") || parameters[i].startsWith("$") ? parameters[i].substring(1) : parameters[i];
+      this.parameters[i] = Var.alloc(name);
+      if (!vars.contains(this.parameters[i])) throw new IllegalArgumentException("The query has no variable ?" + name);
+    }
+  }
+
+  /** Returns the binding of the parameters to the values */
+  protected Binding bind(Node... values) {
+    if (values.length != parameters.length) throw new IllegalArgumentException("Expected " + parameters.length + " values, got " + values.length);
+    if (values.length == 0) return (BindingRoot.create());
+    Binding binding = new BindingMap();
+    for (int i = 0; i < values.length; i++) {
+      if (values[i] == null) throw new IllegalArgumentException("No value for ?" + parameters[i].getVarName());
+      binding.add(parameters[i], values[i]);
+    }
+    return (binding);
+  }
+
+  /**
+   * Returns the rows for the values of the parameters (in the order in which
+   * they were given to prepare(); maxAnswers -1 for all)
+   */
+  public SPARQLprocessor.Rows rows(int maxAnswers, Node... values) {
+    processor.checkVersion();
+    DatasetGraph dataset = processor.dataset;
+    Binding binding = bind(values);
+    Op bound = values.length == 0 ? op : Substitute.substitute(op, binding);
+    Context context = ARQ.getContext().copy();
+    context.set(ARQConstants.sysCurrentTime, NodeFactory.nowAsDateTime());
+    ExecutionContext execution = new ExecutionContext(context, dataset.getDefaultGraph(), dataset, QC.getFactory(context));
+    return (new SPARQLprocessor.Rows(variables, QC.execute(bound, binding, execution), maxAnswers));
+  }
+
+  /** Writes the rows for the values of the parameters (maxAnswers -1 for all), returns the number of rows */
+  public long write(int maxAnswers, ResultWriter out, Node... values) throws IOException {
+    SPARQLprocessor.Rows rows = rows(maxAnswers, values);
+    try {
+      out.start(rows.variables);
+      while (rows.next())
+        out.row(rows.row);
+      out.end();
+      return (out.rows());
+    } finally {
+      rows.close();
+    }
+  }
+
+  @Override
+  public String toString() {
+    return (op.toString());
+  }
+}
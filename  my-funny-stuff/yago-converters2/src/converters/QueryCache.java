@@ -0,0 +1,207 @@
+package converters;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.rdf.model.Literal;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Keeps the results of SPARQL queries of the SPARQLprocessor, so that a query
+ * that comes again is answered without parsing, planning and running it. The
+ * key is the query text with its blanks normalised (see key()) and the
+ * maximal number of answers. The cache holds at most a given number of bytes
+ * (as estimated from the lengths of the variables and values) and evicts the
+ * least recently used results. A result that is larger than a quarter of the
+ * cache is not kept. clear() drops all results, the SPARQLprocessor calls it
+ * when the Jena TDB has been loaded again. The cache can be used by several
+ * threads and counts its hits, misses and evictions.
+ */
+public class QueryCache {
+
+  /** Estimated bytes of a result, a solution and an entry of a solution */
+  protected static final int RESULT_BYTES = 128, SOLUTION_BYTES = 48, ENTRY_BYTES = 96;
+
+  /** Maximal number of bytes */
+  public final long capacity;
+
+  /** The results by key, least recently used first */
+  protected final LinkedHashMap<String, List<Map<String, RDFNode>>> results = new LinkedHashMap<String, List<Map<String, RDFNode>>>(16, 0.75f, true);
+
+  /** The estimated sizes of the results by key */
+  protected final Map<String, Long> sizes = new HashMap<String, Long>();
+
+  /** Estimated number of bytes of all results */
+  protected long bytes = 0;
+
+  /** Number of clear() calls, results of queries that started before are not kept */
+  protected long generation = 0;
+
+  /** Number of hits */
+  protected final AtomicLong hits = new AtomicLong();
+
+  /** Number of misses */
+  protected final AtomicLong misses = new AtomicLong();
+
+  /** Number of evicted results */
+  protected final AtomicLong evictions = new AtomicLong();
+
+  /** Creates a cache of at most capacity bytes (0 disables the cache) */
+  public QueryCache(long capacity) {
+    this.capacity = Math.max(0, capacity);
+  }
+
+  /**
+   * Returns the key of a query: runs of blanks outside of strings and IRIs
+   * become one blank (or one line break if they end a comment), and the
+   * maximal number of answers is appended
+   */
+  public static String key(String query, int maxAnswers) {
+    StringBuilder key = new StringBuilder(query.length() + 8);
+    char quote = 0;
+    boolean blank = false, lineBreak = false, comment = false;
+    for (int i = 0; i < query.length(); i++) {
+      char c = query.charAt(i);
+      if (quote == 0 && Character.isWhitespace(c)) {
+        blank = true;
+        if (comment && (c == '\n' || c == '\r')) {
+          lineBreak = true;
+          comment = false;
+        }
+        continue;
+      }
+      if (blank && key.length() > 0) key.append(lineBreak ? '\n' : ' ');
+      blank = lineBreak = false;
+      key.append(c);
+      if (comment) continue;
+      if (quote != 0) {
+        if (c == '\\' && quote != '>' && i + 1 < query.length()) key.append(query.charAt(++i));
+        else if (c == quote) quote = 0;
+      } else if (c == '"' || c == '\'') {
+        quote = c;
+      } else if (c == '#') {
+        comment = true;
+      } else if (c == '<' && i + 1 < query.length() && !Character.isWhitespace(query.charAt(i + 1)) && query.charAt(i + 1) != '=') {
+        quote = '>';
+      }
+    }
+    return (key.append('\t').append(maxAnswers).toString());
+  }
+
+  /** Returns the result of the key, or NULL */
+  public synchronized List<Map<String, RDFNode>> get(String key) {
+    List<Map<String, RDFNode>> result = capacity == 0 ? null : results.get(key);
+    if (result == null) misses.incrementAndGet();
+    else hits.incrementAndGet();
+    return (result);
+  }
+
+  /** Returns the estimated number of bytes of a result */
+  public static long size(List<Map<String, RDFNode>> result) {
+    long size = RESULT_BYTES;
+    for (Map<String, RDFNode> solution : result)
+      size += size(solution);
+    return (size);
+  }
+
+  /** Returns the estimated number of bytes of a solution */
+  public static long size(Map<String, RDFNode> solution) {
+    long size = SOLUTION_BYTES;
+    for (Map.Entry<String, RDFNode> entry : solution.entrySet()) {
+      RDFNode node = entry.getValue();
+      size += ENTRY_BYTES + 2 * entry.getKey().length();
+      if (node == null) continue;
+      if (node.isLiteral()) size += 2 * ((Literal) node).getLexicalForm().length();
+      else size += 2 * node.toString().length();
+    }
+    return (size);
+  }
+
+  /** Returns the maximal size of a result that is kept */
+  public long maxResultSize() {
+    return (capacity / 4);
+  }
+
+  /** Returns the generation, which changes with every clear() */
+  public synchronized long generation() {
+    return (generation);
+  }
+
+  /**
+   * Adds the result of the key, unless the cache has been cleared since the
+   * generation (when the query started). Evicts the least recently used
+   * results if the cache is full.
+   */
+  public synchronized void put(String key, List<Map<String, RDFNode>> result, long size, long generation) {
+    if (size > maxResultSize() || generation != this.generation) return;
+    Long old = sizes.remove(key);
+    if (old != null) {
+      results.remove(key);
+      bytes -= old;
+    }
+    Iterator<Map.Entry<String, List<Map<String, RDFNode>>>> lru = results.entrySet().iterator();
+    while (bytes + size > capacity && lru.hasNext()) {
+      bytes -= sizes.remove(lru.next().getKey());
+      lru.remove();
+      evictions.incrementAndGet();
+    }
+    results.put(key, Collections.unmodifiableList(result));
+    sizes.put(key, size);
+    bytes += size;
+  }
+
+  /** Drops all results */
+  public synchronized void clear() {
+    generation++;
+    results.clear();
+    sizes.clear();
+    bytes = 0;
+  }
+
+  /** Returns the number of results */
+  public synchronized int size() {
+    return (results.size());
+  }
+
+  /** Returns the estimated number of bytes of all results */
+  public synchronized long bytes() {
+    return (bytes);
+  }
+
+  /** Returns the number of hits */
+  public long hits() {
+    return (hits.get());
+  }
+
+  /** Returns the number of misses */
+  public long misses() {
+    return (misses.get());
+  }
+
+  /** Returns the number of evicted results */
+  public long evictions() {
+    return (evictions.get());
+  }
+
+  /** Returns the share of hits among all requests */
+  public double hitRate() {
+    long requests = hits.get() + misses.get();
+    return (requests == 0 ? 0 : hits.get() / (double) requests);
+  }
+
+  @Override
+  public String toString() {
+    return (String.format("Query cache: %d hits, %d misses (%.1f%% hits), %d evictions, %d results of %d KB (at most %d KB)", hits.get(), misses.get(),
+        100 * hitRate(), evictions.get(), size(), bytes() >> 10, capacity >> 10));
+  }
+}
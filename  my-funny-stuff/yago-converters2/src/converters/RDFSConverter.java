@@ -1,20 +1,26 @@
 package converters;
 
+import java.io.BufferedOutputStream;
 import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.net.MalformedURLException;
 import java.net.URL;
 import java.util.Map;
 
 import javatools.administrative.Announce;
+import javatools.administrative.Parameters;
 import javatools.datatypes.FinalMap;
-import javatools.filehandlers.FileLines;
 import javatools.parsers.Char;
 import basics.Basics;
 import basics.TermExtractor;
+import converters.facts.Fact;
+import converters.facts.FactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -26,7 +32,7 @@ import basics.TermExtractor;
  * 
  * @author Fabian M. Suchanek
  */
-public class RDFSConverter extends Converter {
+public class RDFSConverter extends FactFileConverter {
 
 	/** Holds the YAGO namespace (has to be the URL where the YAGO Cool URI service runs) */
 	public static final String ns = "http://yago-knowledge.org/resource/";
@@ -82,6 +88,13 @@ public class RDFSConverter extends Converter {
 		return (RDFSDatatype.rRESOURCE);
 	}
 
+	/** Tells whether all facts about a subject are written into one element.
+	 * To set it, use the parameter 'rdfsGroupBySubject' in the yago.ini */
+	protected boolean groupBySubject = false;
+
+	/** The URIs by the raw names of the entities (see asURI) */
+	protected CodecCache<String> uris;
+
 	/** Formats a Yago entity as a URI */
 	public static String asURI(String entity) {
 		if (entity.startsWith("http://"))
@@ -101,14 +114,62 @@ public class RDFSConverter extends Converter {
 		return (entity);
 	}
 
+	/**
+	 * Converts all facts to RDFS. With converterPartSize, writes the part
+	 * files yago-NNNNN.rdfs (each with the header and the footer) and the
+	 * manifest yago.manifest instead of yago.rdfs.
+	 */
+	@Override
+	public void run() throws Exception {
+		getConversionParameters();
+		Announce.doing("Converting facts to RDFS");
+		if (partSize > 0) {
+			convertFactFilesToParts(new PartFiles(this, outputFolder, "yago", ".rdfs", partSize));
+		} else {
+			OutputStream stream = openOutput();
+			if (groupBySubject)
+				convertGroupedBySubject(stream);
+			else
+				convertFactFiles(stream);
+			closeOutput(stream);
+		}
+		Announce.done();
+	}
+
 	@Override
-	public void run() throws IOException {
+	protected void getConversionParameters() throws IOException {
 		getParameters();
 		getExtendedParameters();
-		Announce.doing("Converting facts to RDFS");
+		groupBySubject = Parameters.getBoolean("rdfsGroupBySubject", false);
+		if (groupBySubject && incremental) {
+			Announce.warning("rdfsGroupBySubject converts all fact files, ignoring incrementalConversion");
+			incremental = false;
+		}
+		if (groupBySubject && partSize > 0) {
+			Announce.warning("rdfsGroupBySubject writes one file, ignoring converterPartSize");
+			partSize = 0;
+		}
+		uris = codecCache("URIs", new CodecCache.Function<String>() {
+			@Override
+			public String apply(String raw) {
+				return (asURI(Char.decodeBackslash(raw)));
+			}
+		});
+	}
+
+	/** Opens yago.rdfs and writes the header */
+	@Override
+	protected OutputStream openOutput() throws IOException {
+		OutputStream stream = new FileOutputStream(new File(outputFolder,
+				"yago.rdfs"));
+		writeHeader(stream);
+		return (stream);
+	}
 
-		Writer out = new BufferedWriter(new FileWriter(new File(outputFolder,
-				"yago.rdfs")));
+	/** Writes the header */
+	@Override
+	protected void writeHeader(OutputStream stream) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream));
 		out.write("<?xml version=\"1.0\"?>\n");
 		out
 				.write("<!DOCTYPE rdf:RDF [<!ENTITY d \"http://www.w3.org/2001/XMLSchema#\">\n");
@@ -120,10 +181,43 @@ public class RDFSConverter extends Converter {
 		out
 				.write("         xmlns:rdfs=\"http://www.w3.org/2000/01/rdf-schema#\"\n");
 		out.write("         xmlns:y=\"" + ns + "\">\n");
+		out.flush();
+	}
+
+	/** Writes the footer and closes yago.rdfs */
+	@Override
+	protected void closeOutput(OutputStream stream) throws IOException {
+		writeFooter(stream);
+		stream.close();
+	}
+
+	/** Writes the footer */
+	@Override
+	protected void writeFooter(OutputStream stream) throws IOException {
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream));
+		out.write("</rdf:RDF>\n");
+		out.flush();
+	}
+
+	/** How the facts of one relation are written */
+	protected class Property {
+
+		/** Name of the property */
+		public final String relationName;
+
+		/** Type of the object */
+		public final RDFSDatatype objectType;
+
+		/** The datatype attribute of the object */
+		public final String datatype;
+
+		/** TRUE if the subject is arg2 */
+		public final boolean inverted;
 
-		for (File inputFile : yagoFolder.listFiles()) {
-			String relation = relationForFactFile(inputFile);
-			if(relation==null) continue;
+		/** TRUE if the subject is a class */
+		public final boolean arg1isClass;
+
+		public Property(String relation) {
 			RDFSDatatype objectType = rdfsTypeforYagoClass(Basics
 					.range(relation));
 			boolean inverted = false;
@@ -131,46 +225,166 @@ public class RDFSConverter extends Converter {
 				inverted = true;
 				objectType = rdfsTypeforYagoClass(Basics.domain(relation));
 			}
-			String relationName = specialRelationNames.containsKey(relation) ? specialRelationNames
+			this.objectType = objectType;
+			this.inverted = inverted;
+			relationName = specialRelationNames.containsKey(relation) ? specialRelationNames
 					.get(relation)
 					: "y:" + relation;
-			boolean arg1isClass = inverted ? Basics.range(relation).equals(
+			arg1isClass = inverted ? Basics.range(relation).equals(
 					"yagoClass") : Basics.domain(relation).equals("yagoClass");
-			int counter = 0;
-			for (String l : new FileLines(inputFile, "Parsing "
-					+ inputFile.getName())) {
-				if (test && counter++ > 10) {
-					Announce.progressDone();
-					break;
-				}
-				String[] split = l.split("\t");
-				if (split.length != 3) {
-				  Announce.warning(inputFile + " has a non-well-formed line\n"+l);
-				  continue;
-				}
-				String id = Char.decodeBackslash(split[0]);
-				String arg1 = Char.decodeBackslash(split[inverted ? 2 : 1]);
-				String arg2 = Char.decodeBackslash(split[inverted ? 1 : 2]);
-				out.write(arg1isClass ? "<rdfs:Class" : "<rdf:Description");
-				out.write(" rdf:about=\"" + asURI(arg1) + "\">");
-				out.write("<" + relationName + " rdf:ID=\"" + formatId(id)
-						+ "\"");
-				if (objectType == RDFSDatatype.rRESOURCE) {
-					out.write(" rdf:resource=\"" + asURI(arg2) + "\" />");
-				} else {
-					out.write(" rdf:datatype=" + objectType + " >");
-					out.write(objectType.asLiteral(arg2));
-					out.write("</" + relationName + ">");
+			datatype = objectType.toString();
+		}
+
+		/** Returns the URI of the subject */
+		public String subject(Fact fact) {
+			return (uris.get(fact.get(inverted ? 2 : 1)));
+		}
+
+		/** Appends the property element of the fact to line */
+		public void appendElement(StringBuilder line, Fact fact) {
+			// Same as asURI(Char.decodeBackslash(arg)) and formatId(Char.decodeBackslash(fact.id))
+			CharSequence id = Codec.decodeBackslash(fact.id);
+			line.append('<').append(relationName).append(" rdf:ID=\"fact_");
+			Codec.appendHex(line, id, 0, id.length());
+			line.append('"');
+			if (objectType == RDFSDatatype.rRESOURCE) {
+				line.append(" rdf:resource=\"").append(uris.get(fact.get(inverted ? 1 : 2))).append("\" />");
+			} else {
+				line.append(" rdf:datatype=").append(datatype).append(" >");
+				// Same as objectType.asLiteral(Char.decodeBackslash(arg2))
+				CharSequence arg2 = Codec.decodeBackslash(fact.get(inverted ? 1 : 2));
+				int start = Codec.quoteStart(arg2);
+				Codec.appendDecodedAmpersand(line, arg2, start, Codec.quoteEnd(arg2, start));
+				line.append("</").append(relationName).append('>');
+			}
+		}
+	}
+
+	/** Converts the facts of one relation to RDFS */
+	@Override
+	protected void convertFacts(String relation, FactReader facts, OutputStream stream) throws IOException {
+		convertAndCountFacts(relation, facts, stream);
+	}
+
+	/** Converts the facts of one relation to RDFS, returns the number of triples */
+	@Override
+	protected long convertAndCountFacts(String relation, FactReader facts, OutputStream stream) throws IOException {
+		File inputFile = facts.getFile();
+		Property property = new Property(relation);
+		Writer out = new BufferedWriter(new OutputStreamWriter(stream));
+		StringBuilder line = new StringBuilder(256);
+		char[] chars = new char[1024];
+		int counter = 0;
+		long triples = 0;
+		for (Fact fact : facts) {
+			if (test && counter++ > 10) {
+				Announce.progressDone();
+				break;
+			}
+			if (fact.size() != 3) {
+			  Announce.warning(inputFile + " has a non-well-formed line\n"+fact);
+			  continue;
+			}
+			line.setLength(0);
+			line.append(property.arg1isClass ? "<rdfs:Class" : "<rdf:Description");
+			line.append(" rdf:about=\"").append(property.subject(fact)).append("\">");
+			property.appendElement(line, fact);
+			line.append(property.arg1isClass ? "</rdfs:Class>\n"
+					: "</rdf:Description>\n");
+			Codec.write(out, line, chars);
+			triples++;
+		}
+		out.flush();
+		return (triples);
+	}
+
+	/**
+	 * Sorts the facts of all relations by their subjects and writes one
+	 * element per subject with all its properties. The subject is an
+	 * rdfs:Class if one of its facts says so. The sort uses sortMemory bytes
+	 * and keeps the rest in run files in the output folder.
+	 */
+	protected void convertGroupedBySubject(OutputStream stream) throws IOException {
+		ExternalSorter sorter = new ExternalSorter(outputFolder, sortMemory, threads, sortOffHeap);
+		try {
+			Utf8Buffer key = new Utf8Buffer();
+			Utf8Buffer value = new Utf8Buffer();
+			StringBuilder line = new StringBuilder(256);
+			for (File inputFile : yagoFolder.listFiles()) {
+				String relation = relationForFactFile(inputFile);
+				if (relation == null)
+					continue;
+				Property property = new Property(relation);
+				int counter = 0;
+				for (Fact fact : readFacts(inputFile, "Sorting " + inputFile.getName())) {
+					if (test && counter++ > 10) {
+						Announce.progressDone();
+						break;
+					}
+					if (fact.size() != 3) {
+					  Announce.warning(inputFile + " has a non-well-formed line\n"+fact);
+					  continue;
+					}
+					line.setLength(0);
+					line.append(property.arg1isClass ? 'C' : 'D');
+					property.appendElement(line, fact);
+					key.set(property.subject(fact));
+					value.set(line);
+					sorter.add(key.bytes, 0, key.length, value.bytes, 0, value.length);
 				}
-				out.write(arg1isClass ? "</rdfs:Class>\n"
-						: "</rdf:Description>\n");
 			}
+			Announce.message("Sorted", sorter.size(), "facts in", sorter.runs(), "runs");
+			writeGroups(sorter.sort(), sorter.size(), stream);
+		} finally {
+			sorter.close();
 		}
-		out.write("</rdf:RDF>\n");
-		out.close();
-		Announce.done();
 	}
 
+	/** Writes the sorted properties, one element per subject */
+	protected void writeGroups(Iterable<ExternalSorter.Record> records, long total, OutputStream stream) throws IOException {
+		OutputStream out = new BufferedOutputStream(stream, 1 << 16);
+		ByteArrayOutputStream group = new ByteArrayOutputStream();
+		byte[] subject = new byte[256];
+		int subjectLength = -1;
+		boolean isClass = false;
+		long counter = 0;
+		Announce.progressStart("Writing subjects", Math.max(total, 1));
+		for (ExternalSorter.Record record : records) {
+			if (subjectLength < 0 || !record.keyEquals(subject, 0, subjectLength)) {
+				writeGroup(out, subject, subjectLength, isClass, group);
+				if (subject.length < record.keyLength())
+					subject = new byte[record.keyLength() * 2];
+				System.arraycopy(record.bytes(), 0, subject, 0, record.keyLength());
+				subjectLength = record.keyLength();
+				isClass = false;
+				group.reset();
+			}
+			isClass |= record.bytes()[record.keyLength()] == 'C';
+			group.write(record.bytes(), record.keyLength() + 1, record.valueLength() - 1);
+			if (++counter % 4096 == 0)
+				Announce.progressAt(counter);
+		}
+		writeGroup(out, subject, subjectLength, isClass, group);
+		Announce.progressDone();
+		out.flush();
+	}
+
+	/** Writes the element of a subject with its properties */
+	protected void writeGroup(OutputStream out, byte[] subject, int subjectLength, boolean isClass, ByteArrayOutputStream group) throws IOException {
+		if (subjectLength < 0)
+			return;
+		out.write(isClass ? CLASS_START : DESCRIPTION_START);
+		out.write(subject, 0, subjectLength);
+		out.write('"');
+		out.write('>');
+		group.writeTo(out);
+		out.write(isClass ? CLASS_END : DESCRIPTION_END);
+	}
+
+	/** Start and end tags of the elements of subjects */
+	protected static final byte[] CLASS_START = "<rdfs:Class rdf:about=\"".getBytes(), CLASS_END = "</rdfs:Class>\n".getBytes(),
+			DESCRIPTION_START = "<rdf:Description rdf:about=\"".getBytes(), DESCRIPTION_END = "</rdf:Description>\n".getBytes();
+
 	@Override
 	public String description() {
 		return ("Convert YAGO to RDFS");
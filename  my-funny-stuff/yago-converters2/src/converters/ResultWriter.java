@@ -0,0 +1,241 @@
+package converters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+
+import com.hp.hpl.jena.datatypes.TypeMapper;
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.AnonId;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Writes the rows of a SPARQL query as SPARQL results in TSV (terms in
+ * N-Triples form, an empty field for an unbound variable) or JSON (the
+ * "application/sparql-results+json" format). The terms are escaped straight
+ * into the buffer of the ByteWriter, so a row costs no objects.
+ *
+ * The basic usage is
+ *    ResultWriter out = new ResultWriter(new FileOutputStream(file), ResultWriter.Format.TSV);
+ *    processor.write(query, -1, out);
+ *    out.close();
+ */
+public class ResultWriter extends ByteWriter {
+
+  /** The formats */
+  public static enum Format {
+    TSV, JSON
+  }
+
+  /** The format */
+  public final Format format;
+
+  /** The variables */
+  protected List<String> variables;
+
+  /** Number of rows so far */
+  protected long rows = 0;
+
+  public ResultWriter(OutputStream out, Format format) {
+    super(out);
+    this.format = format;
+  }
+
+  /** Writes the header with the variables */
+  public void start(List<String> variables) throws IOException {
+    this.variables = variables;
+    rows = 0;
+    if (format == Format.TSV) {
+      for (int i = 0; i < variables.size(); i++) {
+        if (i > 0) write('\t');
+        write('?');
+        raw(variables.get(i));
+      }
+      write('\n');
+      return;
+    }
+    raw("{\"head\":{\"vars\":[");
+    for (int i = 0; i < variables.size(); i++) {
+      if (i > 0) write(',');
+      jsonString(variables.get(i));
+    }
+    raw("]},\"results\":{\"bindings\":[\n");
+  }
+
+  /** Writes a row (a NULL is an unbound variable) */
+  public void row(Node[] row) throws IOException {
+    if (format == Format.TSV) {
+      for (int i = 0; i < row.length; i++) {
+        if (i > 0) write('\t');
+        if (row[i] != null) tsvTerm(row[i]);
+      }
+      write('\n');
+    } else {
+      if (rows > 0) raw(",\n");
+      write('{');
+      boolean first = true;
+      for (int i = 0; i < row.length; i++) {
+        if (row[i] == null) continue;
+        if (!first) write(',');
+        first = false;
+        jsonString(variables.get(i));
+        write(':');
+        jsonTerm(row[i]);
+      }
+      write('}');
+    }
+    rows++;
+  }
+
+  /** Writes the end */
+  public void end() throws IOException {
+    if (format == Format.JSON) raw("\n]}}\n");
+    flush();
+  }
+
+  /** Returns the number of rows written since start() */
+  public long rows() {
+    return (rows);
+  }
+
+  /** Writes a term in N-Triples form */
+  protected void tsvTerm(Node node) throws IOException {
+    if (node.isURI()) {
+      write('<');
+      raw(node.getURI());
+      write('>');
+    } else if (node.isBlank()) {
+      raw("_:");
+      raw(node.getBlankNodeLabel());
+    } else if (node.isLiteral()) {
+      write('"');
+      String s = node.getLiteralLexicalForm();
+      int start = 0;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        if (c != '\t' && c != '\n' && c != '\r' && c != '"' && c != '\\') continue;
+        raw(s, start, i);
+        start = i + 1;
+        write('\\');
+        write(c == '\t' ? 't' : c == '\n' ? 'n' : c == '\r' ? 'r' : c);
+      }
+      raw(s, start, s.length());
+      write('"');
+      String language = node.getLiteralLanguage();
+      if (language != null && language.length() > 0) {
+        write('@');
+        raw(language);
+      } else if (node.getLiteralDatatypeURI() != null) {
+        raw("^^<");
+        raw(node.getLiteralDatatypeURI());
+        write('>');
+      }
+    } else {
+      raw(node.toString());
+    }
+  }
+
+  /**
+   * Parses a term in the form of the TSV format (N-Triples, or a bare
+   * number or boolean as SPARQL allows), returns NULL for an empty field
+   */
+  public static Node tsvTerm(String term) {
+    if (term.length() == 0) return (null);
+    if (term.startsWith("<") && term.endsWith(">")) return (Node.createURI(term.substring(1, term.length() - 1)));
+    if (term.startsWith("_:")) return (Node.createAnon(new AnonId(term.substring(2))));
+    if (term.startsWith("\"")) {
+      StringBuilder lexical = new StringBuilder();
+      int i = 1;
+      for (; i < term.length() && term.charAt(i) != '"'; i++) {
+        char c = term.charAt(i);
+        if (c == '\\' && i + 1 < term.length()) {
+          c = term.charAt(++i);
+          c = c == 't' ? '\t' : c == 'n' ? '\n' : c == 'r' ? '\r' : c;
+        }
+        lexical.append(c);
+      }
+      String rest = i < term.length() ? term.substring(i + 1) : null;
+      if (rest == null) throw new IllegalArgumentException("Unterminated literal: " + term);
+      if (rest.startsWith("@")) return (Node.createLiteral(lexical.toString(), rest.substring(1), null));
+      if (rest.startsWith("^^<") && rest.endsWith(">")) return (Node.createLiteral(lexical.toString(), null,
+          TypeMapper.getInstance().getSafeTypeByName(rest.substring(3, rest.length() - 1))));
+      if (rest.length() == 0) return (Node.createLiteral(lexical.toString()));
+      throw new IllegalArgumentException("Not a term: " + term);
+    }
+    if (term.equals("true") || term.equals("false")) return (Node.createLiteral(term, null, XSDDatatype.XSDboolean));
+    if (term.matches("[+-]?\\d+")) return (Node.createLiteral(term, null, XSDDatatype.XSDinteger));
+    if (term.matches("[+-]?\\d*\\.\\d+")) return (Node.createLiteral(term, null, XSDDatatype.XSDdecimal));
+    if (term.matches("[+-]?(\\d+\\.?\\d*|\\.\\d+)[eE][+-]?\\d+")) return (Node.createLiteral(term, null, XSDDatatype.XSDdouble));
+    throw new IllegalArgumentException("Not a term: " + term);
+  }
+
+  /** Writes a term as a JSON object */
+  protected void jsonTerm(Node node) throws IOException {
+    if (node.isURI()) {
+      raw("{\"type\":\"uri\",\"value\":");
+      jsonString(node.getURI());
+    } else if (node.isBlank()) {
+      raw("{\"type\":\"bnode\",\"value\":");
+      jsonString(node.getBlankNodeLabel());
+    } else if (node.isLiteral()) {
+      raw("{\"type\":\"literal\",\"value\":");
+      jsonString(node.getLiteralLexicalForm());
+      String language = node.getLiteralLanguage();
+      if (language != null && language.length() > 0) {
+        raw(",\"xml:lang\":");
+        jsonString(language);
+      } else if (node.getLiteralDatatypeURI() != null) {
+        raw(",\"datatype\":");
+        jsonString(node.getLiteralDatatypeURI());
+      }
+    } else {
+      raw("{\"type\":\"literal\",\"value\":");
+      jsonString(node.toString());
+    }
+    write('}');
+  }
+
+  /** Writes a JSON string */
+  protected void jsonString(String s) throws IOException {
+    write('"');
+    int start = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x20 && c != '"' && c != '\\') continue;
+      raw(s, start, i);
+      start = i + 1;
+      switch (c) {
+        case '"':
+          raw("\\\"");
+          break;
+        case '\\':
+          raw("\\\\");
+          break;
+        case '\n':
+          raw("\\n");
+          break;
+        case '\r':
+          raw("\\r");
+          break;
+        case '\t':
+          raw("\\t");
+          break;
+        default:
+          raw(String.format("\\u%04x", (int) c));
+      }
+    }
+    raw(s, start, s.length());
+    write('"');
+  }
+
+  /** Writes the buffer and closes the output */
+  public void close() throws IOException {
+    flush();
+    out.close();
+  }
+}
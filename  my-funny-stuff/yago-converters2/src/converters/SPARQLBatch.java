@@ -0,0 +1,359 @@
+package converters;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.hp.hpl.jena.graph.Node;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Runs many SELECT queries on a number of threads that share the
+ * SPARQLprocessor (the TDB is only read), and writes the rows as TSV in the
+ * order of the input, each row preceded by the number of its query
+ * (starting at 1). The queries come from a file with one query per line
+ * (the header has only ?query then, since the queries may have different
+ * variables), or from a template that is prepared once and a TSV file of
+ * bindings (as written by the ResultWriter), whose header names the
+ * parameters of the template and whose lines give their values. A query
+ * that fails or takes longer than the timeout has no rows. The report gives
+ * the throughput, the percentiles of the latencies, the failed queries and
+ * the slowest queries.
+ *
+ * The basic usage is
+ *    SPARQLBatch batch = new SPARQLBatch(processor, 8, 60000);
+ *    ResultWriter out = new ResultWriter(new FileOutputStream(result), ResultWriter.Format.TSV);
+ *    batch.template("SELECT ?t WHERE { ?entity rdf:type ?t }", bindingsReader, out);
+ *    out.close();
+ *    System.err.println(batch.report());
+ * or java converters.SPARQLprocessor yago.ini batch queries.txt [bindings.tsv] > result.tsv
+ */
+public class SPARQLBatch {
+
+  /** Number of slowest queries in the report */
+  public static final int SLOWEST = 10;
+
+  /** Number of failed queries in the report */
+  public static final int FAILURES = 10;
+
+  /** Longest description of a query in the report */
+  public static final int DESCRIPTION = 200;
+
+  /** The processor */
+  protected final SPARQLprocessor processor;
+
+  /** Number of threads */
+  protected final int threads;
+
+  /** Timeout of a query in milliseconds */
+  protected final long timeout;
+
+  /** The latencies of the queries that were answered */
+  public final LatencyHistogram latencies = new LatencyHistogram();
+
+  /** Number of queries, rows, failed and timed out queries */
+  protected final AtomicLong queries = new AtomicLong(), rows = new AtomicLong(), failed = new AtomicLong(), timedOut = new AtomicLong();
+
+  /** The slowest queries (the fastest of them first) */
+  protected final PriorityQueue<Timing> slowest = new PriorityQueue<Timing>();
+
+  /** The first failed queries */
+  protected final List<String> failures = Collections.synchronizedList(new ArrayList<String>());
+
+  /** Time of the batch in nanoseconds */
+  protected long elapsed;
+
+  /** The threads of the current batch */
+  protected ExecutorService workers;
+
+  /** Aborts queries that take too long */
+  protected ScheduledExecutorService timer;
+
+  /** The latency of a query */
+  protected static class Timing implements Comparable<Timing> {
+
+    /** Latency in nanoseconds */
+    final long nanos;
+
+    /** Number and description of the query */
+    final String query;
+
+    Timing(long nanos, String query) {
+      this.nanos = nanos;
+      this.query = query;
+    }
+
+    @Override
+    public int compareTo(Timing o) {
+      return (nanos < o.nanos ? -1 : nanos > o.nanos ? 1 : 0);
+    }
+  }
+
+  /** A query of the batch, returns its rows as TSV */
+  protected abstract class Task implements Callable<byte[]> {
+
+    /** Number of the query (starting at 1) */
+    protected final long number;
+
+    /** Description of the query for the report */
+    protected final String description;
+
+    protected Task(long number, String description) {
+      this.number = number;
+      this.description = description.length() > DESCRIPTION ? description.substring(0, DESCRIPTION) + "..." : description;
+    }
+
+    /** Starts the query */
+    protected abstract SPARQLprocessor.Rows rows();
+
+    @Override
+    public byte[] call() {
+      long start = System.nanoTime();
+      final AtomicBoolean aborted = new AtomicBoolean(false);
+      ScheduledFuture<?> abort = null;
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      try {
+        final SPARQLprocessor.Rows rows = rows();
+        abort = timer.schedule(new Runnable() {
+
+          @Override
+          public void run() {
+            aborted.set(true);
+            rows.abort();
+          }
+        }, timeout, TimeUnit.MILLISECONDS);
+        ResultWriter out = new ResultWriter(bytes, ResultWriter.Format.TSV);
+        String prefix = number + "\t";
+        try {
+          while (rows.next()) {
+            out.raw(prefix);
+            out.row(rows.row);
+          }
+          // An aborted query may just end, its rows must not look complete
+          if (aborted.get()) throw new IOException("Timeout");
+          out.end();
+        } finally {
+          rows.close();
+        }
+        SPARQLBatch.this.rows.addAndGet(out.rows());
+        long nanos = System.nanoTime() - start;
+        latencies.record(nanos);
+        synchronized (slowest) {
+          if (slowest.size() < SLOWEST || slowest.peek().nanos < nanos) {
+            slowest.add(new Timing(nanos, "#" + number + " " + description));
+            if (slowest.size() > SLOWEST) slowest.poll();
+          }
+        }
+        return (bytes.toByteArray());
+      } catch (Exception e) {
+        if (aborted.get()) timedOut.incrementAndGet();
+        else failed.incrementAndGet();
+        if (failures.size() < FAILURES) failures.add("#" + number + " " + (aborted.get() ? "timeout" : e.toString()) + ": " + description);
+        return (new byte[0]);
+      } finally {
+        if (abort != null) abort.cancel(false);
+      }
+    }
+  }
+
+  /** Runs the queries with a number of threads and a timeout in milliseconds */
+  public SPARQLBatch(SPARQLprocessor processor, int threads, long timeout) {
+    this.processor = processor;
+    this.threads = Math.max(1, threads);
+    this.timeout = timeout;
+  }
+
+  /** Runs the tasks, writes their rows in the order of the tasks */
+  protected void run(Iterable<Task> tasks, ResultWriter out) throws IOException {
+    long start = System.nanoTime();
+    workers = Executors.newFixedThreadPool(threads);
+    timer = Executors.newSingleThreadScheduledExecutor();
+    // The queries that run or wait, at most 4 per thread, so that the rows of
+    // a slow query do not hold up an unbounded number of results
+    ArrayDeque<Future<byte[]>> window = new ArrayDeque<Future<byte[]>>();
+    try {
+      for (Task task : tasks) {
+        queries.incrementAndGet();
+        window.add(workers.submit(task));
+        if (window.size() >= 4 * threads) out.write(get(window.poll()));
+      }
+      while (!window.isEmpty())
+        out.write(get(window.poll()));
+      out.end();
+    } finally {
+      workers.shutdownNow();
+      timer.shutdownNow();
+      elapsed += System.nanoTime() - start;
+    }
+  }
+
+  /** Waits for the rows of a task */
+  protected static byte[] get(Future<byte[]> future) throws IOException {
+    try {
+      return (future.get());
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted");
+    } catch (ExecutionException e) {
+      throw new IOException(e.getCause());
+    }
+  }
+
+  /** Runs the queries of the reader (one per line, blank lines are skipped) */
+  public void queries(final BufferedReader in, ResultWriter out) throws IOException {
+    out.start(Arrays.asList("query"));
+    run(new Iterable<Task>() {
+
+      @Override
+      public Iterator<Task> iterator() {
+        return (new Lines<Task>(in) {
+
+          @Override
+          protected Task task(long number, final String line) {
+            return (new Task(number, line) {
+
+              @Override
+              protected SPARQLprocessor.Rows rows() {
+                return (processor.rows(line, -1));
+              }
+            });
+          }
+        });
+      }
+    }, out);
+  }
+
+  /**
+   * Runs the template for every line of the bindings, a TSV file whose header
+   * names the parameters of the template (as ?entity, or entity)
+   */
+  public void template(String template, final BufferedReader bindings, ResultWriter out) throws IOException {
+    String header = bindings.readLine();
+    if (header == null) throw new IOException("The bindings have no header");
+    final String[] parameters = header.split("\t", -1);
+    final PreparedQuery query = processor.prepare(template, parameters);
+    List<String> variables = new ArrayList<String>();
+    variables.add("query");
+    variables.addAll(query.variables);
+    out.start(variables);
+    run(new Iterable<Task>() {
+
+      @Override
+      public Iterator<Task> iterator() {
+        return (new Lines<Task>(bindings) {
+
+          @Override
+          protected Task task(long number, final String line) {
+            return (new Task(number, line) {
+
+              @Override
+              protected SPARQLprocessor.Rows rows() {
+                String[] fields = line.split("\t", -1);
+                if (fields.length != parameters.length) throw new IllegalArgumentException("Expected " + parameters.length + " values");
+                Node[] values = new Node[fields.length];
+                for (int i = 0; i < fields.length; i++)
+                  values[i] = ResultWriter.tsvTerm(fields[i]);
+                return (query.rows(-1, values));
+              }
+            });
+          }
+        });
+      }
+    }, out);
+  }
+
+  /** Makes a task of every line that is not blank */
+  protected abstract static class Lines<T> implements Iterator<T> {
+
+    /** The lines */
+    protected final BufferedReader in;
+
+    /** The next line (NULL at the end) */
+    protected String next;
+
+    /** Number of the next task */
+    protected long number = 0;
+
+    protected Lines(BufferedReader in) {
+      this.in = in;
+      advance();
+    }
+
+    /** Reads the next line that is not blank */
+    protected void advance() {
+      try {
+        do {
+          next = in.readLine();
+        } while (next != null && next.trim().length() == 0);
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+    }
+
+    /** Makes the task of a line */
+    protected abstract T task(long number, String line);
+
+    @Override
+    public boolean hasNext() {
+      return (next != null);
+    }
+
+    @Override
+    public T next() {
+      T task = task(++number, next);
+      advance();
+      return (task);
+    }
+
+    @Override
+    public void remove() {
+      throw new UnsupportedOperationException();
+    }
+  }
+
+  /** Returns the number of queries that failed or timed out */
+  public long failed() {
+    return (failed.get() + timedOut.get());
+  }
+
+  /** Returns the throughput, the latencies, the failed and the slowest queries */
+  public String report() {
+    StringBuilder report = new StringBuilder();
+    double seconds = elapsed / 1e9;
+    report.append(String.format("queries %d, rows %d, failed %d, timed out %d, %.1f s, %.1f queries/s\n", queries.get(), rows.get(), failed.get(),
+        timedOut.get(), seconds, seconds == 0 ? 0 : queries.get() / seconds));
+    report.append("latency ").append(latencies).append('\n');
+    synchronized (failures) {
+      for (String failure : failures)
+        report.append("failed ").append(failure).append('\n');
+    }
+    List<Timing> timings;
+    synchronized (slowest) {
+      timings = new ArrayList<Timing>(slowest);
+    }
+    Collections.sort(timings, Collections.reverseOrder());
+    for (Timing timing : timings)
+      report.append(String.format("slow %.2f ms %s\n", timing.nanos / 1e6, timing.query));
+    return (report.toString());
+  }
+}
@@ -0,0 +1,357 @@
+package converters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URLDecoder;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javatools.administrative.D;
+import javatools.administrative.Parameters;
+
+import com.hp.hpl.jena.query.QueryException;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Serves SPARQL queries over HTTP, so that several programs can query one
+ * Jena TDB in one JVM. The endpoint follows the SPARQL protocol for SELECT
+ * queries: GET /sparql?query=..., or POST /sparql with a form (query=...) or
+ * with the query as body (application/sparql-query). The rows are streamed
+ * as JSON (application/sparql-results+json, the default) or TSV
+ * (text/tab-separated-values), as asked by the Accept header or by the
+ * parameter format=json|tsv. GET /stats shows the counters and the
+ * latencies.
+ *
+ * The queries run on a pool of a fixed number of threads, which share the
+ * SPARQLprocessor (the TDB is only read). At most that many queries run and
+ * at most a given number wait; a request beyond that is refused at once
+ * with 503, so that an overloaded endpoint does not pile up work. A query
+ * that takes longer than the timeout is aborted. If it has not written
+ * anything yet, it gets 503, else the response is cut off.
+ *
+ * The basic usage is
+ *    SPARQLEndpoint endpoint = new SPARQLEndpoint(processor, 3030, 8, 32, 60000);
+ *    endpoint.start();
+ *    ...
+ *    endpoint.stop();
+ * or, with the parameters of the yago.ini, java converters.SPARQLEndpoint yago.ini
+ */
+public class SPARQLEndpoint {
+
+  /** Maximal size of a request body */
+  public static final int MAX_BODY = 1 << 20;
+
+  /** The processor */
+  protected final SPARQLprocessor processor;
+
+  /** The server */
+  protected final HttpServer server;
+
+  /** The threads that run the queries */
+  protected final ThreadPoolExecutor workers;
+
+  /** Aborts queries that take too long */
+  protected final ScheduledExecutorService timer = Executors.newSingleThreadScheduledExecutor();
+
+  /** One permit per query that runs or waits */
+  protected final Semaphore admission;
+
+  /** Timeout of a query in milliseconds */
+  public final long timeout;
+
+  /** Latencies of the answered queries */
+  public final LatencyHistogram latencies = new LatencyHistogram();
+
+  /** Number of refused, timed-out and failed requests */
+  protected final AtomicLong refused = new AtomicLong(), timedOut = new AtomicLong(), failed = new AtomicLong();
+
+  /**
+   * Creates an endpoint on the port of the local host, with the given number
+   * of threads, at most queueSize waiting queries, and a timeout in
+   * milliseconds
+   */
+  public SPARQLEndpoint(SPARQLprocessor processor, int port, int threads, int queueSize, long timeout) throws IOException {
+    this(processor, new InetSocketAddress(InetAddress.getLoopbackAddress(), port), threads, queueSize, timeout);
+  }
+
+  /** Creates an endpoint on the address */
+  public SPARQLEndpoint(SPARQLprocessor processor, InetSocketAddress address, int threads, int queueSize, long timeout) throws IOException {
+    this.processor = processor;
+    this.timeout = timeout;
+    threads = Math.max(1, threads);
+    workers = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>());
+    admission = new Semaphore(threads + Math.max(0, queueSize));
+    server = HttpServer.create(address, 0);
+    // The handlers run on the thread of the server, they only admit requests
+    server.createContext("/sparql", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        admit(exchange);
+      }
+    });
+    server.createContext("/stats", new HttpHandler() {
+
+      @Override
+      public void handle(HttpExchange exchange) throws IOException {
+        send(exchange, 200, stats());
+      }
+    });
+  }
+
+  /** Starts the server */
+  public void start() {
+    server.start();
+  }
+
+  /** Returns the port */
+  public int port() {
+    return (server.getAddress().getPort());
+  }
+
+  /** Stops the server, waits at most a second for the running queries */
+  public void stop() {
+    server.stop(1);
+    workers.shutdownNow();
+    timer.shutdownNow();
+  }
+
+  /** Hands the request to the workers, or refuses it if too many queries run and wait */
+  protected void admit(final HttpExchange exchange) throws IOException {
+    if (!admission.tryAcquire()) {
+      refuse(exchange);
+      return;
+    }
+    final long start = System.nanoTime();
+    try {
+      workers.execute(new Runnable() {
+
+        @Override
+        public void run() {
+          try {
+            serve(exchange, start);
+          } finally {
+            admission.release();
+            exchange.close();
+          }
+        }
+      });
+    } catch (RejectedExecutionException e) {
+      admission.release();
+      refuse(exchange);
+    }
+  }
+
+  /** Refuses a request with 503 */
+  protected void refuse(HttpExchange exchange) throws IOException {
+    refused.incrementAndGet();
+    exchange.getResponseHeaders().set("Retry-After", "1");
+    send(exchange, 503, "Too many queries, please try again\n");
+  }
+
+  /** Answers a request */
+  protected void serve(HttpExchange exchange, long start) {
+    LazyResponse response = null;
+    final AtomicBoolean aborted = new AtomicBoolean();
+    ScheduledFuture<?> abort = null;
+    try {
+      Map<String, String> parameters = parameters(exchange);
+      String query = parameters.get("query");
+      if (query == null) {
+        send(exchange, 400, "Please give a query, as in /sparql?query=SELECT...\n");
+        return;
+      }
+      ResultWriter.Format format = format(parameters.get("format"), exchange.getRequestHeaders().getFirst("Accept"));
+      final SPARQLprocessor.Rows rows;
+      try {
+        rows = processor.rows(query, -1);
+      } catch (QueryException e) {
+        send(exchange, 400, "Bad query: " + e.getMessage() + "\n");
+        return;
+      }
+      abort = timer.schedule(new Runnable() {
+
+        @Override
+        public void run() {
+          aborted.set(true);
+          rows.abort();
+        }
+      }, Math.max(0, timeout - (System.nanoTime() - start) / 1000000), TimeUnit.MILLISECONDS);
+      response = new LazyResponse(exchange, format == ResultWriter.Format.TSV ? "text/tab-separated-values; charset=utf-8"
+          : "application/sparql-results+json; charset=utf-8");
+      ResultWriter out = new ResultWriter(response, format);
+      try {
+        out.start(rows.variables);
+        while (rows.next())
+          out.row(rows.row);
+        // An aborted query may just end, its rows must not look complete
+        if (aborted.get()) throw new IOException("Timeout");
+        out.end();
+      } finally {
+        rows.close();
+      }
+      out.close();
+      latencies.record(System.nanoTime() - start);
+    } catch (Exception e) {
+      if (aborted.get()) timedOut.incrementAndGet();
+      else failed.incrementAndGet();
+      // The headers are not sent yet if nothing was written
+      if (response == null || !response.started) {
+        try {
+          if (aborted.get()) send(exchange, 503, "The query took longer than " + timeout + " ms\n");
+          else send(exchange, 500, "Error: " + e + "\n");
+        } catch (IOException ignored) {
+          // The client is gone
+        }
+      }
+    } finally {
+      if (abort != null) abort.cancel(false);
+    }
+  }
+
+  /** Returns the format of the format parameter, or of the Accept header (JSON by default) */
+  protected static ResultWriter.Format format(String parameter, String accept) {
+    if (parameter != null) return (parameter.equalsIgnoreCase("tsv") || parameter.contains("tab-separated") ? ResultWriter.Format.TSV : ResultWriter.Format.JSON);
+    if (accept != null && accept.contains("text/tab-separated-values") && !accept.contains("application/sparql-results+json")) return (ResultWriter.Format.TSV);
+    return (ResultWriter.Format.JSON);
+  }
+
+  /** Returns the parameters of the URL and of the body (a form, or a query) */
+  protected static Map<String, String> parameters(HttpExchange exchange) throws IOException {
+    Map<String, String> parameters = new HashMap<String, String>();
+    decode(exchange.getRequestURI().getRawQuery(), parameters);
+    if (exchange.getRequestMethod().equalsIgnoreCase("POST")) {
+      String type = exchange.getRequestHeaders().getFirst("Content-Type");
+      String body = body(exchange.getRequestBody());
+      if (type != null && type.startsWith("application/sparql-query")) parameters.put("query", body);
+      else decode(body, parameters);
+    }
+    return (parameters);
+  }
+
+  /** Adds the parameters of a URL-encoded string */
+  protected static void decode(String encoded, Map<String, String> parameters) throws IOException {
+    if (encoded == null) return;
+    for (String pair : encoded.split("&")) {
+      int eq = pair.indexOf('=');
+      if (eq < 0) continue;
+      parameters.put(URLDecoder.decode(pair.substring(0, eq), "UTF-8"), URLDecoder.decode(pair.substring(eq + 1), "UTF-8"));
+    }
+  }
+
+  /** Reads the body as UTF-8 */
+  protected static String body(InputStream in) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int n = in.read(buffer); n > 0; n = in.read(buffer)) {
+      bytes.write(buffer, 0, n);
+      if (bytes.size() > MAX_BODY) throw new IOException("The request is larger than " + MAX_BODY + " bytes");
+    }
+    return (bytes.toString("UTF-8"));
+  }
+
+  /** Sends a text response */
+  protected static void send(HttpExchange exchange, int status, String text) throws IOException {
+    byte[] bytes = text.getBytes("UTF-8");
+    exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+    exchange.sendResponseHeaders(status, bytes.length);
+    OutputStream out = exchange.getResponseBody();
+    out.write(bytes);
+    out.close();
+  }
+
+  /** Returns the counters and latencies */
+  public String stats() {
+    return ("running " + workers.getActiveCount() + ", waiting " + workers.getQueue().size() + ", answered " + latencies.count() + ", refused "
+        + refused.get() + ", timed out " + timedOut.get() + ", failed " + failed.get() + "\nlatency " + latencies + "\n");
+  }
+
+  /** The body of a response, which sends the headers (status 200, chunked) with the first bytes */
+  protected static class LazyResponse extends OutputStream {
+
+    /** The exchange */
+    protected final HttpExchange exchange;
+
+    /** The content type */
+    protected final String contentType;
+
+    /** The body (after the headers have been sent) */
+    protected OutputStream body;
+
+    /** TRUE once the headers have been sent */
+    protected boolean started = false;
+
+    protected LazyResponse(HttpExchange exchange, String contentType) {
+      this.exchange = exchange;
+      this.contentType = contentType;
+    }
+
+    /** Sends the headers */
+    protected void begin() throws IOException {
+      if (started) return;
+      started = true;
+      exchange.getResponseHeaders().set("Content-Type", contentType);
+      exchange.sendResponseHeaders(200, 0);
+      body = exchange.getResponseBody();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      begin();
+      body.write(b);
+    }
+
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+      begin();
+      body.write(bytes, offset, length);
+    }
+
+    @Override
+    public void close() throws IOException {
+      begin();
+      body.close();
+    }
+  }
+
+  /** Serves the Jena TDB of the yago.ini (parameters sparqlPort, sparqlThreads, sparqlQueueSize, sparqlTimeout) */
+  public static void main(String[] args) throws Exception {
+    String initFile = args == null || args.length == 0 ? "yago.ini" : args[0];
+    Parameters.init(new File(initFile));
+    Parameters.getOrRequestAndAdd("jena",
+        "Specify the path to the YAGO2 Jena TDB dump (either download from our website or create using yago2converters.sh)");
+    int threads = Parameters.getInt("sparqlThreads", Runtime.getRuntime().availableProcessors());
+    SPARQLprocessor processor = new SPARQLprocessor(Parameters.get("jena"), 0);
+    SPARQLEndpoint endpoint = new SPARQLEndpoint(processor, Parameters.getInt("sparqlPort", 3030), threads, Parameters.getInt("sparqlQueueSize", 4 * threads),
+        Parameters.getInt("sparqlTimeout", 60) * 1000L);
+    endpoint.start();
+    D.p("Serving SPARQL at http://localhost:" + endpoint.port() + "/sparql with " + threads + " threads, statistics at /stats");
+    D.p("Press ENTER to stop");
+    D.r();
+    endpoint.stop();
+    D.p(endpoint.stats());
+    processor.close();
+  }
+}
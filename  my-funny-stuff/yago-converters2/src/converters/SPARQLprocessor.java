@@ -1,9 +1,19 @@
 package converters;
 
+import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
+import java.io.FileDescriptor;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.TreeMap;
 
@@ -12,6 +22,7 @@ import javatools.administrative.D;
 import javatools.administrative.Parameters;
 import javatools.datatypes.PeekIterator;
 
+import com.hp.hpl.jena.graph.Node;
 import com.hp.hpl.jena.query.Query;
 import com.hp.hpl.jena.query.QueryExecution;
 import com.hp.hpl.jena.query.QueryExecutionFactory;
@@ -20,7 +31,14 @@ import com.hp.hpl.jena.query.QuerySolution;
 import com.hp.hpl.jena.query.ResultSet;
 import com.hp.hpl.jena.rdf.model.Model;
 import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.sparql.core.DatasetGraph;
+import com.hp.hpl.jena.sparql.core.Var;
+import com.hp.hpl.jena.sparql.engine.QueryIterator;
+import com.hp.hpl.jena.sparql.engine.binding.Binding;
 import com.hp.hpl.jena.tdb.TDBFactory;
+import com.hp.hpl.jena.tdb.store.DatasetGraphTDB;
+import com.hp.hpl.jena.tdb.store.GraphTDB;
+import com.hp.hpl.jena.tdb.sys.TDBMaker;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -39,6 +57,27 @@ import com.hp.hpl.jena.tdb.TDBFactory;
  *    // Other queries go here
  *    qp.close();
  * 
+ * For queries with many results, rows() returns the rows as a cursor over
+ * an array of Jena nodes that is reused for every row, and write() streams
+ * them to a ResultWriter (as TSV or JSON):
+ *    ResultWriter out = new ResultWriter(new FileOutputStream(file), ResultWriter.Format.TSV);
+ *    qp.write("SELECT ?x WHERE { ?x rdf:type :wordnet_person_100007846 }", -1, out);
+ *    out.close();
+ * 
+ * A query that is asked again and again with different values, such as a
+ * lookup of an entity, can be prepared once and then answered without
+ * parsing and optimising it again:
+ *    PreparedQuery types = qp.prepare("SELECT ?t WHERE { ?entity rdf:type ?t }", "entity");
+ *    SPARQLprocessor.Rows rows = types.rows(-1, Node.createURI(RDFSConverter.ns + "Albert_Einstein"));
+ * 
+ * The results of query() are kept in a QueryCache (of 32 MB by default, or
+ * of the size given to the constructor), so that a query that comes again
+ * is answered at once. A result is kept once it has been read to the end.
+ * When the JenaConverter has loaded the Jena TDB again, which it tells by
+ * the version file of the TDB directory, the processor opens the TDB again
+ * and clears the cache. Queries that still run on the old TDB fail then. The
+ * solutions cannot be modified.
+ * 
  * @author Fabian M. Suchanek
  */
 
@@ -49,12 +88,44 @@ public class SPARQLprocessor implements Closeable {
       + "PREFIX rdfs: <http://www.w3.org/2000/01/rdf-schema#>";
 
   /** Holds the Jena model*/
-  protected Model model;
+  protected volatile Model model;
+
+  /** The default size of the query cache */
+  public static final long DEFAULT_CACHE_SIZE = 32L << 20;
+
+  /** The Jena TDB as a dataset, for the prepared queries */
+  protected volatile DatasetGraph dataset;
+
+  /** The directory of the Jena TDB */
+  protected final String directory;
+
+  /** Keeps the results of queries */
+  protected final QueryCache cache;
+
+  /** The version file of the Jena TDB */
+  protected final File versionFile;
+
+  /** The version of the Jena TDB of the cached results (NULL before the first query) */
+  protected String version;
+
+  /** The modification time and file key of the version file when it was read last */
+  protected Object versionModified, versionKey;
+
+  /** When the version file was read last */
+  protected long versionRead;
 
   /** Constructs a processor from a directory where the Jena version of YAGO lives*/
   public SPARQLprocessor(String jenaTDBdirectory) {
+    this(jenaTDBdirectory, DEFAULT_CACHE_SIZE);
+  }
+
+  /** Constructs a processor with a query cache of the given number of bytes (0 for none) */
+  public SPARQLprocessor(String jenaTDBdirectory, long cacheSize) {
+    cache = new QueryCache(cacheSize);
+    directory = jenaTDBdirectory;
+    versionFile = new File(jenaTDBdirectory, JenaConverter.VERSION);
     Announce.doing("Connecting to Jena version of YAGO");
-    model = TDBFactory.createModel(jenaTDBdirectory);
+    open();
     // YAGO is too large for reasoning with RDFS...
     //model=ModelFactory.createRDFSModel(model);
     // YAGO is also too large to reason with Pellet...
@@ -72,6 +143,26 @@ public class SPARQLprocessor implements Closeable {
     Announce.done();
   }
 
+  /** Opens the model and the dataset of the Jena TDB */
+  protected void open() {
+    model = TDBFactory.createModel(directory);
+    dataset = ((GraphTDB) model.getGraph()).getDataset();
+  }
+
+  /**
+   * Opens the Jena TDB again. The old dataset is taken out of the cache of
+   * TDB and closed, so that the new one reads the files of the new load
+   */
+  protected void reopen() {
+    Announce.doing("Reconnecting to the new Jena version of YAGO");
+    DatasetGraph old = dataset;
+    model.close();
+    if (old instanceof DatasetGraphTDB) TDBMaker.releaseDataset((DatasetGraphTDB) old);
+    old.close();
+    open();
+    Announce.done();
+  }
+
   /** Frees resources*/
   public void close() {
     Announce.doing("Closing Jena version of YAGO");
@@ -79,26 +170,75 @@ public class SPARQLprocessor implements Closeable {
     Announce.done();
   }
 
-  /** returns variable bindings for a SPARQL query */
-  public Iterable<Map<String, RDFNode>> query(String sparql, final int maxAnswers) {
-    sparql = prefixes + "\n" + sparql;
-    Query query = null;
+  /** Returns the query cache (for the statistics) */
+  public QueryCache cache() {
+    return (cache);
+  }
+
+  /**
+   * Opens the Jena TDB again and clears the cache if the version of the
+   * Jena TDB changed. The version file
+   * is read if its modification time or its file key (the inode, which
+   * changes whenever the JenaConverter writes it) changed, or at least every
+   * second (for file systems without file keys)
+   */
+  protected synchronized void checkVersion() {
+    long now = System.currentTimeMillis();
+    Object modified = null, key = null;
     try {
-      query = QueryFactory.create(sparql);
-    } catch (RuntimeException e) {
-      D.p(query);
-      throw e;
+      BasicFileAttributes attributes = Files.readAttributes(versionFile.toPath(), BasicFileAttributes.class);
+      modified = attributes.lastModifiedTime();
+      key = attributes.fileKey();
+    } catch (IOException e) {
+      // No version file
+    }
+    if (version != null && equal(modified, versionModified) && equal(key, versionKey) && (key != null || now - versionRead < 1000)) return;
+    versionModified = modified;
+    versionKey = key;
+    versionRead = now;
+    String current = JenaConverter.readVersion(versionFile);
+    if (version != null && !version.equals(current)) {
+      reopen();
+      cache.clear();
     }
-    final QueryExecution qexec = QueryExecutionFactory.create(query, model);
+    version = current;
+  }
+
+  /** TRUE if both are NULL or equal */
+  protected static boolean equal(Object a, Object b) {
+    return (a == null ? b == null : a.equals(b));
+  }
+
+  /** Parses a query (with the prefixes) */
+  protected Query parse(String sparql) {
+    return (QueryFactory.create(prefixes + "\n" + sparql));
+  }
+
+  /** returns variable bindings for a SPARQL query */
+  public Iterable<Map<String, RDFNode>> query(String sparql, final int maxAnswers) {
+    final String key = QueryCache.key(sparql, maxAnswers);
+    checkVersion();
+    List<Map<String, RDFNode>> cached = cache.get(key);
+    if (cached != null) return (cached);
+    final long generation = cache.generation();
+    final QueryExecution qexec = QueryExecutionFactory.create(parse(sparql), model);
     final ResultSet results = qexec.execSelect();
     return (new PeekIterator<Map<String, RDFNode>>() {
 
       int counter = maxAnswers;
 
+      /** The solutions so far, for the cache (NULL if the result is too large) */
+      List<Map<String, RDFNode>> solutions = cache.maxResultSize() > 0 ? new ArrayList<Map<String, RDFNode>>() : null;
+
+      /** Estimated size of the solutions */
+      long size = 0;
+
       @Override
       protected Map<String, RDFNode> internalNext() throws Exception {
         if (counter-- == 0 || !results.hasNext()) {
           qexec.close();
+          if (solutions != null) cache.put(key, solutions, size, generation);
+          solutions = null;
           return (null);
         }
         QuerySolution soln = results.nextSolution();
@@ -108,14 +248,122 @@ public class SPARQLprocessor implements Closeable {
           String v = vs.next();
           result.put(v, soln.get(v));
         }
+        result = Collections.unmodifiableMap(result);
+        if (solutions != null) {
+          size += QueryCache.size(result);
+          if (size > cache.maxResultSize()) solutions = null;
+          else solutions.add(result);
+        }
         return (result);
       }
 
     });
   }
 
+  /**
+   * The rows of a SELECT query as a cursor. The variables are resolved once,
+   * and next() puts the values of the current row into the same array of
+   * Jena nodes (NULL for an unbound variable), so a row costs no map and no
+   * RDFNode. The rows do not go through the cache.
+   */
+  public static class Rows implements Closeable {
+
+    /** The projected variables */
+    public final List<String> variables;
+
+    /** The variables as Jena variables */
+    protected final Var[] vars;
+
+    /** The values of the current row, reused for every row */
+    public final Node[] row;
+
+    /** The bindings of the query */
+    protected final QueryIterator bindings;
+
+    /** Number of rows that may still come (negative for any number) */
+    protected long remaining;
+
+    protected Rows(List<String> variables, QueryIterator bindings, long maxAnswers) {
+      this.variables = variables;
+      this.bindings = bindings;
+      vars = new Var[variables.size()];
+      for (int i = 0; i < vars.length; i++)
+        vars[i] = Var.alloc(variables.get(i));
+      row = new Node[vars.length];
+      remaining = maxAnswers;
+    }
+
+    /** Moves to the next row, returns FALSE at the end (and closes the cursor) */
+    public boolean next() {
+      if (remaining-- == 0 || !bindings.hasNext()) {
+        close();
+        return (false);
+      }
+      Binding binding = bindings.nextBinding();
+      for (int i = 0; i < vars.length; i++)
+        row[i] = binding.get(vars[i]);
+      return (true);
+    }
+
+    /** Returns the value of the variable at the index in the current row (NULL if unbound) */
+    public Node get(int variable) {
+      return (row[variable]);
+    }
+
+    /** Stops the query (may be called by another thread, e.g. on a timeout) */
+    public void abort() {
+      bindings.abort();
+    }
+
+    @Override
+    public void close() {
+      remaining = 0;
+      bindings.close();
+    }
+  }
+
+  /**
+   * Parses and optimises a SELECT query once, so that it can be answered for
+   * different values of the given variables (with or without the "?")
+   */
+  public PreparedQuery prepare(String sparql, String... parameters) {
+    return (new PreparedQuery(this, parse(sparql), parameters));
+  }
+
+  /** Returns the rows of a SELECT query as a cursor (maxAnswers -1 for all) */
+  public Rows rows(String sparql, int maxAnswers) {
+    return (prepare(sparql).rows(maxAnswers));
+  }
+
+  /** Writes the rows of a SELECT query (maxAnswers -1 for all), returns the number of rows */
+  public long write(String sparql, int maxAnswers, ResultWriter out) throws IOException {
+    return (prepare(sparql).write(maxAnswers, out));
+  }
+
+  /** Reads all lines */
+  protected static String read(BufferedReader in) throws IOException {
+    StringBuilder text = new StringBuilder();
+    for (String line = in.readLine(); line != null; line = in.readLine())
+      text.append(line).append('\n');
+    in.close();
+    return (text.toString());
+  }
+
+  /**
+   * Answers the SPARQL queries that are typed in. With a second argument
+   * (tsv or json), writes the rows of the query of stdin to stdout in that
+   * format instead. With "batch queryFile" or "batch templateFile
+   * bindingsFile", runs the queries with a SPARQLBatch (parameters
+   * sparqlThreads and sparqlTimeout), writes the rows to stdout and the
+   * report to stderr
+   */
   public static void main(String[] args) throws IOException {
-    D.p("Welcome to the YAGO2 SPARQL processor!\n");
+    if (args != null && args.length > 1) {
+      // Messages go to stderr, so that stdout has only the results
+      Announce.setWriter(System.err);
+    } else {
+      D.p("Welcome to the YAGO2 SPARQL processor!\n");
+    }
     String initFile = args == null || args.length == 0 ? "yago.ini" : args[0];
     File f = new File(initFile);
     if (!f.exists()) {
@@ -127,7 +375,29 @@ public class SPARQLprocessor implements Closeable {
     Parameters.getOrRequestAndAdd("jena",
         "Specify the path to the YAGO2 Jena TDB dump (either download from our website or create using yago2converters.sh)");
     String directory = Parameters.get("jena");
-    SPARQLprocessor qp = new SPARQLprocessor(directory);
+    SPARQLprocessor qp = new SPARQLprocessor(directory, Parameters.getInt("sparqlCacheSize", (int) (DEFAULT_CACHE_SIZE >> 20)) * (1L << 20));
+    if (args != null && args.length > 2 && args[1].equalsIgnoreCase("batch")) {
+      SPARQLBatch batch = new SPARQLBatch(qp, Parameters.getInt("sparqlThreads", Runtime.getRuntime().availableProcessors()), Parameters.getInt(
+          "sparqlTimeout", 60) * 1000L);
+      ResultWriter out = new ResultWriter(new FileOutputStream(FileDescriptor.out), ResultWriter.Format.TSV);
+      if (args.length > 3) batch.template(read(new BufferedReader(new InputStreamReader(new FileInputStream(args[2]), "UTF-8"))), new BufferedReader(
+          new InputStreamReader(new FileInputStream(args[3]), "UTF-8")), out);
+      else batch.queries(new BufferedReader(new InputStreamReader(new FileInputStream(args[2]), "UTF-8")), out);
+      out.close();
+      System.err.print(batch.report());
+      qp.close();
+      return;
+    }
+    if (args != null && args.length > 1) {
+      ResultWriter.Format format = ResultWriter.Format.valueOf(args[1].toUpperCase());
+      String query = read(new BufferedReader(new InputStreamReader(System.in, "UTF-8")));
+      ResultWriter out = new ResultWriter(new FileOutputStream(FileDescriptor.out), format);
+      long rows = qp.write(query, -1, out);
+      out.close();
+      Announce.message("Wrote", rows, "rows");
+      qp.close();
+      return;
+    }
     D.p("\nTo know the relations that exist in YAGO, ask\n   SELECT ?r { ?r rdfs:domain ?x }");
     while (true) {
       D.p("\nEnter a SPARQL query, followed by a blank line (or a blank line to quit)");
@@ -147,6 +417,7 @@ public class SPARQLprocessor implements Closeable {
         D.p("Error:", e.getMessage());
       }
     }
+    D.p(qp.cache());
     qp.close();
   }
 }
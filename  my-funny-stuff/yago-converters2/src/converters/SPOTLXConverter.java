@@ -21,7 +21,6 @@ import javatools.administrative.Announce;
 import javatools.administrative.D;
 import javatools.administrative.Parameters;
 import javatools.database.MySQLDatabase;
-import javatools.filehandlers.FileLines;
 import basics.Config;
 import basics.Normalize;
 
@@ -33,6 +32,8 @@ import com.sleepycat.je.DatabaseConfig;
 import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
 
+import converters.facts.Fact;
+import converters.facts.FactReader;
 import converters.spotlx.DateParser;
 import converters.spotlx.GeoLocation;
 import converters.spotlx.IndexCreator;
@@ -96,6 +97,18 @@ public class SPOTLXConverter extends Converter {
 	/** Counts the number of not-yet-inserted but batched relational facts */
 	private int batchCount;
 
+	/** Name of the fact file that is being loaded (for the checkpoints) */
+	private String currentFile;
+
+	/** Reader of the fact file that is being loaded (for the checkpoints) */
+	private FactReader currentReader;
+
+	/** Offset of the last fact that has been batched */
+	private long currentOffset;
+
+	/** Number of facts of the current file that have been batched */
+	private long currentCount;
+
 	/** Initialize locations associated with entities 
 	 * @throws IOException 
 	 * @throws NumberFormatException */
@@ -103,10 +116,9 @@ public class SPOTLXConverter extends Converter {
 
 		Announce.doing("Initializing geoLocations......");
 
-		for (String l : new FileLines(new File(yagoFolder, "hasGeoCoordinates.tsv"), "Initializing geo-coordinates")) {
-			String[] data = l.split("\t");
-			String entity = data[1];
-			String geoCoordinates = data[2].substring(1, data[2].length() - 1);
+		for (Fact fact : readFacts(factFile("hasGeoCoordinates"), "Initializing geo-coordinates")) {
+			String entity = fact.arg1.toString();
+			String geoCoordinates = fact.arg2.toString().substring(1, fact.arg2.length() - 1);
 			int pos = geoCoordinates.indexOf('/');
 			double lat = Double.parseDouble(geoCoordinates.substring(0, pos));
 			double lon = Double.parseDouble(geoCoordinates.substring(pos + 1, geoCoordinates.length()));
@@ -125,11 +137,10 @@ public class SPOTLXConverter extends Converter {
 		Announce.doing("Initializing location entities");
 
 		for (String relation : rels) {
-			for (String line : new FileLines(new File(yagoFolder, relation + ".tsv"), "Initializing for " + relation)) {
-				String[] data = line.split("\t");
-				String fact = data[1];
-				String location = data[2];
-				locations.put(fact, location);
+			for (Fact fact : readFacts(factFile(relation), "Initializing for " + relation)) {
+				String factId = fact.arg1.toString();
+				String location = fact.arg2.toString();
+				locations.put(factId, location);
 			}
 		}
 
@@ -146,13 +157,11 @@ public class SPOTLXConverter extends Converter {
 		Announce.doing("Initializing time intervals");
 
 		for (String relation : rels) {
-			for (String line : new FileLines(new File(yagoFolder, relation + ".tsv"), "Initializing for " + relation)) {
-				String[] data = line.split("\t");
-
-				String fact = data[1];
-				String date = data[2];
+			for (Fact fact : readFacts(factFile(relation), "Initializing for " + relation)) {
+				String factId = fact.arg1.toString();
+				String date = fact.arg2.toString();
 
-				NewTimeInterval timeInterval = timeIntervals.get(fact);
+				NewTimeInterval timeInterval = timeIntervals.get(factId);
 				if (timeInterval == null) {
 					timeInterval = new NewTimeInterval();					
 				}
@@ -163,7 +172,7 @@ public class SPOTLXConverter extends Converter {
 					timeInterval.setEnd(date);
 				}
 				
-				timeIntervals.put(fact, timeInterval);
+				timeIntervals.put(factId, timeInterval);
 			}
 		}
 
@@ -175,12 +184,11 @@ public class SPOTLXConverter extends Converter {
 	/** Initializes witnesses associated with facts 
 	 * @throws IOException */
 	private void initializeWitnesses() throws IOException {
-		for (String l : new FileLines(new File(yagoFolder, "wasFoundIn.tsv"), "Initializing witnesses")) {
-			String[] data = l.split("\t");
-			String fact = data[1];
-			String witness = data[2];
+		for (Fact fact : readFacts(factFile("wasFoundIn"), "Initializing witnesses")) {
+			String factId = fact.arg1.toString();
+			String witness = fact.arg2.toString();
 
-			witnesses.put(fact, witness);
+			witnesses.put(factId, witness);
 		}
 		Announce.message(witnesses.size() + " primary witnesses");
 	}
@@ -193,11 +201,10 @@ public class SPOTLXConverter extends Converter {
 		Announce.doing("Initializing contexts");
 
 		for (String relation : rels) {
-			for (String line : new FileLines(new File(yagoFolder, relation + ".tsv"), "Initializing for " + relation)) {
-				String[] data = line.split("\t");
-				String entity = data[1];
+			for (Fact fact : readFacts(factFile(relation), "Initializing for " + relation)) {
+				String entity = fact.arg1.toString();
 				String context = contexts.get(entity);
-				context = (context == null ? "" : context + '\t') + Normalize.unNormalize(data[2]);
+				context = (context == null ? "" : context + '\t') + Normalize.unNormalize(fact.arg2.toString());
 				contexts.put(entity, context);
 
 			}
@@ -292,15 +299,20 @@ public class SPOTLXConverter extends Converter {
 		targetConn = DriverManager.getConnection(targetUrl, targetUser, targetPW);		
 		pstmtInsertRelationalFact = targetConn.prepareStatement(insertRelationalFact);
 
-		for (File f : yagoFolder.listFiles()) {
-			loadFactsFrom(f);
-		}		
+		// every batch is committed together with its checkpoint, a failure rolls back the facts after the last checkpoint
+		targetConn.setAutoCommit(false);
+		boolean loaded = false;
+		try {
+			for (File f : yagoFolder.listFiles()) {
+				loadFactsFrom(f);
+			}
+			loaded = true;
+		} finally {
+			if (!loaded) targetConn.rollback();
+			targetConn.setAutoCommit(true);
+		}
 		Announce.done();
 
-		// process last batch
-		refreschConnection();
-		execute();
-
 		geolocationsDB.close();
 		locationsDB.close();
 		timeIntervalsDB.close();
@@ -318,6 +330,7 @@ public class SPOTLXConverter extends Converter {
 		Announce.doing("Computing Statistics");
 		computeStatistics();
 		Announce.done();
+		checkpoint().clear();
 
 		/*Announce.doing("Creating Indexes");
 		createIndexes(targetUrl, targetUser, targetPW);
@@ -435,11 +448,18 @@ public class SPOTLXConverter extends Converter {
 		String relation = relationForFactFile(file);
 		if (relation == null) return;
 
-		for (String l : new FileLines(file, "Parsing " + file)) {
-			String[] data = l.split("\t");
-			String id = data[0];
-			String arg1 = data[1];
-			String arg2 = data[2];
+		currentFile = file.getName();
+		if (checkpoint().isDone(currentFile)) {
+			Announce.message("Skipping", file, "(loaded before the checkpoint)");
+			return;
+		}
+		currentCount = checkpoint().count(currentFile);
+		currentReader = readFactsAfterCheckpoint(file, "Parsing " + file);
+		for (Fact fact : currentReader) {
+			currentOffset = fact.offset();
+			String id = fact.id.toString();
+			String arg1 = fact.arg1.toString();
+			String arg2 = fact.arg2.toString();
 
 			if (relation.equals("hasGloss") && arg2.length() > maximumFactLength) {
 				arg2 = arg2.subSequence(0, maximumFactLength-4) + "...\"";
@@ -472,26 +492,30 @@ public class SPOTLXConverter extends Converter {
 			context = (objectContext != null ? context + '\t' + objectContext : context);
 
 			// add de-reified fact to batch                
+			currentCount++;
 			insert(id, relation, arg1, arg2, timeBegin, timeEnd, location, locationLatitude, locationLongitude, primaryWitness, context);
 		}
+
+		// send the rest of the batch, so that the checkpoint can mark the file as complete
+		refreschConnection();
+		execute();
+		batchCount = 0;
+		checkpoint().done(currentFile, currentReader, currentCount);
 	}
 
 	private void refreschConnection() throws SQLException {
-		// if the connection is closed, re-open it
+		// a new connection would lose the facts after the last checkpoint, which are committed only with the next one
 		if (targetConn == null || targetConn.isClosed()) {
-			D.pl("Connection is closed. Re-establishing it....");
-			String targetHost = Parameters.get("databaseHost");
-			String targetPort = ":3306";
-			String targetDatabase = Parameters.get("databaseDatabase");
-			String targetUser = Parameters.get("databaseUser");
-			String targetPW = Parameters.get("databasePassword");
-
-			String targetUrl = "jdbc:mysql://" + targetHost + targetPort + (targetDatabase == null ? "" : "/" + targetDatabase);
-			targetConn = DriverManager.getConnection(targetUrl, targetUser, targetPW);
-			D.pl("Connection re-established successfully");
+			throw new SQLException("The connection to the database was closed, run again with resumeConversion = yes");
 		}
 	}
 
+	/** Keeps the checkpoints in the table relationalfacts_checkpoint, where they are committed together with the facts */
+	@Override
+	protected Checkpoint newCheckpoint() throws IOException {
+		return (new DatabaseCheckpoint(targetConn, "relationalfacts_checkpoint"));
+	}
+
 	/** Adds relational (i.e., de-reified fact) to batch */
 	private void insert(String id, String relation, String arg1, String arg2, String timeBegin, String timeEnd, String location, 
 			double locationLatitude, double locationLongitude, String primaryWitness, String context) {
@@ -543,11 +567,14 @@ public class SPOTLXConverter extends Converter {
 			if (++batchCount % BATCH_SIZE == 0) {
 				refreschConnection();
 				execute();
+				checkpoint().commit(currentFile, currentReader, currentOffset, currentCount);
 			}
 		} catch (SQLException sqle) {
 			sqle.printStackTrace();
 			//sqle.getNextException().printStackTrace();
 			throw new RuntimeException(sqle);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
 		}
 	}
 
@@ -2,17 +2,20 @@ package converters;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
 import java.sql.Types;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Set;
 
 import javatools.administrative.Announce;
 import javatools.administrative.Parameters;
 import javatools.database.Database;
 import javatools.database.Database.Inserter;
 import javatools.database.PostgresDatabase;
-import javatools.filehandlers.FileLines;
 import basics.Config;
+import converters.facts.Fact;
+import converters.facts.FactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -35,21 +38,37 @@ public class SQLConverter extends Converter {
   /** Special add-parameter for makeSQL */
   protected static final String INDEX = "INDEX";
 
+  /** Number of facts per batch, each batch is committed together with its checkpoint */
+  public static final int BATCH_SIZE = 1000;
+
+  /** The relations to load in an incremental conversion (NULL for all) */
+  protected Set<String> changedRelations = null;
+
   /** Adds facts from one file */
   public void loadFactsFrom(File file) throws Exception {
     String relation = relationForFactFile(file);
     if (relation == null) return;
+    if (changedRelations != null && !changedRelations.contains(relation)) return;
 
     int[] columnTypes = { Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR };
 
+    String name = file.getName();
+    if (checkpoint().isDone(name)) {
+      Announce.message("Skipping", file, "(loaded before the checkpoint)");
+      return;
+    }
     Inserter bulki = database.new Inserter(factsTable, columnTypes);
+    // We send the batches ourselves, so that each batch is committed with its checkpoint
+    bulki.setBatchSize(Integer.MAX_VALUE);
+    long count = checkpoint().count(name);
+    int batch = 0;
     int counter = 0;
-    for (String l : new FileLines(file, "Parsing " + file)) {
+    FactReader facts = readFactsAfterCheckpoint(file, "Parsing " + file);
+    for (Fact fact : facts) {
       if (test && counter++ > 100) break;
-      String[] split = l.split("\t");
-      String id = split[0];
-      String arg1 = split[1];
-      String arg2 = split[2];
+      String id = fact.id.toString();
+      String arg1 = fact.arg1.toString();
+      String arg2 = fact.arg2.toString();
       if (relation.equals("hasGloss") && arg2.length() > maximumFactLength) {
         arg2 = arg2.subSequence(0, maximumFactLength - 4) + "...\"";
       } else if (arg1.length() > maximumFactLength || arg2.length() > maximumFactLength) {
@@ -59,10 +78,54 @@ public class SQLConverter extends Converter {
         bulki.insert(id, relation, arg1, arg2);
       } catch (Exception e) {
         System.err.println(e);
+        // The facts after the checkpoint must not stay in the table
+        facts.close();
+        bulki.close();
+        database.getConnection().rollback();
         return;
       }
+      count++;
+      if (++batch == BATCH_SIZE) {
+        bulki.flush();
+        checkpoint().commit(name, facts, fact.offset(), count);
+        batch = 0;
+      }
     }
     bulki.close();
+    checkpoint().done(name, facts, count);
+  }
+
+  /**
+   * Loads the facts from all files. Autocommit is off while loading, so that
+   * every batch is committed together with its checkpoint, and a failure
+   * rolls back the facts after the last checkpoint.
+   */
+  protected void loadFactFiles() throws Exception {
+    Connection connection = database.getConnection();
+    connection.setAutoCommit(false);
+    boolean loaded = false;
+    try {
+      for (File f : yagoFolder.listFiles())
+        loadFactsFrom(f);
+      loaded = true;
+    } finally {
+      if (!loaded) connection.rollback();
+      connection.setAutoCommit(true);
+    }
+  }
+
+  /** Keeps the checkpoints in the table FACTSTABLE_checkpoint, where they are committed together with the facts */
+  @Override
+  protected Checkpoint newCheckpoint() throws IOException {
+    return (new DatabaseCheckpoint(database.getConnection(), factsTable + "_checkpoint"));
+  }
+
+  /** Returns TRUE if a fact file of the relation has a checkpoint */
+  protected boolean hasCheckpoint(String relation) throws IOException {
+    for (File f : yagoFolder.listFiles()) {
+      if (relation.equals(relationForFactFile(f)) && checkpoint().contains(f.getName())) return (true);
+    }
+    return (false);
   }
 
   @Override
@@ -79,7 +142,26 @@ public class SQLConverter extends Converter {
     
     factsTable = Parameters.get("databaseTable", "facts");
 
-    boolean createTable = Parameters.getBoolean("createFactsTable", true);
+    boolean createTable = Parameters.getBoolean("createFactsTable", true) && checkpoint().isEmpty();
+
+    // In an incremental conversion, replace only the relations that changed
+    changedRelations = incremental && database.existsTable(factsTable) ? changedRelations() : null;
+    if (changedRelations != null) {
+      Announce.doing("Deleting the facts of the changed relations from " + factsTable);
+      for (String relation : changedRelations) {
+        // When resuming, the relations that have been started must stay
+        if (!hasCheckpoint(relation)) database.executeUpdate("DELETE FROM " + factsTable + " WHERE relation=" + database.format(relation));
+      }
+      Announce.done();
+      Announce.doing("Inserting facts");
+      loadFactFiles();
+      Announce.done();
+      recordFactFiles();
+      checkpoint().clear();
+      database.close();
+      Announce.done();
+      return;
+    }
     
     // Create facts table
     if (createTable) {
@@ -93,8 +175,7 @@ public class SQLConverter extends Converter {
     }
 
     Announce.doing("Inserting facts");
-    for (File f : yagoFolder.listFiles())
-      loadFactsFrom(f);
+    loadFactFiles();
     Announce.done();
     
     Announce.doing("Creating indices on " + factsTable);
@@ -171,6 +252,8 @@ public class SQLConverter extends Converter {
       database.createIndex(factsTable, false, attr);
       Announce.done();
     }
+    recordFactFiles();
+    checkpoint().clear();
     database.close();
 
     Announce.done();
@@ -0,0 +1,69 @@
+package converters;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+
+import javatools.administrative.Announce;
+import javatools.administrative.Parameters;
+import basics.Basics;
+import converters.facts.EntityDictionary;
+import converters.facts.Snapshot;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * This class compiles the YAGO fact files into a binary snapshot (see
+ * Snapshot) in the folder given by the parameter 'yagoSnapshotFolder'
+ * (default: the folder 'snapshot' in the output folder). If this parameter is
+ * set, all other converters read the snapshot instead of the fact files, which
+ * saves parsing the TSV files again for every conversion. The snapshot has to
+ * be compiled again when the fact files change.
+ */
+public class SnapshotConverter extends Converter {
+
+  @Override
+  protected boolean useSnapshot() {
+    return (false);
+  }
+
+  @Override
+  public void run() throws IOException {
+    getParameters();
+    File folder = new File(Parameters.get("yagoSnapshotFolder", new File(outputFolder, "snapshot").toString()));
+    Announce.doing("Compiling the YAGO snapshot in", folder);
+    new File(folder, Snapshot.INFO).delete();
+    EntityDictionary dictionary = buildDictionary(folder);
+    Announce.message(dictionary);
+    StringBuilder info = new StringBuilder("Snapshot of ").append(yagoFolder.getAbsolutePath()).append('\n');
+    for (File inputFile : yagoFolder.listFiles()) {
+      String name = stripFactFileExtension(inputFile.getName());
+      if (name == null || name.startsWith("_") || inputFile.isDirectory()) continue;
+      String relation = name.replace("_transitive", "");
+      if (relation.equals("type_star")) relation = "type";
+      Snapshot.Header header = new Snapshot.Header();
+      header.name = name;
+      header.domain = Basics.domain(relation) == null ? "" : Basics.domain(relation);
+      header.range = Basics.range(relation) == null ? "" : Basics.range(relation);
+      File target = new File(folder, name + Snapshot.EXTENSION);
+      long skipped = Snapshot.write(readFacts(inputFile, "Compiling " + inputFile.getName()), dictionary, header, target);
+      if (skipped > 0) Announce.warning("Skipped", skipped, "facts of", inputFile.getName(), "that do not have 3 columns");
+      info.append(name).append('\t').append(header.facts).append('\t').append(target.length()).append('\n');
+    }
+    dictionary.close();
+    Writer out = new OutputStreamWriter(new FileOutputStream(new File(folder, Snapshot.INFO)), "UTF-8");
+    out.write(info.toString());
+    out.close();
+    Announce.done();
+  }
+
+  @Override
+  public String description() {
+    return ("Compile YAGO into a binary snapshot that all other converters can read faster than the fact files");
+  }
+}
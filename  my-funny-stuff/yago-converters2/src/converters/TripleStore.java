@@ -0,0 +1,255 @@
+package converters;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+
+import converters.facts.EntityDictionary;
+import converters.facts.MappedFile;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * An embedded store of the YAGO facts, made by the TripleStoreConverter. The
+ * arg1, relation and arg2 of every fact are ids of the entity dictionary in
+ * the folder of the store. The triples of ids are sorted in all six orders
+ * (SPO, SOP, PSO, POS, OSP, OPS) and kept in memory-mapped files of 12
+ * bytes per triple (three big-endian ints in the order of the file), so a
+ * triple pattern is a range of one of the files, found by binary search.
+ * Every range is sorted by the variables that come after the constants,
+ * which is what the merge joins of the GraphPattern use. Lookups are
+ * thread-safe.
+ *
+ * The basic usage is
+ *    TripleStore store = new TripleStore(folder);
+ *    TripleStore.Cursor c = store.scan(store.id("Elvis_Presley"), -1, -1);
+ *    while (c.next()) System.out.println(store.name(c.get(TripleStore.P)) + " " + store.name(c.get(TripleStore.O)));
+ *    store.close();
+ */
+public class TripleStore implements Closeable {
+
+  /** The positions of subject (arg1), predicate (relation) and object (arg2) in a triple */
+  public static final int S = 0, P = 1, O = 2;
+
+  /** Bytes per triple */
+  public static final int TRIPLE = 12;
+
+  /** The sort orders of the index files */
+  public static enum Order {
+    SPO(S, P, O), SOP(S, O, P), PSO(P, S, O), POS(P, O, S), OSP(O, S, P), OPS(O, P, S);
+
+    /** The positions in the order of the file */
+    public final int[] columns;
+
+    private Order(int... columns) {
+      this.columns = columns;
+    }
+
+    /** Returns the index file in the folder */
+    public File file(File folder) {
+      return (new File(folder, name().toLowerCase() + ".idx"));
+    }
+
+    /**
+     * Returns the order that starts with the bound positions (in any order)
+     * and continues with the given position (-1 for any)
+     */
+    public static Order of(boolean[] bound, int next) {
+      int n = 0;
+      for (boolean b : bound)
+        if (b) n++;
+      if (next >= 0 && bound[next]) next = -1;
+      for (Order order : values()) {
+        boolean fits = true;
+        for (int i = 0; i < n; i++)
+          fits &= bound[order.columns[i]];
+        if (fits && (next < 0 || n == 3 || order.columns[n] == next)) return (order);
+      }
+      throw new IllegalArgumentException("No order for " + next);
+    }
+  }
+
+  /** The folder */
+  public final File folder;
+
+  /** The entity dictionary */
+  public final EntityDictionary dictionary;
+
+  /** The index files by order */
+  protected final MappedFile[] indexes = new MappedFile[Order.values().length];
+
+  /** Number of triples */
+  public final long size;
+
+  /** Returns TRUE if the folder contains a store */
+  public static boolean exists(File folder) {
+    for (Order order : Order.values()) {
+      if (!order.file(folder).exists()) return (false);
+    }
+    return (EntityDictionary.exists(folder));
+  }
+
+  /** Opens the store in the folder */
+  public TripleStore(File folder) throws IOException {
+    this.folder = folder;
+    if (!exists(folder)) throw new IOException("There is no triple store in " + folder + " (build it with the TripleStoreConverter)");
+    dictionary = new EntityDictionary(folder);
+    for (Order order : Order.values())
+      indexes[order.ordinal()] = new MappedFile(order.file(folder), false);
+    size = indexes[0].size() / TRIPLE;
+    for (MappedFile index : indexes) {
+      if (index.size() != size * TRIPLE) throw new IOException("The triple store in " + folder + " is damaged");
+    }
+  }
+
+  /** Returns the id of an entity, literal or relation, or -1 if it is not in the store */
+  public int id(CharSequence name) {
+    return (dictionary.id(name));
+  }
+
+  /** Returns the name of an id */
+  public String name(int id) {
+    return (dictionary.get(id));
+  }
+
+  /** Returns the triples that match the pattern (-1 for a variable), sorted by the order that fits the pattern */
+  public Cursor scan(int s, int p, int o) {
+    return (scan(s, p, o, -1));
+  }
+
+  /**
+   * Returns the triples that match the pattern (-1 for a variable), sorted by
+   * the given position after the constants (-1 for any)
+   */
+  public Cursor scan(int s, int p, int o, int sortedBy) {
+    int[] pattern = { s, p, o };
+    boolean[] bound = { s >= 0, p >= 0, o >= 0 };
+    return (new Cursor(Order.of(bound, sortedBy), pattern));
+  }
+
+  /** Returns the number of triples that match the pattern (-1 for a variable) */
+  public long count(int s, int p, int o) {
+    return (scan(s, p, o).size());
+  }
+
+  /** A range of an index file, iterated triple by triple */
+  public class Cursor {
+
+    /** The order of the index */
+    public final Order order;
+
+    /** The index */
+    protected final MappedFile index;
+
+    /** Number of constants in the pattern */
+    protected final int constants;
+
+    /** The constants in the order of the index, and room for one more value */
+    protected final int[] key = new int[4];
+
+    /** The current triple (in S, P, O positions) */
+    protected final int[] triple = new int[3];
+
+    /** Start and end of the range */
+    protected final long from, to;
+
+    /** The next triple */
+    protected long next;
+
+    protected Cursor(Order order, int[] pattern) {
+      this.order = order;
+      index = indexes[order.ordinal()];
+      // The constants in the order of the index
+      int n = 0;
+      for (int column : order.columns) {
+        if (pattern[column] < 0) break;
+        key[n++] = pattern[column];
+      }
+      constants = n;
+      from = lowerBound(0, size, key, n);
+      to = upperBound(from, size, key, n);
+      next = from;
+    }
+
+    /** Compares the first n columns of the triple at the position with the key */
+    protected int compare(long triple, int[] key, int n) {
+      for (int i = 0; i < n; i++) {
+        int value = index.getInt(triple * TRIPLE + i * 4);
+        if (value != key[i]) return (value < key[i] ? -1 : 1);
+      }
+      return (0);
+    }
+
+    /** Returns the first triple in [low..high) that is not smaller than the key */
+    protected long lowerBound(long low, long high, int[] key, int n) {
+      while (low < high) {
+        long mid = (low + high) >>> 1;
+        if (compare(mid, key, n) < 0) low = mid + 1;
+        else high = mid;
+      }
+      return (low);
+    }
+
+    /** Returns the first triple in [low..high) that is larger than the key */
+    protected long upperBound(long low, long high, int[] key, int n) {
+      while (low < high) {
+        long mid = (low + high) >>> 1;
+        if (compare(mid, key, n) <= 0) low = mid + 1;
+        else high = mid;
+      }
+      return (low);
+    }
+
+    /** Returns the number of triples in the range */
+    public long size() {
+      return (to - from);
+    }
+
+    /** Moves to the next triple, returns FALSE at the end */
+    public boolean next() {
+      if (next >= to) return (false);
+      long pos = next++ * TRIPLE;
+      for (int i = 0; i < 3; i++)
+        triple[order.columns[i]] = index.getInt(pos + i * 4);
+      return (true);
+    }
+
+    /** Returns the S, P or O of the current triple */
+    public int get(int position) {
+      return (triple[position]);
+    }
+
+    /**
+     * Moves to the first triple from the current one on whose value in the
+     * position after the constants is at least value, returns FALSE at the end
+     * (for merge joins; the cursor has to be sorted by that position)
+     */
+    public boolean seek(int value) {
+      long pos = next > from ? next - 1 : from;
+      key[constants] = value;
+      // Galloping, since the target is usually close
+      long step = 1, low = pos;
+      while (low + step < to && compare(low + step, key, constants + 1) < 0) {
+        low += step;
+        step <<= 1;
+      }
+      next = lowerBound(low, Math.min(to, low + step + 1), key, constants + 1);
+      return (next());
+    }
+  }
+
+  @Override
+  public void close() throws IOException {
+    dictionary.close();
+    for (MappedFile index : indexes)
+      index.close();
+  }
+
+  @Override
+  public String toString() {
+    return ("TripleStore of " + size + " triples and " + dictionary.size() + " entities in " + folder);
+  }
+}
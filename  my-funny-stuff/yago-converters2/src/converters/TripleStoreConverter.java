@@ -0,0 +1,220 @@
+package converters;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import javatools.administrative.Announce;
+import javatools.administrative.Parameters;
+import converters.facts.EntityDictionary;
+import converters.facts.Fact;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * This class builds the embedded TripleStore in the folder given by the
+ * parameter 'tripleStoreFolder' (default: the folder 'store' in the output
+ * folder). The facts are the ones of the fact files (with the relations of
+ * relationForFactFile, as for the other converters) as triples of ids of an
+ * entity dictionary. The triples are sorted into the six index files by
+ * min(6, converterThreads) threads, which share sortMemory bytes and keep
+ * the rest in temporary files. Duplicate triples are dropped. The store has
+ * to be built again when the fact files change. It is queried with a
+ * GraphPattern, or with the main method of this class.
+ */
+public class TripleStoreConverter extends Converter {
+
+  /** Returns the folder of the store */
+  protected File storeFolder() {
+    return (new File(Parameters.get("tripleStoreFolder", new File(outputFolder, "store").toString())));
+  }
+
+  @Override
+  public void run() throws Exception {
+    getParameters();
+    File folder = storeFolder();
+    Announce.doing("Building the triple store in", folder);
+    for (TripleStore.Order order : TripleStore.Order.values())
+      order.file(folder).delete();
+    EntityDictionary dictionary = buildDictionary(folder);
+    Announce.message(dictionary);
+    File triples = File.createTempFile("store", ".triples", folder);
+    try {
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(triples), 1 << 16));
+      long count = 0;
+      try {
+        for (File inputFile : yagoFolder.listFiles()) {
+          String relation = relationForFactFile(inputFile);
+          if (relation == null) continue;
+          count += writeTriples(readFacts(inputFile, "Reading " + inputFile.getName()), dictionary.need(relation), dictionary, out);
+        }
+      } finally {
+        out.close();
+        dictionary.close();
+      }
+      Announce.message("Sorting", count, "triples");
+      long distinct = writeIndexes(triples, folder, sortMemory, threads, sortOffHeap);
+      Announce.message("Wrote", distinct, "distinct triples");
+    } finally {
+      triples.delete();
+    }
+    Announce.done();
+  }
+
+  /** Writes the facts as triples of ids to out, returns the number of triples */
+  protected long writeTriples(Iterable<Fact> facts, int relation, EntityDictionary dictionary, DataOutputStream out) throws IOException {
+    long count = 0, skipped = 0;
+    int counter = 0;
+    for (Fact fact : facts) {
+      if (test && counter++ > 100) {
+        Announce.progressDone();
+        break;
+      }
+      if (fact.size() != 3) {
+        skipped++;
+        continue;
+      }
+      out.writeInt(dictionary.need(fact.arg1));
+      out.writeInt(relation);
+      out.writeInt(dictionary.need(fact.arg2));
+      count++;
+    }
+    if (skipped > 0) Announce.warning("Skipped", skipped, "facts that do not have 3 columns");
+    return (count);
+  }
+
+  /**
+   * Sorts the triples of the file (three ints S, P, O per triple) into the six
+   * index files of the folder, in parallel, and returns the number of distinct
+   * triples
+   */
+  public static long writeIndexes(final File triples, final File folder, long memory, int threads, final boolean offHeap) throws IOException {
+    TripleStore.Order[] orders = TripleStore.Order.values();
+    int poolSize = Math.max(1, Math.min(threads, orders.length));
+    final long memoryPerSort = Math.max(1 << 20, memory / poolSize);
+    ExecutorService pool = Executors.newFixedThreadPool(poolSize);
+    try {
+      List<Future<Long>> results = new ArrayList<Future<Long>>();
+      for (final TripleStore.Order order : orders) {
+        results.add(pool.submit(new Callable<Long>() {
+
+          @Override
+          public Long call() throws Exception {
+            return (writeIndex(triples, order, folder, memoryPerSort, offHeap));
+          }
+        }));
+      }
+      long distinct = -1;
+      for (Future<Long> result : results)
+        distinct = result.get();
+      return (distinct);
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while sorting the triples", e);
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) throw (IOException) e.getCause();
+      throw new IOException("Failed to sort the triples", e.getCause());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  /** Sorts the triples of the file into the index file of the order, returns the number of distinct triples */
+  protected static long writeIndex(File triples, TripleStore.Order order, File folder, long memory, boolean offHeap) throws IOException {
+    ExternalSorter sorter = new ExternalSorter(folder, memory, 1, offHeap).distinct();
+    try {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(triples), 1 << 16));
+      try {
+        byte[] triple = new byte[TripleStore.TRIPLE];
+        byte[] key = new byte[TripleStore.TRIPLE];
+        long n = triples.length() / TripleStore.TRIPLE;
+        for (long i = 0; i < n; i++) {
+          in.readFully(triple);
+          for (int c = 0; c < 3; c++)
+            System.arraycopy(triple, order.columns[c] * 4, key, c * 4, 4);
+          sorter.add(key, 0, key.length, DistinctSet.EMPTY, 0, 0);
+        }
+      } finally {
+        in.close();
+      }
+      File file = order.file(folder);
+      File temp = new File(folder, file.getName() + ".tmp");
+      OutputStream out = new BufferedOutputStream(new FileOutputStream(temp), 1 << 16);
+      long count = 0;
+      try {
+        for (ExternalSorter.Record record : sorter.sort()) {
+          out.write(record.bytes(), 0, record.keyLength());
+          count++;
+        }
+      } finally {
+        out.close();
+      }
+      if (!temp.renameTo(file)) throw new IOException("Cannot rename " + temp + " to " + file);
+      return (count);
+    } finally {
+      sorter.close();
+    }
+  }
+
+  @Override
+  public String description() {
+    return ("Build an embedded triple store of YAGO that answers graph patterns without a database");
+  }
+
+  /**
+   * Answers the graph patterns of the command line, or of stdin (one per line),
+   * with the store in the folder of the first argument
+   */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      System.err.println("TripleStoreConverter <store folder> [graph pattern]\n"
+          + "  e.g. TripleStoreConverter store '?x bornIn Tupelo . ?x type wordnet_singer_110599806'\n"
+          + "  Without a pattern, the patterns are read from stdin, one per line");
+      return;
+    }
+    TripleStore store = new TripleStore(new File(args[0]));
+    try {
+      List<String> queries = new ArrayList<String>();
+      if (args.length > 1) {
+        StringBuilder query = new StringBuilder();
+        for (int i = 1; i < args.length; i++)
+          query.append(args[i]).append(' ');
+        queries.add(query.toString());
+      } else {
+        BufferedReader in = new BufferedReader(new InputStreamReader(System.in, "UTF-8"));
+        for (String line = in.readLine(); line != null; line = in.readLine())
+          if (line.trim().length() > 0) queries.add(line);
+      }
+      for (String query : queries) {
+        long start = System.currentTimeMillis();
+        GraphPattern pattern = new GraphPattern(store, query);
+        long count = 0;
+        for (Map<String, String> solution : pattern.solutions(-1)) {
+          System.out.println(solution);
+          count++;
+        }
+        System.out.println(count + " solutions in " + (System.currentTimeMillis() - start) + " ms");
+      }
+    } finally {
+      store.close();
+    }
+  }
+}
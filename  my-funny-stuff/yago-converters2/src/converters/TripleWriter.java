@@ -0,0 +1,228 @@
+package converters;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Writes RDF triples as UTF-8 bytes (see ByteWriter). Names and literals are
+ * escaped character by character straight into the buffer, with the same
+ * result as Char.encodeURIPathComponent() and Char.encodeBackslash() (see
+ * Codec), so that writing a triple does not allocate. Predicates are turned
+ * into byte tokens once per relation by token().
+ *
+ * In TURTLE syntax, the writer uses the prefixes rdf:, rdfs:, y: and x: and
+ * writes YAGO entities relative to the YAGO namespace (which is the @base).
+ * In NTRIPLES syntax, every name is written as a full IRI, so that every line
+ * is a triple on its own.
+ *
+ * The basic usage is
+ *    TripleWriter w = new TripleWriter(out, TripleWriter.Syntax.TURTLE);
+ *    byte[] type = w.token("rdf:type");
+ *    w.entity("Elvis_Presley"); w.token(type); w.entity("wordnet_singer_110599806"); w.endTriple();
+ *    w.flush();
+ */
+public class TripleWriter extends ByteWriter {
+
+  /** The syntaxes */
+  public static enum Syntax {
+    TURTLE, NTRIPLES
+  }
+
+  /** The prefixes of TURTLE */
+  public static final String[][] PREFIXES = { { "rdf", "http://www.w3.org/1999/02/22-rdf-syntax-ns#" },
+      { "rdfs", "http://www.w3.org/2000/01/rdf-schema#" }, { "y", RDFSConverter.ns }, { "x", "http://www.w3.org/2001/XMLSchema#" } };
+
+  /** Hex digits */
+  protected static final byte[] HEX = "0123456789abcdef".getBytes();
+
+  /** Upper case hex digits */
+  protected static final byte[] UPPER_HEX = "0123456789ABCDEF".getBytes();
+
+  /** The syntax */
+  public final Syntax syntax;
+
+  /** Tokens by prefixed name */
+  protected final Map<String, byte[]> tokens = new HashMap<String, byte[]>();
+
+  /** Writes to out in the given syntax */
+  public TripleWriter(OutputStream out, Syntax syntax) {
+    this(out, syntax, BUFFER_SIZE);
+  }
+
+  /** Writes to out in the given syntax with a buffer of the given size (at least 16 bytes) */
+  public TripleWriter(OutputStream out, Syntax syntax, int bufferSize) {
+    super(out, bufferSize);
+    this.syntax = syntax;
+  }
+
+  /** Returns the syntax for a name ("turtle" or "ntriples", case-insensitive) */
+  public static Syntax syntax(String name) {
+    for (Syntax syntax : Syntax.values()) {
+      if (syntax.name().equalsIgnoreCase(name)) return (syntax);
+    }
+    throw new IllegalArgumentException("Unknown RDF syntax: " + name + " (use turtle or ntriples)");
+  }
+
+  /** Returns the usual file extension of the syntax */
+  public static String extension(Syntax syntax) {
+    return (syntax == Syntax.TURTLE ? ".n3" : ".nt");
+  }
+
+  /** Writes a percent code */
+  protected void percent(int b) {
+    buffer[pos++] = '%';
+    buffer[pos++] = UPPER_HEX[(b >> 4) & 0xF];
+    buffer[pos++] = UPPER_HEX[b & 0xF];
+  }
+
+  /**
+   * Writes a character as Char.encodeURIPathComponent() does: path characters
+   * stay, others become percent codes of their UTF-8 bytes (surrogates are
+   * encoded one by one)
+   */
+  public void pathChar(char c) throws IOException {
+    if (Codec.isPathChar(c)) {
+      write(c);
+      return;
+    }
+    ensure(9);
+    if (c < 0x80) {
+      percent(c);
+    } else if (c < 0x800) {
+      percent(0xC0 | (c >> 6));
+      percent(0x80 | (c & 0x3F));
+    } else {
+      percent(0xE0 | (c >> 12));
+      percent(0x80 | ((c >> 6) & 0x3F));
+      percent(0x80 | (c & 0x3F));
+    }
+  }
+
+  /** Writes the characters as Char.encodeURIPathComponent() does */
+  public void path(CharSequence s, int start, int end) throws IOException {
+    for (int i = start; i < end; i++)
+      pathChar(s.charAt(i));
+  }
+
+  /** Writes a YAGO entity (decoded from backslash codes) as a name */
+  public void entity(CharSequence name) throws IOException {
+    write('<');
+    if (syntax == Syntax.NTRIPLES) raw(RDFSConverter.ns);
+    path(name, 0, name.length());
+    write('>');
+  }
+
+  /** Returns the bytes of a YAGO entity as entity() writes it (for a CodecCache) */
+  public static byte[] entityBytes(Syntax syntax, CharSequence name) {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream(name.length() + 2);
+    TripleWriter writer = new TripleWriter(bytes, syntax, name.length() * 3 + 64);
+    try {
+      writer.entity(name);
+      writer.flush();
+    } catch (IOException e) {
+      // Does not happen with a ByteArrayOutputStream
+      throw new RuntimeException(e);
+    }
+    return (bytes.toByteArray());
+  }
+
+  /** Writes a name in the namespace of the given IRI prefix */
+  public void iri(byte[] prefix, CharSequence name) throws IOException {
+    write('<');
+    write(prefix);
+    path(name, 0, name.length());
+    write('>');
+  }
+
+  /** Writes the characters without their quotes in quotes (as '"'+TermExtractor.stripQuotes(s)+'"') */
+  public void literal(CharSequence s) throws IOException {
+    int start = Codec.quoteStart(s);
+    write('"');
+    raw(s, start, Codec.quoteEnd(s, start));
+    write('"');
+  }
+
+  /**
+   * Writes a string literal as N3Converter.n3String(): without its quotes,
+   * characters other than letters, digits and blanks as backslash codes
+   */
+  public void string(CharSequence s) throws IOException {
+    int start = Codec.quoteStart(s);
+    int end = Codec.quoteEnd(s, start);
+    write('"');
+    for (int i = start; i < end; i++) {
+      char c = s.charAt(i);
+      if (Codec.isAlphanumeric(c) || c == ' ') {
+        write(c);
+        continue;
+      }
+      ensure(6);
+      buffer[pos++] = '\\';
+      buffer[pos++] = 'u';
+      buffer[pos++] = HEX[c >> 12];
+      buffer[pos++] = HEX[(c >> 8) & 0xF];
+      buffer[pos++] = HEX[(c >> 4) & 0xF];
+      buffer[pos++] = HEX[c & 0xF];
+    }
+    write('"');
+  }
+
+  /**
+   * Returns the token of a prefixed name (such as "y:actedIn" or "rdf:type")
+   * in the syntax of the writer, preceded and followed by a blank. The token
+   * is computed once per name.
+   */
+  public byte[] token(String prefixedName) {
+    byte[] token = tokens.get(prefixedName);
+    if (token != null) return (token);
+    String name = prefixedName;
+    if (syntax == Syntax.NTRIPLES) {
+      for (String[] prefix : PREFIXES) {
+        if (prefixedName.startsWith(prefix[0] + ":")) name = "<" + prefix[1] + prefixedName.substring(prefix[0].length() + 1) + ">";
+      }
+    }
+    try {
+      token = (" " + name + " ").getBytes("UTF-8");
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+    tokens.put(prefixedName, token);
+    return (token);
+  }
+
+  /** Writes a token */
+  public void token(byte[] token) throws IOException {
+    write(token);
+  }
+
+  /** Ends a triple */
+  public void endTriple() throws IOException {
+    ensure(3);
+    buffer[pos++] = ' ';
+    buffer[pos++] = '.';
+    buffer[pos++] = '\n';
+  }
+
+  /** Writes the prefixes (in TURTLE, nothing in NTRIPLES) */
+  public void prefixes(String... names) throws IOException {
+    if (syntax != Syntax.TURTLE) return;
+    for (String name : names) {
+      for (String[] prefix : PREFIXES) {
+        if (prefix[0].equals(name)) raw("@prefix " + prefix[0] + ": <" + prefix[1] + "> .\n");
+      }
+    }
+  }
+
+  /** Writes the base (in TURTLE, nothing in NTRIPLES) */
+  public void base(String base) throws IOException {
+    if (syntax == Syntax.TURTLE) raw("@base <" + base + "> .\n");
+  }
+}
@@ -0,0 +1,75 @@
+package converters;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+import converters.facts.FactField;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * The UTF-8 bytes of CharSequences, in a reusable buffer. Unpaired
+ * surrogates become '?', as with an OutputStreamWriter.
+ */
+public class Utf8Buffer {
+
+  /** The encoder */
+  protected final CharsetEncoder encoder = Charset.forName("UTF-8").newEncoder().onMalformedInput(CodingErrorAction.REPLACE)
+      .onUnmappableCharacter(CodingErrorAction.REPLACE);
+
+  /** The bytes */
+  public byte[] bytes = new byte[256];
+
+  /** Number of bytes */
+  public int length = 0;
+
+  /** Empties the buffer */
+  public void clear() {
+    length = 0;
+  }
+
+  /** Sets the buffer to the UTF-8 bytes of s */
+  public void set(CharSequence s) {
+    length = 0;
+    append(s);
+  }
+
+  /** Appends the UTF-8 bytes of s */
+  public void append(CharSequence s) {
+    CharBuffer in = s instanceof FactField ? CharBuffer.wrap(((FactField) s).buffer(), 0, s.length()) : CharBuffer.wrap(s);
+    while (true) {
+      ByteBuffer out = ByteBuffer.wrap(bytes, length, bytes.length - length);
+      encoder.reset();
+      in.mark();
+      CoderResult result = encoder.encode(in, out, true);
+      if (!result.isOverflow()) result = encoder.flush(out);
+      if (!result.isOverflow()) {
+        length = out.position();
+        return;
+      }
+      in.reset();
+      grow(bytes.length * 2);
+    }
+  }
+
+  /** Appends an ASCII character */
+  public void append(char c) {
+    if (length == bytes.length) grow(bytes.length * 2);
+    bytes[length++] = (byte) c;
+  }
+
+  /** Makes sure the buffer takes n bytes */
+  protected void grow(int n) {
+    if (n <= bytes.length) return;
+    byte[] newBytes = new byte[n];
+    System.arraycopy(bytes, 0, newBytes, 0, length);
+    bytes = newBytes;
+  }
+}
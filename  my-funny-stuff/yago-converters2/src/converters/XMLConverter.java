@@ -1,15 +1,13 @@
 package converters;
 
-import java.io.BufferedWriter;
 import java.io.File;
-import java.io.FileWriter;
+import java.io.FileOutputStream;
 import java.io.IOException;
-import java.io.Writer;
+import java.io.OutputStream;
 
 import javatools.administrative.Announce;
-import javatools.filehandlers.FileLines;
-import javatools.parsers.Char;
-import basics.TermExtractor;
+import converters.facts.Fact;
+import converters.facts.FactReader;
 
 /**
  * This class is part of the YAGO converters (http://yago-knowledge.org). It is
@@ -21,55 +19,101 @@ import basics.TermExtractor;
  * 
  * @author Gjergji Kasneci and Fabian M. Suchanek
  */
-public class XMLConverter extends Converter {
+public class XMLConverter extends FactFileConverter {
 
 	/**
 	 * This method writes the corresponding dtd for the facts xml document as
-	 * well as the corresponding facts xml file.
+	 * well as the corresponding facts xml file. With converterPartSize, it
+	 * writes the part files xmlFacts-NNNNN.xml (each with the dtd and a fact
+	 * set of its own) and the manifest xmlFacts.manifest instead.
 	 */
-	public void run() throws IOException {
-		getParameters();
+	public void run() throws Exception {
+		getConversionParameters();
 		Announce.doing("Converting YAGO to XML");
-		Writer xmlFactsWriter = new BufferedWriter(new FileWriter(new File(
-				outputFolder, "xmlFacts.xml")));
-		xmlFactsWriter.write("<?xml version=\"1.0\" ?>\n");
-		xmlFactsWriter.write("<!DOCTYPE factset [\n");
-		xmlFactsWriter.write("  <!ELEMENT factset   (fact*)>\n");
-		xmlFactsWriter
-				.write("  <!ELEMENT fact        (id, arg1, relation, arg2)>\n");
-		xmlFactsWriter.write("  <!ELEMENT id         (#PCDATA)>\n");
-		xmlFactsWriter.write("  <!ELEMENT relation   (#PCDATA)>\n");
-		xmlFactsWriter.write("  <!ELEMENT arg1       (#PCDATA)>\n");
-		xmlFactsWriter.write("  <!ELEMENT arg2       (#PCDATA)>\n");
-		xmlFactsWriter.write("]>\n<factset>\n");
-		String[] attributes = new String[] { "id", "arg1", "arg2" };
-		for (File file : yagoFolder.listFiles()) {
-			String relation = relationForFactFile(file);
-			if(relation==null) continue;
-			int counter = 0;
-			for (String line : new FileLines(file, "Parsing " + file.getName())) {
-				if (test && counter++ > 10) {
-					Announce.progressDone();
-					break;
-				}
-				String[] split = line.split("\t");
-				xmlFactsWriter.write("  <fact>\n");
-				for (int i = 0; i < attributes.length; i++) {
-					if(i==2) xmlFactsWriter.write("   <relation>" + relation + "</relation>\n");
-					xmlFactsWriter.write("   <" + attributes[i] + ">");
-					xmlFactsWriter.write(Char.encodeAmpersand(Char
-							.decodeBackslash(TermExtractor
-									.stripQuotes(split[i]))));
-					xmlFactsWriter.write("</" + attributes[i] + ">\n");
-				}
-				xmlFactsWriter.write("  </fact>\n");
-			}
+		if (partSize > 0) {
+			convertFactFilesToParts(new PartFiles(this, outputFolder, "xmlFacts", ".xml", partSize));
+		} else {
+			OutputStream stream = openOutput();
+			convertFactFiles(stream);
+			closeOutput(stream);
 		}
-		xmlFactsWriter.write("</factset>\n");
-		xmlFactsWriter.close();
 		Announce.done();
 	}
 
+	/** Opens xmlFacts.xml and writes the DTD */
+	@Override
+	protected OutputStream openOutput() throws IOException {
+		OutputStream stream = new FileOutputStream(new File(outputFolder,
+				"xmlFacts.xml"));
+		writeHeader(stream);
+		return (stream);
+	}
+
+	/** Writes the DTD and opens the fact set */
+	@Override
+	protected void writeHeader(OutputStream stream) throws IOException {
+		XmlWriter out = new XmlWriter(stream);
+		out.write(HEADER);
+		out.flush();
+	}
+
+	/** Closes the fact set and xmlFacts.xml */
+	@Override
+	protected void closeOutput(OutputStream stream) throws IOException {
+		writeFooter(stream);
+		stream.close();
+	}
+
+	/** Closes the fact set */
+	@Override
+	protected void writeFooter(OutputStream stream) throws IOException {
+		XmlWriter out = new XmlWriter(stream);
+		out.write(FOOTER);
+		out.flush();
+	}
+
+	/** The DTD and the start of the fact set */
+	protected static final byte[] HEADER = XmlWriter.tag("<?xml version=\"1.0\" ?>\n"
+			+ "<!DOCTYPE factset [\n"
+			+ "  <!ELEMENT factset   (fact*)>\n"
+			+ "  <!ELEMENT fact        (id, arg1, relation, arg2)>\n"
+			+ "  <!ELEMENT id         (#PCDATA)>\n"
+			+ "  <!ELEMENT relation   (#PCDATA)>\n"
+			+ "  <!ELEMENT arg1       (#PCDATA)>\n"
+			+ "  <!ELEMENT arg2       (#PCDATA)>\n"
+			+ "]>\n<factset>\n");
+
+	/** The end of the fact set */
+	protected static final byte[] FOOTER = XmlWriter.tag("</factset>\n");
+
+	/** The tags of a fact */
+	protected static final byte[] FACT = XmlWriter.tag("  <fact>\n"), END_FACT = XmlWriter.tag("  </fact>\n"),
+			ID = XmlWriter.tag("   <id>"), END_ID = XmlWriter.tag("</id>\n"),
+			ARG1 = XmlWriter.tag("   <arg1>"), END_ARG1 = XmlWriter.tag("</arg1>\n"),
+			ARG2 = XmlWriter.tag("   <arg2>"), END_ARG2 = XmlWriter.tag("</arg2>\n");
+
+	/** Converts the facts of one relation to XML */
+	@Override
+	protected void convertFacts(String relation, FactReader facts, OutputStream stream) throws IOException {
+		XmlWriter out = new XmlWriter(stream);
+		// As it is, not escaped
+		byte[] relationElement = XmlWriter.tag("   <relation>" + relation + "</relation>\n");
+		int counter = 0;
+		for (Fact fact : facts) {
+			if (test && counter++ > 10) {
+				Announce.progressDone();
+				break;
+			}
+			out.write(FACT);
+			out.element(ID, fact.id, END_ID);
+			out.element(ARG1, fact.arg1, END_ARG1);
+			out.write(relationElement);
+			out.element(ARG2, fact.arg2, END_ARG2);
+			out.write(END_FACT);
+		}
+		out.flush();
+	}
+
 	@Override
 	public String description() {
 		return ("Convert YAGO to XML");
@@ -0,0 +1,101 @@
+package converters;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+import javatools.parsers.Char;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Writes XML as bytes (see ByteWriter). Text is escaped character by
+ * character straight into the buffer with the same result as
+ * Char.encodeAmpersand(): the ASCII characters are looked up in a table of
+ * their escapes, all other characters become numeric character references.
+ * So the output is plain ASCII. Tags are turned into byte tokens once by
+ * tag().
+ *
+ * The basic usage is
+ *    XmlWriter w = new XmlWriter(out);
+ *    byte[] open = w.tag("<name>"), close = w.tag("</name>");
+ *    w.write(open); w.text("Zurich & Co"); w.write(close);
+ *    w.flush();
+ */
+public class XmlWriter extends ByteWriter {
+
+  /** The escapes of the ASCII characters (NULL for the characters that stay) */
+  protected static final byte[][] ESCAPES = new byte[128][];
+
+  static {
+    for (char c = 0; c < 128; c++) {
+      if (!Codec.isAmpersandSafe(String.valueOf(c), 0, 1)) ESCAPES[c] = Char.encodeAmpersand(String.valueOf(c)).getBytes();
+    }
+  }
+
+  /** Writes to out */
+  public XmlWriter(OutputStream out) {
+    super(out);
+  }
+
+  /** Writes to out with a buffer of the given size (at least 16 bytes) */
+  public XmlWriter(OutputStream out, int bufferSize) {
+    super(out, bufferSize);
+  }
+
+  /** Returns the bytes of a tag or of any other ASCII markup */
+  public static byte[] tag(String markup) {
+    return (markup.getBytes());
+  }
+
+  /** Writes a character as Char.encodeAmpersand() does */
+  public void textChar(char c) throws IOException {
+    if (c < 128) {
+      byte[] escape = ESCAPES[c];
+      if (escape == null) write(c);
+      else write(escape);
+      return;
+    }
+    // &#65535; at most
+    ensure(8);
+    buffer[pos++] = '&';
+    buffer[pos++] = '#';
+    int divisor = 10;
+    while (divisor <= c)
+      divisor *= 10;
+    for (divisor /= 10; divisor > 0; divisor /= 10)
+      buffer[pos++] = (byte) ('0' + (c / divisor) % 10);
+    buffer[pos++] = ';';
+  }
+
+  /** Writes s[start..end) as Char.encodeAmpersand() does */
+  public void text(CharSequence s, int start, int end) throws IOException {
+    for (int i = start; i < end; i++)
+      textChar(s.charAt(i));
+  }
+
+  /** Writes s as Char.encodeAmpersand() does */
+  public void text(CharSequence s) throws IOException {
+    text(s, 0, s.length());
+  }
+
+  /**
+   * Writes a fact field as XML text, as
+   * Char.encodeAmpersand(Char.decodeBackslash(TermExtractor.stripQuotes(field)))
+   */
+  public void field(CharSequence field) throws IOException {
+    int start = Codec.quoteStart(field);
+    int end = Codec.quoteEnd(field, start);
+    if (Codec.contains(field, start, end, '\\')) text(Char.decodeBackslash(field.subSequence(start, end).toString()));
+    else text(field, start, end);
+  }
+
+  /** Writes an element with a fact field as text (see field()) */
+  public void element(byte[] open, CharSequence field, byte[] close) throws IOException {
+    write(open);
+    field(field);
+    write(close);
+  }
+}
@@ -0,0 +1,83 @@
+package converters.facts;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads the facts of one fact file from a queue of FactBatches, which another
+ * thread fills while it reads the file. The reader ends with the last batch of
+ * the file; if it is closed earlier, it takes the remaining batches of the
+ * file from the queue, so that the next batch in the queue belongs to the next
+ * file. A reader without a queue reads just one batch. The reader shows no
+ * progress bar and keeps no statistics (that is done by the thread that reads
+ * the file).
+ */
+public class BatchFactReader extends FactReader {
+
+  /** The queue (or NULL) */
+  protected final BlockingQueue<FactBatch> queue;
+
+  /** The current batch */
+  protected FactBatch batch;
+
+  /** Position in the current batch */
+  protected int pos = 0;
+
+  /** Offset of the last fact read */
+  protected long position = 0;
+
+  /** Reads the facts of the file of the first batch, which has already been taken from the queue */
+  public BatchFactReader(BlockingQueue<FactBatch> queue, FactBatch first) {
+    super(first.file, first.file == null ? 0 : first.file.length(), null);
+    this.queue = queue;
+    this.batch = first;
+  }
+
+  /** Reads the facts of one batch */
+  public BatchFactReader(FactBatch batch) {
+    this(null, batch);
+  }
+
+  @Override
+  protected void start() {
+    // No progress bar, no clock
+  }
+
+  /** Takes the next batch of the file from the queue */
+  protected void nextBatch() throws IOException {
+    try {
+      batch = queue.take();
+    } catch (InterruptedException e) {
+      throw new IOException("Interrupted while waiting for facts of " + file);
+    }
+    pos = 0;
+  }
+
+  @Override
+  protected boolean readFact(Fact fact) throws IOException {
+    while (pos >= batch.size()) {
+      if (batch.isLast() || queue == null) return (false);
+      nextBatch();
+    }
+    batch.get(pos++, fact);
+    position = fact.offset;
+    return (true);
+  }
+
+  @Override
+  public long position() {
+    return (position);
+  }
+
+  @Override
+  protected void closeInput() throws IOException {
+    while (queue != null && !batch.isLast())
+      nextBatch();
+    pos = batch.size();
+  }
+}
@@ -0,0 +1,417 @@
+package converters.facts;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Maps the entities and literals of YAGO to dense integer ids 0...size()-1
+ * and back. The ids follow the order of String.compareTo, so that a set of
+ * ids (e.g. a BitSet) enumerates its entities in sorted order. The
+ * dictionary lives in memory-mapped files in a folder:
+ *
+ *   entities.txt      the entities in id order, one per line (UTF-8)
+ *   entities.offsets  the start of every line in entities.txt (n+1 longs)
+ *   entities.hash     a hash table from entities to ids
+ *   entities.manifest the fact files the dictionary was built from (written
+ *                     by Converter.buildDictionary())
+ *
+ * so it takes almost no heap. A dictionary is built with a Builder (see the
+ * DictionaryConverter). Lookups are thread-safe.
+ */
+public class EntityDictionary implements Closeable {
+
+  /** Name of the file with the entities */
+  public static final String STRINGS = "entities.txt";
+
+  /** Name of the file with the offsets */
+  public static final String OFFSETS = "entities.offsets";
+
+  /** Name of the file with the hash table */
+  public static final String HASH = "entities.hash";
+
+  /** Name of the manifest of the fact files */
+  public static final String MANIFEST = "entities.manifest";
+
+  /** Bytes of the header of the hash file (size, capacity) */
+  protected static final int HEADER = 8;
+
+  /** The entities */
+  protected final MappedFile strings;
+
+  /** The offsets */
+  protected final MappedFile offsets;
+
+  /** The hash table: slots of (hash, id+1) */
+  protected final MappedFile hash;
+
+  /** Number of entities */
+  protected final int size;
+
+  /** Number of slots of the hash table (a power of 2) */
+  protected final int capacity;
+
+  /** Per-thread buffer for encoding and decoding */
+  protected static final ThreadLocal<byte[][]> buffers = new ThreadLocal<byte[][]>() {
+    @Override
+    protected byte[][] initialValue() {
+      return (new byte[][] { new byte[256] });
+    }
+  };
+
+  /** Returns TRUE if the folder contains a dictionary */
+  public static boolean exists(File folder) {
+    return (new File(folder, HASH).exists() && new File(folder, OFFSETS).exists() && new File(folder, STRINGS).exists());
+  }
+
+  /** Opens the dictionary in a folder */
+  public EntityDictionary(File folder) throws IOException {
+    strings = new MappedFile(new File(folder, STRINGS), false);
+    offsets = new MappedFile(new File(folder, OFFSETS), false);
+    hash = new MappedFile(new File(folder, HASH), false);
+    size = hash.getInt(0);
+    capacity = hash.getInt(4);
+    if (offsets.size() != (size + 1L) * 8) throw new IOException("The entity dictionary in " + folder + " is damaged");
+  }
+
+  /** Returns the number of entities */
+  public int size() {
+    return (size);
+  }
+
+  /** Returns the id of an entity, or -1 if it is not in the dictionary */
+  public int id(CharSequence entity) {
+    byte[][] buffer = buffers.get();
+    int len = encode(entity, buffer);
+    int h = hash(buffer[0], len);
+    int mask = capacity - 1;
+    for (int slot = h & mask;; slot = (slot + 1) & mask) {
+      long pos = HEADER + slot * 8L;
+      int id = hash.getInt(pos + 4) - 1;
+      if (id == -1) return (-1);
+      if (hash.getInt(pos) == h && sameBytes(strings, offsets.getLong(id * 8L), length(id), buffer[0], len)) return (id);
+    }
+  }
+
+  /** Returns the id of an entity, throws an IllegalArgumentException if it is not in the dictionary */
+  public int need(CharSequence entity) {
+    int id = id(entity);
+    if (id == -1) throw new IllegalArgumentException(entity + " is not in the entity dictionary, please build the dictionary again");
+    return (id);
+  }
+
+  /** Returns the length of the UTF-8 encoding of an entity */
+  protected int length(int id) {
+    return ((int) (offsets.getLong(id * 8L + 8) - offsets.getLong(id * 8L) - 1));
+  }
+
+  /** Returns the entity with the given id */
+  public String get(int id) {
+    byte[][] buffer = buffers.get();
+    int len = read(id, buffer);
+    try {
+      return (new String(buffer[0], 0, len, "UTF-8"));
+    } catch (IOException e) {
+      throw new RuntimeException(e);
+    }
+  }
+
+  /** Sets field to the entity with the given id and returns it */
+  public FactField get(int id, FactField field) {
+    byte[][] buffer = buffers.get();
+    int len = read(id, buffer);
+    field.set(buffer[0], 0, len);
+    return (field);
+  }
+
+  /** Reads the UTF-8 encoding of an entity into buffer[0], returns its length */
+  protected int read(int id, byte[][] buffer) {
+    if (id < 0 || id >= size) throw new IndexOutOfBoundsException("No entity with id " + id);
+    int len = length(id);
+    if (buffer[0].length < len) buffer[0] = new byte[len * 2];
+    strings.get(offsets.getLong(id * 8L), buffer[0], 0, len);
+    return (len);
+  }
+
+  @Override
+  public void close() throws IOException {
+    strings.close();
+    offsets.close();
+    hash.close();
+  }
+
+  @Override
+  public String toString() {
+    return ("EntityDictionary of " + size + " entities in " + strings.getFile().getParent());
+  }
+
+  /** Encodes a CharSequence in UTF-8 into buffer[0] (which may be replaced by a larger one), returns the length */
+  public static int encode(CharSequence s, byte[][] buffer) {
+    int length = s.length();
+    if (buffer[0].length < length * 3) buffer[0] = new byte[length * 3 + 16];
+    byte[] b = buffer[0];
+    int len = 0;
+    for (int i = 0; i < length; i++) {
+      char c = s.charAt(i);
+      if (c < 0x80) {
+        b[len++] = (byte) c;
+      } else if (c < 0x800) {
+        b[len++] = (byte) (0xC0 | (c >> 6));
+        b[len++] = (byte) (0x80 | (c & 0x3F));
+      } else if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(s.charAt(i + 1))) {
+        int cp = Character.toCodePoint(c, s.charAt(++i));
+        b[len++] = (byte) (0xF0 | (cp >> 18));
+        b[len++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+        b[len++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+        b[len++] = (byte) (0x80 | (cp & 0x3F));
+      } else if (Character.isSurrogate(c)) {
+        b[len++] = '?';
+      } else {
+        b[len++] = (byte) (0xE0 | (c >> 12));
+        b[len++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+        b[len++] = (byte) (0x80 | (c & 0x3F));
+      }
+    }
+    return (len);
+  }
+
+  /** Hashes the UTF-8 bytes of an entity */
+  protected static int hash(byte[] b, int len) {
+    int h = 0x811C9DC5;
+    for (int i = 0; i < len; i++) {
+      h ^= b[i];
+      h *= 0x01000193;
+    }
+    h ^= h >>> 16;
+    h *= 0x85EBCA6B;
+    h ^= h >>> 13;
+    return (h);
+  }
+
+  /** TRUE if the bytes at pos in the file are the given bytes */
+  protected static boolean sameBytes(MappedFile file, long pos, int length, byte[] b, int len) {
+    if (length != len) return (false);
+    for (int i = 0; i < len; i++) {
+      if (file.get(pos + i) != b[i]) return (false);
+    }
+    return (true);
+  }
+
+  /**
+   * Collects entities and writes them as a dictionary. The builder keeps the
+   * entities and its hash table in memory-mapped temporary files in the
+   * target folder; only the final sorting needs an int per entity on the
+   * heap.
+   */
+  public static class Builder {
+
+    /** Maximal fill ratio of the hash table */
+    protected static final double LOAD = 0.6;
+
+    /** The target folder */
+    protected final File folder;
+
+    /** The entities in the order of addition (without separators) */
+    protected MappedFile strings;
+
+    /** Start of every entity in strings (n+1 longs) */
+    protected MappedFile offsets;
+
+    /** The hash table: slots of (hash, id+1) */
+    protected MappedFile hash;
+
+    /** Number of slots of the hash table */
+    protected int capacity = 1 << 16;
+
+    /** Number of entities */
+    protected int size = 0;
+
+    /** Buffer for the encoding */
+    protected final byte[][] buffer = new byte[][] { new byte[256] };
+
+    /** Starts a dictionary in the folder */
+    public Builder(File folder) throws IOException {
+      this.folder = folder;
+      folder.mkdirs();
+      strings = new MappedFile(temp("strings"), true);
+      offsets = new MappedFile(temp("offsets"), true);
+      offsets.putLong(0, 0);
+      hash = new MappedFile(temp("hash" + capacity), true);
+      hash.putLong(capacity * 8L - 8, 0);
+    }
+
+    /** Returns a new temporary file in the folder */
+    protected File temp(String name) {
+      File f = new File(folder, "entities." + name + ".tmp");
+      f.delete();
+      return (f);
+    }
+
+    /** Returns the number of entities so far */
+    public int size() {
+      return (size);
+    }
+
+    /** Adds an entity (if it is not there yet), returns its preliminary id */
+    public int add(CharSequence entity) throws IOException {
+      int len = encode(entity, buffer);
+      byte[] b = buffer[0];
+      int h = hash(b, len);
+      int mask = capacity - 1;
+      int slot = h & mask;
+      for (;; slot = (slot + 1) & mask) {
+        int id = hash.getInt(slot * 8L + 4) - 1;
+        if (id == -1) break;
+        if (hash.getInt(slot * 8L) == h) {
+          long start = offsets.getLong(id * 8L);
+          if (sameBytes(strings, start, (int) (offsets.getLong(id * 8L + 8) - start), b, len)) return (id);
+        }
+      }
+      int id = size++;
+      long start = offsets.getLong(id * 8L);
+      strings.put(start, b, 0, len);
+      offsets.putLong(id * 8L + 8, start + len);
+      hash.putInt(slot * 8L, h);
+      hash.putInt(slot * 8L + 4, id + 1);
+      if (size > capacity * LOAD) grow();
+      return (id);
+    }
+
+    /** Doubles the hash table */
+    protected void grow() throws IOException {
+      int newCapacity = capacity * 2;
+      MappedFile newHash = new MappedFile(temp("hash" + newCapacity), true);
+      newHash.putLong(newCapacity * 8L - 8, 0);
+      int mask = newCapacity - 1;
+      for (int i = 0; i < capacity; i++) {
+        int idp1 = hash.getInt(i * 8L + 4);
+        if (idp1 == 0) continue;
+        int h = hash.getInt(i * 8L);
+        int slot = h & mask;
+        while (newHash.getInt(slot * 8L + 4) != 0)
+          slot = (slot + 1) & mask;
+        newHash.putInt(slot * 8L, h);
+        newHash.putInt(slot * 8L + 4, idp1);
+      }
+      hash.close();
+      hash.getFile().delete();
+      hash = newHash;
+      capacity = newCapacity;
+    }
+
+    /** Sorts the entities, writes the dictionary, deletes the temporary files and opens the dictionary */
+    public EntityDictionary build() throws IOException {
+      // Sort the preliminary ids by their entities
+      int[] order = new int[size];
+      for (int i = 0; i < size; i++)
+        order[i] = i;
+      sort(order, new int[size], 0, size);
+      int[] rank = new int[size];
+      for (int i = 0; i < size; i++)
+        rank[order[i]] = i;
+      // Write the entities and offsets in the new order
+      OutputStream stringsOut = new BufferedOutputStream(new FileOutputStream(new File(folder, STRINGS)), 1 << 16);
+      DataOutputStream offsetsOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(folder, OFFSETS)), 1 << 16));
+      long pos = 0;
+      for (int i = 0; i < size; i++) {
+        long start = offsets.getLong(order[i] * 8L);
+        int len = (int) (offsets.getLong(order[i] * 8L + 8) - start);
+        if (buffer[0].length < len) buffer[0] = new byte[len * 2];
+        strings.get(start, buffer[0], 0, len);
+        offsetsOut.writeLong(pos);
+        stringsOut.write(buffer[0], 0, len);
+        stringsOut.write('\n');
+        pos += len + 1;
+      }
+      offsetsOut.writeLong(pos);
+      stringsOut.close();
+      offsetsOut.close();
+      order = null;
+      // Write the hash table with the new ids
+      DataOutputStream hashOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(new File(folder, HASH)), 1 << 16));
+      hashOut.writeInt(size);
+      hashOut.writeInt(capacity);
+      for (int i = 0; i < capacity; i++) {
+        int idp1 = hash.getInt(i * 8L + 4);
+        hashOut.writeInt(hash.getInt(i * 8L));
+        hashOut.writeInt(idp1 == 0 ? 0 : rank[idp1 - 1] + 1);
+      }
+      hashOut.close();
+      for (MappedFile f : new MappedFile[] { strings, offsets, hash }) {
+        f.close();
+        f.getFile().delete();
+      }
+      return (new EntityDictionary(folder));
+    }
+
+    /** Merge-sorts ids[from,to) by their entities, using tmp as scratch space */
+    protected void sort(int[] ids, int[] tmp, int from, int to) {
+      if (to - from < 16) {
+        for (int i = from + 1; i < to; i++) {
+          int id = ids[i];
+          int j = i;
+          while (j > from && compare(ids[j - 1], id) > 0) {
+            ids[j] = ids[j - 1];
+            j--;
+          }
+          ids[j] = id;
+        }
+        return;
+      }
+      int mid = (from + to) >>> 1;
+      sort(ids, tmp, from, mid);
+      sort(ids, tmp, mid, to);
+      if (compare(ids[mid - 1], ids[mid]) <= 0) return;
+      System.arraycopy(ids, from, tmp, from, to - from);
+      int i = from, j = mid, k = from;
+      while (i < mid && j < to)
+        ids[k++] = compare(tmp[i], tmp[j]) <= 0 ? tmp[i++] : tmp[j++];
+      while (i < mid)
+        ids[k++] = tmp[i++];
+      while (j < to)
+        ids[k++] = tmp[j++];
+    }
+
+    /** Fields for the comparison of entities that need decoding */
+    private final FactField field1 = new FactField(), field2 = new FactField();
+
+    /** Buffers for the comparison of entities that need decoding */
+    private byte[] bytes1 = new byte[256], bytes2 = new byte[256];
+
+    /**
+     * Compares two entities as String.compareTo would. UTF-8 byte order is
+     * code point order, which is the same except when a character above U+E000
+     * meets a supplementary character. In this case, we decode.
+     */
+    protected int compare(int id1, int id2) {
+      long start1 = offsets.getLong(id1 * 8L);
+      long start2 = offsets.getLong(id2 * 8L);
+      int len1 = (int) (offsets.getLong(id1 * 8L + 8) - start1);
+      int len2 = (int) (offsets.getLong(id2 * 8L + 8) - start2);
+      int len = Math.min(len1, len2);
+      for (int i = 0; i < len; i++) {
+        int b1 = strings.get(start1 + i) & 0xFF;
+        int b2 = strings.get(start2 + i) & 0xFF;
+        if (b1 == b2) continue;
+        if (b1 < 0xEE && b2 < 0xEE) return (b1 - b2);
+        if (bytes1.length < len1) bytes1 = new byte[len1];
+        if (bytes2.length < len2) bytes2 = new byte[len2];
+        strings.get(start1, bytes1, 0, len1);
+        strings.get(start2, bytes2, 0, len2);
+        field1.set(bytes1, 0, len1);
+        field2.set(bytes2, 0, len2);
+        return (field1.compareTo(field2));
+      }
+      return (len1 - len2);
+    }
+  }
+}
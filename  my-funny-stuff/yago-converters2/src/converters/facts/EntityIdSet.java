@@ -0,0 +1,108 @@
+package converters.facts;
+
+import java.util.AbstractCollection;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A set of entities that stores the dictionary ids of the entities in a
+ * BitSet (one bit per entity of the dictionary). It iterates over the
+ * entities in sorted order, like a TreeSet<String>, but it materialises the
+ * Strings only while iterating.
+ */
+public class EntityIdSet extends AbstractCollection<String> implements EntitySet {
+
+  /** The dictionary */
+  protected final EntityDictionary dictionary;
+
+  /** The ids */
+  protected final BitSet ids;
+
+  /** Creates an empty set for a dictionary */
+  public EntityIdSet(EntityDictionary dictionary) {
+    this.dictionary = dictionary;
+    ids = new BitSet(dictionary.size());
+  }
+
+  /** Adds an entity, throws an IllegalArgumentException if it is not in the dictionary */
+  @Override
+  public boolean add(CharSequence entity) {
+    return (add(dictionary.need(entity)));
+  }
+
+  @Override
+  public boolean add(String entity) {
+    return (add((CharSequence) entity));
+  }
+
+  /** Adds an id */
+  public boolean add(int id) {
+    if (ids.get(id)) return (false);
+    ids.set(id);
+    return (true);
+  }
+
+  @Override
+  public boolean contains(Object o) {
+    if (!(o instanceof CharSequence)) return (false);
+    int id = dictionary.id((CharSequence) o);
+    return (id != -1 && ids.get(id));
+  }
+
+  /** Returns TRUE if the id is in the set */
+  public boolean contains(int id) {
+    return (ids.get(id));
+  }
+
+  @Override
+  public int size() {
+    return (ids.cardinality());
+  }
+
+  @Override
+  public void clear() {
+    ids.clear();
+  }
+
+  /** Keeps nothing outside of the heap */
+  @Override
+  public void close() {
+  }
+
+  /** Returns the ids */
+  public BitSet ids() {
+    return (ids);
+  }
+
+  @Override
+  public Iterator<String> iterator() {
+    return (new Iterator<String>() {
+
+      int next = ids.nextSetBit(0);
+
+      @Override
+      public boolean hasNext() {
+        return (next >= 0);
+      }
+
+      @Override
+      public String next() {
+        if (next < 0) throw new NoSuchElementException();
+        String entity = dictionary.get(next);
+        next = ids.nextSetBit(next + 1);
+        return (entity);
+      }
+
+      @Override
+      public void remove() {
+        throw new UnsupportedOperationException("EntityIdSet iterators do not support \"remove\"");
+      }
+    });
+  }
+}
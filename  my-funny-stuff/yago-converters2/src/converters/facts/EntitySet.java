@@ -0,0 +1,29 @@
+package converters.facts;
+
+import java.io.Closeable;
+import java.util.Iterator;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A set of entities that a converter collects and then writes in sorted
+ * order, without duplicates (see Converter.newEntitySet()). Entities can be
+ * added without making Strings of them. close() releases what the set keeps
+ * outside of the heap.
+ */
+public interface EntitySet extends Iterable<String>, Closeable {
+
+  /** Adds an entity, returns FALSE if it is known to be in the set already */
+  public boolean add(CharSequence entity);
+
+  /** Returns the entities in sorted order, without duplicates */
+  @Override
+  public Iterator<String> iterator();
+
+  /** Releases the set */
+  @Override
+  public void close();
+}
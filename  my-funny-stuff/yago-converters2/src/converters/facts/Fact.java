@@ -0,0 +1,128 @@
+package converters.facts;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A reusable record for one line of a YAGO fact file (id TAB arg1 TAB arg2).
+ * A FactReader hands out the same Fact object for every line, so callers
+ * have to copy whatever they want to keep beyond the current iteration.
+ */
+public class Fact {
+
+  /** The fact identifier (first column) */
+  public final FactField id = new FactField();
+
+  /** The first argument (second column) */
+  public final FactField arg1 = new FactField();
+
+  /** The second argument (third column) */
+  public final FactField arg2 = new FactField();
+
+  /** Number of tab-separated columns of the line (as String.split would count them) */
+  protected int size;
+
+  /** Byte offset of the line in its file */
+  protected long offset;
+
+  /** Returns the column i (0=id, 1=arg1, 2=arg2) */
+  public FactField get(int i) {
+    switch (i) {
+      case 0:
+        return (id);
+      case 1:
+        return (arg1);
+      case 2:
+        return (arg2);
+    }
+    throw new IndexOutOfBoundsException("A fact has three columns, not " + (i + 1));
+  }
+
+  /** Returns the number of columns of the line (3 for well-formed facts) */
+  public int size() {
+    return (size);
+  }
+
+  /** Returns the byte offset of the line in its file */
+  public long offset() {
+    return (offset);
+  }
+
+  /** Sets the fact from a line that has already been split */
+  public void set(CharSequence id, CharSequence arg1, CharSequence arg2) {
+    this.id.set(id);
+    this.arg1.set(arg1);
+    this.arg2.set(arg2);
+    size = 3;
+  }
+
+  /**
+   * Parses the line that starts at buffer[start], looking no further than
+   * limit. Returns the position of the terminating newline, or -1 if there
+   * is no newline before limit (in which case the fact holds the incomplete
+   * line up to limit).
+   */
+  public int parse(ByteBuffer buffer, int start, int limit) {
+    int column = 0;
+    int columnStart = start;
+    for (int i = start; i < limit; i++) {
+      byte b = buffer.get(i);
+      if (b == '\t') {
+        if (column < 3) get(column).set(buffer, columnStart, i);
+        column++;
+        columnStart = i + 1;
+      } else if (b == '\n') {
+        int end = i > columnStart && buffer.get(i - 1) == '\r' ? i - 1 : i;
+        finish(column, buffer, columnStart, end);
+        return (i);
+      }
+    }
+    finish(column, buffer, columnStart, limit);
+    return (-1);
+  }
+
+  /** Sets the last column and clears the missing ones */
+  private void finish(int column, ByteBuffer buffer, int columnStart, int end) {
+    if (column < 3) get(column).set(buffer, columnStart, end);
+    for (int i = column + 1; i < 3; i++)
+      get(i).clear();
+    size = column + 1;
+  }
+
+  /** Same as parse(ByteBuffer,...) for a byte array */
+  public int parse(byte[] buffer, int start, int limit) {
+    int column = 0;
+    int columnStart = start;
+    for (int i = start; i < limit; i++) {
+      byte b = buffer[i];
+      if (b == '\t') {
+        if (column < 3) get(column).set(buffer, columnStart, i);
+        column++;
+        columnStart = i + 1;
+      } else if (b == '\n') {
+        int end = i > columnStart && buffer[i - 1] == '\r' ? i - 1 : i;
+        finish(column, buffer, columnStart, end);
+        return (i);
+      }
+    }
+    finish(column, buffer, columnStart, limit);
+    return (-1);
+  }
+
+  /** Sets the last column and clears the missing ones */
+  private void finish(int column, byte[] buffer, int columnStart, int end) {
+    if (column < 3) get(column).set(buffer, columnStart, end);
+    for (int i = column + 1; i < 3; i++)
+      get(i).clear();
+    size = column + 1;
+  }
+
+  @Override
+  public String toString() {
+    return (id + "\t" + arg1 + "\t" + arg2);
+  }
+}
@@ -0,0 +1,110 @@
+package converters.facts;
+
+import java.io.File;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A block of consecutive facts of one fact file, copied into one char array so
+ * that it can be handed to other threads (see BatchFactReader). A batch does
+ * not change once it has been handed out, so several threads can read it at
+ * the same time.
+ */
+public class FactBatch {
+
+  /** The file of the facts */
+  public final File file;
+
+  /** Maximal number of facts */
+  protected final int capacity;
+
+  /** The characters of all columns */
+  protected char[] chars = new char[4096];
+
+  /** Number of characters used */
+  protected int length = 0;
+
+  /** End of each column in chars (3 per fact) */
+  protected final int[] ends;
+
+  /** Number of columns of each fact */
+  protected final int[] sizes;
+
+  /** Offset of each fact */
+  protected final long[] offsets;
+
+  /** Number of facts */
+  protected int count = 0;
+
+  /** TRUE if this is the last batch of the file */
+  protected boolean last = false;
+
+  /** Creates an empty batch for at most capacity facts */
+  public FactBatch(File file, int capacity) {
+    this.file = file;
+    this.capacity = capacity;
+    ends = new int[capacity * 3];
+    sizes = new int[capacity];
+    offsets = new long[capacity];
+  }
+
+  /** Copies a fact into the batch, returns FALSE if the batch is full */
+  public boolean add(Fact fact) {
+    if (count == capacity) return (false);
+    for (int i = 0; i < 3; i++) {
+      FactField field = fact.get(i);
+      if (chars.length < length + field.length()) {
+        char[] newChars = new char[Math.max(length + field.length(), chars.length * 2)];
+        System.arraycopy(chars, 0, newChars, 0, length);
+        chars = newChars;
+      }
+      System.arraycopy(field.buffer(), 0, chars, length, field.length());
+      length += field.length();
+      ends[count * 3 + i] = length;
+    }
+    sizes[count] = fact.size();
+    offsets[count] = fact.offset();
+    count++;
+    return (true);
+  }
+
+  /** Sets fact to the fact number i of the batch */
+  public void get(int i, Fact fact) {
+    int start = i == 0 ? 0 : ends[i * 3 - 1];
+    for (int c = 0; c < 3; c++) {
+      int end = ends[i * 3 + c];
+      fact.get(c).set(chars, start, end);
+      start = end;
+    }
+    fact.size = sizes[i];
+    fact.offset = offsets[i];
+  }
+
+  /** Returns the offset of the fact number i */
+  public long offset(int i) {
+    return (offsets[i]);
+  }
+
+  /** Returns the number of facts */
+  public int size() {
+    return (count);
+  }
+
+  /** Returns TRUE if the batch is full */
+  public boolean isFull() {
+    return (count == capacity);
+  }
+
+  /** Marks this batch as the last one of its file */
+  public void setLast() {
+    last = true;
+  }
+
+  /** Returns TRUE if this is the last batch of its file */
+  public boolean isLast() {
+    return (last);
+  }
+}
@@ -0,0 +1,173 @@
+package converters.facts;
+
+import java.nio.ByteBuffer;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A reusable character sequence that holds one tab-separated field of a fact.
+ * The field is decoded from its UTF-8 bytes into an internal buffer that is
+ * recycled for every fact, so that reading a field does not allocate. Call
+ * toString() only where a String is really needed.
+ */
+public class FactField implements CharSequence, Comparable<CharSequence> {
+
+  /** Holds the decoded characters */
+  protected char[] chars = new char[64];
+
+  /** Number of valid characters */
+  protected int length = 0;
+
+  /** Makes sure the buffer can take n characters */
+  protected void ensureCapacity(int n) {
+    if (n <= chars.length) return;
+    char[] newChars = new char[Math.max(n, chars.length * 2)];
+    System.arraycopy(chars, 0, newChars, 0, length);
+    chars = newChars;
+  }
+
+  /** Sets the field to the UTF-8 bytes buffer[start..end) */
+  public void set(ByteBuffer buffer, int start, int end) {
+    ensureCapacity(end - start);
+    length = 0;
+    int i = start;
+    while (i < end) {
+      int b = buffer.get(i++);
+      if (b >= 0) {
+        chars[length++] = (char) b;
+        continue;
+      }
+      int needed = (b & 0xE0) == 0xC0 ? 1 : (b & 0xF0) == 0xE0 ? 2 : (b & 0xF8) == 0xF0 ? 3 : -1;
+      if (needed < 0 || i + needed > end) {
+        chars[length++] = '\uFFFD';
+        continue;
+      }
+      int c = b & (0x3F >> needed);
+      for (int k = 0; k < needed; k++)
+        c = (c << 6) | (buffer.get(i++) & 0x3F);
+      append(c);
+    }
+  }
+
+  /** Sets the field to the UTF-8 bytes buffer[start..end) */
+  public void set(byte[] buffer, int start, int end) {
+    ensureCapacity(end - start);
+    length = 0;
+    int i = start;
+    while (i < end) {
+      int b = buffer[i++];
+      if (b >= 0) {
+        chars[length++] = (char) b;
+        continue;
+      }
+      int needed = (b & 0xE0) == 0xC0 ? 1 : (b & 0xF0) == 0xE0 ? 2 : (b & 0xF8) == 0xF0 ? 3 : -1;
+      if (needed < 0 || i + needed > end) {
+        chars[length++] = '\uFFFD';
+        continue;
+      }
+      int c = b & (0x3F >> needed);
+      for (int k = 0; k < needed; k++)
+        c = (c << 6) | (buffer[i++] & 0x3F);
+      append(c);
+    }
+  }
+
+  /** Sets the field to a copy of the given characters */
+  public void set(CharSequence s) {
+    ensureCapacity(s.length());
+    length = s.length();
+    for (int i = 0; i < length; i++)
+      chars[i] = s.charAt(i);
+  }
+
+  /** Sets the field to a copy of the characters buffer[start..end) */
+  public void set(char[] buffer, int start, int end) {
+    ensureCapacity(end - start);
+    length = end - start;
+    System.arraycopy(buffer, start, chars, 0, length);
+  }
+
+  /** Appends a code point (the buffer is large enough by construction) */
+  private void append(int c) {
+    if (c < 0x10000) {
+      chars[length++] = (char) c;
+    } else {
+      chars[length++] = Character.highSurrogate(c);
+      chars[length++] = Character.lowSurrogate(c);
+    }
+  }
+
+  /** Empties the field */
+  public void clear() {
+    length = 0;
+  }
+
+  @Override
+  public int length() {
+    return (length);
+  }
+
+  @Override
+  public char charAt(int index) {
+    if (index >= length) throw new IndexOutOfBoundsException(index + " >= " + length);
+    return (chars[index]);
+  }
+
+  @Override
+  public CharSequence subSequence(int start, int end) {
+    return (new String(chars, start, end - start));
+  }
+
+  /** Gives direct access to the buffer (valid up to length()) */
+  public char[] buffer() {
+    return (chars);
+  }
+
+  /** TRUE if the field starts with the given prefix */
+  public boolean startsWith(String prefix) {
+    if (prefix.length() > length) return (false);
+    for (int i = 0; i < prefix.length(); i++)
+      if (chars[i] != prefix.charAt(i)) return (false);
+    return (true);
+  }
+
+  /** TRUE if the field has the same characters as s */
+  public boolean contentEquals(CharSequence s) {
+    if (s.length() != length) return (false);
+    for (int i = 0; i < length; i++)
+      if (chars[i] != s.charAt(i)) return (false);
+    return (true);
+  }
+
+  @Override
+  public int compareTo(CharSequence o) {
+    int n = Math.min(length, o.length());
+    for (int i = 0; i < n; i++) {
+      int diff = chars[i] - o.charAt(i);
+      if (diff != 0) return (diff);
+    }
+    return (length - o.length());
+  }
+
+  /** Same hash code as String.hashCode() */
+  @Override
+  public int hashCode() {
+    int h = 0;
+    for (int i = 0; i < length; i++)
+      h = 31 * h + chars[i];
+    return (h);
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    return (obj instanceof FactField && contentEquals((FactField) obj));
+  }
+
+  @Override
+  public String toString() {
+    return (new String(chars, 0, length));
+  }
+}
@@ -0,0 +1,206 @@
+package converters.facts;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.atomic.AtomicLong;
+
+import javatools.administrative.Announce;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Iterates over the facts of a YAGO fact file. Unlike FileLines, a FactReader
+ * returns the same reusable Fact object for every line, so that a converter
+ * does not allocate a line, a split array and three field Strings per fact.
+ * The reader shows a progress bar if it is given a message, and it keeps
+ * track of how many bytes per second it reads. Both start with the first
+ * call to hasNext(), so that a reader can be created ahead of time (e.g. for
+ * a thread pool) and dropped without ever being read.
+ *
+ * The basic usage is
+ *    for(Fact fact : converter.readFacts(file, "Parsing " + file.getName())) {
+ *      // handle fact.id, fact.arg1, fact.arg2 (copy them if you keep them)
+ *    }
+ */
+public abstract class FactReader implements Iterable<Fact>, Iterator<Fact>, Closeable {
+
+  /** Number of bytes read by all fact readers so far */
+  protected static final AtomicLong totalBytes = new AtomicLong();
+
+  /** Time spent by all fact readers so far (in ns) */
+  protected static final AtomicLong totalNanos = new AtomicLong();
+
+  /** Number of facts between two updates of the progress bar */
+  protected static final int PROGRESS_INTERVAL = 4096;
+
+  /** The reusable fact */
+  protected final Fact fact = new Fact();
+
+  /** The file we read from (or NULL) */
+  protected final File file;
+
+  /** Number of bytes we expect to read (for the progress bar) */
+  protected final long length;
+
+  /** Message for the progress bar (or NULL) */
+  protected final String announceMsg;
+
+  /** TRUE if we show a progress bar */
+  protected boolean announce;
+
+  /** TRUE if reading has started */
+  protected boolean started = false;
+
+  /** Time when we started reading (ns) */
+  protected long startTime;
+
+  /** Number of facts read so far */
+  protected long factCounter = 0;
+
+  /** 1 if the next fact is ready, -1 if there is none, 0 if we don't know yet */
+  private int state = 0;
+
+  /** TRUE if the reader has been closed */
+  private boolean closed = false;
+
+  /** Constructs a reader for a file of length bytes, shows progress bar if announceMsg!=null */
+  protected FactReader(File file, long length, String announceMsg) {
+    this.file = file;
+    this.length = length;
+    this.announceMsg = announceMsg;
+  }
+
+  /** Starts the progress bar and the clock */
+  protected void start() {
+    started = true;
+    announce = announceMsg != null;
+    if (announce) Announce.progressStart(announceMsg, Math.max(length, 1));
+    startTime = System.nanoTime();
+  }
+
+  /** Reads the next line into fact, returns FALSE at the end of the input */
+  protected abstract boolean readFact(Fact fact) throws IOException;
+
+  /** Returns the number of bytes consumed so far */
+  public abstract long position();
+
+  /** Returns the number of bytes read so far (position() minus the offset where the reader started) */
+  public long bytesRead() {
+    return (position());
+  }
+
+  /** Returns the progress in the units of the length given to the constructor (default: bytesRead()) */
+  protected long progress() {
+    return (bytesRead());
+  }
+
+  /** Releases the input */
+  protected abstract void closeInput() throws IOException;
+
+  /** Returns the file we read from (or NULL) */
+  public File getFile() {
+    return (file);
+  }
+
+  /** Returns the number of facts read so far */
+  public long factCount() {
+    return (factCounter);
+  }
+
+  @Override
+  public boolean hasNext() {
+    if (state == 0) {
+      if (!started && !closed) start();
+      try {
+        state = !closed && readFact(fact) ? 1 : -1;
+      } catch (IOException e) {
+        throw new RuntimeException(e);
+      }
+      if (state == 1 && ++factCounter % PROGRESS_INTERVAL == 0 && announce) Announce.progressAt(progress());
+      if (state == -1) close();
+    }
+    return (state == 1);
+  }
+
+  /** Returns the next fact. The fact object is overwritten by the next call to hasNext() */
+  @Override
+  public Fact next() {
+    if (!hasNext()) throw new NoSuchElementException();
+    state = 0;
+    return (fact);
+  }
+
+  /** Unsupported, throws an UnsupportedOperationException */
+  @Override
+  public void remove() {
+    throw new UnsupportedOperationException("FactReader does not support \"remove\"");
+  }
+
+  /** Returns this */
+  @Override
+  public Iterator<Fact> iterator() {
+    return (this);
+  }
+
+  /**
+   * Returns the dictionary id of arg1 of the current fact if the reader knows
+   * it without a lookup (as the SnapshotFactReader does), or -1
+   */
+  public int arg1Id() {
+    return (-1);
+  }
+
+  /** Returns the dictionary id of arg2 of the current fact like arg1Id(), or -1 */
+  public int arg2Id() {
+    return (-1);
+  }
+
+  /** Skips the facts up to (and including) the one at the given offset, returns this */
+  public FactReader skipThrough(long offset) {
+    while (hasNext() && fact.offset <= offset)
+      next();
+    return (this);
+  }
+
+  /** Closes the reader, records the throughput */
+  @Override
+  public void close() {
+    if (closed) return;
+    closed = true;
+    state = -1;
+    try {
+      closeInput();
+    } catch (IOException e) {
+    }
+    if (!started) return;
+    long nanos = System.nanoTime() - startTime;
+    totalBytes.addAndGet(bytesRead());
+    totalNanos.addAndGet(nanos);
+    if (announce) {
+      Announce.progressDone();
+      Announce.messageDetailed(this, "read at", throughput(bytesRead(), nanos));
+    }
+    announce = false;
+  }
+
+  /** Formats a throughput */
+  public static String throughput(long bytes, long nanos) {
+    return (String.format("%.1f MB/s (%d bytes in %d ms)", bytes / 1048576.0 / Math.max(nanos / 1e9, 1e-9), bytes, nanos / 1000000));
+  }
+
+  /** Returns the throughput of all fact readers so far */
+  public static String totalThroughput() {
+    return (throughput(totalBytes.get(), totalNanos.get()));
+  }
+
+  @Override
+  public String toString() {
+    return (getClass().getSimpleName() + " of " + file);
+  }
+}
@@ -0,0 +1,75 @@
+package converters.facts;
+
+import java.io.Closeable;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads the facts of a fact file as triples of dictionary ids (subject,
+ * predicate, object), where the predicate is the relation of the file. A
+ * converter can work on the ints (e.g. in an EntityIdSet) and turn them into
+ * Strings with EntityDictionary.get() only when it writes them. The ids come
+ * from the FactReader if it knows them (a snapshot stores them), otherwise
+ * the entities are looked up in the dictionary, which must contain them (see
+ * Converter.dictionary()). Facts without three columns are skipped.
+ *
+ * The basic usage is
+ *    IdTripleReader triples = converter.readIdTriples(file, "Parsing " + file.getName());
+ *    while (triples.next()) {
+ *      // handle triples.subject, triples.predicate, triples.object
+ *    }
+ */
+public class IdTripleReader implements Closeable {
+
+  /** The facts */
+  protected final FactReader facts;
+
+  /** The dictionary */
+  protected final EntityDictionary dictionary;
+
+  /** The id of the subject of the current triple */
+  public int subject;
+
+  /** The id of the predicate */
+  public final int predicate;
+
+  /** The id of the object of the current triple */
+  public int object;
+
+  /** The fact of the current triple (overwritten by next()) */
+  protected Fact fact;
+
+  /** Reads the facts of a relation, throws an IllegalArgumentException if the relation is not in the dictionary */
+  public IdTripleReader(FactReader facts, EntityDictionary dictionary, CharSequence relation) {
+    this.facts = facts;
+    this.dictionary = dictionary;
+    predicate = dictionary.need(relation);
+  }
+
+  /** Moves to the next triple, returns FALSE at the end (and closes the reader) */
+  public boolean next() {
+    while (facts.hasNext()) {
+      fact = facts.next();
+      if (fact.size() != 3) continue;
+      subject = facts.arg1Id();
+      if (subject < 0) subject = dictionary.need(fact.arg1);
+      object = facts.arg2Id();
+      if (object < 0) object = dictionary.need(fact.arg2);
+      return (true);
+    }
+    return (false);
+  }
+
+  /** Returns the fact of the current triple (for its id) */
+  public Fact fact() {
+    return (fact);
+  }
+
+  @Override
+  public void close() {
+    facts.close();
+  }
+}
@@ -0,0 +1,60 @@
+package converters.facts;
+
+import java.io.File;
+import java.io.IOException;
+
+import javatools.filehandlers.FileLines;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads the facts of a TSV file with FileLines and String.split. This is the
+ * classical way of reading YAGO; it is kept for comparison with the
+ * MappedFactReader (set 'factReader = lines' in the yago.ini). FileLines
+ * decodes the lines and drops their ends, so the offset() of a fact is the
+ * number of characters before its line, counting one per line end, and not
+ * its byte offset. A checkpoint of this reader can therefore only be resumed
+ * with this reader (see Checkpoint.check()).
+ */
+public class LineFactReader extends FactReader {
+
+  /** The lines */
+  protected FileLines lines;
+
+  /** Number of characters read so far (with one per line end) */
+  protected long position = 0;
+
+  /** Constructs a reader, shows progress bar if announceMsg!=null */
+  public LineFactReader(File file, String announceMsg) throws IOException {
+    super(file, file.length(), announceMsg);
+    lines = new FileLines(file);
+  }
+
+  @Override
+  protected boolean readFact(Fact fact) throws IOException {
+    if (!lines.hasNext()) return (false);
+    String line = lines.next();
+    fact.offset = position;
+    position += line.length() + 1;
+    String[] split = line.split("\t");
+    for (int i = 0; i < 3; i++) {
+      if (i < split.length) fact.get(i).set(split[i]);
+      else fact.get(i).clear();
+    }
+    fact.size = split.length;
+    return (true);
+  }
+
+  @Override
+  public long position() {
+    return (position);
+  }
+
+  @Override
+  protected void closeInput() throws IOException {
+    lines.close();
+  }
+}
@@ -0,0 +1,199 @@
+package converters.facts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+import javatools.administrative.Announce;
+import javatools.administrative.D;
+import javatools.filehandlers.FileLines;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads the facts of a TSV file through a memory mapping. The file is mapped
+ * in windows of at most WINDOW bytes (a mapping cannot exceed 2GB); tabs and
+ * newlines are found at the byte level and the columns are decoded directly
+ * from the mapping into the reusable Fact.
+ *
+ * A reader can also be restricted to a byte range of the file, so that
+ * several threads can parse one big file. The ranges should start and end at
+ * line boundaries, see splitLines().
+ */
+public class MappedFactReader extends FactReader {
+
+  /** Default size of a mapping window */
+  public static final int WINDOW = 1 << 30;
+
+  /** The channel of the file (opened with the first window) */
+  protected FileChannel channel;
+
+  /** The current window */
+  protected MappedByteBuffer buffer;
+
+  /** File offset of the current window */
+  protected long windowStart;
+
+  /** File offset where the current window ends */
+  protected long windowEnd;
+
+  /** File offset of the next line */
+  protected long position;
+
+  /** File offset where we started reading */
+  protected final long start;
+
+  /** File offset where we stop reading */
+  protected final long end;
+
+  /** Size of the mapping windows */
+  protected final int windowSize;
+
+  /** Constructs a reader, shows progress bar if announceMsg!=null */
+  public MappedFactReader(File file, String announceMsg) throws IOException {
+    this(file, announceMsg, WINDOW);
+  }
+
+  /** Constructs a reader with a given mapping window size */
+  public MappedFactReader(File file, String announceMsg, int windowSize) throws IOException {
+    this(file, announceMsg, 0, file.length(), windowSize);
+  }
+
+  /** Constructs a reader for the lines between the file offsets start and end */
+  public MappedFactReader(File file, String announceMsg, long start, long end) throws IOException {
+    this(file, announceMsg, start, end, WINDOW);
+  }
+
+  /** Constructs a reader for the lines between the file offsets start and end with a given window size */
+  public MappedFactReader(File file, String announceMsg, long start, long end, int windowSize) throws IOException {
+    super(file, end - start, announceMsg);
+    this.windowSize = windowSize;
+    this.start = start;
+    this.end = end;
+    position = start;
+  }
+
+  /**
+   * Splits a file into ranges of about chunkSize bytes that end at line
+   * boundaries. Returns the offsets start_0=0, start_1, ..., length.
+   */
+  public static long[] splitLines(File file, long chunkSize) throws IOException {
+    long length = file.length();
+    List<Long> offsets = new ArrayList<Long>();
+    offsets.add(0L);
+    FileChannel channel = new FileInputStream(file).getChannel();
+    try {
+      ByteBuffer buffer = ByteBuffer.allocate(4096);
+      long offset = chunkSize;
+      while (offset < length) {
+        // Find the first newline at or after offset-1
+        long pos = offset - 1;
+        long newline = -1;
+        while (newline == -1 && pos < length) {
+          buffer.clear();
+          int read = channel.read(buffer, pos);
+          if (read <= 0) break;
+          for (int i = 0; i < read; i++) {
+            if (buffer.get(i) == '\n') {
+              newline = pos + i;
+              break;
+            }
+          }
+          pos += read;
+        }
+        if (newline == -1 || newline + 1 >= length) break;
+        offsets.add(newline + 1);
+        offset = newline + 1 + chunkSize;
+      }
+    } finally {
+      channel.close();
+    }
+    offsets.add(length);
+    long[] result = new long[offsets.size()];
+    for (int i = 0; i < result.length; i++)
+      result[i] = offsets.get(i);
+    return (result);
+  }
+
+  /** Maps the window that starts at the given file offset */
+  protected void map(long start) throws IOException {
+    if (channel == null) channel = new FileInputStream(file).getChannel();
+    windowStart = start;
+    windowEnd = Math.min(end, start + windowSize);
+    buffer = channel.map(MapMode.READ_ONLY, windowStart, windowEnd - windowStart);
+  }
+
+  @Override
+  protected boolean readFact(Fact fact) throws IOException {
+    while (position < end) {
+      if (buffer == null || position >= windowEnd) map(position);
+      int start = (int) (position - windowStart);
+      int limit = (int) (windowEnd - windowStart);
+      int newline = fact.parse(buffer, start, limit);
+      if (newline == -1 && windowEnd < end) {
+        // The line crosses the window boundary: map again from the line start
+        if (start == 0) throw new IOException("Line at offset " + position + " of " + file + " is longer than " + windowSize + " bytes");
+        map(position);
+        continue;
+      }
+      fact.offset = position;
+      position = windowStart + (newline == -1 ? limit : newline + 1);
+      return (true);
+    }
+    return (false);
+  }
+
+  @Override
+  public long position() {
+    return (position);
+  }
+
+  @Override
+  public long bytesRead() {
+    return (position - start);
+  }
+
+  @Override
+  protected void closeInput() throws IOException {
+    buffer = null;
+    if (channel != null) channel.close();
+  }
+
+  /** Compares the throughput of FileLines+split and of the mapped reader on all TSV files of a folder */
+  public static void main(String[] args) throws Exception {
+    if (args.length == 0) {
+      D.p("Usage: MappedFactReader <folder with TSV files>");
+      return;
+    }
+    long bytes = 0;
+    long hash = 0;
+    long start = System.nanoTime();
+    for (File f : new File(args[0]).listFiles()) {
+      if (!f.getName().endsWith(".tsv")) continue;
+      for (String line : new FileLines(f, "FileLines " + f.getName())) {
+        String[] split = line.split("\t");
+        hash += split[split.length - 1].length();
+      }
+      bytes += f.length();
+    }
+    Announce.message("FileLines+split:", throughput(bytes, System.nanoTime() - start));
+    start = System.nanoTime();
+    for (File f : new File(args[0]).listFiles()) {
+      if (!f.getName().endsWith(".tsv")) continue;
+      for (Fact fact : new MappedFactReader(f, "Mapped " + f.getName())) {
+        hash -= fact.get(fact.size() > 3 ? 2 : fact.size() - 1).length();
+      }
+    }
+    Announce.message("MappedFactReader:", throughput(bytes, System.nanoTime() - start));
+    Announce.message("Checksum (should be 0 for well-formed files):", hash);
+  }
+}
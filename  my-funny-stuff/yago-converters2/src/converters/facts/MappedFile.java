@@ -0,0 +1,161 @@
+package converters.facts;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * A file that is memory-mapped in segments of SEGMENT bytes, so that it can
+ * be larger than 2GB and lives outside the Java heap. A writable file grows
+ * with the positions that are written; close() cuts it to the size that has
+ * been used. Ints and longs are stored big-endian and should be aligned to
+ * their size (so that they never cross a segment boundary).
+ */
+public class MappedFile implements Closeable {
+
+  /** Size of a segment (a multiple of 8) */
+  public static final int SEGMENT = 1 << 26;
+
+  /** The file */
+  protected final File file;
+
+  /** The file handle */
+  protected RandomAccessFile raf;
+
+  /** The channel of the file */
+  protected FileChannel channel;
+
+  /** The mapped segments */
+  protected final List<MappedByteBuffer> segments = new ArrayList<MappedByteBuffer>();
+
+  /** TRUE if the file is writable */
+  protected final boolean writable;
+
+  /** Number of bytes used (the highest position written + 1, or the file length) */
+  protected long size;
+
+  /** Opens a file. A writable file is created if it does not exist */
+  public MappedFile(File file, boolean writable) throws IOException {
+    this.file = file;
+    this.writable = writable;
+    raf = new RandomAccessFile(file, writable ? "rw" : "r");
+    channel = raf.getChannel();
+    size = raf.length();
+    ensureCapacity(size);
+  }
+
+  /** Maps segments up to the given position */
+  protected void ensureCapacity(long capacity) throws IOException {
+    while ((long) segments.size() * SEGMENT < capacity) {
+      long start = (long) segments.size() * SEGMENT;
+      long length = writable ? SEGMENT : Math.min(SEGMENT, size - start);
+      segments.add(channel.map(writable ? MapMode.READ_WRITE : MapMode.READ_ONLY, start, length));
+    }
+  }
+
+  /** Returns the segment for a position, grows the file if needed */
+  protected MappedByteBuffer segment(long pos, int length) throws IOException {
+    if (pos + length > size) {
+      if (!writable) throw new IOException("Position " + pos + " is beyond the end of " + file);
+      ensureCapacity(pos + length);
+      size = pos + length;
+    }
+    return (segments.get((int) (pos / SEGMENT)));
+  }
+
+  /** Returns the segment for reading a position */
+  protected MappedByteBuffer read(long pos) {
+    return (segments.get((int) (pos / SEGMENT)));
+  }
+
+  /** Returns the number of bytes used */
+  public long size() {
+    return (size);
+  }
+
+  /** Returns the file */
+  public File getFile() {
+    return (file);
+  }
+
+  public byte get(long pos) {
+    return (read(pos).get((int) (pos % SEGMENT)));
+  }
+
+  public int getInt(long pos) {
+    return (read(pos).getInt((int) (pos % SEGMENT)));
+  }
+
+  public long getLong(long pos) {
+    return (read(pos).getLong((int) (pos % SEGMENT)));
+  }
+
+  /** Copies len bytes from pos to dst[off] */
+  public void get(long pos, byte[] dst, int off, int len) {
+    while (len > 0) {
+      MappedByteBuffer segment = read(pos);
+      int start = (int) (pos % SEGMENT);
+      int n = Math.min(len, SEGMENT - start);
+      for (int i = 0; i < n; i++)
+        dst[off + i] = segment.get(start + i);
+      pos += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  public void put(long pos, byte b) throws IOException {
+    segment(pos, 1).put((int) (pos % SEGMENT), b);
+  }
+
+  public void putInt(long pos, int i) throws IOException {
+    segment(pos, 4).putInt((int) (pos % SEGMENT), i);
+  }
+
+  public void putLong(long pos, long l) throws IOException {
+    segment(pos, 8).putLong((int) (pos % SEGMENT), l);
+  }
+
+  /** Copies len bytes from src[off] to pos */
+  public void put(long pos, byte[] src, int off, int len) throws IOException {
+    if (len == 0) return;
+    segment(pos, len);
+    while (len > 0) {
+      MappedByteBuffer segment = read(pos);
+      int start = (int) (pos % SEGMENT);
+      int n = Math.min(len, SEGMENT - start);
+      for (int i = 0; i < n; i++)
+        segment.put(start + i, src[off + i]);
+      pos += n;
+      off += n;
+      len -= n;
+    }
+  }
+
+  /** Closes the file. A writable file is cut to the size that has been used */
+  @Override
+  public void close() throws IOException {
+    if (raf == null) return;
+    segments.clear();
+    if (writable) raf.setLength(size);
+    channel.close();
+    raf.close();
+    raf = null;
+  }
+
+  @Override
+  public String toString() {
+    return ("MappedFile " + file + " (" + size + " bytes)");
+  }
+}
@@ -0,0 +1,123 @@
+package converters.facts;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads another input stream on a thread of its own and hands out its data in
+ * blocks through a bounded queue. If the other stream decompresses a file,
+ * the decompression thus runs in parallel to whoever reads this stream.
+ */
+public class ReadAheadInputStream extends InputStream {
+
+  /** Marks the end of the input in the queue */
+  protected static final byte[] EOF = new byte[0];
+
+  /** The blocks that have been read ahead */
+  protected final BlockingQueue<byte[]> blocks;
+
+  /** The stream we read from */
+  protected final InputStream in;
+
+  /** The thread that reads */
+  protected final Thread reader;
+
+  /** Exception of the reading thread (or NULL) */
+  protected volatile IOException exception;
+
+  /** The current block */
+  protected byte[] block = null;
+
+  /** Position in the current block */
+  protected int pos = 0;
+
+  /** TRUE if the stream has been closed */
+  protected volatile boolean closed = false;
+
+  /** Starts reading ahead in blocks of blockSize bytes, keeps at most maxBlocks blocks */
+  public ReadAheadInputStream(InputStream input, final int blockSize, int maxBlocks, String name) {
+    this.in = input;
+    blocks = new ArrayBlockingQueue<byte[]>(maxBlocks);
+    reader = new Thread(name) {
+      @Override
+      public void run() {
+        try {
+          while (!closed) {
+            byte[] buffer = new byte[blockSize];
+            int len = 0;
+            int read;
+            while (len < blockSize && (read = in.read(buffer, len, blockSize - len)) != -1)
+              len += read;
+            if (len == 0) break;
+            if (len < blockSize) {
+              byte[] shorter = new byte[len];
+              System.arraycopy(buffer, 0, shorter, 0, len);
+              buffer = shorter;
+            }
+            while (!closed && !blocks.offer(buffer, 100, TimeUnit.MILLISECONDS))
+              ;
+          }
+        } catch (IOException e) {
+          exception = e;
+        } catch (InterruptedException e) {
+          return;
+        }
+        try {
+          while (!closed && !blocks.offer(EOF, 100, TimeUnit.MILLISECONDS))
+            ;
+        } catch (InterruptedException e) {
+        }
+      }
+    };
+    reader.setDaemon(true);
+    reader.start();
+  }
+
+  /** Makes sure that there is a block with data, returns FALSE at the end of the input */
+  protected boolean nextBlock() throws IOException {
+    while (block == null || pos >= block.length) {
+      if (block == EOF) return (false);
+      try {
+        block = blocks.take();
+      } catch (InterruptedException e) {
+        throw new IOException("Interrupted while reading ahead");
+      }
+      pos = 0;
+      if (block == EOF && exception != null) throw exception;
+    }
+    return (true);
+  }
+
+  @Override
+  public int read() throws IOException {
+    if (!nextBlock()) return (-1);
+    return (block[pos++] & 0xFF);
+  }
+
+  @Override
+  public int read(byte[] b, int off, int len) throws IOException {
+    if (len == 0) return (0);
+    if (!nextBlock()) return (-1);
+    len = Math.min(len, block.length - pos);
+    System.arraycopy(block, pos, b, off, len);
+    pos += len;
+    return (len);
+  }
+
+  @Override
+  public void close() throws IOException {
+    if (closed) return;
+    closed = true;
+    reader.interrupt();
+    blocks.clear();
+    in.close();
+  }
+}
@@ -0,0 +1,234 @@
+package converters.facts;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * The binary snapshot of a YAGO fact file. A snapshot folder contains an
+ * EntityDictionary and one file NAME.snapshot per fact file NAME.tsv, which
+ * consists of a header (relation, domain, range, number of facts, sizes of
+ * the columns) and three columns:
+ *
+ *   id     fact ids of the form #number as zigzag varints of the difference
+ *          to the previous number, plus 1 (0 introduces any other id as a
+ *          varint length and UTF-8 bytes)
+ *   arg1   dictionary ids as zigzag varints of the difference to the previous
+ *   arg2   same as arg1
+ *
+ * Since YAGO fact files are sorted by id and mostly by arg1, the differences
+ * are small and most facts take a few bytes.
+ */
+public class Snapshot {
+
+  /** Extension of snapshot fact files */
+  public static final String EXTENSION = ".snapshot";
+
+  /** File that marks a snapshot folder */
+  public static final String INFO = "snapshot.info";
+
+  /** Magic number of snapshot fact files ("YAGS") */
+  public static final int MAGIC = 0x59414753;
+
+  /** Version of the format */
+  public static final int VERSION = 1;
+
+  /** Returns TRUE if the folder contains a snapshot */
+  public static boolean exists(File folder) {
+    return (new File(folder, INFO).exists() && EntityDictionary.exists(folder));
+  }
+
+  /** The header of a snapshot fact file */
+  public static class Header {
+
+    /** Name of the fact file without extension */
+    public String name;
+
+    /** Domain of the relation */
+    public String domain;
+
+    /** Range of the relation */
+    public String range;
+
+    /** Number of facts */
+    public long facts;
+
+    /** Sizes of the columns in bytes */
+    public final long[] columns = new long[3];
+
+    /** Size of the header in bytes */
+    public long size;
+
+    /** Reads the header of a snapshot file */
+    public static Header read(File file) throws IOException {
+      DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 1024));
+      try {
+        if (in.readInt() != MAGIC) throw new IOException(file + " is not a YAGO snapshot file");
+        if (in.readInt() != VERSION) throw new IOException(file + " has an unsupported snapshot version");
+        Header header = new Header();
+        header.name = in.readUTF();
+        header.domain = in.readUTF();
+        header.range = in.readUTF();
+        header.facts = in.readLong();
+        for (int i = 0; i < 3; i++)
+          header.columns[i] = in.readLong();
+        header.size = 4 + 4 + utfLength(header.name) + utfLength(header.domain) + utfLength(header.range) + 8 + 3 * 8;
+        return (header);
+      } finally {
+        in.close();
+      }
+    }
+
+    /** Writes the header */
+    public void write(DataOutputStream out) throws IOException {
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(name);
+      out.writeUTF(domain);
+      out.writeUTF(range);
+      out.writeLong(facts);
+      for (int i = 0; i < 3; i++)
+        out.writeLong(columns[i]);
+    }
+
+    /** Returns the number of bytes of a string written by writeUTF */
+    protected static int utfLength(String s) {
+      int len = 2;
+      for (int i = 0; i < s.length(); i++) {
+        char c = s.charAt(i);
+        len += c >= 1 && c < 0x80 ? 1 : c < 0x800 ? 2 : 3;
+      }
+      return (len);
+    }
+  }
+
+  /** Writes a long as a varint, returns the number of bytes */
+  public static int writeVarint(OutputStream out, long value) throws IOException {
+    int bytes = 1;
+    while ((value & ~0x7FL) != 0) {
+      out.write((int) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+      bytes++;
+    }
+    out.write((int) value);
+    return (bytes);
+  }
+
+  /** Maps signed to unsigned numbers (0,-1,1,-2,... to 0,1,2,3,...) */
+  public static long zigzag(long value) {
+    return ((value << 1) ^ (value >> 63));
+  }
+
+  /** Inverse of zigzag() */
+  public static long unzigzag(long value) {
+    return ((value >>> 1) ^ -(value & 1));
+  }
+
+  /** Returns the number of a fact id of the form #number, or -1 */
+  public static long factNumber(CharSequence id) {
+    int len = id.length();
+    if (len < 2 || len > 19 || id.charAt(0) != '#' || (id.charAt(1) == '0' && len > 2)) return (-1);
+    long number = 0;
+    for (int i = 1; i < len; i++) {
+      char c = id.charAt(i);
+      if (c < '0' || c > '9') return (-1);
+      number = number * 10 + (c - '0');
+    }
+    return (number);
+  }
+
+  /**
+   * Writes the snapshot of the facts to target. Facts that do not have
+   * exactly 3 columns are skipped (with a warning by the caller, who gets
+   * their number).
+   */
+  public static long write(FactReader facts, EntityDictionary dictionary, Header header, File target) throws IOException {
+    File[] columnFiles = new File[3];
+    CountingOutputStream[] columns = new CountingOutputStream[3];
+    for (int i = 0; i < 3; i++) {
+      columnFiles[i] = new File(target.getPath() + "." + i + ".tmp");
+      columns[i] = new CountingOutputStream(new BufferedOutputStream(new FileOutputStream(columnFiles[i]), 1 << 16));
+    }
+    long skipped = 0;
+    long lastNumber = 0;
+    long lastArg1 = 0;
+    long lastArg2 = 0;
+    byte[][] buffer = new byte[][] { new byte[256] };
+    header.facts = 0;
+    for (Fact fact : facts) {
+      if (fact.size() != 3) {
+        skipped++;
+        continue;
+      }
+      long number = factNumber(fact.id);
+      if (number >= 0) {
+        writeVarint(columns[0], zigzag(number - lastNumber) + 1);
+        lastNumber = number;
+      } else {
+        writeVarint(columns[0], 0);
+        int len = EntityDictionary.encode(fact.id, buffer);
+        writeVarint(columns[0], len);
+        columns[0].write(buffer[0], 0, len);
+      }
+      long arg1 = dictionary.need(fact.arg1);
+      long arg2 = dictionary.need(fact.arg2);
+      writeVarint(columns[1], zigzag(arg1 - lastArg1));
+      writeVarint(columns[2], zigzag(arg2 - lastArg2));
+      lastArg1 = arg1;
+      lastArg2 = arg2;
+      header.facts++;
+    }
+    for (int i = 0; i < 3; i++) {
+      columns[i].close();
+      header.columns[i] = columns[i].count;
+    }
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(target), 1 << 16));
+    header.write(out);
+    byte[] copy = new byte[1 << 16];
+    for (int i = 0; i < 3; i++) {
+      FileInputStream in = new FileInputStream(columnFiles[i]);
+      int len;
+      while ((len = in.read(copy)) != -1)
+        out.write(copy, 0, len);
+      in.close();
+      columnFiles[i].delete();
+    }
+    out.close();
+    return (skipped);
+  }
+
+  /** Counts the bytes written to a stream */
+  protected static class CountingOutputStream extends FilterOutputStream {
+
+    /** Number of bytes written */
+    protected long count = 0;
+
+    public CountingOutputStream(OutputStream out) {
+      super(out);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+      out.write(b);
+      count++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+      out.write(b, off, len);
+      count += len;
+    }
+  }
+}
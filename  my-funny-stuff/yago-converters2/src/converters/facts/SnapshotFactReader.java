@@ -0,0 +1,122 @@
+package converters.facts;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads the facts of a binary snapshot file (see Snapshot). The three columns
+ * are decoded from a memory mapping, the entities are looked up in the
+ * dictionary of the snapshot. The offset() of a fact is its number in the
+ * file.
+ */
+public class SnapshotFactReader extends FactReader {
+
+  /** The header */
+  protected final Snapshot.Header header;
+
+  /** The dictionary */
+  protected final EntityDictionary dictionary;
+
+  /** The mapped file (opened with the first read) */
+  protected MappedFile data;
+
+  /** Positions of the columns */
+  protected final long[] positions = new long[3];
+
+  /** Where the columns start */
+  protected final long[] starts = new long[3];
+
+  /** Number of the last fact id */
+  protected long lastNumber = 0;
+
+  /** Last arg1 id */
+  protected long lastArg1 = 0;
+
+  /** Last arg2 id */
+  protected long lastArg2 = 0;
+
+  /** For building fact ids */
+  protected final StringBuilder idBuilder = new StringBuilder();
+
+  /** For reading non-numeric fact ids */
+  protected byte[] bytes = new byte[64];
+
+  /** Constructs a reader, shows progress bar if announceMsg!=null */
+  public SnapshotFactReader(File file, String announceMsg, EntityDictionary dictionary) throws IOException {
+    super(file, file.length(), announceMsg);
+    this.dictionary = dictionary;
+    header = Snapshot.Header.read(file);
+    starts[0] = header.size;
+    starts[1] = starts[0] + header.columns[0];
+    starts[2] = starts[1] + header.columns[1];
+    System.arraycopy(starts, 0, positions, 0, 3);
+  }
+
+  /** Returns the header */
+  public Snapshot.Header getHeader() {
+    return (header);
+  }
+
+  /** Reads a varint from a column */
+  protected long varint(int column) {
+    long value = 0;
+    int shift = 0;
+    while (true) {
+      byte b = data.get(positions[column]++);
+      value |= (long) (b & 0x7F) << shift;
+      if (b >= 0) return (value);
+      shift += 7;
+    }
+  }
+
+  @Override
+  protected boolean readFact(Fact fact) throws IOException {
+    if (factCounter >= header.facts) return (false);
+    if (data == null) data = new MappedFile(getFile(), false);
+    long code = varint(0);
+    if (code > 0) {
+      lastNumber += Snapshot.unzigzag(code - 1);
+      idBuilder.setLength(0);
+      idBuilder.append('#').append(lastNumber);
+      fact.id.set(idBuilder);
+    } else {
+      int len = (int) varint(0);
+      if (bytes.length < len) bytes = new byte[len * 2];
+      data.get(positions[0], bytes, 0, len);
+      positions[0] += len;
+      fact.id.set(bytes, 0, len);
+    }
+    lastArg1 += Snapshot.unzigzag(varint(1));
+    lastArg2 += Snapshot.unzigzag(varint(2));
+    dictionary.get((int) lastArg1, fact.arg1);
+    dictionary.get((int) lastArg2, fact.arg2);
+    fact.size = 3;
+    fact.offset = factCounter;
+    return (true);
+  }
+
+  @Override
+  public int arg1Id() {
+    return ((int) lastArg1);
+  }
+
+  @Override
+  public int arg2Id() {
+    return ((int) lastArg2);
+  }
+
+  @Override
+  public long position() {
+    return (header.size + positions[0] - starts[0] + positions[1] - starts[1] + positions[2] - starts[2]);
+  }
+
+  @Override
+  protected void closeInput() throws IOException {
+    if (data != null) data.close();
+  }
+}
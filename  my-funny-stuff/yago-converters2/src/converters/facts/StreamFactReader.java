@@ -0,0 +1,192 @@
+package converters.facts;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * This class is part of the YAGO converters (http://yago-knowledge.org). It is
+ * licensed under the Creative Commons Attribution License
+ * (http://creativecommons.org/licenses/by/3.0) by the YAGO team
+ * (http://yago-knowledge.org).
+ *
+ * Reads the facts of a compressed TSV file (*.tsv.gz or *.tsv.bz2). The file
+ * is decompressed on other threads while the facts are parsed: gzip files are
+ * decompressed by a ReadAheadInputStream, or by an external command if one
+ * is given (e.g. "pigz -dc"). Bzip2 files are always decompressed by an
+ * external command (Java has no bzip2 decoder); "lbzip2 -dc" or "pbzip2 -dc"
+ * decompress the bzip2 blocks in parallel. A gzip stream cannot be
+ * decompressed block-parallel, because its blocks depend on each other.
+ *
+ * The progress bar shows the compressed bytes, position() and offset() of
+ * the facts refer to the decompressed data.
+ */
+public class StreamFactReader extends FactReader {
+
+  /** Size of the blocks that are read ahead */
+  public static final int BLOCK = 1 << 20;
+
+  /** Number of blocks that are read ahead */
+  public static final int BLOCKS = 8;
+
+  /** The command that decompresses from stdin to stdout (or NULL) */
+  protected final String command;
+
+  /** Counts the compressed bytes that have been read from the file */
+  protected CountingInputStream file;
+
+  /** The decompressed data (opened with the first read) */
+  protected InputStream in;
+
+  /** The decompressing process (or NULL) */
+  protected Process process;
+
+  /** The buffer with the decompressed data */
+  protected byte[] buffer = new byte[BLOCK];
+
+  /** Start of the next line in buffer */
+  protected int pos = 0;
+
+  /** End of the data in buffer */
+  protected int limit = 0;
+
+  /** Offset of buffer[0] in the decompressed data */
+  protected long bufferOffset = 0;
+
+  /** TRUE if the decompressed data has been read completely */
+  protected boolean eof = false;
+
+  /** Returns TRUE if the file is compressed in a format that this class can read */
+  public static boolean isCompressed(File file) {
+    return (file.getName().endsWith(".gz") || file.getName().endsWith(".bz2"));
+  }
+
+  /**
+   * Constructs a reader, shows progress bar if announceMsg!=null. The command
+   * decompresses from stdin to stdout, it may be NULL for gzip files.
+   */
+  public StreamFactReader(File inputFile, String announceMsg, String command) throws IOException {
+    super(inputFile, inputFile.length(), announceMsg);
+    this.command = command == null || command.trim().length() == 0 ? null : command.trim();
+    if (this.command == null && !inputFile.getName().endsWith(".gz")) throw new IOException("No decompression command for " + inputFile);
+  }
+
+  /** Opens the file and starts the decompression */
+  protected void open() throws IOException {
+    file = new CountingInputStream(new FileInputStream(getFile()));
+    if (command != null) in = decompress(command.split(" +"));
+    else in = new ReadAheadInputStream(new GZIPInputStream(file, 1 << 16), BLOCK, BLOCKS, "gunzip " + getFile().getName());
+  }
+
+  /** Starts the decompressing process and a thread that feeds the file to it */
+  protected InputStream decompress(String[] command) throws IOException {
+    process = new ProcessBuilder(command).redirectError(ProcessBuilder.Redirect.INHERIT).start();
+    final OutputStream stdin = process.getOutputStream();
+    Thread feeder = new Thread("feed " + command[0]) {
+      @Override
+      public void run() {
+        byte[] b = new byte[1 << 16];
+        try {
+          int len;
+          while ((len = file.read(b)) != -1)
+            stdin.write(b, 0, len);
+        } catch (IOException e) {
+          // The process died or the reader was closed, the reader will notice
+        } finally {
+          try {
+            stdin.close();
+          } catch (IOException e) {
+          }
+        }
+      }
+    };
+    feeder.setDaemon(true);
+    feeder.start();
+    return (process.getInputStream());
+  }
+
+  @Override
+  protected boolean readFact(Fact fact) throws IOException {
+    if (in == null) open();
+    while (true) {
+      int newline = fact.parse(buffer, pos, limit);
+      if (newline != -1 || (eof && pos < limit)) {
+        fact.offset = bufferOffset + pos;
+        pos = newline == -1 ? limit : newline + 1;
+        return (true);
+      }
+      if (eof) return (false);
+      fill();
+    }
+  }
+
+  /** Moves the incomplete line to the start of the buffer and reads more data */
+  protected void fill() throws IOException {
+    if (pos > 0) {
+      System.arraycopy(buffer, pos, buffer, 0, limit - pos);
+      bufferOffset += pos;
+      limit -= pos;
+      pos = 0;
+    }
+    if (limit == buffer.length) buffer = Arrays.copyOf(buffer, buffer.length * 2);
+    int read = in.read(buffer, limit, buffer.length - limit);
+    if (read == -1) {
+      eof = true;
+      if (process != null) {
+        try {
+          if (process.waitFor() != 0) throw new IOException("Decompression of " + getFile() + " failed with exit code " + process.exitValue());
+        } catch (InterruptedException e) {
+          throw new IOException("Interrupted while decompressing " + getFile());
+        }
+      }
+    } else limit += read;
+  }
+
+  @Override
+  public long position() {
+    return (bufferOffset + pos);
+  }
+
+  @Override
+  protected long progress() {
+    return (file == null ? 0 : file.count);
+  }
+
+  @Override
+  protected void closeInput() throws IOException {
+    buffer = null;
+    if (in != null) in.close();
+    if (file != null) file.close();
+    if (process != null) process.destroy();
+  }
+
+  /** Counts the bytes read from a stream */
+  protected static class CountingInputStream extends FilterInputStream {
+
+    /** Number of bytes read so far */
+    protected volatile long count = 0;
+
+    public CountingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public int read() throws IOException {
+      int b = super.read();
+      if (b != -1) count++;
+      return (b);
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+      int read = super.read(b, off, len);
+      if (read > 0) count += read;
+      return (read);
+    }
+  }
+}
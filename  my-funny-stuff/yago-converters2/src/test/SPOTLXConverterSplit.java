@@ -23,7 +23,6 @@ import javatools.administrative.Announce;
 import javatools.administrative.D;
 import javatools.administrative.Parameters;
 import javatools.database.PostgresDatabase;
-import javatools.filehandlers.FileLines;
 import basics.Config;
 import basics.Normalize;
 
@@ -36,6 +35,7 @@ import com.sleepycat.je.Environment;
 import com.sleepycat.je.EnvironmentConfig;
 
 import converters.Converter;
+import converters.facts.Fact;
 import converters.spotlx.DateParser;
 import converters.spotlx.GeoLocation;
 import converters.spotlx.IndexCreator;
@@ -348,11 +348,10 @@ public class SPOTLXConverterSplit extends Converter {
     Announce.doing("Parsing: " + relation);
     String insertFact = "INSERT INTO \"" + relation + "\" (id, relation,arg1, arg2, timeBegin, timeEnd, location, locationLatitude, locationLongitude, primaryWitness, context) VALUES (?, ?,?, ?, ?, ?, ?, ?, ?, ?, ?)";
     PreparedStatement pstmtInsertRelationalFact = targetConn.prepareStatement(insertFact);
-    for (String l : new FileLines(file)) {
-      String[] data = l.split("\t");
-      String id = data[0];
-      String arg1 = data[1];
-      String arg2 = data[2];
+    for (Fact fact : readFacts(file, null)) {
+      String id = fact.id.toString();
+      String arg1 = fact.arg1.toString();
+      String arg2 = fact.arg2.toString();
       if (relation.equals("hasGloss") && arg2.length() > maximumFactLength) {
         arg2 = arg2.subSequence(0, maximumFactLength - 4) + "...\"";
       } else if (arg1.length() > maximumFactLength || arg2.length() > maximumFactLength) {
@@ -580,10 +579,9 @@ public class SPOTLXConverterSplit extends Converter {
       Announce.message(geolocations.size() + " geolocations (i.e., entities with known latitude and longitude)");
       return;
     }
-    for (String l : new FileLines(new File(yagoFolder, "hasGeoCoordinates.tsv"), "Initializing geo-coordinates")) {
-      String[] data = l.split("\t");
-      String entity = data[1];
-      String geoCoordinates = data[2];
+    for (Fact fact : readFacts(factFile("hasGeoCoordinates"), "Initializing geo-coordinates")) {
+      String entity = fact.arg1.toString();
+      String geoCoordinates = fact.arg2.toString();
       int pos = geoCoordinates.indexOf('/');
       double lat = Double.parseDouble(geoCoordinates.substring(1, pos));
       double lon = Double.parseDouble(geoCoordinates.substring(pos + 1, geoCoordinates.length() - 1));
@@ -605,11 +603,10 @@ public class SPOTLXConverterSplit extends Converter {
     String[] rels = new String[] { "occursIn" };
     Announce.doing("Initializing location entities");
     for (String relation : rels) {
-      for (String line : new FileLines(new File(yagoFolder, relation + ".tsv"), "Initializing for " + relation)) {
-        String[] data = line.split("\t");
-        String fact = data[1];
-        String location = data[2];
-        locations.put(fact, location);
+      for (Fact fact : readFacts(factFile(relation), "Initializing for " + relation)) {
+        String factId = fact.arg1.toString();
+        String location = fact.arg2.toString();
+        locations.put(factId, location);
       }
     }
     Announce.message(locations.size() + " locations");
@@ -629,11 +626,10 @@ public class SPOTLXConverterSplit extends Converter {
     String[] rels = new String[] { "occursSince", "occursUntil" };
     Announce.doing("Initializing time intervals");
     for (String relation : rels) {
-      for (String line : new FileLines(new File(yagoFolder, relation + ".tsv"), "Initializing for " + relation)) {
-        String[] data = line.split("\t");
-        String fact = data[1];
-        String date = data[2];
-        TimeInterval timeInterval = timeIntervals.get(fact);
+      for (Fact fact : readFacts(factFile(relation), "Initializing for " + relation)) {
+        String factId = fact.arg1.toString();
+        String date = fact.arg2.toString();
+        TimeInterval timeInterval = timeIntervals.get(factId);
         if (timeInterval == null) {
           timeInterval = new TimeInterval();
         }
@@ -644,7 +640,7 @@ public class SPOTLXConverterSplit extends Converter {
           long ms = DateParser.ceilDate(date);
           timeInterval.setEnd(ms);
         }
-        timeIntervals.put(fact, timeInterval);
+        timeIntervals.put(factId, timeInterval);
       }
     }
     Announce.message(timeIntervals.size() + " time intervals");
@@ -661,11 +657,10 @@ public class SPOTLXConverterSplit extends Converter {
       Announce.message(witnesses.size() + " primary witnesses");
       return;
     }
-    for (String l : new FileLines(new File(yagoFolder, "wasFoundIn.tsv"), "Initializing witnesses")) {
-      String[] data = l.split("\t");
-      String fact = data[1];
-      String witness = data[2];
-      witnesses.put(fact, witness);
+    for (Fact fact : readFacts(factFile("wasFoundIn"), "Initializing witnesses")) {
+      String factId = fact.arg1.toString();
+      String witness = fact.arg2.toString();
+      witnesses.put(factId, witness);
     }
     Announce.message(witnesses.size() + " primary witnesses");
   }
@@ -683,16 +678,15 @@ public class SPOTLXConverterSplit extends Converter {
     String[] rels = new String[] { "hasWikipediaAnchorText", "hasWikipediaCategory", "hasCitationTitle" };
     Announce.doing("Initializing contexts");
     for (String relation : rels) {
-      File f = new File(yagoFolder, relation + ".tsv");
+      File f = factFile(relation);
       if (!f.exists()) {
         Announce.message("missing file for " + relation);
         continue;
       }
-      for (String line : new FileLines(new File(yagoFolder, relation + ".tsv"), "Initializing for " + relation)) {
-        String[] data = line.split("\t");
-        String entity = data[1];
+      for (Fact fact : readFacts(factFile(relation), "Initializing for " + relation)) {
+        String entity = fact.arg1.toString();
         String context = contexts.get(entity);
-        context = (context == null ? "" : context + '\t') + Normalize.unNormalize(data[2]);
+        context = (context == null ? "" : context + '\t') + Normalize.unNormalize(fact.arg2.toString());
         contexts.put(entity, context);
       }
     }
@@ -0,0 +1,65 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+import converters.facts.FactReader;
+import converters.facts.LineFactReader;
+import converters.facts.MappedFactReader;
+
+public class CheckpointTest {
+
+  @Test
+  public void resumeTest() throws IOException {
+    File facts = File.createTempFile("type", ".tsv");
+    facts.deleteOnExit();
+    OutputStream out = new FileOutputStream(facts);
+    out.write("#1\tElvis\tsinger\n".getBytes("UTF-8"));
+    out.close();
+    FactReader reader = new MappedFactReader(facts, null);
+    File file = File.createTempFile("test", ".checkpoint");
+    file.delete();
+    file.deleteOnExit();
+    Checkpoint checkpoint = new Checkpoint(file);
+    assertTrue(checkpoint.isEmpty());
+    assertEquals(-1, checkpoint.offset("type.tsv"));
+    checkpoint.commit("type.tsv", reader, 1234, 1000);
+    checkpoint.done("means.tsv", reader, 500);
+    checkpoint.commit("type.tsv", reader, 5678, 2000);
+
+    // After a crash
+    checkpoint = new Checkpoint(file);
+    assertEquals(5678, checkpoint.offset("type.tsv"));
+    assertEquals(2000, checkpoint.count("type.tsv"));
+    assertFalse(checkpoint.isDone("type.tsv"));
+    assertTrue(checkpoint.isDone("means.tsv"));
+    assertEquals(500, checkpoint.count("means.tsv"));
+    assertFalse(checkpoint.contains("subclassOf.tsv"));
+    assertEquals("MappedFactReader", checkpoint.reader("type.tsv"));
+
+    // The offsets of another reader do not fit
+    FactReader lines = new LineFactReader(facts, null);
+    checkpoint.check("type.tsv", reader);
+    checkpoint.check("subclassOf.tsv", lines);
+    try {
+      checkpoint.check("type.tsv", lines);
+      fail();
+    } catch (IOException e) {
+    }
+    lines.close();
+    reader.close();
+
+    checkpoint.clear();
+    assertFalse(file.exists());
+    assertTrue(new Checkpoint(file).isEmpty());
+  }
+}
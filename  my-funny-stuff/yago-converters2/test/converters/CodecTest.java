@@ -0,0 +1,86 @@
+package converters;
+
+import static converters.EscapeStrings.STRINGS;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javatools.parsers.Char;
+
+import org.junit.Test;
+
+import basics.TermExtractor;
+import converters.facts.FactField;
+
+public class CodecTest {
+
+  /** Strings with all kinds of characters */
+  @Test
+  public void codecTest() {
+    StringBuilder buffer = new StringBuilder();
+    for (String s : STRINGS) {
+      FactField field = new FactField();
+      field.set(s);
+      assertEquals(s, Char.decodeBackslash(s), Codec.decodeBackslash(field).toString());
+      assertEquals(s, Char.encodeURIPathComponent(s), Codec.encodeURIPathComponent(field, buffer).toString());
+      assertEquals(s, Char.encodeHex(s), Codec.encodeHex(field, buffer).toString());
+      assertEquals(s, Char.encodeAmpersand(s), Codec.encodeAmpersand(field, buffer).toString());
+      buffer.setLength(0);
+      int start = Codec.quoteStart(field);
+      Codec.appendDecodedAmpersand(buffer, field, start, Codec.quoteEnd(field, start));
+      assertEquals(s, Char.encodeAmpersand(Char.decodeBackslash(TermExtractor.stripQuotes(s))), buffer.toString());
+    }
+    // Nothing to escape, nothing copied
+    assertSame(STRINGS[0], Codec.decodeBackslash(STRINGS[0]));
+    assertSame(STRINGS[0], Codec.encodeURIPathComponent(STRINGS[0], buffer));
+    assertSame(STRINGS[0], Codec.encodeAmpersand(STRINGS[0], buffer));
+  }
+
+  @Test
+  public void cacheTest() {
+    final AtomicInteger calls = new AtomicInteger();
+    CodecCache<String> cache = new CodecCache<String>("test", 256, new CodecCache.Function<String>() {
+
+      @Override
+      public String apply(String raw) {
+        calls.incrementAndGet();
+        return (raw.toUpperCase());
+      }
+    });
+    FactField field = new FactField();
+    for (int round = 0; round < 3; round++) {
+      for (int i = 0; i < 32; i++) {
+        field.set("entity" + i);
+        assertEquals("ENTITY" + i, cache.get(field));
+      }
+    }
+    assertEquals(32, calls.get());
+    assertEquals(64, cache.hits());
+    assertEquals(32, cache.misses());
+    assertEquals(2 / 3.0, cache.hitRate(), 1e-9);
+
+    // Overflow: the cache keeps its size and still answers correctly
+    for (int i = 0; i < 10000; i++) {
+      field.set("other" + (i % 500));
+      assertEquals("OTHER" + (i % 500), cache.get(field));
+    }
+    assertTrue(cache.size() <= 256);
+  }
+
+  @Test
+  public void disabledTest() {
+    CodecCache<String> cache = new CodecCache<String>("test", 0, new CodecCache.Function<String>() {
+
+      @Override
+      public String apply(String raw) {
+        return (raw + "!");
+      }
+    });
+    assertEquals("a!", cache.get("a"));
+    assertEquals("a!", cache.get("a"));
+    assertEquals(0, cache.hits());
+    assertEquals(0, cache.size());
+  }
+}
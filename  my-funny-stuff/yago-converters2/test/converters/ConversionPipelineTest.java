@@ -0,0 +1,142 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import converters.facts.Fact;
+import converters.facts.FactReader;
+
+public class ConversionPipelineTest {
+
+  /**
+   * Writes relation and id of every fact, fails at the id "#fail" (like the
+   * real converters, only the first facts in test mode)
+   */
+  private static class IdConverter extends FactFileConverter {
+
+    @Override
+    protected void convertFacts(String relation, FactReader facts, OutputStream out) throws IOException {
+      int counter = 0;
+      for (Fact fact : facts) {
+        if (test && counter++ > 10) break;
+        if (fact.id.toString().equals("#fail")) throw new IOException("fail");
+        out.write((relation + " " + fact.id + "\n").getBytes("UTF-8"));
+      }
+    }
+
+    @Override
+    protected OutputStream openOutput() throws IOException {
+      throw new IOException("Converts into streams of the test only");
+    }
+
+    @Override
+    public void run() {
+    }
+
+    @Override
+    public String description() {
+      return ("Test");
+    }
+  }
+
+  /** Writes a fact file with the facts #0...#n-1 */
+  private File factFile(int n, String last) throws IOException {
+    File file = File.createTempFile("test", ".tsv");
+    file.deleteOnExit();
+    Writer w = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+    for (int i = 0; i < n; i++)
+      w.write((i == n - 1 && last != null ? last : "#" + i) + "\tx\ty\n");
+    w.close();
+    return (file);
+  }
+
+  @Test
+  public void orderTest() throws Exception {
+    List<File> files = Arrays.asList(factFile(5000, null), factFile(0, null), factFile(10, null));
+    List<String> relations = Arrays.asList("a", "b", "c");
+    List<OutputStream> outs = new ArrayList<OutputStream>();
+    for (int i = 0; i < files.size(); i++)
+      outs.add(new ByteArrayOutputStream());
+    ConversionPipeline pipeline = new ConversionPipeline(new IdConverter(), 4, 2);
+    pipeline.run(files, relations, outs);
+    int[] sizes = { 5000, 0, 10 };
+    for (int i = 0; i < files.size(); i++) {
+      StringBuilder expected = new StringBuilder();
+      for (int j = 0; j < sizes[i]; j++)
+        expected.append(relations.get(i)).append(" #").append(j).append('\n');
+      assertEquals(expected.toString(), outs.get(i).toString());
+    }
+    assertEquals(6, pipeline.reader.batches.get());
+    assertEquals(6, pipeline.transform.batches.get());
+    assertEquals(6, pipeline.writer.batches.get());
+  }
+
+  @Test
+  public void failureTest() throws Exception {
+    List<File> files = Arrays.asList(factFile(3000, "#fail"));
+    List<OutputStream> outs = new ArrayList<OutputStream>();
+    outs.add(new ByteArrayOutputStream());
+    try {
+      new ConversionPipeline(new IdConverter(), 2, 2).run(files, Arrays.asList("a"), outs);
+      fail();
+    } catch (IOException e) {
+      assertEquals("fail", e.getMessage());
+    }
+  }
+
+  @Test
+  public void segmentTest() throws Exception {
+    // The chunked conversion of FactFileConverter deletes its segments when a chunk fails
+    File folder = File.createTempFile("segments", "");
+    folder.delete();
+    folder.mkdirs();
+    IdConverter converter = new IdConverter();
+    converter.outputFolder = folder;
+    converter.threads = 4;
+    converter.chunkSize = 1 << 12;
+    List<File> files = Arrays.asList(factFile(3000, null), factFile(3000, "#fail"), factFile(3000, null));
+    List<OutputStream> outs = new ArrayList<OutputStream>();
+    for (int i = 0; i < files.size(); i++)
+      outs.add(new ByteArrayOutputStream());
+    try {
+      converter.convertFactFiles(files, Arrays.asList("a", "b", "c"), outs);
+      fail();
+    } catch (IOException e) {
+      assertEquals("fail", e.getMessage());
+    }
+    assertEquals(0, folder.list().length);
+    folder.delete();
+  }
+
+  @Test
+  public void testModeTest() throws Exception {
+    // In test mode, the chunked conversion gives the first facts of every file, as the sequential one
+    IdConverter converter = new IdConverter();
+    converter.test = true;
+    converter.threads = 4;
+    converter.chunkSize = 1 << 12;
+    List<File> files = Arrays.asList(factFile(3000, null), factFile(5, null));
+    List<OutputStream> outs = Arrays.<OutputStream> asList(new ByteArrayOutputStream(), new ByteArrayOutputStream());
+    converter.convertFactFiles(files, Arrays.asList("a", "b"), outs);
+    int[] sizes = { 11, 5 };
+    for (int i = 0; i < files.size(); i++) {
+      StringBuilder expected = new StringBuilder();
+      for (int j = 0; j < sizes[i]; j++)
+        expected.append(i == 0 ? "a" : "b").append(" #").append(j).append('\n');
+      assertEquals(expected.toString(), outs.get(i).toString());
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import converters.facts.FactField;
+
+public class DistinctSetTest {
+
+  /** Adds random Strings with many duplicates and compares the set to a TreeSet */
+  private void fill(DistinctSet set, TreeSet<String> expected, int n, int seed) {
+    Random random = new Random(seed);
+    FactField field = new FactField();
+    for (int i = 0; i < n; i++) {
+      String s = "entity_" + random.nextInt(n / 4) + (i % 5 == 0 ? "_Z\u00fcrich" : "");
+      expected.add(s);
+      field.set(s);
+      set.add(field);
+      // Repetitions are dropped right away
+      if (i % 3 == 0) assertEquals(false, set.add(s));
+    }
+  }
+
+  /** Returns the Strings of the set */
+  private List<String> list(DistinctSet set) {
+    List<String> list = new ArrayList<String>();
+    for (String s : set)
+      list.add(s);
+    return (list);
+  }
+
+  @Test
+  public void distinctTest() {
+    for (long memory : new long[] { 1 << 16, 16 << 20 }) {
+      DistinctSet set = new DistinctSet(new File(System.getProperty("java.io.tmpdir")), memory, 2, false);
+      try {
+        TreeSet<String> expected = new TreeSet<String>();
+        fill(set, expected, 40000, 1);
+        assertEquals(memory < 1 << 20, set.runs() > 0);
+        assertEquals(new ArrayList<String>(expected), list(set));
+        assertEquals(expected.size(), set.size());
+        // Again after clear()
+        set.clear();
+        expected.clear();
+        fill(set, expected, 1000, 2);
+        assertEquals(new ArrayList<String>(expected), list(set));
+      } finally {
+        set.close();
+      }
+    }
+  }
+
+  @Test
+  public void addAfterIterationTest() {
+    DistinctSet set = new DistinctSet(new File(System.getProperty("java.io.tmpdir")), 1 << 16, 1, true);
+    try {
+      set.add("b");
+      set.add("a");
+      assertEquals("[a, b]", list(set).toString());
+      try {
+        set.add("c");
+        assertTrue(false);
+      } catch (IllegalStateException e) {
+      }
+    } finally {
+      set.close();
+    }
+  }
+}
@@ -0,0 +1,15 @@
+package converters;
+
+/**
+ * Strings that exercise the escapes of the writers and codecs: quotes,
+ * language tags, non-ASCII and supplementary characters, a lone surrogate,
+ * backslash escapes, reserved characters and control characters.
+ */
+final class EscapeStrings {
+
+  private EscapeStrings() {
+  }
+
+  static final String[] STRINGS = { "Elvis_Presley", "", "\"", "\"quoted\"@eng", "Z\u00fcrich", "Saint-\u00c9tienne_(city)", "a b:c/d?e#f%g",
+      "\u65e5\u672c", "\ud835\udc00bold", "lone\ud800surrogate", "back\\u00e9slash", "tab\\tand\\\\", "<&>'\"!$*+,;=@~", "\u0001\u007f\u0080\u07ff\u0800\uffff", "#123" };
+}
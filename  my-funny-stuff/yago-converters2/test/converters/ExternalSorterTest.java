@@ -0,0 +1,72 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class ExternalSorterTest {
+
+  /** Sorts random records and compares them to a stable sort in memory */
+  private void sort(long memory, int threads, int n, boolean spills) throws IOException {
+    File folder = new File(System.getProperty("java.io.tmpdir"));
+    Random random = new Random(n);
+    List<String[]> expected = new ArrayList<String[]>();
+    ExternalSorter sorter = new ExternalSorter(folder, memory, threads);
+    try {
+      for (int i = 0; i < n; i++) {
+        String key = "key" + random.nextInt(n / 10 + 1) + (i % 7 == 0 ? "Z\u00fcrich" : "");
+        String value = "value" + i;
+        expected.add(new String[] { key, value });
+        sorter.add(key.getBytes("UTF-8"), value.getBytes("UTF-8"));
+      }
+      assertEquals(n, sorter.size());
+      // The keys have no characters whose UTF-8 order differs from their char order
+      Collections.sort(expected, new Comparator<String[]>() {
+
+        @Override
+        public int compare(String[] a, String[] b) {
+          return (a[0].compareTo(b[0]));
+        }
+      });
+      int i = 0;
+      for (ExternalSorter.Record record : sorter.sort()) {
+        assertEquals(expected.get(i)[0], new String(record.key(), "UTF-8"));
+        assertEquals(expected.get(i)[1], new String(record.value(), "UTF-8"));
+        assertTrue(record.keyEquals(record.key(), 0, record.keyLength()));
+        i++;
+      }
+      assertEquals(n, i);
+      assertEquals(spills, sorter.runs() > 0);
+    } finally {
+      sorter.close();
+    }
+  }
+
+  @Test
+  public void memoryTest() throws IOException {
+    sort(1 << 20, 1, 1000, false);
+  }
+
+  @Test
+  public void runTest() throws IOException {
+    sort(1 << 16, 1, 20000, true);
+    sort(1 << 16, 3, 20000, true);
+  }
+
+  @Test
+  public void emptyTest() throws IOException {
+    ExternalSorter sorter = new ExternalSorter(new File(System.getProperty("java.io.tmpdir")), 1 << 16, 2);
+    assertFalse(sorter.sort().iterator().hasNext());
+    sorter.close();
+  }
+}
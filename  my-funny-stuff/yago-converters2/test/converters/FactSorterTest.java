@@ -0,0 +1,112 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+import converters.facts.Fact;
+
+public class FactSorterTest {
+
+  /** Sorts random facts of two relations by every key and compares them to a stable sort in memory */
+  private void sort(long memory, boolean offHeap) throws IOException {
+    Random random = new Random(42);
+    List<String[]> facts = new ArrayList<String[]>();
+    for (int i = 0; i < 5000; i++) {
+      facts.add(new String[] { "#" + random.nextInt(100000), "entity" + random.nextInt(300) + (i % 11 == 0 ? "_Z\u00fcrich" : ""),
+          "\"value " + random.nextInt(50) + "\"", i % 3 == 0 ? "hasValue" : "describes" });
+    }
+    for (final FactSorter.Key key : FactSorter.Key.values()) {
+      FactSorter sorter = new FactSorter(key, new File(System.getProperty("java.io.tmpdir")), memory, 2, offHeap);
+      try {
+        Fact fact = new Fact();
+        for (String[] f : facts) {
+          fact.set(f[0], f[1], f[2]);
+          sorter.add(f[3], fact);
+        }
+        List<String[]> expected = new ArrayList<String[]>(facts);
+        final int column = key == FactSorter.Key.RELATION ? 3 : key.ordinal();
+        Collections.sort(expected, new Comparator<String[]>() {
+
+          @Override
+          public int compare(String[] a, String[] b) {
+            return (a[column].compareTo(b[column]));
+          }
+        });
+        FactSorter.SortedFactReader sorted = sorter.sort();
+        int i = 0;
+        for (Fact f : sorted) {
+          String[] e = expected.get(i++);
+          assertEquals(key.toString(), e[0] + "\t" + e[1] + "\t" + e[2], f.toString());
+          assertEquals(e[3], sorted.relation());
+          assertEquals(3, f.size());
+        }
+        assertEquals(facts.size(), i);
+        assertEquals(memory < 1 << 20, sorter.runs() > 0);
+      } finally {
+        sorter.close();
+      }
+    }
+  }
+
+  @Test
+  public void memoryTest() throws IOException {
+    sort(16 << 20, false);
+  }
+
+  @Test
+  public void runTest() throws IOException {
+    sort(1 << 16, false);
+  }
+
+  @Test
+  public void offHeapTest() throws IOException {
+    sort(16 << 20, true);
+    sort(1 << 16, true);
+  }
+
+  @Test
+  public void fanInTest() throws IOException {
+    // Tiny arenas, so that there are more runs than can be merged at once
+    ExternalSorter sorter = new ExternalSorter(new File(System.getProperty("java.io.tmpdir")), 1 << 16, 1);
+    try {
+      int n = 0;
+      byte[] value = new byte[1000];
+      while (sorter.runs() <= ExternalSorter.MAX_FAN_IN + 10) {
+        sorter.add(new byte[] { (byte) (n % 7) }, intBytes(value, n++));
+      }
+      int last = -1, lastKey = -1;
+      for (ExternalSorter.Record r : sorter.sort()) {
+        int key = r.bytes()[0];
+        int number = ((r.bytes()[1] & 0xFF) << 24) | ((r.bytes()[2] & 0xFF) << 16) | ((r.bytes()[3] & 0xFF) << 8) | (r.bytes()[4] & 0xFF);
+        assertTrue(key >= lastKey);
+        if (key == lastKey) assertTrue(number > last);
+        last = number;
+        lastKey = key;
+        n--;
+      }
+      assertEquals(0, n);
+      assertTrue(sorter.runs() <= ExternalSorter.MAX_FAN_IN);
+    } finally {
+      sorter.close();
+    }
+  }
+
+  /** Writes n to the first bytes of value */
+  private static byte[] intBytes(byte[] value, int n) {
+    value[0] = (byte) (n >>> 24);
+    value[1] = (byte) (n >>> 16);
+    value[2] = (byte) (n >>> 8);
+    value[3] = (byte) n;
+    return (value);
+  }
+}
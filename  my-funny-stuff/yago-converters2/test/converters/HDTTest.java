@@ -0,0 +1,84 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class HDTTest {
+
+  /** Returns the triples of the iterator as "s p o" */
+  private TreeSet<String> set(Iterator<String[]> triples) {
+    TreeSet<String> result = new TreeSet<String>();
+    while (triples.hasNext()) {
+      String[] triple = triples.next();
+      result.add(triple[0] + " " + triple[1] + " " + triple[2]);
+    }
+    return (result);
+  }
+
+  /** Returns the triples that match the pattern (NULL for a variable) */
+  private TreeSet<String> match(List<String[]> triples, String s, String p, String o) {
+    TreeSet<String> result = new TreeSet<String>();
+    for (String[] triple : triples) {
+      if ((s == null || s.equals(triple[0])) && (p == null || p.equals(triple[1])) && (o == null || o.equals(triple[2])))
+        result.add(triple[0] + " " + triple[1] + " " + triple[2]);
+    }
+    return (result);
+  }
+
+  @Test
+  public void hdtTest() throws Exception {
+    File folder = new File(System.getProperty("java.io.tmpdir"));
+    File file = File.createTempFile("test", ".hdt");
+    file.deleteOnExit();
+    Random random = new Random(1);
+    List<String[]> triples = new ArrayList<String[]>();
+    for (int i = 0; i < 20000; i++) {
+      String s = "http://yago-knowledge.org/resource/e" + random.nextInt(3000) + (i % 7 == 0 ? "_Z%C3%BCrich" : "");
+      String p = "http://yago-knowledge.org/resource/r" + random.nextInt(12);
+      String o = random.nextInt(3) == 0 ? "\"" + random.nextInt(500) + " Z\u00fcrich \ud835\udc00\"" : "http://yago-knowledge.org/resource/e" + random.nextInt(4000);
+      triples.add(new String[] { s, p, o });
+    }
+    HDTWriter writer = new HDTWriter(folder, 1 << 16, 2, false);
+    try {
+      for (String[] triple : triples)
+        writer.add(HDTFile.ntriples(triple[0]), HDTFile.ntriples(triple[1]), HDTFile.ntriples(triple[2]));
+      assertEquals(match(triples, null, null, null).size(), writer.write(file));
+    } finally {
+      writer.close();
+    }
+
+    HDTFile hdt = new HDTFile(file);
+    try {
+      assertEquals(match(triples, null, null, null), set(hdt.search(null, null, null)));
+      for (int i = 0; i < 100; i++) {
+        String[] t = triples.get(random.nextInt(triples.size()));
+        String[] other = triples.get(random.nextInt(triples.size()));
+        // All patterns, with terms of this triple and of another one
+        for (int mask = 0; mask < 8; mask++) {
+          String[] terms = (i % 2 == 0) ? t : new String[] { t[0], other[1], other[2] };
+          String s = (mask & 1) != 0 ? terms[0] : null, p = (mask & 2) != 0 ? terms[1] : null, o = (mask & 4) != 0 ? terms[2] : null;
+          if (mask == 0 && i > 0) continue;
+          assertEquals(match(triples, s, p, o), set(hdt.search(s, p, o)));
+        }
+        assertEquals(t[0], hdt.subject(hdt.subjectId(t[0])));
+        assertEquals(t[1], hdt.predicate(hdt.predicateId(t[1])));
+        assertEquals(t[2], hdt.object(hdt.objectId(t[2])));
+      }
+      assertEquals(0, hdt.subjectId("http://yago-knowledge.org/resource/unknown"));
+      assertEquals(0, hdt.subjectId("<" + triples.get(0)[0] + ">"));
+      assertEquals(0, hdt.subjectId("\"literal\""));
+      assertFalse(hdt.search("http://yago-knowledge.org/resource/unknown", null, null).hasNext());
+    } finally {
+      hdt.close();
+    }
+  }
+}
@@ -0,0 +1,67 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.Test;
+
+public class InputManifestTest {
+
+  private void write(File file, String content) throws IOException {
+    OutputStream out = new FileOutputStream(file);
+    out.write(content.getBytes("UTF-8"));
+    out.close();
+  }
+
+  @Test
+  public void changedTest() throws IOException {
+    File facts = File.createTempFile("facts", ".tsv");
+    facts.deleteOnExit();
+    File other = File.createTempFile("other", ".tsv");
+    other.deleteOnExit();
+    File file = File.createTempFile("test", ".manifest");
+    file.delete();
+    file.deleteOnExit();
+    write(facts, "#1\tElvis\tsinger\n");
+    write(other, "#2\tElvis\tperson\n");
+
+    InputManifest manifest = new InputManifest(file);
+    assertTrue(manifest.isEmpty());
+    assertFalse(manifest.setSettings("test=false"));
+    assertTrue(manifest.changed(facts));
+    manifest.put(facts, "type");
+    manifest.put(other, "type");
+    manifest.save();
+
+    manifest = new InputManifest(file);
+    assertTrue(manifest.setSettings("test=false"));
+    assertFalse(manifest.changed(facts));
+    assertEquals("type", manifest.get(facts.getName()).artefact);
+    // Touched, but same content
+    facts.setLastModified(facts.lastModified() - 10000);
+    assertFalse(manifest.changed(facts));
+    // Same size, other content
+    write(facts, "#1\tElvis\tdriver\n");
+    facts.setLastModified(facts.lastModified() - 20000);
+    assertTrue(manifest.changed(facts));
+    assertEquals(Arrays.asList(other.getName()), manifest.removed(Collections.singletonList(facts)));
+
+    // Other settings forget everything
+    assertFalse(manifest.setSettings("test=true"));
+    assertTrue(manifest.changed(other));
+
+    // A cleared manifest forgets everything, also on the disk
+    manifest = new InputManifest(file);
+    manifest.clear();
+    manifest.save();
+    assertTrue(new InputManifest(file).isEmpty());
+  }
+}
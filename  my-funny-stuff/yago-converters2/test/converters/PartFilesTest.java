@@ -0,0 +1,138 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+import converters.facts.Fact;
+import converters.facts.FactReader;
+
+public class PartFilesTest {
+
+  /** Writes one line per fact between a header and a footer */
+  private static class LineConverter extends FactFileConverter {
+
+    /** All fact files, without the YAGO schema */
+    @Override
+    public String relationForFactFile(File inputFile) {
+      return (stripFactFileExtension(inputFile.getName()));
+    }
+
+    @Override
+    protected void writeHeader(OutputStream out) throws IOException {
+      out.write("BEGIN\n".getBytes());
+    }
+
+    @Override
+    protected void writeFooter(OutputStream out) throws IOException {
+      out.write("END\n".getBytes());
+    }
+
+    @Override
+    protected void convertFacts(String relation, FactReader facts, OutputStream out) throws IOException {
+      for (Fact fact : facts)
+        out.write((relation + " " + fact.id + "\n").getBytes("UTF-8"));
+    }
+
+    @Override
+    protected OutputStream openOutput() throws IOException {
+      throw new IOException("Converts into streams of the test only");
+    }
+
+    @Override
+    public void run() {
+    }
+
+    @Override
+    public String description() {
+      return ("Test");
+    }
+  }
+
+  /** Writes the fact file relation.tsv with n facts */
+  private void factFile(File folder, String relation, int n) throws IOException {
+    Writer w = new OutputStreamWriter(new FileOutputStream(new File(folder, relation + ".tsv")), "UTF-8");
+    for (int i = 0; i < n; i++)
+      w.write("#" + i + "\tx\ty\n");
+    w.close();
+  }
+
+  /** Returns a new temporary folder */
+  private File folder(String name) throws IOException {
+    File folder = File.createTempFile(name, "");
+    folder.delete();
+    folder.mkdir();
+    folder.deleteOnExit();
+    return (folder);
+  }
+
+  @Test
+  public void partTest() throws Exception {
+    File yago = folder("yago");
+    File output = folder("parts");
+    Map<String, Integer> sizes = new HashMap<String, Integer>();
+    sizes.put("type", 50000);
+    sizes.put("means", 20000);
+    sizes.put("hasDomain", 10);
+    for (Map.Entry<String, Integer> e : sizes.entrySet())
+      factFile(yago, e.getKey(), e.getValue());
+    // A part of an earlier run
+    new FileOutputStream(new File(output, "lines-00099.txt")).close();
+
+    LineConverter converter = new LineConverter();
+    converter.yagoFolder = yago;
+    converter.outputFolder = output;
+    converter.threads = 3;
+    PartFiles parts = new PartFiles(converter, output, "lines", ".txt", 100000);
+    converter.convertFactFilesToParts(parts);
+
+    Map<String, Integer> facts = new HashMap<String, Integer>();
+    List<PartFiles.Part> list = parts.parts();
+    assertTrue(list.size() > 5);
+    for (PartFiles.Part part : list) {
+      BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(part.file), "UTF-8"));
+      assertEquals("BEGIN", in.readLine());
+      String line, last = null;
+      while ((line = in.readLine()) != null) {
+        if (last != null) {
+          String relation = last.split(" ")[0];
+          facts.put(relation, facts.containsKey(relation) ? facts.get(relation) + 1 : 1);
+        }
+        last = line;
+      }
+      in.close();
+      assertEquals("END", last);
+      // Chunks of a quarter of a part, so a part can only be a little larger
+      assertTrue(part.size() < 100000 * 1.5);
+    }
+    assertEquals(sizes, facts);
+
+    Map<String, Integer> manifest = new HashMap<String, Integer>();
+    BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(new File(output, "lines.manifest")), "UTF-8"));
+    for (String line = in.readLine(); line != null; line = in.readLine()) {
+      String[] split = line.split("\t");
+      assertEquals(new File(output, split[0]).length(), Long.parseLong(split[1]));
+      manifest.put(split[2], (manifest.containsKey(split[2]) ? manifest.get(split[2]) : 0) + Integer.parseInt(split[3]));
+    }
+    in.close();
+    assertEquals(sizes, manifest);
+    assertTrue(!new File(output, "lines-00099.txt").exists());
+    for (PartFiles.Part part : list)
+      part.file.delete();
+    new File(output, "lines.manifest").delete();
+  }
+}
@@ -0,0 +1,71 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.datatypes.xsd.XSDDatatype;
+import com.hp.hpl.jena.graph.Node;
+import com.hp.hpl.jena.rdf.model.Property;
+
+public class PreparedQueryTest extends TdbFixture {
+
+  @Test
+  public void preparedQueryTest() throws Exception {
+    addBornIn(200);
+    Property hasAge = model.createProperty(RDFSConverter.ns + "hasAge");
+    for (int i = 0; i < 200; i++)
+      model.add(model.createResource(RDFSConverter.ns + "e" + i), hasAge, model.createTypedLiteral(i % 50));
+    SPARQLprocessor processor = processor(0);
+    PreparedQuery query = processor.prepare("SELECT ?city ?x ?age WHERE { ?x :bornIn ?city . ?x :hasAge ?age . FILTER(?age > ?min) } ORDER BY DESC(?age) ?x",
+        "?city", "min");
+    assertEquals(Arrays.asList("city", "x", "age"), query.variables);
+    for (int c = 0; c < 10; c++) {
+      for (int min = 0; min < 50; min += 7) {
+        Node city = Node.createURI(RDFSConverter.ns + "c" + c);
+        String text = "SELECT ?city ?x ?age WHERE { ?x :bornIn :c" + c + " . ?x :hasAge ?age . FILTER(?age > " + min
+            + ") } ORDER BY DESC(?age) ?x";
+        List<String> expected = rows(processor.rows(text, -1));
+        List<String> prepared = rows(query.rows(-1, city, Node.createLiteral(String.valueOf(min), null, XSDDatatype.XSDint)));
+        assertEquals(expected.size(), prepared.size());
+        for (int i = 0; i < expected.size(); i++)
+          assertEquals(expected.get(i).replace("null", city.toString()), prepared.get(i));
+      }
+    }
+    assertEquals(3, rows(query.rows(3, Node.createURI(RDFSConverter.ns + "c0"), Node.createLiteral("0", null, XSDDatatype.XSDint))).size());
+
+    // The same query without parameters
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ResultWriter out = new ResultWriter(bytes, ResultWriter.Format.TSV);
+    assertEquals(200, processor.prepare("SELECT ?x WHERE { ?x :bornIn ?city }").write(-1, out));
+    out.close();
+    assertEquals(201, bytes.toString("UTF-8").split("\n").length);
+
+    try {
+      processor.prepare("SELECT ?x WHERE { ?x :bornIn ?city }", "y");
+      fail();
+    } catch (IllegalArgumentException e) {
+      // No such variable
+    }
+    try {
+      query.rows(-1, Node.createURI(RDFSConverter.ns + "c0"));
+      fail();
+    } catch (IllegalArgumentException e) {
+      // Too few values
+    }
+  }
+
+  /** Returns the rows of the cursor as strings */
+  private List<String> rows(SPARQLprocessor.Rows rows) {
+    List<String> result = new ArrayList<String>();
+    while (rows.next())
+      result.add(Arrays.toString(rows.row));
+    return (result);
+  }
+}
@@ -0,0 +1,99 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javatools.datatypes.PeekIterator;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.ModelFactory;
+import com.hp.hpl.jena.rdf.model.RDFNode;
+import com.hp.hpl.jena.tdb.TDB;
+
+public class QueryCacheTest extends TdbFixture {
+
+  /** Returns a result of n solutions */
+  private List<Map<String, RDFNode>> result(int n) {
+    Model model = ModelFactory.createDefaultModel();
+    List<Map<String, RDFNode>> result = new ArrayList<Map<String, RDFNode>>();
+    for (int i = 0; i < n; i++) {
+      Map<String, RDFNode> solution = new TreeMap<String, RDFNode>();
+      solution.put("x", model.createLiteral("value " + i));
+      result.add(solution);
+    }
+    return (result);
+  }
+
+  @Test
+  public void keyTest() {
+    assertEquals("SELECT ?x WHERE { ?x a \"A  b\" }\t-1", QueryCache.key("  SELECT ?x\tWHERE  {  ?x a \"A  b\" }\n", -1));
+    assertEquals(QueryCache.key("SELECT ?x {?x <a  b> ?y}", 5), QueryCache.key("SELECT  ?x {?x <a  b>   ?y}", 5));
+    // Line breaks end comments
+    assertEquals("SELECT ?x # comment\n{ ?x ?y ?z }\t3", QueryCache.key("SELECT ?x # comment\n  { ?x ?y ?z }", 3));
+    assertEquals(false, QueryCache.key("SELECT ?x {?x :a \"A b\"}", 1).equals(QueryCache.key("SELECT ?x {?x :a \"A  b\"}", 1)));
+    assertEquals(false, QueryCache.key("SELECT ?x {?x :a ?y}", 1).equals(QueryCache.key("SELECT ?x {?x :a ?y}", 2)));
+  }
+
+  @Test
+  public void evictionTest() {
+    List<Map<String, RDFNode>> result = result(10);
+    long size = QueryCache.size(result);
+    QueryCache cache = new QueryCache(size * 4);
+    for (int i = 0; i < 4; i++)
+      cache.put("q" + i, result, size, cache.generation());
+    assertEquals(4, cache.size());
+    assertEquals(result, cache.get("q0"));
+    // q1 is the least recently used
+    cache.put("q4", result, size, cache.generation());
+    assertEquals(1, cache.evictions());
+    assertNull(cache.get("q1"));
+    assertEquals(result, cache.get("q0"));
+    assertEquals(size * 4, cache.bytes());
+    // Too large
+    cache.put("large", result(100), QueryCache.size(result(100)), cache.generation());
+    assertNull(cache.get("large"));
+    // Results of queries that started before the cache was cleared are not kept
+    long generation = cache.generation();
+    cache.clear();
+    cache.put("q0", result, size, generation);
+    assertNull(cache.get("q0"));
+    assertEquals(0, cache.bytes());
+    assertEquals(2, cache.hits());
+    assertEquals(3, cache.misses());
+  }
+
+  @Test
+  public void invalidationTest() throws Exception {
+    model.add(model.createResource(RDFSConverter.ns + "Elvis_Presley"), model.createProperty(RDFSConverter.ns + "bornIn"), model.createResource(RDFSConverter.ns + "Tupelo"));
+    JenaConverter.writeVersion(folder, "loaded");
+    SPARQLprocessor processor = processor(SPARQLprocessor.DEFAULT_CACHE_SIZE);
+    String query = "SELECT ?x WHERE { ?x :bornIn :Tupelo }";
+    List<Map<String, RDFNode>> first = PeekIterator.list(processor.query(query, -1));
+    assertEquals(1, first.size());
+    assertEquals(RDFSConverter.ns + "Elvis_Presley", first.get(0).get("x").toString());
+    // The same query, with other blanks
+    Iterable<Map<String, RDFNode>> second = processor.query("SELECT ?x WHERE {\n  ?x :bornIn :Tupelo\n}", -1);
+    assertEquals(first, PeekIterator.list(second));
+    assertSame(second, processor.query(query, -1));
+    assertEquals(2, processor.cache().hits());
+    // Another load of the TDB
+    model.add(model.createResource(RDFSConverter.ns + "Aaron_Presley"), model.createProperty(RDFSConverter.ns + "bornIn"), model.createResource(RDFSConverter.ns + "Tupelo"));
+    TDB.sync(model);
+    JenaConverter.writeVersion(folder, "loaded");
+    Iterable<Map<String, RDFNode>> third = processor.query(query, -1);
+    assertNotSame(second, third);
+    assertEquals(2, PeekIterator.list(third).size());
+    // Prepared queries run on the TDB that was opened again
+    assertEquals(2, processor.write(query, -1, new ResultWriter(new ByteArrayOutputStream(), ResultWriter.Format.TSV)));
+  }
+}
@@ -0,0 +1,67 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.rdf.model.Resource;
+
+public class ResultWriterTest extends TdbFixture {
+
+  @Test
+  public void resultWriterTest() throws Exception {
+    Resource zurich = model.createResource(RDFSConverter.ns + "Z%C3%BCrich");
+    Property label = model.createProperty("http://www.w3.org/2000/01/rdf-schema#label");
+    model.add(zurich, label, model.createLiteral("Z\u00fcrich \ud835\udc00 \"a\"\tb\\", "de"));
+    model.add(zurich, model.createProperty(RDFSConverter.ns + "hasPopulation"), model.createTypedLiteral("390000", "http://www.w3.org/2001/XMLSchema#integer"));
+    SPARQLprocessor processor = processor(0);
+    String query = "SELECT ?x ?y ?z WHERE { ?x ?y ?z . OPTIONAL { ?x :unknown ?u } } ORDER BY DESC(?y)";
+    SPARQLprocessor.Rows rows = processor.rows(query, -1);
+    assertEquals(Arrays.asList("x", "y", "z"), rows.variables);
+    Object row = rows.row;
+    assertTrue(rows.next());
+    assertEquals(zurich.asNode(), rows.get(0));
+    assertEquals(RDFSConverter.ns + "hasPopulation", rows.get(1).getURI());
+    assertTrue(rows.next());
+    assertSame(row, rows.row);
+    assertFalse(rows.next());
+    assertEquals(1, countRows(processor.rows(query, 1)));
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ResultWriter out = new ResultWriter(bytes, ResultWriter.Format.TSV);
+    assertEquals(2, processor.write(query, -1, out));
+    out.close();
+    String x = "<" + RDFSConverter.ns + "Z%C3%BCrich>";
+    assertEquals("?x\t?y\t?z\n" + x + "\t<" + RDFSConverter.ns + "hasPopulation>\t\"390000\"^^<http://www.w3.org/2001/XMLSchema#integer>\n" + x
+        + "\t<http://www.w3.org/2000/01/rdf-schema#label>\t\"Z\u00fcrich \ud835\udc00 \\\"a\\\"\\tb\\\\\"@de\n", bytes.toString("UTF-8"));
+    String[] fields = bytes.toString("UTF-8").split("[\t\n]");
+    assertEquals(zurich.asNode(), ResultWriter.tsvTerm(fields[3]));
+    assertEquals(model.createTypedLiteral("390000", "http://www.w3.org/2001/XMLSchema#integer").asNode(), ResultWriter.tsvTerm(fields[5]));
+    assertEquals(model.createLiteral("Z\u00fcrich \ud835\udc00 \"a\"\tb\\", "de").asNode(), ResultWriter.tsvTerm(fields[8]));
+    assertEquals(ResultWriter.tsvTerm("\"12\"^^<http://www.w3.org/2001/XMLSchema#integer>"), ResultWriter.tsvTerm("12"));
+    assertEquals(null, ResultWriter.tsvTerm(""));
+
+    bytes = new ByteArrayOutputStream();
+    out = new ResultWriter(bytes, ResultWriter.Format.JSON);
+    processor.write("SELECT ?z ?u WHERE { ?x ?y ?z . OPTIONAL { ?x :unknown ?u } } ORDER BY DESC(?y)", -1, out);
+    out.close();
+    assertEquals("{\"head\":{\"vars\":[\"z\",\"u\"]},\"results\":{\"bindings\":[\n"
+        + "{\"z\":{\"type\":\"literal\",\"value\":\"390000\",\"datatype\":\"http://www.w3.org/2001/XMLSchema#integer\"}},\n"
+        + "{\"z\":{\"type\":\"literal\",\"value\":\"Z\u00fcrich \ud835\udc00 \\\"a\\\"\\tb\\\\\",\"xml:lang\":\"de\"}}\n]}}\n", bytes.toString("UTF-8"));
+  }
+
+  /** Returns the number of rows of the cursor */
+  private int countRows(SPARQLprocessor.Rows rows) {
+    int n = 0;
+    while (rows.next())
+      n++;
+    return (n);
+  }
+}
@@ -0,0 +1,63 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.StringReader;
+
+import org.junit.Test;
+
+public class SPARQLBatchTest extends TdbFixture {
+
+  @Test
+  public void batchTest() throws Exception {
+    addBornIn(200);
+    SPARQLprocessor processor = processor(0);
+    // The cities backwards, each twice, and one that has nobody
+    StringBuilder bindings = new StringBuilder("?city\n");
+    StringBuilder expected = new StringBuilder("?query\t?x\t?city\n");
+    int number = 0;
+    for (int c = 10; c >= 0; c--) {
+      for (int k = 0; k < 2; k++) {
+        bindings.append('<').append(RDFSConverter.ns).append('c').append(c).append(">\n");
+        number++;
+        SPARQLprocessor.Rows rows = processor.rows("SELECT ?x WHERE { ?x :bornIn :c" + c + " } ORDER BY ?x", -1);
+        while (rows.next())
+          expected.append(number).append("\t<").append(rows.get(0).getURI()).append(">\t<").append(RDFSConverter.ns).append('c').append(c).append(">\n");
+      }
+    }
+    SPARQLBatch batch = new SPARQLBatch(processor, 4, 10000);
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ResultWriter out = new ResultWriter(bytes, ResultWriter.Format.TSV);
+    batch.template("SELECT ?x ?city WHERE { ?x :bornIn ?city } ORDER BY ?x", new BufferedReader(new StringReader(bindings.toString())), out);
+    out.close();
+    assertEquals(expected.toString(), bytes.toString("UTF-8"));
+    assertEquals(22, batch.latencies.count());
+    assertEquals(0, batch.failed());
+    String report = batch.report();
+    assertTrue(report, report.startsWith("queries 22, rows 400, failed 0, timed out 0"));
+    assertTrue(report, report.contains("p99="));
+    assertEquals(SPARQLBatch.SLOWEST, report.split("\nslow ").length - 1);
+
+    // Queries, one of them bad, one too slow
+    batch = new SPARQLBatch(processor, 2, 300);
+    bytes = new ByteArrayOutputStream();
+    out = new ResultWriter(bytes, ResultWriter.Format.TSV);
+    batch.queries(new BufferedReader(new StringReader("SELECT ?x WHERE { ?x :bornIn :c3 }\n\nSELECT WHERE\n"
+        + "SELECT ?a WHERE { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i . FILTER(str(?a) = \"nothing\" || str(?g) = \"nothing\") }\n"
+        + "SELECT ?x WHERE { :e7 :bornIn ?x }\n")), out);
+    out.close();
+    String[] lines = bytes.toString("UTF-8").split("\n");
+    assertEquals(22, lines.length);
+    assertEquals("?query", lines[0]);
+    assertTrue(lines[1].startsWith("1\t<"));
+    assertEquals("4\t<" + RDFSConverter.ns + "c7>", lines[21]);
+    assertEquals(2, batch.failed());
+    report = batch.report();
+    assertTrue(report, report.contains("failed 1, timed out 1"));
+    assertTrue(report, report.contains("failed #2 "));
+    assertTrue(report, report.contains("failed #3 timeout"));
+  }
+}
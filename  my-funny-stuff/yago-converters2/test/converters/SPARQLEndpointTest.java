@@ -0,0 +1,136 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+public class SPARQLEndpointTest extends TdbFixture {
+
+  /** Status and body of a response */
+  private static class Response {
+
+    int status;
+
+    String contentType;
+
+    String body;
+  }
+
+  /** Sends a request (a GET if body==null) */
+  private Response request(String url, String contentType, String accept, String body) throws Exception {
+    HttpURLConnection connection = (HttpURLConnection) new URL(url).openConnection();
+    if (accept != null) connection.setRequestProperty("Accept", accept);
+    if (body != null) {
+      connection.setDoOutput(true);
+      connection.setRequestProperty("Content-Type", contentType);
+      OutputStream out = connection.getOutputStream();
+      out.write(body.getBytes("UTF-8"));
+      out.close();
+    }
+    Response response = new Response();
+    response.status = connection.getResponseCode();
+    response.contentType = connection.getContentType();
+    InputStream in = response.status < 400 ? connection.getInputStream() : connection.getErrorStream();
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    byte[] buffer = new byte[4096];
+    for (int n = in.read(buffer); n > 0; n = in.read(buffer))
+      bytes.write(buffer, 0, n);
+    in.close();
+    response.body = bytes.toString("UTF-8");
+    return (response);
+  }
+
+  @Test
+  public void endpointTest() throws Exception {
+    addBornIn(200);
+    SPARQLprocessor processor = processor(0);
+    SPARQLEndpoint endpoint = new SPARQLEndpoint(processor, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 4, 100, 500);
+    endpoint.start();
+    final String url = "http://localhost:" + endpoint.port() + "/sparql";
+    ExecutorService clients = Executors.newFixedThreadPool(8);
+    try {
+      String query = "SELECT ?x WHERE { ?x :bornIn :c3 } ORDER BY ?x";
+      final String get = url + "?query=" + URLEncoder.encode(query, "UTF-8");
+      Response json = request(get, null, null, null);
+      assertEquals(200, json.status);
+      assertTrue(json.contentType.startsWith("application/sparql-results+json"));
+      assertTrue(json.body.startsWith("{\"head\":{\"vars\":[\"x\"]},\"results\":{\"bindings\":[\n{\"x\":{\"type\":\"uri\",\"value\":\"" + RDFSConverter.ns + "e103\"}}"));
+      Response tsv = request(get, null, "text/tab-separated-values", null);
+      assertEquals(21, tsv.body.split("\n").length);
+      assertEquals(json.body, request(url, "application/sparql-query", null, query).body);
+      assertEquals(tsv.body, request(url, "application/x-www-form-urlencoded", null, "format=tsv&query=" + URLEncoder.encode(query, "UTF-8")).body);
+      assertEquals(400, request(url + "?query=SELECT+WHERE", null, null, null).status);
+      assertEquals(400, request(url, null, null, null).status);
+
+      // Many clients at once
+      List<Future<String>> results = new ArrayList<Future<String>>();
+      for (int i = 0; i < 64; i++) {
+        results.add(clients.submit(new Callable<String>() {
+
+          @Override
+          public String call() throws Exception {
+            return (request(get, null, null, null).body);
+          }
+        }));
+      }
+      for (Future<String> result : results)
+        assertEquals(json.body, result.get());
+      assertEquals(68, endpoint.latencies.count());
+
+      // A query that takes longer than the timeout
+      String slow = "SELECT ?a WHERE { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i . FILTER(str(?a) = \"nothing\" || str(?g) = \"nothing\") }";
+      assertEquals(503, request(url + "?query=" + URLEncoder.encode(slow, "UTF-8"), null, null, null).status);
+      assertTrue(endpoint.stats(), endpoint.stats().contains("timed out 1"));
+    } finally {
+      clients.shutdownNow();
+      endpoint.stop();
+    }
+  }
+
+  @Test
+  public void admissionTest() throws Exception {
+    addBornIn(200);
+    SPARQLprocessor processor = processor(0);
+    // One thread, nobody waits
+    SPARQLEndpoint endpoint = new SPARQLEndpoint(processor, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 1, 0, 2000);
+    endpoint.start();
+    final String url = "http://localhost:" + endpoint.port() + "/sparql?query=";
+    ExecutorService clients = Executors.newSingleThreadExecutor();
+    try {
+      // A query that takes a while keeps the only thread busy
+      Future<Response> busy = clients.submit(new Callable<Response>() {
+
+        @Override
+        public Response call() throws Exception {
+          return (request(url + URLEncoder.encode("SELECT ?a WHERE { ?a ?b ?c . ?d ?e ?f . ?g ?h ?i . FILTER(str(?a) = \"nothing\" || str(?g) = \"nothing\") }", "UTF-8"), null, null, null));
+        }
+      });
+      long deadline = System.currentTimeMillis() + 2000;
+      while (!endpoint.stats().startsWith("running 1") && System.currentTimeMillis() < deadline)
+        Thread.sleep(10);
+      Response refused = request(url + URLEncoder.encode("SELECT ?x WHERE { ?x :bornIn :c3 }", "UTF-8"), null, null, null);
+      assertEquals(503, refused.status);
+      assertTrue(endpoint.stats().contains("refused 1"));
+      busy.get();
+    } finally {
+      clients.shutdownNow();
+      endpoint.stop();
+    }
+  }
+}
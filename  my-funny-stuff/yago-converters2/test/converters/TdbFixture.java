@@ -0,0 +1,71 @@
+package converters;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+
+import com.hp.hpl.jena.rdf.model.Model;
+import com.hp.hpl.jena.rdf.model.Property;
+import com.hp.hpl.jena.tdb.TDB;
+import com.hp.hpl.jena.tdb.TDBFactory;
+
+/**
+ * Base class of the tests that query a Jena TDB. Every test gets a TDB in a
+ * temporary folder of its own, which is deleted after the test together
+ * with the processors that were opened on it.
+ */
+public abstract class TdbFixture {
+
+  /** The folder of the TDB */
+  protected File folder;
+
+  /** The model of the TDB */
+  protected Model model;
+
+  /** The processors opened by processor() */
+  private final List<SPARQLprocessor> processors = new ArrayList<SPARQLprocessor>();
+
+  @Before
+  public void createTdb() throws IOException {
+    folder = File.createTempFile("tdb", "");
+    folder.delete();
+    folder.mkdirs();
+    model = TDBFactory.createModel(folder.getPath());
+  }
+
+  /** Adds the facts :eN :bornIn :cM for N < n and M = N % 10 */
+  protected void addBornIn(int n) {
+    Property bornIn = model.createProperty(RDFSConverter.ns + "bornIn");
+    for (int i = 0; i < n; i++)
+      model.add(model.createResource(RDFSConverter.ns + "e" + i), bornIn, model.createResource(RDFSConverter.ns + "c" + (i % 10)));
+  }
+
+  /** Syncs the TDB and opens a processor on it with a query cache of the given number of bytes (0 for none) */
+  protected SPARQLprocessor processor(long cacheSize) {
+    TDB.sync(model);
+    SPARQLprocessor processor = new SPARQLprocessor(folder.getPath(), cacheSize);
+    processors.add(processor);
+    return (processor);
+  }
+
+  @After
+  public void deleteTdb() {
+    for (SPARQLprocessor processor : processors)
+      processor.close();
+    delete(folder);
+  }
+
+  /** Deletes a file or a folder with all its content */
+  private static void delete(File file) {
+    File[] files = file.listFiles();
+    if (files != null) {
+      for (File f : files)
+        delete(f);
+    }
+    file.delete();
+  }
+}
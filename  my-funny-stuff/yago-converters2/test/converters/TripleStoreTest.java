@@ -0,0 +1,143 @@
+package converters;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+import converters.facts.EntityDictionary;
+
+public class TripleStoreTest {
+
+  /** Returns the solutions of the pattern as sorted strings */
+  private TreeSet<String> solutions(GraphPattern pattern) {
+    TreeSet<String> result = new TreeSet<String>();
+    for (Map<String, String> solution : pattern.solutions(-1))
+      result.add(solution.toString());
+    return (result);
+  }
+
+  /** Evaluates the triple patterns (variables start with '?') by brute force */
+  private TreeSet<String> bruteForce(List<String[]> triples, String[][] patterns, List<String> selected) {
+    List<Map<String, String>> bindings = new ArrayList<Map<String, String>>();
+    bindings.add(new LinkedHashMap<String, String>());
+    for (String[] pattern : patterns) {
+      List<Map<String, String>> next = new ArrayList<Map<String, String>>();
+      for (Map<String, String> binding : bindings) {
+        triples: for (String[] triple : triples) {
+          Map<String, String> extended = new LinkedHashMap<String, String>(binding);
+          for (int i = 0; i < 3; i++) {
+            String term = pattern[i];
+            if (!term.startsWith("?")) {
+              if (!term.equals(triple[i])) continue triples;
+            } else if (extended.containsKey(term.substring(1))) {
+              if (!extended.get(term.substring(1)).equals(triple[i])) continue triples;
+            } else {
+              extended.put(term.substring(1), triple[i]);
+            }
+          }
+          next.add(extended);
+        }
+      }
+      bindings = next;
+    }
+    TreeSet<String> result = new TreeSet<String>();
+    for (Map<String, String> binding : bindings) {
+      Map<String, String> projected = new LinkedHashMap<String, String>();
+      for (String v : selected)
+        projected.put(v, binding.get(v));
+      result.add(projected.toString());
+    }
+    return (result);
+  }
+
+  @Test
+  public void tripleStoreTest() throws Exception {
+    File folder = File.createTempFile("store", "");
+    folder.delete();
+    folder.mkdirs();
+    Random random = new Random(1);
+    List<String[]> triples = new ArrayList<String[]>();
+    TreeSet<String> distinct = new TreeSet<String>();
+    for (int i = 0; i < 5000; i++) {
+      String[] triple = { "e" + random.nextInt(300), "r" + random.nextInt(6), random.nextInt(4) == 0 ? "\"" + random.nextInt(50) + " Z\u00fcrich\"" : "e" + random.nextInt(300) };
+      if (distinct.add(triple[0] + " " + triple[1] + " " + triple[2])) triples.add(triple);
+    }
+    if (distinct.add("e1 r0 e1")) triples.add(new String[] { "e1", "r0", "e1" });
+    EntityDictionary.Builder builder = new EntityDictionary.Builder(folder);
+    for (String[] triple : triples)
+      for (String term : triple)
+        builder.add(term);
+    EntityDictionary dictionary = builder.build();
+    File file = new File(folder, "triples");
+    DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+    // Duplicates are dropped
+    for (String[] triple : triples.subList(0, 10))
+      for (String term : triple)
+        out.writeInt(dictionary.need(term));
+    for (String[] triple : triples)
+      for (String term : triple)
+        out.writeInt(dictionary.need(term));
+    out.close();
+    dictionary.close();
+    assertEquals(triples.size(), TripleStoreConverter.writeIndexes(file, folder, 1 << 16, 3, false));
+    file.delete();
+
+    TripleStore store = new TripleStore(folder);
+    try {
+      assertEquals(triples.size(), store.size);
+      String[] queries = { "?x r0 ?y", "SELECT ?x WHERE { ?x r1 e5 . ?x r2 ?y }", "?x r1 ?y . ?y r2 ?z . ?z r3 e7", "?x r0 ?x",
+          "?x r1 \"3 Z\u00fcrich\" . ?x r4 ?y", "e1 ?r ?o", "?s ?r e2 . ?s ?r2 e3", "?x r0 e1 . ?x r1 e2 . ?x r2 ?z . ?x r5 ?w",
+          "SELECT ?y { e10 ?r ?y . ?y ?r ?z }", "?x r0 ?y . ?y r0 ?x" };
+      for (String query : queries) {
+        GraphPattern pattern = new GraphPattern(store, query);
+        String where = query.replaceAll("SELECT.*\\{|\\}", "");
+        String[] terms = GraphPattern.tokens(where).toArray(new String[0]);
+        List<String[]> patterns = new ArrayList<String[]>();
+        List<String> t = new ArrayList<String>();
+        for (String term : terms)
+          if (!term.equals(".")) t.add(term);
+        for (int i = 0; i < t.size(); i += 3)
+          patterns.add(new String[] { t.get(i), t.get(i + 1), t.get(i + 2) });
+        assertEquals(query, bruteForce(triples, patterns.toArray(new String[0][]), pattern.selected()), solutions(pattern));
+      }
+      // Merge joins of two triples of the same subject
+      for (int i = 0; i < 50; i++) {
+        String[] a = triples.get(random.nextInt(triples.size())), b = a;
+        for (String[] triple : triples)
+          if (triple[0].equals(a[0]) && random.nextInt(3) == 0) b = triple;
+        String query = "?x " + a[1] + " " + a[2] + " . ?x " + b[1] + " " + b[2] + " . ?x ?r ?o";
+        String[][] patterns = { { "?x", a[1], a[2] }, { "?x", b[1], b[2] }, { "?x", "?r", "?o" } };
+        GraphPattern pattern = new GraphPattern(store, query);
+        assertEquals(query, bruteForce(triples, patterns, pattern.selected()), solutions(pattern));
+      }
+      assertFalse(new GraphPattern(store, "?x r0 unknown").solutions(-1).iterator().hasNext());
+      assertEquals(3, count(new GraphPattern(store, "?x ?r ?y").solutions(3)));
+    } finally {
+      store.close();
+      for (File f : folder.listFiles())
+        f.delete();
+      folder.delete();
+    }
+  }
+
+  /** Returns the number of solutions */
+  private int count(Iterable<Map<String, String>> solutions) {
+    int n = 0;
+    for (@SuppressWarnings("unused")
+    Map<String, String> solution : solutions)
+      n++;
+    return (n);
+  }
+}
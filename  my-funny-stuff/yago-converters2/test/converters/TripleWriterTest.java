@@ -0,0 +1,86 @@
+package converters;
+
+import static converters.EscapeStrings.STRINGS;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javatools.parsers.Char;
+
+import org.junit.Test;
+
+public class TripleWriterTest {
+
+  /** Runs the writer with a tiny buffer, so that it has to drain often */
+  private abstract static class Run {
+
+    abstract void write(TripleWriter w, String s) throws IOException;
+
+    String run(TripleWriter.Syntax syntax, String s) throws IOException {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TripleWriter w = new TripleWriter(out, syntax, 16);
+      write(w, s);
+      w.flush();
+      return (out.toString("UTF-8"));
+    }
+  }
+
+  @Test
+  public void escapeTest() throws IOException {
+    for (String s : STRINGS) {
+      assertEquals(s, N3Converter.n3NameFor(s), new Run() {
+
+        void write(TripleWriter w, String s) throws IOException {
+          w.entity(Codec.decodeBackslash(s));
+        }
+      }.run(TripleWriter.Syntax.TURTLE, s));
+      assertEquals(s, N3Converter.n3String(s), new Run() {
+
+        void write(TripleWriter w, String s) throws IOException {
+          w.string(s);
+        }
+      }.run(TripleWriter.Syntax.TURTLE, s));
+      assertEquals(s, new String(s.getBytes("UTF-8"), "UTF-8"), new Run() {
+
+        void write(TripleWriter w, String s) throws IOException {
+          w.raw(s);
+        }
+      }.run(TripleWriter.Syntax.TURTLE, s));
+      assertEquals(s, Char.decodeBackslash(s), Codec.decodeBackslash(s).toString());
+    }
+  }
+
+  @Test
+  public void syntaxTest() throws IOException {
+    Run triple = new Run() {
+
+      void write(TripleWriter w, String s) throws IOException {
+        w.prefixes("rdf", "y");
+        w.entity(s);
+        w.token(w.token("rdf:type"));
+        w.entity("wordnet_singer");
+        w.endTriple();
+        w.entity(s);
+        w.token(w.token("y:hasAge"));
+        w.literal("\"42\"");
+        w.endTriple();
+      }
+    };
+    assertEquals("@prefix rdf: <http://www.w3.org/1999/02/22-rdf-syntax-ns#> .\n@prefix y: <" + RDFSConverter.ns + "> .\n"
+        + "<Elvis> rdf:type <wordnet_singer> .\n<Elvis> y:hasAge \"42\" .\n", triple.run(TripleWriter.Syntax.TURTLE, "Elvis"));
+    assertEquals("<" + RDFSConverter.ns + "Elvis> <http://www.w3.org/1999/02/22-rdf-syntax-ns#type> <" + RDFSConverter.ns + "wordnet_singer> .\n"
+        + "<" + RDFSConverter.ns + "Elvis> <" + RDFSConverter.ns + "hasAge> \"42\" .\n", triple.run(TripleWriter.Syntax.NTRIPLES, "Elvis"));
+  }
+
+  @Test
+  public void dbpediaTest() throws IOException {
+    for (String s : new String[] { "wordnet_physicist_110428004", "wikicategory_Swiss_physicists", "wordnet_wikicategory_a__b_", "Z\u00fcrich_\u00e9", "_x" }) {
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      TripleWriter w = new TripleWriter(out, TripleWriter.Syntax.TURTLE, 16);
+      DBpediaExport.writeDBpediaClass(w, s);
+      w.flush();
+      assertEquals(s, DBpediaExport.dbpediaNameFor(s, true, false), out.toString("UTF-8"));
+    }
+  }
+}
@@ -0,0 +1,35 @@
+package converters;
+
+import static converters.EscapeStrings.STRINGS;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javatools.parsers.Char;
+
+import org.junit.Test;
+
+import basics.TermExtractor;
+
+public class XmlWriterTest {
+
+  /** Strings with all kinds of characters */
+  @Test
+  public void escapeTest() throws IOException {
+    for (String s : STRINGS) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      XmlWriter w = new XmlWriter(bytes, 16);
+      w.text(s);
+      w.flush();
+      assertEquals(s, Char.encodeAmpersand(s), bytes.toString("US-ASCII"));
+      assertEquals(s, Char.encodeAmpersand(s).length(), w.written());
+
+      bytes.reset();
+      w = new XmlWriter(bytes, 16);
+      w.element(XmlWriter.tag("<a>"), s, XmlWriter.tag("</a>"));
+      w.flush();
+      assertEquals(s, "<a>" + Char.encodeAmpersand(Char.decodeBackslash(TermExtractor.stripQuotes(s))) + "</a>", bytes.toString("US-ASCII"));
+    }
+  }
+}
@@ -0,0 +1,65 @@
+package converters.facts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import org.junit.Test;
+
+public class BatchFactReaderTest {
+
+  /** Puts the facts #start...#end-1 of file into the queue in batches of 10 */
+  private void fill(BlockingQueue<FactBatch> queue, File file, int start, int end) {
+    Fact fact = new Fact();
+    FactBatch batch = new FactBatch(file, 10);
+    for (int i = start; i < end; i++) {
+      if (batch.isFull()) {
+        queue.add(batch);
+        batch = new FactBatch(file, 10);
+      }
+      fact.set("#" + i, "Z\u00fcrich", i % 2 == 0 ? "" : "class_" + i);
+      fact.offset = i;
+      assertTrue(batch.add(fact));
+    }
+    batch.setLast();
+    queue.add(batch);
+  }
+
+  @Test
+  public void readTest() throws Exception {
+    BlockingQueue<FactBatch> queue = new ArrayBlockingQueue<FactBatch>(100);
+    File first = new File("first.tsv");
+    File second = new File("second.tsv");
+    fill(queue, first, 0, 35);
+    fill(queue, second, 100, 110);
+    fill(queue, first, 0, 0);
+
+    // Stop early, the rest of the file has to be skipped
+    BatchFactReader reader = new BatchFactReader(queue, queue.take());
+    assertEquals(first, reader.getFile());
+    for (int i = 0; i < 12; i++) {
+      Fact fact = reader.next();
+      assertEquals("#" + i + "\tZ\u00fcrich\t" + (i % 2 == 0 ? "" : "class_" + i), fact.toString());
+      assertEquals(i, fact.offset());
+    }
+    reader.close();
+
+    reader = new BatchFactReader(queue, queue.take());
+    assertEquals(second, reader.getFile());
+    int count = 0;
+    for (Fact fact : reader) {
+      assertEquals("#" + (100 + count), fact.id.toString());
+      count++;
+    }
+    assertEquals(10, count);
+
+    // A file without facts
+    reader = new BatchFactReader(queue, queue.take());
+    assertFalse(reader.hasNext());
+    assertTrue(queue.isEmpty());
+  }
+}
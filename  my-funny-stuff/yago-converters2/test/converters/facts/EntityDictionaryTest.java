@@ -0,0 +1,66 @@
+package converters.facts;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class EntityDictionaryTest {
+
+  private File tempFolder() throws IOException {
+    File folder = File.createTempFile("dictionary", "");
+    folder.delete();
+    folder.mkdirs();
+    folder.deleteOnExit();
+    return (folder);
+  }
+
+  @Test
+  public void buildTest() throws IOException {
+    File folder = tempFolder();
+    EntityDictionary.Builder builder = new EntityDictionary.Builder(folder);
+    TreeSet<String> expected = new TreeSet<String>();
+    // Enough entities to make the hash table grow
+    for (int i = 0; i < 100000; i++) {
+      String entity = (i % 3 == 0 ? "Z\u00fcrich_" : "wordnet_person_") + (i * 7919 % 100000);
+      builder.add(entity);
+      expected.add(entity);
+    }
+    // Characters above U+E000 sort before supplementary characters in Java
+    for (String s : new String[] { "\uFFFD", "\uD83D\uDE00", "a", "a\uE000", "a\uD800\uDC00", "\"literal\"@eng", "" }) {
+      builder.add(s);
+      builder.add(s);
+      expected.add(s);
+    }
+    EntityDictionary dictionary = builder.build();
+    assertEquals(expected.size(), dictionary.size());
+    List<String> entities = new ArrayList<String>(expected);
+    for (int i = 0; i < entities.size(); i++) {
+      assertEquals(entities.get(i), dictionary.get(i));
+      assertEquals(i, dictionary.id(entities.get(i)));
+    }
+    assertEquals(-1, dictionary.id("Albert_Einstein"));
+    dictionary.close();
+
+    // Reopen, use a FactField
+    dictionary = new EntityDictionary(folder);
+    FactField field = new FactField();
+    field.set("Z\u00fcrich_3");
+    int id = dictionary.id(field);
+    assertTrue(id >= 0);
+    assertEquals("Z\u00fcrich_3", dictionary.get(id, new FactField()).toString());
+    EntityIdSet set = new EntityIdSet(dictionary);
+    set.add("a");
+    set.add(field);
+    set.add("Z\u00fcrich_3");
+    assertEquals(2, set.size());
+    assertEquals("[Z\u00fcrich_3, a]", set.toString());
+    dictionary.close();
+  }
+}
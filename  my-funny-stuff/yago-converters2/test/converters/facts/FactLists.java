@@ -0,0 +1,38 @@
+package converters.facts;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the facts of a FactReader into a list of Strings "size:fact", so
+ * that the tests can compare the facts of different readers.
+ */
+final class FactLists {
+
+  private FactLists() {
+  }
+
+  /** Returns the facts as "size:fact" */
+  static List<String> read(FactReader reader) {
+    return (read(reader, false, -1));
+  }
+
+  /** Returns the facts as "offset:size:fact" */
+  static List<String> readWithOffsets(FactReader reader) {
+    return (read(reader, true, -1));
+  }
+
+  /** Returns the facts with the given number of columns as "size:fact" */
+  static List<String> read(FactReader reader, int size) {
+    return (read(reader, false, size));
+  }
+
+  private static List<String> read(FactReader reader, boolean withOffsets, int size) {
+    List<String> result = new ArrayList<String>();
+    for (Fact fact : reader) {
+      if (size >= 0 && fact.size() != size) continue;
+      result.add((withOffsets ? fact.offset() + ":" : "") + fact.size() + ":" + fact);
+    }
+    return (result);
+  }
+}
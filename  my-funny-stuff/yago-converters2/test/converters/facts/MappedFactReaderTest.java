@@ -0,0 +1,87 @@
+package converters.facts;
+
+import static converters.facts.FactLists.read;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+public class MappedFactReaderTest {
+
+  private File write(String content) throws IOException {
+    File f = File.createTempFile("facts", ".tsv");
+    f.deleteOnExit();
+    FileOutputStream out = new FileOutputStream(f);
+    out.write(content.getBytes("UTF-8"));
+    out.close();
+    return (f);
+  }
+
+  @Test
+  public void readTest() throws IOException {
+    File f = write("#1\tAlbert_Einstein\twordnet_person_100007846\n#2\tZ\u00fcrich\t\"Z\u00fcrich \u20ac\"\r\n\n#3\ta\tb\tc\n#4\tlast\tline");
+    List<String> facts = read(new MappedFactReader(f, null));
+    assertEquals(5, facts.size());
+    assertEquals("3:#1\tAlbert_Einstein\twordnet_person_100007846", facts.get(0));
+    assertEquals("3:#2\tZ\u00fcrich\t\"Z\u00fcrich \u20ac\"", facts.get(1));
+    assertEquals("1:\t\t", facts.get(2));
+    assertEquals("4:#3\ta\tb", facts.get(3));
+    assertEquals("3:#4\tlast\tline", facts.get(4));
+  }
+
+  @Test
+  public void windowTest() throws IOException {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      b.append("#").append(i).append("\tentity_").append(i).append("\tclass_").append(i % 7).append('\n');
+    File f = write(b.toString());
+    List<String> expected = read(new LineFactReader(f, null));
+    assertEquals(1000, expected.size());
+    assertEquals(expected, read(new MappedFactReader(f, null, 64)));
+  }
+
+  @Test
+  public void offsetTest() throws IOException {
+    File f = write("#1\ta\tb\n#22\tcc\tdd\n");
+    MappedFactReader reader = new MappedFactReader(f, null);
+    assertEquals(0, reader.next().offset());
+    assertEquals(7, reader.next().offset());
+    assertFalse(reader.hasNext());
+    assertEquals(f.length(), reader.position());
+  }
+
+  @Test
+  public void skipTest() throws IOException {
+    File f = write("#1\ta\tb\n#22\tcc\tdd\n#333\teee\tfff\n");
+    // Resume after the fact at offset 7, from the beginning and from the offset
+    assertEquals("3:#333\teee\tfff", read(new MappedFactReader(f, null).skipThrough(7)).get(0));
+    List<String> resumed = read(new MappedFactReader(f, null, 7, f.length()).skipThrough(7));
+    assertEquals(1, resumed.size());
+    assertEquals("3:#333\teee\tfff", resumed.get(0));
+    assertEquals(0, read(new MappedFactReader(f, null).skipThrough(18)).size());
+  }
+
+  @Test
+  public void chunkTest() throws IOException {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 1000; i++)
+      b.append("#").append(i).append("\tZ\u00fcrich_").append(i).append("\tclass_").append(i % 7).append('\n');
+    File f = write(b.toString());
+    List<String> expected = read(new MappedFactReader(f, null));
+    for (int chunkSize : new int[] { 1, 10, 100, 5000, 100000 }) {
+      long[] offsets = MappedFactReader.splitLines(f, chunkSize);
+      assertEquals(0, offsets[0]);
+      assertEquals(f.length(), offsets[offsets.length - 1]);
+      List<String> chunked = new ArrayList<String>();
+      for (int i = 1; i < offsets.length; i++)
+        chunked.addAll(read(new MappedFactReader(f, null, offsets[i - 1], offsets[i], 64)));
+      assertEquals(expected, chunked);
+    }
+  }
+}
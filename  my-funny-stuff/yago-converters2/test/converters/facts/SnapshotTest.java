@@ -0,0 +1,71 @@
+package converters.facts;
+
+import static converters.facts.FactLists.read;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+import org.junit.Test;
+
+public class SnapshotTest {
+
+  @Test
+  public void roundTripTest() throws IOException {
+    StringBuilder b = new StringBuilder();
+    for (int i = 0; i < 10000; i++)
+      b.append("#").append(i * 37 % 10000).append("\tZ\u00fcrich_").append(i / 3).append("\tclass_").append(i % 7).append('\n');
+    // Ids that are not of the form #number, and a fact with 2 columns
+    b.append("\tempty\tid\n#007\tleading\tzero\n#x\tno\tnumber\n#12\tshort\n");
+    File folder = File.createTempFile("snapshot", "");
+    folder.delete();
+    folder.mkdirs();
+    folder.deleteOnExit();
+    File tsv = new File(folder, "facts.tsv");
+    tsv.deleteOnExit();
+    OutputStream out = new FileOutputStream(tsv);
+    out.write(b.toString().getBytes("UTF-8"));
+    out.close();
+
+    EntityDictionary.Builder builder = new EntityDictionary.Builder(folder);
+    builder.add("facts");
+    for (Fact fact : new MappedFactReader(tsv, null)) {
+      builder.add(fact.arg1);
+      builder.add(fact.arg2);
+    }
+    EntityDictionary dictionary = builder.build();
+    Snapshot.Header header = new Snapshot.Header();
+    header.name = "facts";
+    header.domain = "yagoEntity";
+    header.range = "yagoClass";
+    File snapshot = new File(folder, "facts" + Snapshot.EXTENSION);
+    snapshot.deleteOnExit();
+    assertEquals(1, Snapshot.write(new MappedFactReader(tsv, null), dictionary, header, snapshot));
+    assertEquals(10003, header.facts);
+
+    SnapshotFactReader reader = new SnapshotFactReader(snapshot, null, dictionary);
+    assertEquals("yagoClass", reader.getHeader().range);
+    assertEquals(read(new MappedFactReader(tsv, null), 3), read(reader, 3));
+    assertEquals(snapshot.length(), reader.position());
+
+    // The same id triples from the ids of the snapshot and from lookups
+    IdTripleReader fromSnapshot = new IdTripleReader(new SnapshotFactReader(snapshot, null, dictionary), dictionary, "facts");
+    IdTripleReader fromTsv = new IdTripleReader(new MappedFactReader(tsv, null), dictionary, "facts");
+    int triples = 0;
+    while (fromTsv.next()) {
+      assertTrue(fromSnapshot.next());
+      assertEquals(fromTsv.subject, fromSnapshot.subject);
+      assertEquals(fromTsv.object, fromSnapshot.object);
+      assertEquals(fromTsv.fact().arg2.toString(), dictionary.get(fromSnapshot.object));
+      triples++;
+    }
+    assertFalse(fromSnapshot.next());
+    assertEquals(10003, triples);
+    assertEquals("facts", dictionary.get(fromSnapshot.predicate));
+    dictionary.close();
+  }
+}
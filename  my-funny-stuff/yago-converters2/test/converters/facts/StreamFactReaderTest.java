@@ -0,0 +1,39 @@
+package converters.facts;
+
+import static converters.facts.FactLists.readWithOffsets;
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.Test;
+
+public class StreamFactReaderTest {
+
+  @Test
+  public void gzipTest() throws IOException {
+    StringBuilder b = new StringBuilder();
+    // More than one block, so that lines cross the buffer boundaries
+    for (int i = 0; i < 100000; i++)
+      b.append("#").append(i).append("\tZ\u00fcrich_").append(i).append("\tclass_").append(i % 7).append('\n');
+    b.append("#last\tline\twithout newline");
+    byte[] content = b.toString().getBytes("UTF-8");
+    File plain = File.createTempFile("facts", ".tsv");
+    plain.deleteOnExit();
+    OutputStream out = new FileOutputStream(plain);
+    out.write(content);
+    out.close();
+    File gz = File.createTempFile("facts", ".tsv.gz");
+    gz.deleteOnExit();
+    out = new GZIPOutputStream(new FileOutputStream(gz));
+    out.write(content);
+    out.close();
+    List<String> expected = readWithOffsets(new MappedFactReader(plain, null));
+    assertEquals(100001, expected.size());
+    assertEquals(expected, readWithOffsets(new StreamFactReader(gz, null, null)));
+  }
+}